@@ -87,58 +87,7 @@ class BankAccountRecord(
     if (date != dest.date) {
       return -1 // Can't match
     }
-    var score = 0
-    score += getScore(amount, dest.amount)
-    score += getScore(subject, dest.subject)
-    score += getScore(currency, dest.currency)
-    score += getScore(debteeId, dest.debteeId)
-    score += getScore(mandateReference, dest.mandateReference)
-    score += getScore(customerReference, dest.customerReference)
-    score += getScore(collectionReference, dest.collectionReference)
-    score += getScore(info, dest.info)
-    score += getScore(receiverSender, dest.receiverSender)
-    score += getScore(iban, dest.iban)
-    score += getScore(bic, dest.bic)
-    return score
-  }
-
-  private fun getScore(value: String?, dest: String?): Int {
-    val str1 = normalizeString(value)
-    val str2 = normalizeString(dest)
-    if (str1.isEmpty() || str2.isEmpty()) {
-      return 0
-    }
-    return if (normalizeString(value) == normalizeString(dest)) {
-      1
-    } else {
-      0
-    }
-  }
-
-  /**
-   * Returns the given string by taking only a-z, A-Z (tolower) and digits.
-   */
-  private fun normalizeString(str: String?): String {
-    str ?: return ""
-    val sb = StringBuilder()
-    for (c in str) {
-      if (c in 'A'..'Z') {
-        sb.append(c.lowercaseChar())
-      } else if (Character.isDigit(c) || c in 'a'..'z') {
-        sb.append(c)
-      }
-    }
-    return sb.toString()
-  }
-
-  private fun getScore(value: BigDecimal?, dest: BigDecimal?): Int {
-    return if (value == null || dest == null) {
-      0
-    } else if (value.compareTo(dest) == 0) {
-      1
-    } else {
-      0
-    }
+    return BankAccountRecordMatcher.MatchValues.of(this).score(BankAccountRecordMatcher.MatchValues.of(dest))
   }
 
   private fun truncate(value: BigDecimal): BigDecimal {
@@ -0,0 +1,196 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.plugins.banking
+
+import java.math.BigDecimal
+
+/**
+ * Finds the best fitting pairs of read and database records of one day.
+ *
+ * Records with identical match values are paired first by a hash lookup (for re-imports of already imported
+ * transactions, this is the normal case). The remaining records are paired greedily by descending score, which gives
+ * the same result as searching the pair with the maximum score again and again, but in O(n*m*log(n*m)) instead of
+ * O(n²*m).
+ */
+internal object BankAccountRecordMatcher {
+  class Result(
+    /** Pairs of indices (read record, db record) in order of matching. */
+    val pairs: List<Pair<Int, Int>>,
+    val unmatchedReadIndices: List<Int>,
+    val unmatchedDBIndices: List<Int>,
+  )
+
+  /**
+   * All records have to be of the same date.
+   */
+  fun match(read: List<BankAccountRecord>, dbRecords: List<BankAccountRecordDO>): Result {
+    val readValues = read.map { MatchValues.of(it) }
+    val dbValues = dbRecords.map { MatchValues.of(it) }
+    val readTaken = BooleanArray(read.size)
+    val dbTaken = BooleanArray(dbRecords.size)
+    val pairs = mutableListOf<Pair<Int, Int>>()
+    // First pass: exact matches by hash.
+    val dbByKey = mutableMapOf<String, ArrayDeque<Int>>()
+    dbValues.forEachIndexed { l, values ->
+      if (values.nonEmptyCount > 0) {
+        dbByKey.getOrPut(values.key) { ArrayDeque() }.addLast(l)
+      }
+    }
+    readValues.forEachIndexed { k, values ->
+      if (values.nonEmptyCount > 0) {
+        dbByKey[values.key]?.removeFirstOrNull()?.let { l ->
+          readTaken[k] = true
+          dbTaken[l] = true
+          pairs.add(Pair(k, l))
+        }
+      }
+    }
+    // Second pass: scoring of leftovers only.
+    val readLeft = read.indices.filter { !readTaken[it] }
+    val dbLeft = dbRecords.indices.filter { !dbTaken[it] }
+    if (readLeft.isNotEmpty() && dbLeft.isNotEmpty()) {
+      var candidates = LongArray(minOf(readLeft.size.toLong() * dbLeft.size, 1024L).toInt())
+      var size = 0
+      for (k in readLeft) {
+        for (l in dbLeft) {
+          val score = readValues[k].score(dbValues[l])
+          if (score > 0) {
+            if (size == candidates.size) {
+              candidates = candidates.copyOf(2 * size)
+            }
+            candidates[size++] = encode(score, k, l)
+          }
+        }
+      }
+      // Sorted by descending score, ascending read index and ascending db index:
+      candidates.sort(0, size)
+      for (i in 0 until size) {
+        val candidate = candidates[i]
+        val k = ((candidate shr INDEX_BITS) and INDEX_MASK).toInt()
+        val l = (candidate and INDEX_MASK).toInt()
+        if (readTaken[k] || dbTaken[l]) {
+          continue // Entry k or l is already taken.
+        }
+        readTaken[k] = true
+        dbTaken[l] = true
+        pairs.add(Pair(k, l))
+      }
+    }
+    return Result(
+      pairs,
+      read.indices.filter { !readTaken[it] },
+      dbRecords.indices.filter { !dbTaken[it] },
+    )
+  }
+
+  private fun encode(score: Int, k: Int, l: Int): Long {
+    return ((MatchValues.MAX_SCORE - score).toLong() shl (2 * INDEX_BITS)) or
+        (k.toLong() shl INDEX_BITS) or l.toLong()
+  }
+
+  private const val INDEX_BITS = 24 // Max 16 mio records per day.
+  private const val INDEX_MASK = (1L shl INDEX_BITS) - 1
+
+  /**
+   * Pre-normalized values of a record, so normalization is done once per record and not once per compared pair.
+   */
+  internal class MatchValues private constructor(val amount: BigDecimal?, val values: Array<String>) {
+    val nonEmptyCount = (if (amount != null) 1 else 0) + values.count { it.isNotEmpty() }
+
+    /**
+     * Equal keys of two records means, the score of these records is [nonEmptyCount].
+     */
+    val key: String by lazy {
+      val sb = StringBuilder()
+      sb.append(amount?.stripTrailingZeros()?.toPlainString() ?: "")
+      values.forEach { sb.append('|').append(it) }
+      sb.toString()
+    }
+
+    fun score(other: MatchValues): Int {
+      var score = if (amount != null && other.amount != null && amount.compareTo(other.amount) == 0) 1 else 0
+      for (i in values.indices) {
+        val value = values[i]
+        if (value.isNotEmpty() && value == other.values[i]) {
+          ++score
+        }
+      }
+      return score
+    }
+
+    companion object {
+      const val MAX_SCORE = 11
+
+      fun of(record: BankAccountRecord): MatchValues {
+        return MatchValues(
+          record.amount, arrayOf(
+            normalizeString(record.subject),
+            normalizeString(record.currency),
+            normalizeString(record.debteeId),
+            normalizeString(record.mandateReference),
+            normalizeString(record.customerReference),
+            normalizeString(record.collectionReference),
+            normalizeString(record.info),
+            normalizeString(record.receiverSender),
+            normalizeString(record.iban),
+            normalizeString(record.bic),
+          )
+        )
+      }
+
+      fun of(record: BankAccountRecordDO): MatchValues {
+        return MatchValues(
+          record.amount, arrayOf(
+            normalizeString(record.subject),
+            normalizeString(record.currency),
+            normalizeString(record.debteeId),
+            normalizeString(record.mandateReference),
+            normalizeString(record.customerReference),
+            normalizeString(record.collectionReference),
+            normalizeString(record.info),
+            normalizeString(record.receiverSender),
+            normalizeString(record.iban),
+            normalizeString(record.bic),
+          )
+        )
+      }
+
+      /**
+       * Returns the given string by taking only a-z, A-Z (tolower) and digits.
+       */
+      fun normalizeString(str: String?): String {
+        str ?: return ""
+        val sb = StringBuilder()
+        for (c in str) {
+          if (c in 'A'..'Z') {
+            sb.append(c.lowercaseChar())
+          } else if (Character.isDigit(c) || c in 'a'..'z') {
+            sb.append(c)
+          }
+        }
+        return sb.toString()
+      }
+    }
+  }
+}
@@ -74,16 +74,16 @@ class BankingImportStorage(importSettings: String? = null, targetEntity: BankAcc
       }
     }
     clearEntries()
-    var date = fromDate!!
-    for (i in 0..999999) { // Paranoia counter, max 1 mio records.
-      val readByDay = readTransactions.filter { it.date == date }
-      val dbRecordsByDay = databaseTransactions?.filter { it.date == date } ?: emptyList()
-      buildMatchingPairs(readByDay, dbRecordsByDay)
-      date = date.plusDays(1)
-      if (date > untilDate) {
-        break
-      }
+    // Group both sides by date only once:
+    val readByDate = readTransactions.groupBy { it.date }
+    val dbRecordsByDate = databaseTransactions?.groupBy { it.date } ?: emptyMap()
+    val dates = sortedSetOf<LocalDate>()
+    readByDate.keys.filterNotNullTo(dates)
+    dbRecordsByDate.keys.filterNotNullTo(dates)
+    dates.subSet(from, true, until, true).forEach { date ->
+      buildMatchingPairs(readByDate[date] ?: emptyList(), dbRecordsByDate[date] ?: emptyList())
     }
+    validateBankAccounts()
   }
 
   private fun buildMatchingPairs(
@@ -96,61 +96,36 @@ class BankingImportStorage(importSettings: String? = null, targetEntity: BankAcc
       }
       return // Nothing to import (only db records given).
     }
-    val scoreMatrix = Array(readByDay.size) { IntArray(dbRecordsByDay.size) }
-    for (k in readByDay.indices) {
-      for (l in dbRecordsByDay.indices) {
-        scoreMatrix[k][l] = readByDay[k].matchScore(dbRecordsByDay[l])
-      }
-    }
-    val takenReadRecords = mutableSetOf<Int>()
-    val takenDBRecords = mutableSetOf<Int>()
-    for (i in 0..(readByDay.size + dbRecordsByDay.size)) { // Paranoia counter
-      var maxScore = 0
-      var maxK = -1
-      var maxL = -1
-      for (k in readByDay.indices) {
-        if (takenReadRecords.contains(k)) {
-          continue // Entry k is already taken.
-        }
-        for (l in dbRecordsByDay.indices) {
-          if (takenDBRecords.contains(l)) {
-            continue // Entry l is already taken.
-          }
-          if (scoreMatrix[k][l] > maxScore) {
-            maxScore = scoreMatrix[k][l]
-            maxK = k
-            maxL = l
-          }
-        }
-      }
-      if (maxScore < 1) {
-        break // No matching pair exists anymore.
-      }
-      takenReadRecords.add(maxK)
-      takenDBRecords.add(maxL)
-      addEntry(ImportPairEntry(readByDay[maxK], createRecord(dbRecordsByDay[maxL])))
+    val result = BankAccountRecordMatcher.match(readByDay, dbRecordsByDay)
+    result.pairs.forEach { (k, l) ->
+      addEntry(ImportPairEntry(readByDay[k], createRecord(dbRecordsByDay[l])))
     }
     // Now, add the unmatching records
-    for (k in readByDay.indices) {
-      if (takenReadRecords.contains(k)) {
-        continue // Entry k is already taken.
-      }
+    result.unmatchedReadIndices.forEach { k ->
       addEntry(ImportPairEntry(readByDay[k], null))
     }
-    for (l in dbRecordsByDay.indices) {
-      if (takenDBRecords.contains(l)) {
-        continue // Entry l is already taken.
-      }
+    result.unmatchedDBIndices.forEach { l ->
       addEntry(ImportPairEntry(null, createRecord(dbRecordsByDay[l])))
     }
+  }
+
+  /**
+   * Marks all read records with an iban not matching the iban of the target bank account. Each iban is normalized
+   * and checked only once.
+   */
+  private fun validateBankAccounts() {
+    val validIbans = mutableMapOf<String?, Boolean>()
     pairEntries.forEach { entry ->
       entry.read?.let { read ->
-        if (read.bankAccount?.iban.isNullOrBlank()
-          || !bankAccountNormalizedIban.contains(StringHelper.removeNonDigitsAndNonASCIILetters(read.bankAccount?.iban))
-        ) {
+        val iban = read.bankAccount?.iban
+        val valid = validIbans.getOrPut(iban) {
+          !iban.isNullOrBlank()
+              && bankAccountNormalizedIban.contains(StringHelper.removeNonDigitsAndNonASCIILetters(iban))
+        }
+        if (!valid) {
           entry.error = translateMsg(
             "plugins.banking.import.error.recordWithWrongBankAccount",
-            read.bankAccount?.iban,
+            iban,
             (targetEntity as BankAccount).iban
           )
         }
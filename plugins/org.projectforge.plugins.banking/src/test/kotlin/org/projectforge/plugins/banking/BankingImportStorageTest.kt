@@ -26,8 +26,10 @@ package org.projectforge.plugins.banking
 import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
 import org.projectforge.rest.dto.BankAccount
+import org.projectforge.rest.importer.CsvImporter
 import org.projectforge.rest.importer.ImportEntry
 import org.projectforge.rest.importer.ImportPairEntry
+import java.io.StringReader
 import java.math.BigDecimal
 import java.time.LocalDate
 
@@ -99,6 +101,80 @@ class BankingImportStorageTest {
     }
   }
 
+  /**
+   * Reconciliation of a generated statement of 100,000 records (one year), 90% of them already imported, 5% modified
+   * and 5% new. The run time is measured by BankingReconcileBenchmark (projectforge-benchmarks).
+   */
+  @Test
+  fun reconcileLargeStatementTest() {
+    val iban = "DE89 3704 0044 0532 0130 00"
+    val bankAccount = BankAccount(iban = iban)
+    val startDate = LocalDate.of(2023, 1, 1)
+    val read = mutableListOf<BankAccountRecord>()
+    val db = mutableListOf<BankAccountRecordDO>()
+    for (i in 0 until 100_000) {
+      val date = startDate.plusDays((i % 365).toLong())
+      val amount = "${i % 1000}.${i % 100}"
+      val record = createRecord(date, amount, "Subject $i", "DE$i")
+      record.bankAccount = bankAccount
+      read.add(record)
+      when (i % 20) {
+        0 -> {} // New record, not yet in database.
+        1 -> db.add(createDBRecord(date, amount, "Modified subject $i", "DE$i"))
+        else -> db.add(createDBRecord(date, amount, "Subject $i", "DE$i"))
+      }
+    }
+    val storage = BankingImportStorage(targetEntity = BankAccount(id = 42, iban = iban))
+    storage.readTransactions = read
+    storage.databaseTransactions = db
+    storage.analyzeReadTransactions()
+    storage.reconcileImportStorage(false)
+    Assertions.assertEquals(100_000, storage.pairEntries.size)
+    Assertions.assertEquals(5_000, storage.pairEntries.count { it.stored == null })
+    Assertions.assertTrue(storage.pairEntries.all { it.read != null })
+    Assertions.assertTrue(storage.pairEntries.all { it.error == null })
+    storage.pairEntries.filter { it.read?.subject?.startsWith("Modified") == false && it.stored?.subject?.startsWith("Modified") == true }
+      .let { list ->
+        Assertions.assertEquals(5_000, list.size)
+        Assertions.assertTrue(list.all { it.read!!.iban == it.stored!!.iban })
+      }
+  }
+
+  /**
+   * Imports a csv file of 150,000 lines (more than one chunk, bound in parallel). The first amounts are ambiguous
+   * (1.000), so the German number format is detected by later lines.
+   */
+  @Test
+  fun csvImportTest() {
+    val lines = 150_000
+    val sb = StringBuilder()
+    sb.appendLine("Buchungstag;Betrag;Verwendungszweck;Konto;IBAN")
+    for (i in 0 until lines) {
+      val amount = if (i < 1_500) "1.000" else "${i % 1000},${(i % 100).toString().padStart(2, '0')}"
+      sb.appendLine("${String.format("%02d", i % 28 + 1)}.03.2023;$amount;Subject $i;DE42;DE$i")
+    }
+    val settings = """
+      date=buchungstag|:dd.MM.yyyy
+      amount=betrag*
+      subject=verwendung*
+      account=konto
+      iban=iban
+    """.trimIndent()
+    val storage = BankingImportStorage(settings)
+    CsvImporter.parse(StringReader(sb.toString()), storage)
+    val records = storage.readTransactions
+    Assertions.assertEquals(lines, records.size)
+    records.forEachIndexed { i, record ->
+      Assertions.assertEquals("Subject $i", record.subject)
+      Assertions.assertEquals("DE$i", record.iban)
+      Assertions.assertEquals("DE42", record.bankAccount?.iban)
+      Assertions.assertEquals(LocalDate.of(2023, 3, i % 28 + 1), record.date)
+    }
+    Assertions.assertEquals(0, BigDecimal("1000").compareTo(records[0].amount))
+    Assertions.assertEquals(0, BigDecimal("12.12").compareTo(records[2_012].amount))
+    Assertions.assertEquals(0, BigDecimal("999.99").compareTo(records[149_999].amount))
+  }
+
   private fun createRecord(
     date: LocalDate?,
     amount: String?,
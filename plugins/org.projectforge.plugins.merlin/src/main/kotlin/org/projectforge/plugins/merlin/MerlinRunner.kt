@@ -50,18 +50,23 @@ import org.projectforge.framework.time.DateTimeFormatter
 import org.projectforge.framework.utils.NumberFormatter
 import org.projectforge.framework.utils.NumberHelper
 import org.projectforge.jcr.FileInfo
+import org.projectforge.plugins.datatransfer.DataTransferAreaDO
 import org.projectforge.plugins.datatransfer.DataTransferAreaDao
 import org.projectforge.plugins.datatransfer.rest.DataTransferAreaPagesRest
 import org.projectforge.rest.core.RestHelper
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Service
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
 import java.io.InputStream
 import java.math.RoundingMode
 import java.util.*
 import java.util.zip.ZipEntry
-import java.util.zip.ZipInputStream
 import java.util.zip.ZipOutputStream
 
 
@@ -115,104 +120,233 @@ open class MerlinRunner {
   }
 
   /**
+   * Reads and validates the serial Excel file. The documents are generated afterwards by [runSerialExecution]
+   * (e. g. by a [MerlinSerialJob]).
    * @param id Id of the MerlinTemplateDO
    * @param istream Inputstream of Excel serial file.
-   * @return Pair of filename and byte array representing the zip file containing all generated word documents.
+   * @return The prepared serial execution or null, if the Excel file isn't valid.
    */
-  fun serialExecuteTemplate(id: Long, filename: String, istream: InputStream): Pair<String, ByteArray>? {
+  fun prepareSerialExecution(id: Long, filename: String, istream: InputStream): SerialExecution? {
     if (!filename.endsWith("xlsx") && !filename.endsWith(".xls")) {
       log.error { "Only Excel files are supported for serial execution. Unsupported file: '$filename'" }
       return null
     }
     val lastLogNumber = MerlinPlugin.ensureUserLogSubscription().lastEntryNumber
-    var serialData: SerialData?
     val analysis = merlinHandler.analyze(id)
     val templateDefinition = analysis.statistics.templateDefinition
     val dto = analysis.dto
-    val wordDocument = merlinHandler.getWordTemplateToCloseOnYourOwn(id) ?: return null
-    wordDocument.use { doc ->
-      val excelByteArray: ByteArray
-      istream.use {
-        excelByteArray = it.readAllBytes()
+    val wordDocumentResult = merlinHandler.getWordTemplateInputStream(id) ?: return null
+    val templateFilename = wordDocumentResult.first.fileName ?: "untitled.docx"
+    val templateBytes = wordDocumentResult.second.use { it.readAllBytes() }
+    val excelByteArray: ByteArray
+    istream.use {
+      excelByteArray = it.readAllBytes()
+    }
+    ByteArrayInputStream(excelByteArray).use { xlsIstream ->
+      ExcelWorkbook(xlsIstream, filename).use { workbook ->
+        if (!SerialDataExcelReader.isMerlinSerialRunDefinition(workbook)) {
+          return null
+        }
+        val reader = SerialDataExcelReader(workbook)
+        initTemplateRunContext(reader.templateRunContext)
+        val data = reader.serialData
+        data.templateDefinition = templateDefinition
+        data.template = analysis.statistics.template
+        data.template.statistics.inputVariables.add(VariableDefinition(PERSONAL_BOX_VARIABLE))
+        data.template.statistics.inputVariables.add(VariableDefinition(PERSONAL_BOX_VARIABLE_DESC))
+        data.template.statistics.inputVariables.add(VariableDefinition(PERSONAL_BOX_VARIABLE_AS_PDF))
+        data.template.statistics.inputVariables.add(VariableDefinition(PERSONAL_BOX_VARIABLE_AS_PDF_DESC))
+        reader.readVariables(data.template.statistics)
+
+        val validatedEntries = mutableListOf<Variables>()
+        data.entries.forEachIndexed { index, variables ->
+          var error = false
+          // Validate each set of variables (one set per document to generate):
+          dto.variables.filter { it.input }.forEach { variable ->
+            variable.validate(variables.get(variable.name))?.let { errorMsg ->
+              log.error { "Document #$index: $errorMsg" }
+              error = true
+            }
+          }
+          if (!error) {
+            validatedEntries.add(variables)
+          }
+        }
+        data.entries = validatedEntries
+        return SerialExecution(
+          serialData = data,
+          dto = dto,
+          templateBytes = templateBytes,
+          templateFilename = templateFilename,
+          excelBytes = excelByteArray,
+          excelFilename = filename,
+          lastLogNumber = lastLogNumber,
+        )
       }
-      ByteArrayInputStream(excelByteArray).use { xlsIstream ->
-        ExcelWorkbook(xlsIstream, filename).use { workbook ->
-          if (!SerialDataExcelReader.isMerlinSerialRunDefinition(workbook)) {
-            return null
+    }
+  }
+
+  /**
+   * Generates all documents of the given serial execution. Word documents are rendered (and converted to pdf, if
+   * required) by a bounded pool of workers, spooled to temporary files and streamed in order of the serial Excel
+   * file into the resulting zip file. Receivers of #PersonalBox/#PersonalBoxAsPdf get their documents directly.
+   * Failing documents are logged (see log viewer Excel file in the zip file) and skipped.
+   * @param workDir Directory for temporary files. The resulting zip file is placed here.
+   * @param onProgress Called after each processed document with the number of processed documents.
+   * @param isActive If false is returned, the execution is aborted (cancelled job).
+   * @return The zip file containing all generated documents, the log view events and the serial Excel file or null,
+   * if aborted.
+   */
+  fun runSerialExecution(
+    execution: SerialExecution,
+    workDir: File,
+    onProgress: ((processed: Int) -> Unit)? = null,
+    isActive: () -> Boolean = { true },
+  ): File? {
+    val serialData = execution.serialData
+    val dto = execution.dto
+    val pdfExport = dto.pdfExport == true
+    val receivers = getPersonalBoxReceivers(serialData, dto)
+    val entries = serialData.entries
+    val userContext = ThreadLocalUserContext.userContext
+    val zipFile = File(workDir, execution.zipFilename)
+    ZipOutputStream(BufferedOutputStream(FileOutputStream(zipFile))).use { zipOut ->
+      val usedFilenames = mutableSetOf<String>()
+      var processed = 0
+      val failed = OrderedWorkerPool(SERIAL_WORKERS, "merlin-serial").run(
+        entries.size,
+        process = { index ->
+          val convertToPdf = pdfExport || receivers?.get(index)?.second?.user != null
+          ThreadLocalUserContext.userContext = userContext // For logging (log viewer of user) and translations.
+          try {
+            renderSerialDocument(execution, entries[index], index, workDir, convertToPdf)
+          } finally {
+            ThreadLocalUserContext.clear()
           }
-          val reader = SerialDataExcelReader(workbook)
-          initTemplateRunContext(reader.templateRunContext)
-          val data = reader.serialData
-          data.templateDefinition = templateDefinition
-          data.template = analysis.statistics.template
-          data.template.statistics.inputVariables.add(VariableDefinition(PERSONAL_BOX_VARIABLE))
-          data.template.statistics.inputVariables.add(VariableDefinition(PERSONAL_BOX_VARIABLE_DESC))
-          data.template.statistics.inputVariables.add(VariableDefinition(PERSONAL_BOX_VARIABLE_AS_PDF))
-          data.template.statistics.inputVariables.add(VariableDefinition(PERSONAL_BOX_VARIABLE_AS_PDF_DESC))
-          reader.readVariables(data.template.statistics)
-
-          val validatedEntries = mutableListOf<Variables>()
-          data.entries.forEachIndexed { index, variables ->
-            var error = false
-            // Validate each set of variables (one set per document to generate):
-            dto.variables.filter { it.input }.forEach { variable ->
-              variable.validate(variables.get(variable.name))?.let { errorMsg ->
-                log.error { "Document #$index: $errorMsg" }
-                error = true
-              }
+        },
+        consume = { _, document ->
+          try {
+            val wordFilename = ensureUniqueFilename(document.wordFilename, usedFilenames)
+            val pdfFilename = "${FilenameUtils.getBaseName(wordFilename)}.pdf"
+            addToZip(zipOut, wordFilename, document.wordFile)
+            document.pdfFile?.let { pdfFile ->
+              addToZip(zipOut, pdfFilename, pdfFile)
             }
-            if (!error) {
-              validatedEntries.add(variables)
+            receivers?.get(document.index)?.let { (docReceiver, pdfReceiver) ->
+              putDocumentsInPersonalBox(document, wordFilename, pdfFilename, docReceiver, pdfReceiver)
             }
+          } finally {
+            document.wordFile.delete()
+            document.pdfFile?.delete()
           }
-          data.entries = validatedEntries
+          onProgress?.invoke(++processed)
+        },
+        onError = { index, ex ->
+          // Logged for the log viewer Excel file of the result zip.
+          log.error(ex) { "Error while generating serial document #${index + 1}, skipping this document: ${ex.message}" }
+          onProgress?.invoke(++processed)
+        },
+        isActive = isActive,
+      )
+      if (failed == null) {
+        log.info { "Serial execution cancelled after $processed of ${entries.size} documents." }
+        return null
+      }
+      addLogViewerExcel(zipOut, execution.lastLogNumber)
+      zipOut.putNextEntry(ZipEntry(execution.excelFilename))
+      zipOut.write(execution.excelBytes)
+      zipOut.closeEntry()
+      log.info {
+        "Serial execution finished: ${entries.size - failed} documents${if (failed > 0) " ($failed failed)" else ""}."
+      }
+    }
+    log.info { "Zip file of serial execution: ${FormatterUtils.formatBytes(zipFile.length())}." }
+    return zipFile
+  }
 
-          serialData = data
-        }
+  /**
+   * Puts the given zip file (result of a serial execution) into the personal box of the logged-in user.
+   */
+  fun putSerialResultInPersonalBox(zipFile: File, zipFilename: String) {
+    if (!merlinHandler.dataTransferPluginAvailable()) {
+      return
+    }
+    val receiver = ThreadLocalUserContext.loggedInUser!!
+    val personalBox = dataTransferAreaDao.ensurePersonalBox(receiver.id!!) ?: return
+    val personalBoxFilename =
+      "${DateHelper.getFilenameFormatTimestamp(ThreadLocalUserContext.timeZone).format(Date())}_$zipFilename"
+    val description = translate("plugins.merlin.template.dataTransferUsage.resultZip")
+    val size = zipFile.length()
+    try {
+      BufferedInputStream(FileInputStream(zipFile)).use { istream ->
+        attachmentsService.addAttachment(
+          dataTransferAreaPagesRest.jcrPath!!,
+          fileInfo = FileInfo(
+            personalBoxFilename,
+            fileSize = size,
+            description = description
+          ),
+          inputStream = istream,
+          baseDao = dataTransferAreaDao,
+          obj = personalBox,
+          accessChecker = dataTransferAreaPagesRest.attachmentsAccessChecker,
+        )
       }
-      val runner = SerialTemplateRunner(serialData, doc)
-      var zipByteArray: ByteArray = runner.run(filename)
-      zipByteArray = postProcessSerialDocuments(
-        zipByteArray,
-        excelByteArray,
-        filename,
-        serialData!!,
-        dto,
-        lastLogNumber,
-        dto.pdfExport == true
+      log.info("Document '${personalBoxFilename}' of size ${FormatterUtils.formatBytes(size)} put in the personal box (DataTransfer) of '${receiver.userDisplayName}' with description '$description'.")
+    } catch (ex: Exception) {
+      log.error(
+        "Can't put document '${personalBoxFilename}' of size ${FormatterUtils.formatBytes(size)} into user '${receiver.userDisplayName}' personal box: ${ex.message}",
+        ex
       )
-      if (merlinHandler.dataTransferPluginAvailable()) {
-        val receiver = ThreadLocalUserContext.loggedInUser!!
-        val personalBox = dataTransferAreaDao.ensurePersonalBox(receiver.id!!)
-        val personalBoxFilename = "${DateHelper.getFilenameFormatTimestamp(ThreadLocalUserContext.timeZone).format(Date())}_${runner.zipFilename}"
-        personalBox?.let {
-          val description = translate("plugins.merlin.template.dataTransferUsage.resultZip")
-          try {
-            attachmentsService.addAttachment(
-              dataTransferAreaPagesRest.jcrPath!!,
-              fileInfo = FileInfo(
-                personalBoxFilename,
-                fileSize = zipByteArray.size.toLong(),
-                description = description
-              ),
-              content = zipByteArray,
-              baseDao = dataTransferAreaDao,
-              obj = it,
-              accessChecker = dataTransferAreaPagesRest.attachmentsAccessChecker,
-            )
-            log.info("Document '${personalBoxFilename}' of size ${FormatterUtils.formatBytes(zipByteArray.size)} put in the personal box (DataTransfer) of '${receiver.userDisplayName}' with description '$description'.")
-          } catch (ex: Exception) {
-            log.error(
-              "Can't put document '${personalBoxFilename}' of size ${FormatterUtils.formatBytes(zipByteArray.size)} into user '${receiver.userDisplayName}' personal box: ${ex.message}",
-              ex
-            )
-          }
+    }
+  }
+
+  /**
+   * Renders one document of the serial execution on its own copy of the Word template (runs in worker threads).
+   */
+  private fun renderSerialDocument(
+    execution: SerialExecution,
+    variables: Variables,
+    index: Int,
+    workDir: File,
+    convertToPdf: Boolean,
+  ): SerialDocument {
+    ByteArrayInputStream(execution.templateBytes).use { istream ->
+      WordDocument(istream, execution.templateFilename).use { doc ->
+        val runner = WordTemplateRunner(execution.serialData.templateDefinition, doc)
+        val result = runner.run(variables)
+        val filename = runner.createFilename(execution.dto.fileNamePattern, variables)
+        val wordBytes = result.asByteArrayOutputStream.toByteArray()
+        val wordFile = File(workDir, "$index.docx")
+        wordFile.writeBytes(wordBytes)
+        if (!convertToPdf) {
+          return SerialDocument(index, filename, wordFile)
         }
+        val pdfFile = File(workDir, "$index.pdf")
+        pdfFile.writeBytes(convertToPdf(wordBytes, filename).content)
+        return SerialDocument(index, filename, wordFile, pdfFile)
       }
-      return Pair(runner.zipFilename, zipByteArray)
     }
   }
 
+  private fun addToZip(zipOut: ZipOutputStream, filename: String, file: File) {
+    zipOut.putNextEntry(ZipEntry(filename))
+    file.inputStream().use { it.copyTo(zipOut) }
+    zipOut.closeEntry()
+  }
+
+  /**
+   * Filenames of serial documents (built by the filename pattern) may be equal. Appends a counter to doublets.
+   */
+  private fun ensureUniqueFilename(filename: String, usedFilenames: MutableSet<String>): String {
+    var result = filename
+    var counter = 1
+    while (!usedFilenames.add(result)) {
+      result = "${FilenameUtils.getBaseName(filename)}-${++counter}.${FilenameUtils.getExtension(filename)}"
+    }
+    return result
+  }
+
   /**
    * Creates a template for Excel for executing serial document generation.
    * @param id Id of the MerlinTemplateDO
@@ -285,91 +419,45 @@ open class MerlinRunner {
   }
 
   /**
-   * Drops files in receiver's personal box (DataTransfer) if configured and adds log view events as Excel
-   * file to zip archive.
+   * Adds log view events as Excel file to zip archive.
    */
-  private fun postProcessSerialDocuments(
-    zipByteArray: ByteArray,
-    excelByteArray: ByteArray,
-    excelFilename: String,
-    serialData: SerialData,
-    dto: MerlinTemplate,
-    lastLogNumber: Long?,
-    pdfExport: Boolean,
-  ): ByteArray {
-    val convertedPdfDocuments = processPersonalBoxOfReceivers(zipByteArray, serialData, dto)
-    ZipInputStream(ByteArrayInputStream(zipByteArray)).use { zipInputStream ->
-      ByteArrayOutputStream().use { baos ->
-        ZipOutputStream(baos).use { zipOut ->
-          var zipEntry = zipInputStream.nextEntry
-          while (zipEntry != null) {
-            val clonedZipEntry = zipEntry.clone() as ZipEntry
-            zipOut.putNextEntry(clonedZipEntry)
-            if (!zipEntry.isDirectory) {
-              val ba = zipInputStream.readAllBytes()
-              zipOut.write(ba)
-              if (zipEntry.name.endsWith(".docx")) {
-                // Test if filename was already generated to put in user's personal data transfer box:
-                var pdfFile = convertedPdfDocuments.find {
-                  FilenameUtils.getBaseName(it.filename) == FilenameUtils.getBaseName(zipEntry.name)
-                }
-                if (pdfFile == null && pdfExport) {
-                  // pdfExport is demanded, so generate it:
-                  pdfFile = convertToPdf(ba, zipEntry.name)
-                }
-                if (pdfFile != null) {
-                  zipOut.closeEntry()
-                  zipOut.putNextEntry(ZipEntry(pdfFile.filename))
-                  zipOut.write(pdfFile.content)
-                }
-              }
-            }
-            zipOut.closeEntry()
-            zipEntry = zipInputStream.nextEntry
-          }
-          zipInputStream.closeEntry()
-
-          ExcelUtils.prepareWorkbook().use { workbook ->
-            val sheet = workbook.createOrGetSheet(translate("plugins.merlin.export.logging.excel.sheetName"))
-            ExcelUtils.registerColumn(sheet, LoggingEventData::class.java, "isoTimestamp", 20)
-            ExcelUtils.registerColumn(sheet, LoggingEventData::class.java, "level", 6)
-            ExcelUtils.registerColumn(sheet, LoggingEventData::class.java, "message", 100)
-            ExcelUtils.registerColumn(sheet, LoggingEventData::class.java, "loggerName", 60)
-            val boldFont = workbook.createOrGetFont("bold", bold = true)
-            val boldStyle = workbook.createOrGetCellStyle("hr", font = boldFont)
-            val headRow = sheet.createRow() // second row as head row.
-            sheet.columnDefinitions.forEachIndexed { index, it ->
-              headRow.getCell(index).setCellValue(it.columnHeadname).setCellStyle(boldStyle)
-            }
-            val logs =
-              MerlinPlugin.ensureUserLogSubscription()
-                .query(LogFilter(lastReceivedLogOrderNumber = lastLogNumber, maxSize = 10000))
-                .sortedBy { it.id } // In ascending order.
-            logs.forEach { logEntry ->
-              val row = sheet.createRow()
-              ExcelUtils.autoFill(row, logEntry)
-            }
-            val logViewerBytes = workbook.asByteArrayOutputStream.toByteArray()
-            val logViewerEntry = ZipEntry("${translate("plugins.merlin.export.logging.excel.logBaseFilename")}.xlsx")
-            zipOut.putNextEntry(logViewerEntry)
-            zipOut.write(logViewerBytes)
-            zipOut.closeEntry()
-          }
-          zipOut.putNextEntry(ZipEntry(excelFilename))
-          zipOut.write(excelByteArray)
-          zipOut.closeEntry()
-        }
-        return baos.toByteArray()
+  private fun addLogViewerExcel(zipOut: ZipOutputStream, lastLogNumber: Long?) {
+    ExcelUtils.prepareWorkbook().use { workbook ->
+      val sheet = workbook.createOrGetSheet(translate("plugins.merlin.export.logging.excel.sheetName"))
+      ExcelUtils.registerColumn(sheet, LoggingEventData::class.java, "isoTimestamp", 20)
+      ExcelUtils.registerColumn(sheet, LoggingEventData::class.java, "level", 6)
+      ExcelUtils.registerColumn(sheet, LoggingEventData::class.java, "message", 100)
+      ExcelUtils.registerColumn(sheet, LoggingEventData::class.java, "loggerName", 60)
+      val boldFont = workbook.createOrGetFont("bold", bold = true)
+      val boldStyle = workbook.createOrGetCellStyle("hr", font = boldFont)
+      val headRow = sheet.createRow() // second row as head row.
+      sheet.columnDefinitions.forEachIndexed { index, it ->
+        headRow.getCell(index).setCellValue(it.columnHeadname).setCellStyle(boldStyle)
+      }
+      val logs =
+        MerlinPlugin.ensureUserLogSubscription()
+          .query(LogFilter(lastReceivedLogOrderNumber = lastLogNumber, maxSize = 10000))
+          .sortedBy { it.id } // In ascending order.
+      logs.forEach { logEntry ->
+        val row = sheet.createRow()
+        ExcelUtils.autoFill(row, logEntry)
       }
+      val logViewerEntry = ZipEntry("${translate("plugins.merlin.export.logging.excel.logBaseFilename")}.xlsx")
+      zipOut.putNextEntry(logViewerEntry)
+      workbook.asByteArrayOutputStream.writeTo(zipOut)
+      zipOut.closeEntry()
     }
   }
 
-  private fun processPersonalBoxOfReceivers(
-    zipByteArray: ByteArray,
+  /**
+   * Checks all #PersonalBox/#PersonalBoxAsPdf values of the serial data.
+   * @return Pair of doc and pdf receiver per entry of the serial data or null, if no personal box is used or any
+   * receiver isn't valid (nothing will be sent to anybody).
+   */
+  private fun getPersonalBoxReceivers(
     serialData: SerialData,
     dto: MerlinTemplate
-  ): List<PDFDocument> {
-    val pdfDocuments = mutableListOf<PDFDocument>()
+  ): List<Pair<PersonalBoxReceiver, PersonalBoxReceiver>>? {
     if (serialData.entries.none {
         val personalBoxVariable = it.get(PERSONAL_BOX_VARIABLE)
         val personalBoxUsed =
@@ -382,16 +470,15 @@ open class MerlinRunner {
         personalBoxUsed || personalBoxAsPdfUsed
       }) {
       // No #PersonalBox value or #PersonalBoxAsPdf given. Nothing to do.
-      return pdfDocuments
+      return null
     }
     if (!merlinHandler.dataTransferPluginAvailable()) {
       log.error { "No DataTransfer activated, can't use personal box. Please contact your administrator to activate the plugin 'DataTransfer'." }
-      return pdfDocuments
+      return null
     }
     log.info { "Using $PERSONAL_BOX_VARIABLE/$PERSONAL_BOX_VARIABLE_AS_PDF for sending documents via DataTransfer." }
     // First, check all usernames:
-    val docReceivers = mutableListOf<PersonalBoxReceiver>()
-    val pdfReceivers = mutableListOf<PersonalBoxReceiver>()
+    val receivers = mutableListOf<Pair<PersonalBoxReceiver, PersonalBoxReceiver>>()
     var validUsernames = true
     serialData.entries.forEachIndexed { index, variables ->
       val personalBoxUserResult = getUser(variables.get(PERSONAL_BOX_VARIABLE))
@@ -412,8 +499,12 @@ open class MerlinRunner {
         }
       }
       if (!error) {
-        docReceivers.add(PersonalBoxReceiver(docReceiver, variables, PERSONAL_BOX_VARIABLE_DESC, index))
-        pdfReceivers.add(PersonalBoxReceiver(pdfReceiver, variables, PERSONAL_BOX_VARIABLE_AS_PDF_DESC, index))
+        receivers.add(
+          Pair(
+            PersonalBoxReceiver(docReceiver, variables, PERSONAL_BOX_VARIABLE_DESC, index),
+            PersonalBoxReceiver(pdfReceiver, variables, PERSONAL_BOX_VARIABLE_AS_PDF_DESC, index),
+          )
+        )
         if (docReceiver != null && pdfReceiver != null && docReceiver != pdfReceiver) {
           validUsernames = false
           log.error { "Can't send Word® file and PDF file to different users: '${docReceiver.getFullname()}' != '${pdfReceiver.getFullname()}'!" }
@@ -422,102 +513,74 @@ open class MerlinRunner {
     }
     if (!validUsernames) {
       log.error { "Errors for personal box users occured. No document will be send to any personal user box. Aborting." }
-      return pdfDocuments
+      return null
     }
-    var counter = 0
-    ZipInputStream(ByteArrayInputStream(zipByteArray)).use { zipInputStream ->
-      var zipEntry = zipInputStream.nextEntry
-      while (zipEntry != null) {
-        if (zipEntry.isDirectory) {
-          continue
-        }
-        zipEntry = zipInputStream.nextEntry
-        ++counter
-      }
-      zipInputStream.closeEntry()
+    if (receivers.size != serialData.entries.size) {
+      log.warn { "Oups, number of Word documents to generate doesn't match number of personal box receivers. Aborting: Don't send any document to any personal user's box." }
+      return null
     }
-    if (counter != docReceivers.size || pdfReceivers.size != counter) {
-      log.warn { "Oups, number of generated Word documents doesn't match number of personal box receivers. Aborting: Don't send any document to any personal user's box." }
-      return pdfDocuments
+    return receivers
+  }
+
+  private fun putDocumentsInPersonalBox(
+    document: SerialDocument,
+    wordFilename: String,
+    pdfFilename: String,
+    docReceiver: PersonalBoxReceiver,
+    pdfReceiver: PersonalBoxReceiver,
+  ) {
+    if (docReceiver.user == null && pdfReceiver.user == null) {
+      return
     }
-    counter = 0
-    ZipInputStream(ByteArrayInputStream(zipByteArray)).use { zipInputStream ->
-      var zipEntry = zipInputStream.nextEntry
-      while (zipEntry != null) {
-        if (zipEntry.isDirectory) {
-          continue
-        }
-        val docReceiver = docReceivers[counter]
-        val pdfReceiver = pdfReceivers[counter++]
-        if (docReceiver.user != null || pdfReceiver.user != null) {
-          val receiver = if (docReceiver.user != null) {
-            docReceiver
-          } else {
-            pdfReceiver
-          }
-          try {
-            zipEntry.name
-            val personalBox = dataTransferAreaDao.ensurePersonalBox(receiver.userId)
-            if (personalBox == null) {
-              log.error { "Can't get personal box of user '${receiver.userFullname}. Skipping user." }
-              continue
-            }
-            val wordBytes = zipInputStream.readAllBytes()
-            if (docReceiver.user != null) {
-              try {
-                attachmentsService.addAttachment(
-                  dataTransferAreaPagesRest.jcrPath!!,
-                  fileInfo = FileInfo(
-                    zipEntry.name,
-                    fileSize = zipEntry.size,
-                    description = docReceiver.attachmentDescription
-                  ),
-                  content = wordBytes,
-                  baseDao = dataTransferAreaDao,
-                  obj = personalBox,
-                  accessChecker = dataTransferAreaPagesRest.attachmentsAccessChecker,
-                )
-                log.info("Document '${zipEntry.name}' of size ${FormatterUtils.formatBytes(wordBytes.size)} put in the personal box (DataTransfer) of '${receiver.userDisplayName}' with description '${docReceiver.attachmentDescription}'.")
-              } catch (ex: Exception) {
-                log.error(
-                  "Can't put document '${zipEntry.name}' of size ${FormatterUtils.formatBytes(wordBytes.size)} into user '${receiver.userFullname}' personal box: ${ex.message}",
-                  ex
-                )
-              }
-            }
-            if (pdfReceiver.user != null) {
-              val pdfDocument = convertToPdf(wordBytes, zipEntry.name)
-              pdfDocuments.add(pdfDocument)
-              try {
-                attachmentsService.addAttachment(
-                  dataTransferAreaPagesRest.jcrPath!!,
-                  fileInfo = FileInfo(
-                    pdfDocument.filename,
-                    fileSize = pdfDocument.content.size.toLong(),
-                    description = pdfReceiver.attachmentDescription
-                  ),
-                  content = pdfDocument.content,
-                  baseDao = dataTransferAreaDao,
-                  obj = personalBox,
-                  accessChecker = dataTransferAreaPagesRest.attachmentsAccessChecker,
-                )
-                log.info("Document '${pdfDocument.filename}' of size ${FormatterUtils.formatBytes(pdfDocument.content.size)} put in the personal box (DataTransfer) of '${receiver.userDisplayName}' with description '${pdfReceiver.attachmentDescription}'.")
-              } catch (ex: Exception) {
-                log.error(
-                  "Can't put document '${pdfDocument.filename}' of size ${FormatterUtils.formatBytes(pdfDocument.content.size)} into user '${receiver.userFullname}' personal box: ${ex.message}",
-                  ex
-                )
-              }
-            }
-          } catch (ex: Exception) {
-            log.error("Can't put document into user '${receiver.userFullname}' personal box: ${ex.message}", ex)
-          }
-        }
-        zipEntry = zipInputStream.nextEntry
+    val receiver = docReceiver.takeIf { it.user != null } ?: pdfReceiver
+    try {
+      val personalBox = dataTransferAreaDao.ensurePersonalBox(receiver.userId)
+      if (personalBox == null) {
+        log.error { "Can't get personal box of user '${receiver.userFullname}. Skipping user." }
+        return
+      }
+      if (docReceiver.user != null) {
+        putInPersonalBox(document.wordFile, wordFilename, personalBox, receiver, docReceiver.attachmentDescription)
+      }
+      val pdfFile = document.pdfFile
+      if (pdfReceiver.user != null && pdfFile != null) {
+        putInPersonalBox(pdfFile, pdfFilename, personalBox, receiver, pdfReceiver.attachmentDescription)
       }
-      zipInputStream.closeEntry()
+    } catch (ex: Exception) {
+      log.error("Can't put document into user '${receiver.userFullname}' personal box: ${ex.message}", ex)
+    }
+  }
+
+  private fun putInPersonalBox(
+    file: File,
+    filename: String,
+    personalBox: DataTransferAreaDO,
+    receiver: PersonalBoxReceiver,
+    description: String,
+  ) {
+    val size = file.length()
+    try {
+      BufferedInputStream(FileInputStream(file)).use { istream ->
+        attachmentsService.addAttachment(
+          dataTransferAreaPagesRest.jcrPath!!,
+          fileInfo = FileInfo(
+            filename,
+            fileSize = size,
+            description = description
+          ),
+          inputStream = istream,
+          baseDao = dataTransferAreaDao,
+          obj = personalBox,
+          accessChecker = dataTransferAreaPagesRest.attachmentsAccessChecker,
+        )
+      }
+      log.info("Document '$filename' of size ${FormatterUtils.formatBytes(size)} put in the personal box (DataTransfer) of '${receiver.userDisplayName}' with description '$description'.")
+    } catch (ex: Exception) {
+      log.error(
+        "Can't put document '$filename' of size ${FormatterUtils.formatBytes(size)} into user '${receiver.userFullname}' personal box: ${ex.message}",
+        ex
+      )
     }
-    return pdfDocuments
   }
 
   private fun getUser(userObject: Any?): Pair<Boolean, PFUserDO?> {
@@ -594,6 +657,11 @@ open class MerlinRunner {
     private const val PERSONAL_BOX_VARIABLE_AS_PDF_DESC =
       "#PersonalBoxAsPdf_Description" // This string is also used in MerlinI18nResources.properties.
 
+    /**
+     * Number of parallel workers for rendering serial documents. Pdf conversion is cpu and memory intensive.
+     */
+    private val SERIAL_WORKERS = Runtime.getRuntime().availableProcessors().coerceIn(1, 4)
+
     fun initTemplateRunContext(templateRunContext: TemplateRunContext) {
       val locale = ThreadLocalUserContext.locale
       templateRunContext.setLocale(DateFormats.getFormatString(DateFormatType.DATE), locale)
@@ -601,4 +669,32 @@ open class MerlinRunner {
   }
 
   class PDFDocument(val filename: String, val content: ByteArray)
+
+  /**
+   * Validated serial data and all inputs needed for generating the documents (independent of the http request).
+   */
+  class SerialExecution(
+    val serialData: SerialData,
+    val dto: MerlinTemplate,
+    val templateBytes: ByteArray,
+    val templateFilename: String,
+    val excelBytes: ByteArray,
+    val excelFilename: String,
+    val lastLogNumber: Long?,
+  ) {
+    val zipFilename = "${FilenameUtils.getBaseName(excelFilename)}.zip"
+
+    val size: Int
+      get() = serialData.entries.size
+  }
+
+  /**
+   * Generated documents of one entry of the serial data, spooled to temporary files.
+   */
+  private class SerialDocument(
+    val index: Int,
+    val wordFilename: String,
+    val wordFile: File,
+    val pdfFile: File? = null,
+  )
 }
@@ -0,0 +1,72 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.plugins.merlin
+
+import mu.KotlinLogging
+import org.projectforge.framework.i18n.translateMsg
+import org.projectforge.framework.jobs.AbstractJob
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+import java.nio.file.Files
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Generates all documents of a serial execution in the background. The resulting zip file is put in the personal
+ * box (DataTransfer) of the user, the documents of #PersonalBox receivers are sent directly.
+ */
+class MerlinSerialJob(
+  val execution: MerlinRunner.SerialExecution,
+  val merlinRunner: MerlinRunner,
+) : AbstractJob(
+  translateMsg("plugins.merlin.serial.job.title", execution.dto.name, execution.size),
+  area = "MerlinSerialExecution",
+  queueStrategy = QueueStrategy.PER_QUEUE_AND_USER,
+  timeoutSeconds = 3600,
+) {
+  init {
+    totalNumber = execution.size
+    processedNumber = 0
+  }
+
+  override suspend fun run() {
+    val workDir = Files.createTempDirectory("merlin-serial").toFile()
+    try {
+      val zipFile = merlinRunner.runSerialExecution(
+        execution,
+        workDir,
+        onProgress = { processedNumber = it },
+        isActive = { isActive },
+      ) ?: return // Cancelled.
+      merlinRunner.putSerialResultInPersonalBox(zipFile, execution.zipFilename)
+    } finally {
+      if (!workDir.deleteRecursively()) {
+        log.warn { "Can't delete temporary directory '${workDir.absolutePath}'." }
+      }
+    }
+  }
+
+  override fun writeAccess(user: PFUserDO?): Boolean {
+    return isOwner
+  }
+}
@@ -0,0 +1,91 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.plugins.merlin
+
+import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Processes items by a fixed number of worker threads and hands over the results in order of the items to the
+ * calling thread. At most twice the number of workers items are processed in advance, so the memory (or temp space)
+ * used by unconsumed results is bounded.
+ *
+ * A failing item doesn't abort the run: the error is reported and the remaining items are processed.
+ */
+internal class OrderedWorkerPool(
+  val workers: Int,
+  private val threadNamePrefix: String,
+) {
+  /**
+   * @param size Number of items (0 until size).
+   * @param process Processes the item of the given index (in a worker thread).
+   * @param consume Consumes the result of the item (in the calling thread, in order of the items).
+   * @param onError Called (in the calling thread) instead of consume, if the processing of the item failed.
+   * @param isActive Checked before each item is consumed. If false is returned, the run is aborted.
+   * @return The number of failed items or null, if aborted.
+   */
+  fun <T> run(
+    size: Int,
+    process: (index: Int) -> T,
+    consume: (index: Int, result: T) -> Unit,
+    onError: (index: Int, ex: Throwable) -> Unit,
+    isActive: () -> Boolean = { true },
+  ): Int? {
+    val executor = Executors.newFixedThreadPool(workers) { runnable ->
+      Thread(runnable, "$threadNamePrefix-${threadCounter.incrementAndGet()}").also { it.isDaemon = true }
+    }
+    try {
+      val pending = ArrayDeque<Future<T>>()
+      var submitted = 0
+      var failed = 0
+      for (index in 0 until size) {
+        while (submitted < size && pending.size < 2 * workers) {
+          val submittedIndex = submitted++
+          pending.add(executor.submit(Callable { process(submittedIndex) }))
+        }
+        if (!isActive()) {
+          return null
+        }
+        val result = try {
+          pending.removeFirst().get()
+        } catch (ex: ExecutionException) {
+          ++failed
+          onError(index, ex.cause ?: ex)
+          continue
+        }
+        consume(index, result)
+      }
+      return failed
+    } finally {
+      executor.shutdownNow()
+    }
+  }
+
+  companion object {
+    private val threadCounter = AtomicInteger()
+  }
+}
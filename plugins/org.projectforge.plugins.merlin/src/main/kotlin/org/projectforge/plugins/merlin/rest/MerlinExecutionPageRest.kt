@@ -32,6 +32,7 @@ import org.projectforge.business.user.service.UserPrefService
 import org.projectforge.business.user.service.UserService
 import org.projectforge.common.FormatterUtils
 import org.projectforge.framework.i18n.translate
+import org.projectforge.framework.jobs.JobHandler
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.framework.utils.NumberHelper
 import org.projectforge.menu.MenuItem
@@ -45,6 +46,7 @@ import org.projectforge.rest.core.PagesResolver
 import org.projectforge.rest.core.RestResolver
 import org.projectforge.rest.dto.FormLayoutData
 import org.projectforge.rest.dto.PostData
+import org.projectforge.rest.jobs.JobsMonitorPageRest
 import org.projectforge.ui.*
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.http.HttpStatus
@@ -53,6 +55,10 @@ import org.springframework.web.bind.annotation.*
 import org.springframework.web.multipart.MultipartFile
 import jakarta.servlet.http.HttpServletRequest
 import jakarta.validation.Valid
+import java.io.BufferedInputStream
+import java.io.FileInputStream
+import java.io.FilterInputStream
+import java.nio.file.Files
 
 private val log = KotlinLogging.logger {}
 
@@ -81,6 +87,9 @@ class MerlinExecutionPageRest : AbstractDynamicPageRest() {
   @Autowired
   private lateinit var employeeService: EmployeeService
 
+  @Autowired
+  private lateinit var jobHandler: JobHandler
+
   /**
    * Will be called, if the user wants to change his/her observeStatus.
    */
@@ -128,11 +137,37 @@ class MerlinExecutionPageRest : AbstractDynamicPageRest() {
         )
       }."
     }
-    val result = merlinRunner.serialExecuteTemplate(id, filename ?: "untitled.xlsx", file.inputStream)
+    val execution = merlinRunner.prepareSerialExecution(id, filename ?: "untitled.xlsx", file.inputStream)
       ?: throw IllegalArgumentException("Can't execute serial Excel file.")
-    val zipFilename = result.first
-    val zipByteArray = result.second
-    return RestUtils.downloadFile(zipFilename, zipByteArray)
+    if (merlinHandler.dataTransferPluginAvailable()) {
+      // Documents are generated in the background and the result is placed in the user's personal box.
+      val job = jobHandler.addJob(MerlinSerialJob(execution, merlinRunner))
+      return ResponseEntity.ok(
+        ResponseAction(
+          url = PagesResolver.getDynamicPageUrl(
+            JobsMonitorPageRest::class.java,
+            absolute = true,
+            params = mapOf("jobId" to job.id),
+          ),
+          targetType = TargetType.REDIRECT,
+        )
+      )
+    }
+    val workDir = Files.createTempDirectory("merlin-serial").toFile()
+    val zipFile = try {
+      merlinRunner.runSerialExecution(execution, workDir)!!
+    } catch (ex: Exception) {
+      workDir.deleteRecursively()
+      throw ex
+    }
+    // The temporary directory is deleted after the download is streamed.
+    val istream = object : FilterInputStream(BufferedInputStream(FileInputStream(zipFile))) {
+      override fun close() {
+        super.close()
+        workDir.deleteRecursively()
+      }
+    }
+    return RestUtils.downloadFile(execution.zipFilename, istream)
   }
 
   private fun validate(data: MerlinExecutionData): List<ValidationError>? {
@@ -0,0 +1,87 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.plugins.merlin
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.concurrent.atomic.AtomicInteger
+
+class OrderedWorkerPoolTest {
+  @Test
+  fun orderAndErrorsTest() {
+    val pool = OrderedWorkerPool(4, "test")
+    val consumed = mutableListOf<Int>()
+    val failed = mutableListOf<Int>()
+    val processing = AtomicInteger()
+    val maxProcessing = AtomicInteger()
+    val result = pool.run(
+      50,
+      process = { index ->
+        maxProcessing.accumulateAndGet(processing.incrementAndGet()) { a, b -> maxOf(a, b) }
+        try {
+          Thread.sleep((50 - index) % 7L) // Later items may be finished first.
+          if (index % 10 == 3) {
+            throw IllegalStateException("Document $index failed.")
+          }
+          index * 2
+        } finally {
+          processing.decrementAndGet()
+        }
+      },
+      consume = { index, value ->
+        Assertions.assertEquals(index * 2, value)
+        consumed.add(index)
+      },
+      onError = { index, ex ->
+        Assertions.assertEquals("Document $index failed.", ex.message)
+        failed.add(index)
+      },
+    )
+    Assertions.assertEquals(5, result)
+    Assertions.assertEquals(listOf(3, 13, 23, 33, 43), failed)
+    Assertions.assertEquals((0 until 50).filter { it % 10 != 3 }, consumed, "Results should be consumed in order.")
+    Assertions.assertTrue(maxProcessing.get() <= 4)
+  }
+
+  @Test
+  fun cancelTest() {
+    val pool = OrderedWorkerPool(2, "test")
+    val processed = AtomicInteger()
+    var consumed = 0
+    val result = pool.run(
+      1000,
+      process = { processed.incrementAndGet() },
+      consume = { _, _ -> ++consumed },
+      onError = { _, ex -> Assertions.fail(ex) },
+      isActive = { consumed < 10 },
+    )
+    Assertions.assertNull(result)
+    Assertions.assertEquals(10, consumed)
+    Assertions.assertTrue(processed.get() <= 10 + 2 * 2, "Only a bounded number of items should be processed in advance.")
+  }
+
+  @Test
+  fun emptyTest() {
+    Assertions.assertEquals(0, OrderedWorkerPool(2, "test").run(0, { it }, { _, _ -> }, { _, _ -> }))
+  }
+}
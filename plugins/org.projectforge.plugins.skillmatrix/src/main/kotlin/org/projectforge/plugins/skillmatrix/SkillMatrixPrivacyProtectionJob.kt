@@ -47,6 +47,9 @@ class SkillMatrixPrivacyProtectionJob : IPrivacyProtectionJob {
     @Autowired
     private lateinit var purgeCronPrivacyProtectionJob: CronPrivacyProtectionJob
 
+    @Autowired
+    private lateinit var skillStatisticsCache: SkillStatisticsCache
+
     @Autowired
     private lateinit var userDao: UserDao
 
@@ -70,6 +73,7 @@ class SkillMatrixPrivacyProtectionJob : IPrivacyProtectionJob {
                     }
                     if (counter > 0) {
                         log.info { "Deleted $counter entries of the skill matrix of user '${user.username}' with id ${user.id}." }
+                        skillStatisticsCache.setExpired() // Entries deleted without dao.
                     }
                 }
             }
@@ -31,12 +31,14 @@ import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.framework.time.DateHelper
 import org.projectforge.model.rest.RestPaths.REST_EXCEL_SUB_PATH
 import org.projectforge.rest.config.Rest
+import org.projectforge.rest.dto.User
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.core.io.ByteArrayResource
 import org.springframework.http.HttpHeaders
 import org.springframework.http.ResponseEntity
 import org.springframework.web.bind.annotation.GetMapping
 import org.springframework.web.bind.annotation.RequestMapping
+import org.springframework.web.bind.annotation.RequestParam
 import org.springframework.web.bind.annotation.RestController
 import java.util.*
 
@@ -115,8 +117,49 @@ class SkillMatrixServicesRest {
     }
   }
 
+  /**
+   * @param limit Maximum number of skills (default 10).
+   * @param order Skills with the most entries (default), highest mean rating or highest mean interest first.
+   */
+  @GetMapping("statistics/top")
+  fun getTopSkills(
+    @RequestParam("limit", required = false) limit: Int?,
+    @RequestParam("order", required = false) order: SkillStatisticsCache.Order?,
+  ): List<SkillStatisticsCache.SkillStatistic> {
+    skillEntryDao.checkLoggedInUserSelectAccess()
+    return skillStatisticsCache.getTopSkills(
+      (limit ?: 10).coerceIn(1, MAX_LIMIT),
+      order ?: SkillStatisticsCache.Order.COUNTER
+    )
+  }
+
+  /**
+   * Histograms of ratings and interests of the given skill.
+   */
+  @GetMapping("statistics/distribution")
+  fun getDistribution(@RequestParam("skill") skill: String): ResponseEntity<SkillStatisticsCache.SkillDistribution> {
+    skillEntryDao.checkLoggedInUserSelectAccess()
+    val distribution = skillStatisticsCache.getDistribution(skill) ?: return ResponseEntity.notFound().build()
+    return ResponseEntity.ok(distribution)
+  }
+
+  /**
+   * Users with the given skill rated at least minRating (highest ratings first).
+   */
+  @GetMapping("statistics/owners")
+  fun getOwners(
+    @RequestParam("skill") skill: String,
+    @RequestParam("minRating", required = false) minRating: Int?,
+  ): List<User> {
+    skillEntryDao.checkLoggedInUserSelectAccess()
+    return skillStatisticsCache.getOwnerIds(skill, minRating ?: SkillEntryDO.MIN_VAL_RATING)
+      .mapNotNull { User.getUser(it) }
+  }
+
   companion object {
     const val REST_PATH = "${Rest.URL}/skillmatrix"
     const val REST_EXCEL_EXPORT_PATH = "$REST_PATH/$REST_EXCEL_SUB_PATH"
+
+    private const val MAX_LIMIT = 1000
   }
 }
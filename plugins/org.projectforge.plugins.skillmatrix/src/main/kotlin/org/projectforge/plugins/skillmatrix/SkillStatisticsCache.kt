@@ -32,17 +32,19 @@ import org.projectforge.framework.persistence.jpa.PfPersistenceService
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Service
 import java.math.BigDecimal
-import java.math.RoundingMode
 
 private val log = KotlinLogging.logger {}
 
 /**
- * Skill statistics cache holds ratings of all skills stored in the data base.
+ * Skill statistics cache holds ratings of all skill entries stored in the data base.
+ *
+ * All skill entries are loaded on first usage and once a day (safety net). Afterwards, the statistics are updated
+ * incrementally after the commit of every modification of a skill entry (no reload of all entries).
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
 @Service
-open class SkillStatisticsCache : AbstractCache(), BaseDOModifiedListener<SkillEntryDO> {
+open class SkillStatisticsCache : AbstractCache(TICKS_PER_DAY), BaseDOModifiedListener<SkillEntryDO> {
     @Autowired
     private lateinit var persistenceService: PfPersistenceService
 
@@ -56,96 +58,133 @@ open class SkillStatisticsCache : AbstractCache(), BaseDOModifiedListener<SkillE
         val interestsMean: BigDecimal
     )
 
-    private data class Entry(
-        var skill: String,
-        var totalCounter: Int = 0,
-        /**
-         * Sum of all skill ratings.
-         */
-        var ratingSum: Int = 0,
-        /**
-         * Counter of ratings (not null) for getting average.
-         */
-        var ratingCounter: Int = 0,
-        /**
-         * Sum of all interest ratings.
-         */
-        var interestSum: Int = 0,
-        /**
-         * Counter of ratings (not null) for getting average.
-         */
-        var interstCounter: Int = 0
-    ) {
-        val ratingMean: BigDecimal
-            get() {
-                return meanValue(ratingSum, ratingCounter)
-            }
+    /**
+     * @param ratingHistogram Number of ratings per value (index is the rating 0..3).
+     * @param interestHistogram Number of interests per value (index is the interest 0..3).
+     */
+    class SkillDistribution(
+        val statistic: SkillStatistic,
+        val ratingHistogram: List<Int>,
+        val interestHistogram: List<Int>,
+    )
 
-        val interestMean: BigDecimal
-            get() {
-                return meanValue(interestSum, interstCounter)
-            }
+    enum class Order { COUNTER, RATING, INTEREST }
 
-        fun add(skillEntry: SkillEntryDO) {
-            totalCounter++
-            skillEntry.rating?.let {
-                // rating is 0..3
-                ratingSum += it
-                ratingCounter++
-            }
-            skillEntry.interest?.let {
-                // interest is 0..3
-                interestSum += it
-                interstCounter++
+    private val lock = Any()
+
+    private var data = SkillStatisticsData()
+
+    /**
+     * Modifications committed during a refresh. They're applied again to the new data after the refresh, because
+     * the refresh may have selected the entries before.
+     */
+    private var modificationsWhileRefresh: MutableList<Pair<Long, SkillStatisticsData.SkillEntryInfo?>>? = null
+
+    /**
+     * Sorted list of all statistics, built on demand after modifications.
+     */
+    @Volatile
+    private var skillStatistics: List<SkillStatistic>? = null
+
+    val statistics: List<SkillStatistic>
+        get() {
+            checkRefresh()
+            skillStatistics?.let { return it }
+            synchronized(lock) {
+                return skillStatistics ?: data.getStatistics().also { skillStatistics = it }
             }
         }
 
-        fun meanValue(sum: Int, counter: Int): BigDecimal {
-            return if (counter > 0)
-                BigDecimal(sum).divide(BigDecimal(counter), 1, RoundingMode.HALF_UP)
-            else
-                BigDecimal.ZERO
+    /**
+     * @param limit Maximum number of skills to return.
+     * @param order The skills with the highest values are returned first.
+     */
+    fun getTopSkills(limit: Int, order: Order = Order.COUNTER): List<SkillStatistic> {
+        checkRefresh()
+        synchronized(lock) {
+            return data.getTopSkills(limit, order)
         }
     }
 
-    private lateinit var skillStatistics: List<SkillStatistic>
+    /**
+     * @param skill The skill (will be normalized).
+     * @param minRating Only users with a rating of at least this value are returned.
+     * @return The ids of the users with the given skill, the users with the highest ratings first.
+     */
+    fun getOwnerIds(skill: String?, minRating: Int = SkillEntryDO.MIN_VAL_RATING): List<Long> {
+        checkRefresh()
+        synchronized(lock) {
+            return data.getOwnerIds(skill, minRating)
+        }
+    }
 
-    val statistics: List<SkillStatistic>
-        get() {
-            checkRefresh()
-            return skillStatistics
+    /**
+     * @param skill The skill (will be normalized).
+     * @return The distribution of ratings and interests of the given skill or null, if no one has this skill.
+     */
+    fun getDistribution(skill: String?): SkillDistribution? {
+        checkRefresh()
+        synchronized(lock) {
+            return data.getDistribution(skill)
         }
+    }
 
     @PostConstruct
     private fun postConstruct() {
         skillEntryDao.register(this)
     }
 
+    /**
+     * The values are taken now, but applied after the commit (nothing is applied on rollback).
+     */
     override fun afterInsertOrModify(obj: SkillEntryDO, operationType: OperationType) {
-        setExpired()
+        val id = obj.id ?: return
+        val info = if (obj.deleted || operationType == OperationType.DELETE) null else SkillStatisticsData.SkillEntryInfo(obj)
+        persistenceService.runAfterCommit { applyModification(id, info) }
+    }
+
+    /**
+     * @param info The new values of the skill entry or null, if deleted.
+     */
+    internal fun applyModification(id: Long, info: SkillStatisticsData.SkillEntryInfo?) {
+        synchronized(lock) {
+            apply(data, id, info)
+            modificationsWhileRefresh?.add(Pair(id, info))
+            skillStatistics = null
+        }
     }
 
     override fun refresh() {
         log.info("Refreshing SkillMatrixCache ...")
-        persistenceService.runIsolatedReadOnly {
-            val skillStatisticsMap = mutableMapOf<String, Entry>()
-            skillEntryDao.selectAll(checkAccess = false)
-                .filter { !it.deleted } // Ignore deleted skill entries.
-                .sortedByDescending { it.lastUpdate } // Use skill syntax of last edited one (older ones will be normalized)
-                .forEach { skillEntry ->
-                    val skillName = skillEntry.skill ?: ""
-                    val normalizedSkillName = skillEntry.normalizedSkill
-                    val entry = skillStatisticsMap[normalizedSkillName] ?: run {
-                        val newEntry = Entry(skillName)
-                        skillStatisticsMap[normalizedSkillName] = newEntry
-                        newEntry
-                    }
-                    entry.add(skillEntry)
-                }
-            skillStatistics = skillStatisticsMap.values
-                .sortedBy { it.skill.lowercase() }
-                .map { SkillStatistic(it.skill, it.totalCounter, it.ratingMean, it.interestMean) }
+        synchronized(lock) {
+            modificationsWhileRefresh = mutableListOf()
+        }
+        try {
+            val nData = SkillStatisticsData()
+            persistenceService.runIsolatedReadOnly {
+                skillEntryDao.selectAll(checkAccess = false)
+                    .filter { !it.deleted } // Ignore deleted skill entries.
+                    .forEach { nData.put(SkillStatisticsData.SkillEntryInfo(it)) }
+            }
+            synchronized(lock) {
+                // Modifications are idempotent, so modifications already selected don't matter.
+                modificationsWhileRefresh?.forEach { (id, info) -> apply(nData, id, info) }
+                data = nData
+                skillStatistics = null
+            }
+        } finally {
+            synchronized(lock) {
+                modificationsWhileRefresh = null
+            }
         }
         log.info("Refreshing SkillMatrixCache done.")
     }
+
+    private fun apply(data: SkillStatisticsData, id: Long, info: SkillStatisticsData.SkillEntryInfo?) {
+        if (info != null) {
+            data.put(info)
+        } else {
+            data.remove(id)
+        }
+    }
 }
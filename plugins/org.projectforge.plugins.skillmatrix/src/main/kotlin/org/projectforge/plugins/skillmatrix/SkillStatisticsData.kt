@@ -0,0 +1,220 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.plugins.skillmatrix
+
+import org.projectforge.plugins.skillmatrix.SkillStatisticsCache.Order
+import org.projectforge.plugins.skillmatrix.SkillStatisticsCache.SkillDistribution
+import org.projectforge.plugins.skillmatrix.SkillStatisticsCache.SkillStatistic
+import java.math.BigDecimal
+import java.math.RoundingMode
+
+/**
+ * The statistics of all skill entries, maintained incrementally by [put] and [remove]. Not thread safe, the
+ * synchronization is done by [SkillStatisticsCache].
+ */
+internal class SkillStatisticsData {
+    /**
+     * The values of a skill entry needed for the statistics (for subtracting them after modifications).
+     */
+    class SkillEntryInfo(skillEntry: SkillEntryDO) {
+        val id = skillEntry.id!!
+        val skill = skillEntry.skill ?: ""
+        val normalizedSkill = skillEntry.normalizedSkill
+        val ownerId = skillEntry.ownerId
+        val rating = skillEntry.rating
+        val interest = skillEntry.interest
+        val lastUpdate = skillEntry.lastUpdate?.time ?: 0L
+    }
+
+    /**
+     * Aggregated ratings of all entries of one normalized skill.
+     */
+    private class Entry {
+        /**
+         * Skill syntax of the last edited entry (older ones will be normalized).
+         */
+        var skill: String = ""
+        private var skillEntryId: Long? = null
+        private var skillLastUpdate = Long.MIN_VALUE
+
+        val entryIds = mutableSetOf<Long>()
+
+        val totalCounter: Int
+            get() = entryIds.size
+
+        /**
+         * Sum of all skill ratings.
+         */
+        var ratingSum: Int = 0
+
+        /**
+         * Counter of ratings (not null) for getting average.
+         */
+        var ratingCounter: Int = 0
+
+        /**
+         * Sum of all interest ratings.
+         */
+        var interestSum: Int = 0
+
+        /**
+         * Counter of ratings (not null) for getting average.
+         */
+        var interstCounter: Int = 0
+
+        val ratingHistogram = IntArray(SkillEntryDO.MAX_VAL_RATING + 1)
+
+        val interestHistogram = IntArray(SkillEntryDO.MAX_VAL_INTEREST + 1)
+
+        val ratingMean: BigDecimal
+            get() {
+                return meanValue(ratingSum, ratingCounter)
+            }
+
+        val interestMean: BigDecimal
+            get() {
+                return meanValue(interestSum, interstCounter)
+            }
+
+        fun add(info: SkillEntryInfo) {
+            entryIds.add(info.id)
+            if (info.lastUpdate >= skillLastUpdate) {
+                setSkill(info)
+            }
+            info.rating?.let {
+                // rating is 0..3
+                ratingSum += it
+                ratingCounter++
+                ratingHistogram[it.coerceIn(ratingHistogram.indices)]++
+            }
+            info.interest?.let {
+                // interest is 0..3
+                interestSum += it
+                interstCounter++
+                interestHistogram[it.coerceIn(interestHistogram.indices)]++
+            }
+        }
+
+        /**
+         * @param entryInfoMap For restoring the skill syntax of the last edited entry, if the given one was it.
+         */
+        fun remove(info: SkillEntryInfo, entryInfoMap: Map<Long, SkillEntryInfo>) {
+            if (!entryIds.remove(info.id)) {
+                return
+            }
+            info.rating?.let {
+                ratingSum -= it
+                ratingCounter--
+                ratingHistogram[it.coerceIn(ratingHistogram.indices)]--
+            }
+            info.interest?.let {
+                interestSum -= it
+                interstCounter--
+                interestHistogram[it.coerceIn(interestHistogram.indices)]--
+            }
+            if (skillEntryId == info.id) {
+                skillLastUpdate = Long.MIN_VALUE
+                entryIds.mapNotNull { entryInfoMap[it] }.maxByOrNull { it.lastUpdate }?.let { setSkill(it) }
+            }
+        }
+
+        fun toStatistic(): SkillStatistic {
+            return SkillStatistic(skill, totalCounter, ratingMean, interestMean)
+        }
+
+        private fun setSkill(info: SkillEntryInfo) {
+            skill = info.skill
+            skillEntryId = info.id
+            skillLastUpdate = info.lastUpdate
+        }
+
+        private fun meanValue(sum: Int, counter: Int): BigDecimal {
+            return if (counter > 0)
+                BigDecimal(sum).divide(BigDecimal(counter), 1, RoundingMode.HALF_UP)
+            else
+                BigDecimal.ZERO
+        }
+    }
+
+    /**
+     * The key is the id of the skill entry.
+     */
+    private val entryInfoMap = mutableMapOf<Long, SkillEntryInfo>()
+
+    /**
+     * The key is the normalized skill.
+     */
+    private val skillStatisticsMap = mutableMapOf<String, Entry>()
+
+    /**
+     * Adds the given entry or replaces the previous values of this entry (idempotent).
+     */
+    fun put(info: SkillEntryInfo) {
+        remove(info.id)
+        entryInfoMap[info.id] = info
+        skillStatisticsMap.getOrPut(info.normalizedSkill) { Entry() }.add(info)
+    }
+
+    /**
+     * Removes the values of the given entry, if present.
+     */
+    fun remove(id: Long) {
+        val info = entryInfoMap.remove(id) ?: return
+        val entry = skillStatisticsMap[info.normalizedSkill] ?: return
+        entry.remove(info, entryInfoMap)
+        if (entry.totalCounter == 0) {
+            skillStatisticsMap.remove(info.normalizedSkill)
+        }
+    }
+
+    /**
+     * All statistics sorted by skill.
+     */
+    fun getStatistics(): List<SkillStatistic> {
+        return skillStatisticsMap.values
+            .sortedBy { it.skill.lowercase() }
+            .map { it.toStatistic() }
+    }
+
+    fun getTopSkills(limit: Int, order: Order): List<SkillStatistic> {
+        val comparator = when (order) {
+            Order.COUNTER -> compareByDescending<Entry> { it.totalCounter }
+            Order.RATING -> compareByDescending<Entry> { it.ratingSum.toDouble() / maxOf(it.ratingCounter, 1) }
+            Order.INTEREST -> compareByDescending<Entry> { it.interestSum.toDouble() / maxOf(it.interstCounter, 1) }
+        }.thenBy { it.skill.lowercase() }
+        return skillStatisticsMap.values.sortedWith(comparator).take(limit).map { it.toStatistic() }
+    }
+
+    fun getOwnerIds(skill: String?, minRating: Int): List<Long> {
+        val entry = skillStatisticsMap[SkillEntryDO.getNormalizedSkill(skill)] ?: return emptyList()
+        return entry.entryIds.mapNotNull { entryInfoMap[it] }
+            .filter { (it.rating ?: -1) >= minRating }
+            .sortedByDescending { it.rating }
+            .mapNotNull { it.ownerId }
+    }
+
+    fun getDistribution(skill: String?): SkillDistribution? {
+        val entry = skillStatisticsMap[SkillEntryDO.getNormalizedSkill(skill)] ?: return null
+        return SkillDistribution(entry.toStatistic(), entry.ratingHistogram.toList(), entry.interestHistogram.toList())
+    }
+}
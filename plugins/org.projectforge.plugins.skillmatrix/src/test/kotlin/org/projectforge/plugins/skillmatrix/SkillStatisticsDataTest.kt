@@ -0,0 +1,124 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.plugins.skillmatrix
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+import org.projectforge.plugins.skillmatrix.SkillStatisticsCache.Order
+import java.math.BigDecimal
+import java.util.Date
+
+class SkillStatisticsDataTest {
+    @Test
+    fun insertModifyDeleteTest() {
+        val data = SkillStatisticsData()
+        data.put(info(1, "Java", ownerId = 10, rating = 3, interest = 1, lastUpdate = 1))
+        data.put(info(2, "java", ownerId = 11, rating = 1, interest = 3, lastUpdate = 2))
+        data.put(info(3, "Kotlin", ownerId = 10, rating = 2, interest = null, lastUpdate = 3))
+        assertStatistic(data, "java", 2, "2.0", "2.0")
+        assertStatistic(data, "Kotlin", 1, "2.0", "0")
+
+        // Modification of rating (idempotent):
+        data.put(info(2, "java", ownerId = 11, rating = 3, interest = 3, lastUpdate = 4))
+        data.put(info(2, "java", ownerId = 11, rating = 3, interest = 3, lastUpdate = 4))
+        assertStatistic(data, "java", 2, "3.0", "2.0")
+
+        // Rename of a skill: the entry is moved to the other skill, the syntax of the last edited entry is used.
+        data.put(info(2, "KOTLIN", ownerId = 11, rating = 3, interest = 3, lastUpdate = 5))
+        assertStatistic(data, "Java", 1, "3.0", "1.0")
+        assertStatistic(data, "KOTLIN", 2, "2.5", "3.0")
+
+        // Delete: the syntax of the remaining last edited entry is restored.
+        data.remove(2)
+        data.remove(2) // Idempotent.
+        assertStatistic(data, "Kotlin", 1, "2.0", "0")
+        data.remove(1)
+        Assertions.assertEquals(listOf("Kotlin"), data.getStatistics().map { it.skill })
+        Assertions.assertNull(data.getDistribution("java"))
+
+        // Undelete:
+        data.put(info(1, "Java", ownerId = 10, rating = 3, interest = 1, lastUpdate = 6))
+        assertStatistic(data, "Java", 1, "3.0", "1.0")
+        Assertions.assertEquals(listOf("Java", "Kotlin"), data.getStatistics().map { it.skill })
+    }
+
+    @Test
+    fun facetsTest() {
+        val data = SkillStatisticsData()
+        data.put(info(1, "Java", ownerId = 10, rating = 1, interest = 3))
+        data.put(info(2, "Java", ownerId = 11, rating = 3, interest = 3))
+        data.put(info(3, "Java", ownerId = 12, rating = 2, interest = 0))
+        data.put(info(4, "Java", ownerId = 13, rating = null, interest = 2))
+        data.put(info(5, "Kotlin", ownerId = 10, rating = 3, interest = 1))
+        data.put(info(6, "Scala", ownerId = 11, rating = 0, interest = 0))
+        data.put(info(7, "Scala", ownerId = 12, rating = 1, interest = 3))
+
+        Assertions.assertEquals(listOf("Java", "Scala", "Kotlin"), data.getTopSkills(10, Order.COUNTER).map { it.skill })
+        Assertions.assertEquals(listOf("Kotlin", "Java"), data.getTopSkills(2, Order.RATING).map { it.skill })
+        Assertions.assertEquals(listOf("Java", "Scala", "Kotlin"), data.getTopSkills(3, Order.INTEREST).map { it.skill })
+
+        Assertions.assertEquals(listOf(11L, 12L, 10L, 13L), data.getOwnerIds("java", -1))
+        Assertions.assertEquals(listOf(11L, 12L), data.getOwnerIds("JAVA", 2))
+        Assertions.assertEquals(emptyList<Long>(), data.getOwnerIds("C++", 0))
+
+        val distribution = data.getDistribution("java")!!
+        Assertions.assertEquals(4, distribution.statistic.totalCounter)
+        Assertions.assertEquals(listOf(0, 1, 1, 1), distribution.ratingHistogram)
+        Assertions.assertEquals(listOf(1, 0, 1, 2), distribution.interestHistogram)
+
+        // Facets follow modifications:
+        data.put(info(3, "Java", ownerId = 12, rating = 0, interest = 0))
+        Assertions.assertEquals(listOf(1, 1, 0, 1), data.getDistribution("java")!!.ratingHistogram)
+        Assertions.assertEquals(listOf(11L, 10L, 12L, 13L), data.getOwnerIds("java", -1))
+        data.remove(2)
+        Assertions.assertEquals(listOf(1, 1, 0, 0), data.getDistribution("java")!!.ratingHistogram)
+        Assertions.assertEquals(listOf(1, 0, 1, 1), data.getDistribution("java")!!.interestHistogram)
+    }
+
+    private fun assertStatistic(data: SkillStatisticsData, skill: String, counter: Int, rating: String, interest: String) {
+        val statistic = data.getDistribution(skill)!!.statistic
+        Assertions.assertEquals(skill, statistic.skill)
+        Assertions.assertEquals(counter, statistic.totalCounter)
+        Assertions.assertEquals(0, BigDecimal(rating).compareTo(statistic.ratingMean), "rating mean")
+        Assertions.assertEquals(0, BigDecimal(interest).compareTo(statistic.interestsMean), "interest mean")
+    }
+
+    private fun info(
+        id: Long,
+        skill: String,
+        ownerId: Long,
+        rating: Int?,
+        interest: Int?,
+        lastUpdate: Long = 0,
+    ): SkillStatisticsData.SkillEntryInfo {
+        val entry = SkillEntryDO()
+        entry.id = id
+        entry.skill = skill
+        entry.owner = PFUserDO().also { it.id = ownerId }
+        entry.rating = rating
+        entry.interest = interest
+        entry.lastUpdate = Date(lastUpdate)
+        return SkillStatisticsData.SkillEntryInfo(entry)
+    }
+}
@@ -141,6 +141,8 @@ dependencies {
     implementation(libs.de.micromata.merlin.core)
     implementation(libs.fr.opensagres.xdocrepor.poi.xwpf.converter.pdf)
     implementation(libs.io.dropwizard.metrics.core)
+    implementation(libs.io.micrometer.core)
+    implementation(libs.io.micrometer.registry.prometheus)
     implementation(libs.io.github.microutils.kotlin.logging)
     implementation(libs.jakarta.activation.api)
     implementation(libs.jakarta.annotation.api)
@@ -197,6 +199,7 @@ dependencies {
     implementation(libs.org.springframework.boot)
     implementation(libs.org.springframework.boot.dependencies)
     implementation(libs.org.springframework.boot.starter)
+    implementation(libs.org.springframework.boot.starter.actuator)
     implementation(libs.org.springframework.boot.starter.data.jpa)
     implementation(libs.org.springframework.boot.starter.json)
     implementation(libs.org.springframework.boot.starter.logging)
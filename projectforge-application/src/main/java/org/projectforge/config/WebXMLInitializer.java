@@ -65,19 +65,23 @@ public class WebXMLInitializer implements ServletContextInitializer {
 
     @Override
     public void onStartup(ServletContext sc) throws ServletException {
-        final FilterRegistration securityHeaderFilter = sc.addFilter("SecurityHeaderFilter", SecurityHeaderFilter.class);
+        // All filters of the rest calls must support asynchronous requests (long polling of MenuRest.waitForBadges).
+        final FilterRegistration.Dynamic securityHeaderFilter = sc.addFilter("SecurityHeaderFilter", SecurityHeaderFilter.class);
         securityHeaderFilter.addMappingForUrlPatterns(null, false, "/*");
         securityHeaderFilter.setInitParameter(SecurityHeaderFilter.PARAM_CSP_HEADER_VALUE, cspHeaderValue);
+        securityHeaderFilter.setAsyncSupported(true);
 
         /*
          * Redirect orphaned links from former versions of ProjectForge (e. g. if link in e-mails were changed due to migrations or refactoring.
          */
-        sc.addFilter("redirectOrphanedLinks", new OrphanedLinkFilter()).addMappingForUrlPatterns(null, false, "/*");
+        final FilterRegistration.Dynamic orphanedLinkFilter = sc.addFilter("redirectOrphanedLinks", new OrphanedLinkFilter());
+        orphanedLinkFilter.addMappingForUrlPatterns(null, false, "/*");
+        orphanedLinkFilter.setAsyncSupported(true);
 
         cardDavInit.init(sc);
 
         boolean filterAfterInternal = false;
-        RestUtils.registerFilter(sc, "loggingFilter", LoggingFilter.class, false, "/*");
+        RestUtils.registerFilter(sc, "loggingFilter", LoggingFilter.class, false, "/*").setAsyncSupported(true);
         RestUtils.registerFilter(sc, "UserFilter", WicketUserFilter.class, filterAfterInternal, "/wa/*");
         RestUtils.registerFilter(sc, "springContext", SpringThreadLocalFilter.class, filterAfterInternal, "/wa/*");
 
@@ -90,7 +94,7 @@ public class WebXMLInitializer implements ServletContextInitializer {
                 "/" + RestPaths.REST_PUBLIC + "/*"); // Needed for login service.
 
         RestUtils.registerFilter(sc, "restUserFilter", RestUserFilter.class, false,
-                "/" + RestPaths.REST + "/*");
+                "/" + RestPaths.REST + "/*").setAsyncSupported(true);
         RestUtils.registerFilter(sc, "calendarSubscriptionFilter", RestCalendarSubscriptionUserFilter.class, false, Rest.CALENDAR_EXPORT_BASE_URI);
 
         final FilterRegistration expire = sc.addFilter("expire", ResponseHeaderFilter.class);
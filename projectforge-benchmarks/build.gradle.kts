@@ -0,0 +1,41 @@
+import org.jetbrains.kotlin.gradle.tasks.KotlinCompile
+
+plugins {
+    id("buildlogic.pf-module-conventions")
+    id("org.jetbrains.kotlin.jvm")
+    id("me.champeau.jmh") version libs.versions.me.champeau.jmh.get()
+}
+
+tasks.withType<KotlinCompile> {
+    compilerOptions {
+        jvmTarget.set(org.jetbrains.kotlin.gradle.dsl.JvmTarget.JVM_17)
+    }
+}
+
+// Run all benchmarks: ./gradlew :projectforge-benchmarks:jmh
+// Run selected benchmarks: ./gradlew :projectforge-benchmarks:jmh -Pjmh.includes=CacheBenchmark
+// The results are written as JSON (build/results/jmh/results.json), so they may be compared between releases.
+jmh {
+    jmhVersion.set(libs.versions.org.openjdk.jmh.get())
+    (project.findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
+
+dependencies {
+    jmh(project(":projectforge-business"))
+    jmh(testFixtures(project(":projectforge-business")))
+    jmh(project(":projectforge-rest"))
+    jmh(project(":org.projectforge.plugins.banking"))
+    jmh(project(":projectforge-commons-test"))
+    jmh(libs.org.openjdk.jmh.core)
+    jmh(libs.org.openjdk.jmh.generator.annprocess)
+    jmh(libs.org.springframework.spring.test)
+    jmh(libs.org.junit.jupiter.api)
+    jmh(libs.org.mockito.core)
+}
+
+description = "projectforge-benchmarks"
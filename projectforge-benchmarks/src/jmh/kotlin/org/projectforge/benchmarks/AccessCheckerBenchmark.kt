@@ -0,0 +1,61 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.framework.access.AccessChecker
+import org.projectforge.framework.access.AccessType
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks AccessCheckerImpl.hasPermission (task tree based access of the user's groups).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class AccessCheckerBenchmark {
+    private lateinit var accessChecker: AccessChecker
+
+    private lateinit var user: PFUserDO
+
+    private lateinit var taskIds: LongArray
+
+    private var counter = 0
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val setup = BenchmarkSetup.instance
+        accessChecker = setup.getBean(AccessChecker::class.java)
+        user = setup.logon(setup.benchmarkUser)
+        taskIds = setup.tasks.map { it.id!! }.toLongArray()
+    }
+
+    @Benchmark
+    fun hasPermission(): Boolean {
+        val taskId = taskIds[counter++ % taskIds.size]
+        return accessChecker.hasPermission(user, taskId, AccessType.TIMESHEETS, OperationType.SELECT, false)
+    }
+}
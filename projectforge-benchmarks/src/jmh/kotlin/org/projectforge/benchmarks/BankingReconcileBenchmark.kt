@@ -0,0 +1,91 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.plugins.banking.BankAccountRecord
+import org.projectforge.plugins.banking.BankAccountRecordDO
+import org.projectforge.plugins.banking.BankingImportStorage
+import org.projectforge.rest.dto.BankAccount
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks the reconciliation of an imported bank account statement with the records of the database. The generated
+ * statement covers one year, 90% of the records are already imported, 5% are modified and 5% are new.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class BankingReconcileBenchmark {
+    @Param("1000", "100000")
+    var records: Int = 0
+
+    private lateinit var storage: BankingImportStorage
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val iban = "DE89 3704 0044 0532 0130 00"
+        val bankAccount = BankAccount(iban = iban)
+        val startDate = LocalDate.of(2023, 1, 1)
+        val read = mutableListOf<BankAccountRecord>()
+        val db = mutableListOf<BankAccountRecordDO>()
+        for (i in 0 until records) {
+            val date = startDate.plusDays((i % 365).toLong())
+            val amount = BigDecimal("${i % 1000}.${i % 100}")
+            read.add(
+                BankAccountRecord(bankAccount = bankAccount, amount = amount, date = date, subject = "Subject $i", iban = "DE$i")
+            )
+            when (i % 20) {
+                0 -> {} // New record, not yet in database.
+                1 -> db.add(createDBRecord(date, amount, "Modified subject $i", "DE$i"))
+                else -> db.add(createDBRecord(date, amount, "Subject $i", "DE$i"))
+            }
+        }
+        storage = BankingImportStorage(targetEntity = BankAccount(id = 42, iban = iban))
+        storage.readTransactions = read
+        storage.databaseTransactions = db
+        storage.fromDate = read.minOf { it.date!! }
+        storage.untilDate = read.maxOf { it.date!! }
+    }
+
+    /**
+     * The entries of the storage are cleared and rebuilt by each call.
+     */
+    @Benchmark
+    fun reconcileImportStorage(): Int {
+        storage.reconcileImportStorage(false)
+        return storage.pairEntries.size
+    }
+
+    private fun createDBRecord(date: LocalDate, amount: BigDecimal, subject: String, iban: String): BankAccountRecordDO {
+        return BankAccountRecordDO().also {
+            it.date = date
+            it.amount = amount
+            it.subject = subject
+            it.iban = iban
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import mu.KotlinLogging
+import org.projectforge.business.address.AddressDO
+import org.projectforge.business.fibu.EmployeeCache
+import org.projectforge.business.fibu.EmployeeDO
+import org.projectforge.business.fibu.EmployeeStatus
+import org.projectforge.business.fibu.EmployeeValidSinceAttrDO
+import org.projectforge.business.fibu.EmployeeValidSinceAttrType
+import org.projectforge.business.task.TaskDO
+import org.projectforge.business.task.TaskTree
+import org.projectforge.business.teamcal.admin.model.TeamCalDO
+import org.projectforge.business.teamcal.event.model.TeamEventDO
+import org.projectforge.business.test.AbstractTestBase
+import org.projectforge.business.test.TestConfiguration
+import org.projectforge.business.timesheet.TimesheetDO
+import org.projectforge.business.user.UserGroupCache
+import org.projectforge.framework.access.AccessDao
+import org.projectforge.framework.access.AccessType
+import org.projectforge.framework.persistence.user.entities.GroupDO
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+import org.projectforge.framework.time.PFDateTime
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.context.annotation.AnnotationConfigApplicationContext
+import java.time.LocalDate
+import java.time.Month
+import java.time.temporal.ChronoUnit
+import java.util.*
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Boots the Spring context of the test fixtures (embedded HSQLDB, see application-test.properties) once per JVM
+ * (fork) and generates the benchmark data on top of the default test data base.
+ */
+class BenchmarkSetup : AbstractTestBase() {
+    @Autowired
+    private lateinit var accessDao: AccessDao
+
+    @Autowired
+    private lateinit var employeeCache: EmployeeCache
+
+    @Autowired
+    private lateinit var taskTree: TaskTree
+
+    @Autowired
+    private lateinit var userGroupCache: UserGroupCache
+
+    lateinit var benchmarkUser: PFUserDO
+        private set
+
+    lateinit var benchmarkGroup: GroupDO
+        private set
+
+    lateinit var teamCal: TeamCalDO
+        private set
+
+    val users = mutableListOf<PFUserDO>()
+
+    val tasks = mutableListOf<TaskDO>()
+
+    val timesheets = mutableListOf<TimesheetDO>()
+
+    val addresses = mutableListOf<AddressDO>()
+
+    val employees = mutableListOf<EmployeeDO>()
+
+    fun <T> getBean(clazz: Class<T>): T {
+        return applicationContext.getBean(clazz)
+    }
+
+    private fun generateData() {
+        val started = System.currentTimeMillis()
+        logon(ADMIN)
+        val random = Random(42) // Same data on every run.
+        persistenceService.runInTransaction { _ ->
+            for (i in 0 until NUMBER_OF_USERS) {
+                users.add(initTestDB.addUser("benchmarkUser$i"))
+            }
+            benchmarkUser = users.first()
+            benchmarkGroup = initTestDB.addGroup("benchmarkGroup", *users.map { it.username!! }.toTypedArray())
+        }
+        persistenceService.runInTransaction { context ->
+            // Task tree: NUMBER_OF_TASKS tasks with TASK_TREE_FAN_OUT children per node.
+            val root = taskTree.rootTaskNode.task
+            val parents = mutableListOf(root)
+            var parentIndex = 0
+            for (i in 0 until NUMBER_OF_TASKS) {
+                val task = TaskDO()
+                task.title = "benchmark task $i"
+                task.shortDescription = "Generated task #$i"
+                task.parentTask = parents[parentIndex]
+                task.setCreated()
+                task.setLastUpdate()
+                context.insert(task)
+                tasks.add(task)
+                parents.add(task)
+                if ((i + 1) % TASK_TREE_FAN_OUT == 0) {
+                    ++parentIndex
+                }
+            }
+        }
+        taskTree.forceReload()
+        persistenceService.runInTransaction { _ ->
+            val access = initTestDB.createGroupTaskAccess(benchmarkGroup, taskTree.rootTaskNode.task)
+            arrayOf(AccessType.TASKS, AccessType.TIMESHEETS, AccessType.OWN_TIMESHEETS).forEach { accessType ->
+                access.ensureAndGetAccessEntry(accessType).setAccess(true, true, true, true)
+            }
+            accessDao.update(access, checkAccess = false)
+        }
+        persistenceService.runInTransaction { context ->
+            var day = PFDateTime.withDate(FIRST_YEAR, Month.JANUARY, 1, 8)
+            for (i in 0 until NUMBER_OF_TIMESHEETS) {
+                if (i % 4 == 0) {
+                    day = day.plusDays(1)
+                }
+                val start = day.plusHours((i % 4 * 2).toLong())
+                val timesheet = TimesheetDO()
+                timesheet.user = users[random.nextInt(users.size)]
+                timesheet.task = tasks[random.nextInt(tasks.size)]
+                timesheet.startTime = start.utilDate
+                timesheet.stopTime = start.plus(90, ChronoUnit.MINUTES).utilDate
+                timesheet.location = LOCATIONS[random.nextInt(LOCATIONS.size)]
+                timesheet.description = "Benchmark timesheet #$i: ${WORDS[random.nextInt(WORDS.size)]}"
+                timesheet.setCreated()
+                timesheet.setLastUpdate()
+                context.insert(timesheet)
+                timesheets.add(timesheet)
+            }
+        }
+        persistenceService.runInTransaction { context ->
+            for (i in 0 until NUMBER_OF_ADDRESSES) {
+                val address = AddressDO()
+                address.uid = UUID.randomUUID().toString()
+                address.name = "Name$i"
+                address.firstName = "First$i"
+                address.organization = "Organization ${i % 50}"
+                address.city = LOCATIONS[random.nextInt(LOCATIONS.size)]
+                address.email = "user$i@example.org"
+                address.businessPhone = "+49 561 ${100000 + i}"
+                address.birthday = LocalDate.of(1960 + i % 40, 1 + i % 12, 1 + i % 28)
+                address.setCreated()
+                address.setLastUpdate()
+                context.insert(address)
+                addresses.add(address)
+            }
+        }
+        persistenceService.runInTransaction { context ->
+            teamCal = TeamCalDO()
+            teamCal.title = "Benchmark calendar"
+            teamCal.owner = getUser(ADMIN)
+            teamCal.setCreated()
+            teamCal.setLastUpdate()
+            context.insert(teamCal)
+            val first = PFDateTime.withDate(FIRST_YEAR, Month.JANUARY, 1, 10)
+            for (i in 0 until NUMBER_OF_EVENTS) {
+                val start = first.plusDays((i % 365).toLong()).plusHours((i % 8).toLong())
+                val event = TeamEventDO()
+                event.calendar = teamCal
+                event.uid = UUID.randomUUID().toString()
+                event.subject = "Benchmark event #$i"
+                event.startDate = start.utilDate
+                event.endDate = start.plusHours(1).utilDate
+                if (i % 2 == 0) {
+                    // Every second event is a recurring one:
+                    event.recurrenceRule = RECURRENCE_RULES[i / 2 % RECURRENCE_RULES.size]
+                }
+                event.setCreated()
+                event.setLastUpdate()
+                context.insert(event)
+            }
+        }
+        persistenceService.runInTransaction { context ->
+            // One employee per benchmark user with yearly changes of status and annual leave days.
+            users.forEachIndexed { i, user ->
+                val employee = EmployeeDO()
+                employee.user = user
+                employee.staffNumber = "S$i"
+                employee.setCreated()
+                employee.setLastUpdate()
+                context.insert(employee)
+                employees.add(employee)
+                for (year in 0 until EMPLOYEE_HISTORY_YEARS) {
+                    val validSince = LocalDate.of(FIRST_YEAR - year, Month.JANUARY, 1)
+                    val status = EmployeeStatus.entries[(i + year) % EmployeeStatus.entries.size]
+                    context.insert(createValidSinceAttr(employee, EmployeeValidSinceAttrType.STATUS, validSince, status.name))
+                    context.insert(createValidSinceAttr(employee, EmployeeValidSinceAttrType.ANNUAL_LEAVE, validSince, "${20 + year}"))
+                }
+            }
+        }
+        employeeCache.forceReload()
+        userGroupCache.forceReload()
+        logoff()
+        log.info { "Benchmark data generated in ${System.currentTimeMillis() - started} ms." }
+    }
+
+    private fun createValidSinceAttr(
+        employee: EmployeeDO,
+        type: EmployeeValidSinceAttrType,
+        validSince: LocalDate,
+        value: String,
+    ): EmployeeValidSinceAttrDO {
+        val attr = EmployeeValidSinceAttrDO()
+        attr.employee = employee
+        attr.type = type
+        attr.validSince = validSince
+        attr.value = value
+        attr.setCreated()
+        attr.setLastUpdate()
+        return attr
+    }
+
+    companion object {
+        const val NUMBER_OF_USERS = 200
+        const val NUMBER_OF_TASKS = 2_000
+        const val TASK_TREE_FAN_OUT = 8
+        const val NUMBER_OF_TIMESHEETS = 20_000
+        const val NUMBER_OF_ADDRESSES = 1_000
+        const val NUMBER_OF_EVENTS = 500
+        const val FIRST_YEAR = 2024
+        const val EMPLOYEE_HISTORY_YEARS = 10
+
+        private val LOCATIONS = arrayOf("Kassel", "Berlin", "Hamburg", "München", "Remote")
+        private val WORDS = arrayOf("meeting", "development", "review", "support", "documentation", "testing")
+        private val RECURRENCE_RULES =
+            arrayOf("FREQ=DAILY;INTERVAL=1", "FREQ=WEEKLY;INTERVAL=1", "FREQ=WEEKLY;INTERVAL=2", "FREQ=MONTHLY")
+
+        /**
+         * Initialized on first access (once per forked benchmark JVM).
+         */
+        @JvmStatic
+        val instance: BenchmarkSetup by lazy {
+            val context = AnnotationConfigApplicationContext()
+            context.register(TestConfiguration::class.java, BenchmarkSetup::class.java)
+            context.refresh()
+            val setup = context.getBean(BenchmarkSetup::class.java)
+            setup.beforeEach() // Creates the default test data base.
+            setup.generateData()
+            setup
+        }
+    }
+}
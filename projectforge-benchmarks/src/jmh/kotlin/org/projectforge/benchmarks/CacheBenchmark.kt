@@ -0,0 +1,83 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.business.task.TaskNode
+import org.projectforge.business.task.TaskTree
+import org.projectforge.business.user.UserGroupCache
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks of the TaskTree (refresh and lookups) and the UserGroupCache lookups.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class CacheBenchmark {
+    private lateinit var taskTree: TaskTree
+
+    private lateinit var userGroupCache: UserGroupCache
+
+    private lateinit var taskIds: LongArray
+
+    private lateinit var userIds: LongArray
+
+    private var groupId: Long = 0
+
+    private var counter = 0
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val setup = BenchmarkSetup.instance
+        taskTree = setup.getBean(TaskTree::class.java)
+        userGroupCache = setup.getBean(UserGroupCache::class.java)
+        taskIds = setup.tasks.map { it.id!! }.toLongArray()
+        userIds = setup.users.map { it.id!! }.toLongArray()
+        groupId = setup.benchmarkGroup.id!!
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    fun taskTreeRefresh(): Int {
+        taskTree.refresh()
+        return taskTree.rootTaskNode.children?.size ?: 0
+    }
+
+    @Benchmark
+    fun taskTreeGetTaskNodeById(): TaskNode? {
+        return taskTree.getTaskNodeById(taskIds[counter++ % taskIds.size])
+    }
+
+    @Benchmark
+    fun userGroupCacheGetUser(): PFUserDO? {
+        return userGroupCache.getUser(userIds[counter++ % userIds.size])
+    }
+
+    @Benchmark
+    fun userGroupCacheIsUserMemberOfGroup(): Boolean {
+        return userGroupCache.isUserMemberOfGroup(userIds[counter++ % userIds.size], groupId)
+    }
+}
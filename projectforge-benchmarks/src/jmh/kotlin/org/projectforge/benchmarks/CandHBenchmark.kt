@@ -0,0 +1,113 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.business.address.AddressDO
+import org.projectforge.business.fibu.AuftragDO
+import org.projectforge.business.fibu.AuftragsPositionDO
+import org.projectforge.business.fibu.AuftragsStatus
+import org.projectforge.framework.persistence.api.EntityCopyStatus
+import org.projectforge.framework.persistence.candh.CandHMaster
+import org.projectforge.framework.persistence.history.EntityOpType
+import java.math.BigDecimal
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks CandHMaster.copyValues as used by every BaseDao.update (with history). The source objects alternate, so
+ * every invocation detects modifications.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class CandHBenchmark {
+    private lateinit var auftragSources: Array<AuftragDO>
+
+    private lateinit var auftragDest: AuftragDO
+
+    private lateinit var addressSources: Array<AddressDO>
+
+    private lateinit var addressDest: AddressDO
+
+    private var counter = 0
+
+    @Setup(Level.Trial)
+    fun setup() {
+        BenchmarkSetup.instance // Spring context (Hibernate meta model) needed.
+        auftragSources = arrayOf(createAuftrag("a"), createAuftrag("b"))
+        auftragDest = createAuftrag("dest")
+        val address = BenchmarkSetup.instance.addresses.first()
+        addressSources = arrayOf(createAddress(address, "a"), createAddress(address, "b"))
+        addressDest = createAddress(address, "dest")
+    }
+
+    @Benchmark
+    fun copyAuftrag(): EntityCopyStatus {
+        val src = auftragSources[++counter and 1]
+        return CandHMaster.copyValues(src, auftragDest, entityOpType = EntityOpType.Update).currentCopyStatus
+    }
+
+    @Benchmark
+    fun copyAddress(): EntityCopyStatus {
+        val src = addressSources[++counter and 1]
+        return CandHMaster.copyValues(src, addressDest, entityOpType = EntityOpType.Update).currentCopyStatus
+    }
+
+    private fun createAuftrag(variant: String): AuftragDO {
+        val auftrag = AuftragDO()
+        auftrag.id = 4711L
+        auftrag.nummer = 4711
+        auftrag.titel = "Benchmark order $variant"
+        auftrag.status = AuftragsStatus.BEAUFTRAGT
+        for (i in 0 until POSITIONS) {
+            val position = AuftragsPositionDO()
+            position.id = 10_000L + i
+            position.titel = "Position $i ($variant)"
+            position.status = AuftragsStatus.BEAUFTRAGT
+            position.nettoSumme = BigDecimal(1000 + i)
+            position.bemerkung = if (i % 2 == 0) variant else null
+            auftrag.addPosition(position)
+        }
+        return auftrag
+    }
+
+    private fun createAddress(address: AddressDO, variant: String): AddressDO {
+        val copy = AddressDO()
+        copy.id = address.id
+        copy.uid = address.uid
+        copy.name = address.name
+        copy.firstName = address.firstName
+        copy.organization = address.organization
+        copy.city = address.city
+        copy.email = address.email
+        copy.businessPhone = address.businessPhone
+        copy.birthday = address.birthday
+        copy.comment = "Benchmark comment ($variant)"
+        return copy
+    }
+
+    companion object {
+        private const val POSITIONS = 20
+    }
+}
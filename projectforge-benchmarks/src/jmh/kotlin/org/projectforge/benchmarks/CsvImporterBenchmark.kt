@@ -0,0 +1,106 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.rest.importer.CsvImporter
+import org.projectforge.rest.importer.ImportPairEntry
+import org.projectforge.rest.importer.ImportSettings
+import org.projectforge.rest.importer.ImportStorage
+import java.io.StringReader
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.util.concurrent.TimeUnit
+import kotlin.reflect.KProperty
+
+/**
+ * Benchmarks the csv import (as used e. g. by the import of bank account statements) of a generated file.
+ * The number format of the amounts is auto-detected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class CsvImporterBenchmark {
+    @Param("1000", "100000")
+    var lines: Int = 0
+
+    private lateinit var csv: String
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val sb = StringBuilder()
+        sb.appendLine("Date;Value date;Amount;Subject;Receiver;IBAN;Count;Booked")
+        for (i in 0 until lines) {
+            val date = LocalDate.of(2023, 1, 1).plusDays((i % 365).toLong())
+            sb.appendLine("$date;$date;${i % 10000}.${i % 100};Subject $i;Receiver ${i % 50};DE$i;$i;${i % 2 == 0}")
+        }
+        csv = sb.toString()
+    }
+
+    @Benchmark
+    fun parse(): Int {
+        val storage = Storage()
+        CsvImporter.parse(StringReader(csv), storage)
+        return storage.records.size
+    }
+
+    class Record(
+        var date: LocalDate? = null,
+        var valueDate: LocalDate? = null,
+        var amount: BigDecimal? = null,
+        var subject: String? = null,
+        var receiver: String? = null,
+        var iban: String? = null,
+        var count: Long? = null,
+        var booked: Boolean? = null,
+    ) : ImportPairEntry.Modified<Record> {
+        override val properties: Array<KProperty<*>>?
+            get() = null
+    }
+
+    private class Storage : ImportStorage<Record>(
+        ImportSettings().parseSettings(
+            """
+            date=date
+            valueDate=value date
+            amount=amount
+            subject=subject
+            receiver=receiver
+            iban=iban
+            count=count
+            booked=booked
+            """.trimIndent()
+        )
+    ) {
+        val records = mutableListOf<Record>()
+
+        override fun prepareEntity(): Record {
+            return Record()
+        }
+
+        override fun commitEntity(obj: Record) {
+            records.add(obj)
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.business.timesheet.TimesheetDO
+import org.projectforge.business.timesheet.TimesheetDao
+import org.projectforge.framework.persistence.api.QueryFilter
+import org.projectforge.framework.time.PFDateTime
+import java.time.Month
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks DBQuery.select (via BaseDao.select) with criteria and full text filters on the generated timesheets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class DBQueryBenchmark {
+    private lateinit var timesheetDao: TimesheetDao
+
+    private var userId: Long = 0
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val setup = BenchmarkSetup.instance
+        timesheetDao = setup.getBean(TimesheetDao::class.java)
+        userId = setup.logon(setup.benchmarkUser).id!!
+    }
+
+    @Benchmark
+    fun selectByCriteria(): List<TimesheetDO> {
+        val from = PFDateTime.withDate(BenchmarkSetup.FIRST_YEAR, Month.MARCH, 1)
+        val filter = QueryFilter()
+        filter.add(QueryFilter.between("startTime", from.utilDate, from.plusMonths(1).utilDate))
+        filter.add(QueryFilter.eq("user.id", userId))
+        return timesheetDao.select(filter)
+    }
+
+    @Benchmark
+    fun selectByFullText(): List<TimesheetDO> {
+        val filter = QueryFilter()
+        filter.addFullTextSearch("review")
+        return timesheetDao.select(filter)
+    }
+}
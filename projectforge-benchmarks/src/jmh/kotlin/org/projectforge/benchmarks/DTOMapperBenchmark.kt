@@ -0,0 +1,124 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.business.task.TaskDO
+import org.projectforge.business.timesheet.TimesheetDO
+import org.projectforge.common.BeanHelper
+import org.projectforge.framework.persistence.api.BaseDO
+import org.projectforge.framework.persistence.api.ExtendedBaseDO
+import org.projectforge.framework.persistence.entities.AbstractHistorizableBaseDO
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+import org.projectforge.rest.dto.BaseDTO
+import org.projectforge.rest.dto.DTOMapper
+import org.projectforge.rest.dto.Timesheet
+import java.lang.reflect.AccessibleObject
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares the copying of a timesheet list (2,000 entities to DTOs, as done by the REST list pages) by [DTOMapper]
+ * with the former reflective copying of BaseDTO.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class DTOMapperBenchmark {
+    private lateinit var timesheets: List<TimesheetDO>
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val root = TaskDO().also { it.id = 1; it.title = "root" }
+        val tasks = (1..20).map { i -> TaskDO().also { it.id = 1L + i; it.title = "task $i"; it.parentTask = root } }
+        val users = (1..10).map { i -> PFUserDO().also { it.id = 100L + i; it.username = "user$i" } }
+        timesheets = (0 until 2000).map { i ->
+            TimesheetDO().also {
+                it.id = i.toLong()
+                it.task = tasks[i % tasks.size]
+                it.user = users[i % users.size]
+                it.startTime = Date(i * 3_600_000L)
+                it.stopTime = Date(i * 3_600_000L + 1_800_000L)
+                it.location = "Location $i"
+                it.description = "Description $i"
+            }
+        }
+    }
+
+    @Benchmark
+    fun mapper(): Int {
+        return timesheets.sumOf { src -> Timesheet().also { DTOMapper.copy(src, it) }.description!!.length }
+    }
+
+    @Benchmark
+    fun reflective(): Int {
+        return timesheets.sumOf { src -> Timesheet().also { reflectiveCopy(src, it) }.description!!.length }
+    }
+
+    /**
+     * The former implementation of BaseDTO.copy (reflection per field and object), for comparison only.
+     */
+    private fun reflectiveCopy(src: Any, dest: Any) {
+        val destFields = BeanHelper.getAllDeclaredFields(dest.javaClass)
+        AccessibleObject.setAccessible(destFields, true)
+        destFields.forEach { destField ->
+            val destType = destField.type
+            if (destField.name == "log" || destField.name == "serialVersionUID" || destField.name == "Companion"
+                || destField.name.startsWith("$")
+            ) {
+                return@forEach
+            }
+            val srcField = BeanHelper.getDeclaredField(src.javaClass, destField.name) ?: return@forEach
+            try {
+                srcField.isAccessible = true
+                if (srcField.type == destType) {
+                    if (!Collection::class.java.isAssignableFrom(destType)) {
+                        destField.set(dest, srcField.get(src))
+                    }
+                } else if (BaseDTO::class.java.isAssignableFrom(destType) && AbstractHistorizableBaseDO::class.java.isAssignableFrom(srcField.type)) {
+                    srcField.get(src)?.let { srcValue ->
+                        @Suppress("UNCHECKED_CAST")
+                        val instance = destType.getDeclaredConstructor().newInstance() as BaseDTO<ExtendedBaseDO<Long>>
+                        @Suppress("UNCHECKED_CAST")
+                        instance.copyFromMinimal(srcValue as ExtendedBaseDO<Long>)
+                        destField.set(dest, instance)
+                    }
+                } else if (BaseDO::class.java.isAssignableFrom(destType) && BaseDTO::class.java.isAssignableFrom(srcField.type)) {
+                    srcField.get(src)?.let { srcValue ->
+                        @Suppress("UNCHECKED_CAST")
+                        val instance = destType.getDeclaredConstructor().newInstance() as BaseDO<Long>
+                        instance.id = (srcValue as BaseDTO<*>).id
+                        destField.set(dest, instance)
+                    }
+                } else if (srcField.type == Boolean::class.java) {
+                    destField.set(dest, srcField.get(src) == true)
+                } else if (destType == Boolean::class.java) {
+                    destField.set(dest, srcField.get(src) == true)
+                }
+            } catch (ex: Exception) {
+                // Ignore, as the former implementation did (after logging).
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.business.fibu.EmployeeCache
+import org.projectforge.business.fibu.EmployeeDO
+import org.projectforge.business.fibu.EmployeeStatus
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.time.Month
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks the EmployeeCache lookups by user id and staff number and the point-in-time lookups of status and annual
+ * leave days (as done per row in vacation lists, exports and the salary import).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class EmployeeCacheBenchmark {
+    private lateinit var employeeCache: EmployeeCache
+
+    private lateinit var employeeIds: LongArray
+
+    private lateinit var userIds: LongArray
+
+    private lateinit var staffNumbers: Array<String>
+
+    private val date = LocalDate.of(BenchmarkSetup.FIRST_YEAR - 5, Month.JUNE, 1)
+
+    private var counter = 0
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val setup = BenchmarkSetup.instance
+        employeeCache = setup.getBean(EmployeeCache::class.java)
+        employeeIds = setup.employees.map { it.id!! }.toLongArray()
+        userIds = setup.employees.map { it.user!!.id!! }.toLongArray()
+        staffNumbers = setup.employees.map { it.staffNumber!! }.toTypedArray()
+    }
+
+    @Benchmark
+    fun getEmployeeByUserId(): EmployeeDO? {
+        return employeeCache.getEmployeeByUserId(userIds[counter++ % userIds.size])
+    }
+
+    @Benchmark
+    fun findByStaffNumber(): EmployeeDO? {
+        return employeeCache.findByStaffNumber(staffNumbers[counter++ % staffNumbers.size])
+    }
+
+    @Benchmark
+    fun getEmployeeStatus(): EmployeeStatus? {
+        return employeeCache.getEmployeeStatus(employeeIds[counter++ % employeeIds.size], date)
+    }
+
+    @Benchmark
+    fun getAnnualLeaveDays(): BigDecimal? {
+        return employeeCache.getAnnualLeaveDays(employeeIds[counter++ % employeeIds.size], date)
+    }
+}
@@ -0,0 +1,73 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.business.address.AddressDO
+import org.projectforge.business.address.AddressExport
+import org.projectforge.business.test.AbstractTestBase
+import org.projectforge.business.timesheet.TimesheetDO
+import org.projectforge.business.timesheet.TimesheetExport
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks the Excel exports of timesheets and addresses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class ExcelExportBenchmark {
+    private lateinit var timesheetExport: TimesheetExport
+
+    private lateinit var addressExport: AddressExport
+
+    private lateinit var timesheets: List<TimesheetDO>
+
+    private lateinit var addresses: List<AddressDO>
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val setup = BenchmarkSetup.instance
+        timesheetExport = setup.getBean(TimesheetExport::class.java)
+        addressExport = setup.getBean(AddressExport::class.java)
+        timesheets = setup.timesheets.take(EXPORT_SIZE)
+        addresses = setup.addresses.take(EXPORT_SIZE)
+        // Members of the finance group may export all addresses (not only their favorites):
+        setup.logon(AbstractTestBase.TEST_FULL_ACCESS_USER)
+    }
+
+    @Benchmark
+    fun exportTimesheets(): ByteArray {
+        return timesheetExport.export(timesheets)
+    }
+
+    @Benchmark
+    fun exportAddresses(): ByteArray? {
+        return addressExport.export(addresses, emptyMap())
+    }
+
+    companion object {
+        private const val EXPORT_SIZE = 1_000
+    }
+}
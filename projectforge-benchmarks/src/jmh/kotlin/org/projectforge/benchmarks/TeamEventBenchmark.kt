@@ -0,0 +1,63 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.business.calendar.event.model.ICalendarEvent
+import org.projectforge.business.teamcal.event.TeamEventDao
+import org.projectforge.business.teamcal.event.TeamEventFilter
+import org.projectforge.business.test.AbstractTestBase
+import org.projectforge.framework.time.PFDateTime
+import java.time.Month
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks TeamEventDao.getEventList including the expansion of recurring events.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class TeamEventBenchmark {
+    private lateinit var teamEventDao: TeamEventDao
+
+    private var teamCalId: Long = 0
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val setup = BenchmarkSetup.instance
+        teamEventDao = setup.getBean(TeamEventDao::class.java)
+        teamCalId = setup.teamCal.id!!
+        setup.logon(AbstractTestBase.ADMIN)
+    }
+
+    @Benchmark
+    fun getEventListQuarter(): List<ICalendarEvent> {
+        val from = PFDateTime.withDate(BenchmarkSetup.FIRST_YEAR, Month.APRIL, 1)
+        val filter = TeamEventFilter()
+        filter.setTeamCals(listOf(teamCalId))
+        filter.setStartDate(from.utilDate)
+        filter.setEndDate(from.plusMonths(3).utilDate)
+        return teamEventDao.getEventList(filter, true)
+    }
+}
@@ -0,0 +1,63 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.business.address.AddressDO
+import org.projectforge.business.address.AddressImageDao
+import org.projectforge.business.address.vcard.VCardUtils
+import org.projectforge.business.address.vcard.VCardVersion
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks the vCard generation as used by the CardDAV server (AddressDAVCache).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class VCardBenchmark {
+    private lateinit var addressImageDao: AddressImageDao
+
+    private lateinit var addresses: List<AddressDO>
+
+    private var counter = 0
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val setup = BenchmarkSetup.instance
+        addressImageDao = setup.getBean(AddressImageDao::class.java)
+        addresses = setup.addresses
+        setup.logon(setup.benchmarkUser)
+    }
+
+    @Benchmark
+    fun buildVCard30(): String {
+        return VCardUtils.buildVCardString(addresses[counter++ % addresses.size], addressImageDao, VCardVersion.V_3_0)
+    }
+
+    @Benchmark
+    fun buildVCard40(): String {
+        return VCardUtils.buildVCardString(addresses[counter++ % addresses.size], addressImageDao, VCardVersion.V_4_0)
+    }
+}
@@ -0,0 +1,55 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.projectforge.framework.time.PFDayUtils
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks PFDayUtils.getNumberOfWorkingDays (holidays are taken from the test configuration).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class WorkingDaysBenchmark {
+    private val from = LocalDate.of(BenchmarkSetup.FIRST_YEAR, 1, 1)
+
+    @Setup(Level.Trial)
+    fun setup() {
+        BenchmarkSetup.instance.let { it.logon(it.benchmarkUser) }
+    }
+
+    @Benchmark
+    fun numberOfWorkingDaysMonth(): BigDecimal {
+        return PFDayUtils.getNumberOfWorkingDays(from, from.plusMonths(1).minusDays(1))
+    }
+
+    @Benchmark
+    fun numberOfWorkingDaysYear(): BigDecimal {
+        return PFDayUtils.getNumberOfWorkingDays(from, from.plusYears(1).minusDays(1))
+    }
+}
@@ -53,12 +53,35 @@ public class ImageService
     return createBytesFromImage(bufferedImage);
   }
 
+  /**
+   * Scales the given image down to fit into the given bounding box. The aspect ratio is preserved and images are
+   * never scaled up.
+   * @return The resized image or the original image, if it already fits. Null, if the image couldn't be read.
+   */
+  public byte[] resizeImageToFit(byte[] originalImage, int maxWidth, int maxHeight)
+  {
+    BufferedImage imageFromBytes = createImageFromBytes(originalImage);
+    if (imageFromBytes == null) {
+      return null;
+    }
+    int width = imageFromBytes.getWidth();
+    int height = imageFromBytes.getHeight();
+    if (width <= maxWidth && height <= maxHeight) {
+      return originalImage;
+    }
+    double scale = Math.min((double) maxWidth / width, (double) maxHeight / height);
+    BufferedImage bufferedImage = compressImage(imageFromBytes, Math.max(1, (int) Math.round(width * scale)),
+        Math.max(1, (int) Math.round(height * scale)));
+    return createBytesFromImage(bufferedImage);
+  }
+
   private BufferedImage compressImage(BufferedImage originalImage, int width, int height)
   {
     if (originalImage != null) {
       int type = originalImage.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : originalImage.getType();
       BufferedImage resizedImage = new BufferedImage(width, height, type);
       Graphics2D g = resizedImage.createGraphics();
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
       g.drawImage(originalImage, 0, 0, width, height, null);
       g.dispose();
       return resizedImage;
@@ -46,6 +46,12 @@ import java.util.Hashtable;
 public class LdapConnector implements ConfigurationListener {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(LdapConnector.class);
 
+  private static final String CONNECT_POOL = "com.sun.jndi.ldap.connect.pool";
+
+  static final String CONNECT_POOL_PROTOCOL = "com.sun.jndi.ldap.connect.pool.protocol";
+
+  private static boolean sslPoolChecked;
+
   @Autowired
   LdapService ldapService;
 
@@ -117,6 +123,12 @@ public class LdapConnector implements ConfigurationListener {
     } else {
       env = createEnv(null, null);
     }
+    // Contexts of the manager user are pooled by the JNDI LDAP provider, so bulk operations such as the master
+    // synchronization don't open a new connection per operation. Contexts of authenticating users aren't pooled.
+    env.put(CONNECT_POOL, "true");
+    if (StringUtils.startsWithIgnoreCase(ldapConfig.getCompleteServerUrl(), "ldaps")) {
+      enableConnectionPoolForSsl();
+    }
     try {
       final LdapContext ctx = new InitialLdapContext(env, null);
       return ctx;
@@ -133,6 +145,25 @@ public class LdapConnector implements ConfigurationListener {
     return ctx;
   }
 
+  /**
+   * The JNDI LDAP provider pools only plain connections by default (ldaps connections would be opened and closed
+   * for every context). The pooled protocols are read by the provider on first use of the pool, so this has to be
+   * done before the first pooled context is created. A value given by the administrator is kept.
+   */
+  static synchronized void enableConnectionPoolForSsl() {
+    if (sslPoolChecked) {
+      return;
+    }
+    sslPoolChecked = true;
+    final String protocols = System.getProperty(CONNECT_POOL_PROTOCOL);
+    if (protocols == null) {
+      System.setProperty(CONNECT_POOL_PROTOCOL, "plain ssl");
+    } else if (!protocols.contains("ssl")) {
+      log.warn("Connections to the LDAP server aren't pooled, because the system property " + CONNECT_POOL_PROTOCOL
+          + "='" + protocols + "' doesn't contain 'ssl'.");
+    }
+  }
+
   /**
    * Used by test class.
    *
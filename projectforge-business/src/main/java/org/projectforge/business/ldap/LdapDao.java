@@ -30,9 +30,13 @@ import javax.naming.NameNotFoundException;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.naming.directory.*;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
@@ -43,6 +47,16 @@ public abstract class LdapDao<I extends Serializable, T extends LdapObject<I>>
 {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(LdapDao.class);
 
+  /**
+   * Page size used by {@link #findAll(DirContext, String)} for paged searches.
+   */
+  static final int PAGE_SIZE = 500;
+
+  /**
+   * Used by test class.
+   */
+  int pageSize = PAGE_SIZE;
+
   protected LdapConnector ldapConnector;
 
   protected LdapConfig ldapConfig;
@@ -428,23 +442,69 @@ public abstract class LdapDao<I extends Serializable, T extends LdapObject<I>>
     }.excecute();
   }
 
+  /**
+   * Uses the paged results control (RFC 2696) if the given context is a {@link LdapContext}, so large directories are
+   * fetched in chunks of {@link #PAGE_SIZE} entries. The control is non-critical, so servers without paging support
+   * will return all entries at once.
+   */
   public List<T> findAll(final DirContext ctx, final String organizationalUnit) throws NamingException
   {
-    final LinkedList<T> list = new LinkedList<>();
-    NamingEnumeration<?> results = null;
+    final List<T> list = new ArrayList<>();
     final SearchControls controls = new SearchControls();
     controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
     final String searchBase = getSearchBase(organizationalUnit);
-    results = ctx.search(searchBase, "(objectclass=" + getObjectClass() + ")", controls);
-    while (results.hasMore()) {
-      final SearchResult searchResult = (SearchResult) results.next();
-      final String dn = searchResult.getName();
-      final Attributes attributes = searchResult.getAttributes();
-      list.add(mapToObject(dn, searchBase, attributes));
+    final String filter = "(objectclass=" + getObjectClass() + ")";
+    if (!(ctx instanceof LdapContext)) {
+      readResults(ctx.search(searchBase, filter, controls), searchBase, list);
+      return list;
+    }
+    final LdapContext ldapContext = (LdapContext) ctx;
+    final Control[] origRequestControls = ldapContext.getRequestControls();
+    try {
+      byte[] cookie = null;
+      do {
+        try {
+          ldapContext.setRequestControls(new Control[]{new PagedResultsControl(pageSize, cookie, Control.NONCRITICAL)});
+        } catch (final IOException ex) {
+          throw new NamingException("Can't create paged results control: " + ex.getMessage());
+        }
+        readResults(ldapContext.search(searchBase, filter, controls), searchBase, list);
+        cookie = getPagedResultsCookie(ldapContext.getResponseControls());
+      } while (cookie != null && cookie.length > 0);
+    } finally {
+      ldapContext.setRequestControls(origRequestControls);
     }
     return list;
   }
 
+  private void readResults(final NamingEnumeration<SearchResult> results, final String searchBase, final List<T> list)
+      throws NamingException
+  {
+    try {
+      while (results.hasMore()) {
+        final SearchResult searchResult = results.next();
+        final String dn = searchResult.getName();
+        final Attributes attributes = searchResult.getAttributes();
+        list.add(mapToObject(dn, searchBase, attributes));
+      }
+    } finally {
+      results.close();
+    }
+  }
+
+  private static byte[] getPagedResultsCookie(final Control[] responseControls)
+  {
+    if (responseControls == null) {
+      return null;
+    }
+    for (final Control control : responseControls) {
+      if (control instanceof PagedResultsResponseControl) {
+        return ((PagedResultsResponseControl) control).getCookie();
+      }
+    }
+    return null;
+  }
+
   @SuppressWarnings("unchecked")
   public T findById(final Object id, final String... organizationalUnits)
   {
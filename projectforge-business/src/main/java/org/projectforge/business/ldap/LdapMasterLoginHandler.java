@@ -33,6 +33,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * TODO: nested groups.<br/>
@@ -59,7 +62,17 @@ import java.util.*;
 public class LdapMasterLoginHandler extends LdapLoginHandler {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(LdapMasterLoginHandler.class);
 
-  private boolean refreshInProgress;
+  private volatile boolean refreshInProgress;
+
+  private final AtomicReference<SyncRequest> pendingSync = new AtomicReference<>();
+
+  private final LdapMasterSyncState syncState = new LdapMasterSyncState();
+
+  private final ExecutorService syncExecutor = Executors.newSingleThreadExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "LdapMasterSync");
+    thread.setDaemon(true);
+    return thread;
+  });
 
   @Autowired
   private GroupDOConverter groupDOConverter;
@@ -131,48 +144,80 @@ public class LdapMasterLoginHandler extends LdapLoginHandler {
   }
 
   /**
-   * Refreshes the LDAP.
+   * Refreshes the LDAP. The synchronization is done by a single worker thread. Refreshes occurring while a
+   * synchronization is running are coalesced: only the latest users and groups are synchronized afterwards.
    *
    * @see org.projectforge.business.login.LoginHandler#afterUserGroupCacheRefresh(java.util.List, java.util.List)
    */
   @Override
   public void afterUserGroupCacheRefresh(final Collection<PFUserDO> users, final Collection<GroupDO> groups) {
-    new Thread() {
-      @Override
-      public void run() {
-        synchronized (LdapMasterLoginHandler.this) {
-          try {
-            refreshInProgress = true;
-            updateLdap(users, groups);
-          } finally {
-            refreshInProgress = false;
-          }
-        }
-      }
-    }.start();
+    if (pendingSync.getAndSet(new SyncRequest(users, groups)) == null) {
+      // No synchronization queued, yet:
+      syncExecutor.execute(this::processPendingSync);
+    }
   }
 
   /**
-   * @return true if currently a cache refresh is running, otherwise false.
+   * @return true if currently a cache refresh is running or queued, otherwise false.
    */
   public boolean isRefreshInProgress() {
-    return refreshInProgress;
+    return refreshInProgress || pendingSync.get() != null;
+  }
+
+  private void processPendingSync() {
+    final SyncRequest request = pendingSync.getAndSet(null);
+    if (request == null) {
+      return;
+    }
+    try {
+      refreshInProgress = true;
+      updateLdap(request.users, request.groups);
+    } catch (final Exception ex) {
+      log.error("Error while updating LDAP: " + ex.getMessage(), ex);
+    } finally {
+      refreshInProgress = false;
+    }
   }
 
   private void updateLdap(final Collection<PFUserDO> users, final Collection<GroupDO> groups) {
+    final long now = System.currentTimeMillis();
+    final boolean fullSync = syncState.isFullSyncRequired(now);
+    if (fullSync) {
+      syncState.startFullSync();
+    }
+    // null for full sync: all users and groups will be synchronized.
+    final Set<Long> modifiedUserIds = fullSync ? null : syncState.getModifiedUserIds(users);
+    final Set<Long> modifiedGroupIds = fullSync ? null : syncState.getModifiedGroupIds(groups, modifiedUserIds);
+    if (!fullSync && modifiedUserIds.isEmpty() && modifiedGroupIds.isEmpty()) {
+      log.info("LDAP is up-to-date, no users or groups modified since last synchronization.");
+      return;
+    }
     new LdapTemplate(ldapConnector) {
       @Override
       protected Object call() throws Exception {
-        log.info("Updating LDAP...");
+        if (fullSync) {
+          log.info("Updating LDAP (full synchronization)...");
+        } else {
+          log.info("Updating LDAP (" + modifiedUserIds.size() + " modified users, " + modifiedGroupIds.size()
+              + " modified groups)...");
+        }
         // First, get set of all ldap entries:
-        final List<LdapUser> ldapUsers = getAllLdapUsers(ctx);
-        final List<LdapUser> updatedLdapUsers = new ArrayList<>();
-        int error = 0, unmodified = 0, created = 0, updated = 0, deleted = 0, renamed = 0;
+        final LdapUserIndex ldapUserIndex = new LdapUserIndex(getAllLdapUsers(ctx));
+        final List<LdapUser> updatedLdapUsers = new ArrayList<>(users.size());
+        int error = 0, unmodified = 0, created = 0, updated = 0, deleted = 0, renamed = 0, skipped = 0;
         final boolean sambaConfigured = ldapConfig.getSambaAccountsConfig() != null;
         for (final PFUserDO user : users) {
           final LdapUser updatedLdapUser = pfUserDOConverter.convert(user);
           try {
-            final LdapUser ldapUser = getLdapUser(ldapUsers, user);
+            final LdapUser ldapUser = ldapUserIndex.get(user);
+            if (ldapUser != null && modifiedUserIds != null && !modifiedUserIds.contains(user.getId())) {
+              // Not modified since last synchronization, needed only for group assignments:
+              updatedLdapUser.setOrganizationalUnit(ldapUser.getOrganizationalUnit());
+              ldapUserDao.buildDn(userBase, updatedLdapUser);
+              updatedLdapUsers.add(updatedLdapUser);
+              skipped++;
+              continue;
+            }
             if (ldapUser == null) {
               updatedLdapUser.setOrganizationalUnit(userBase);
               if (!user.getDeleted() && !user.getLocalUser() && StringUtils.isNotBlank(user.getUsername())) {
@@ -227,6 +272,7 @@ public class LdapMasterLoginHandler extends LdapLoginHandler {
             }
             ldapUserDao.buildDn(userBase, updatedLdapUser);
             updatedLdapUsers.add(updatedLdapUser);
+            syncState.synced(user);
           } catch (final Exception ex) {
             ldapUserDao.buildDn(userBase, updatedLdapUser);
             updatedLdapUsers.add(updatedLdapUser);
@@ -246,15 +292,22 @@ public class LdapMasterLoginHandler extends LdapLoginHandler {
             + renamed
             + " renamed, "
             + deleted
-            + " deleted.");
+            + " deleted, "
+            + skipped
+            + " skipped (not modified since last synchronization).");
         // Now get all groups:
-        final List<LdapGroup> ldapGroups = getAllLdapGroups(ctx);
+        final Map<String, LdapGroup> ldapGroupMap = getGroupMap(getAllLdapGroups(ctx));
         final Map<Long, LdapUser> ldapUserMap = getUserMap(updatedLdapUsers);
-        error = unmodified = created = updated = renamed = deleted = 0;
+        error = unmodified = created = updated = renamed = deleted = skipped = 0;
         for (final GroupDO group : groups) {
           try {
+            final LdapGroup ldapGroup = ldapGroupMap.get(groupDOConverter.buildBusinessCategory(group));
+            if (ldapGroup != null && modifiedGroupIds != null && !modifiedGroupIds.contains(group.getId())) {
+              // Not modified since last synchronization.
+              skipped++;
+              continue;
+            }
             final LdapGroup updatedLdapGroup = groupDOConverter.convert(group, baseDN, ldapUserMap);
-            final LdapGroup ldapGroup = getLdapGroup(ldapGroups, group);
             if (ldapGroup == null) {
               updatedLdapGroup.setOrganizationalUnit(groupBase);
               if (!group.getDeleted() && !group.getLocalGroup()) {
@@ -286,6 +339,7 @@ public class LdapMasterLoginHandler extends LdapLoginHandler {
                 }
               }
             }
+            syncState.synced(group);
           } catch (final Exception ex) {
             log.error("Error while proceeding group '" + group.getName() + "'. Continuing with next group.", ex);
             error++;
@@ -302,7 +356,12 @@ public class LdapMasterLoginHandler extends LdapLoginHandler {
             + renamed
             + " renamed, "
             + deleted
-            + " deleted.");
+            + " deleted, "
+            + skipped
+            + " skipped (not modified since last synchronization).");
+        if (fullSync) {
+          syncState.fullSyncDone(now);
+        }
         log.info("LDAP update done.");
         return null;
       }
@@ -406,22 +465,54 @@ public class LdapMasterLoginHandler extends LdapLoginHandler {
     return map;
   }
 
-  private LdapUser getLdapUser(final List<LdapUser> ldapUsers, final PFUserDO user) {
-    for (final LdapUser ldapUser : ldapUsers) {
-      if (StringUtils.equals(ldapUser.getUid(), user.getUsername())
-          || StringUtils.equals(ldapUser.getEmployeeNumber(), PFUserDOConverter.buildEmployeeNumber(user))) {
-        return ldapUser;
+  private Map<String, LdapGroup> getGroupMap(final Collection<LdapGroup> ldapGroups) {
+    final Map<String, LdapGroup> map = new HashMap<>();
+    for (final LdapGroup ldapGroup : ldapGroups) {
+      if (ldapGroup.getBusinessCategory() != null) {
+        map.putIfAbsent(ldapGroup.getBusinessCategory(), ldapGroup);
       }
     }
-    return null;
+    return map;
   }
 
-  private LdapGroup getLdapGroup(final List<LdapGroup> ldapGroups, final GroupDO group) {
-    for (final LdapGroup ldapGroup : ldapGroups) {
-      if (StringUtils.equals(ldapGroup.getBusinessCategory(), groupDOConverter.buildBusinessCategory(group))) {
-        return ldapGroup;
+  /**
+   * Hashed lookup of ldap users by uid and employee number. A user matching by uid wins over a user matching by
+   * employee number.
+   */
+  static class LdapUserIndex {
+    private final Map<String, LdapUser> byUid = new HashMap<>();
+
+    private final Map<String, LdapUser> byEmployeeNumber = new HashMap<>();
+
+    LdapUserIndex(final Collection<LdapUser> ldapUsers) {
+      for (final LdapUser ldapUser : ldapUsers) {
+        if (ldapUser.getUid() != null) {
+          byUid.putIfAbsent(ldapUser.getUid(), ldapUser);
+        }
+        if (ldapUser.getEmployeeNumber() != null) {
+          byEmployeeNumber.putIfAbsent(ldapUser.getEmployeeNumber(), ldapUser);
+        }
+      }
+    }
+
+    LdapUser get(final PFUserDO user) {
+      final LdapUser ldapUser = user.getUsername() != null ? byUid.get(user.getUsername()) : null;
+      if (ldapUser != null) {
+        return ldapUser;
       }
+      final String employeeNumber = PFUserDOConverter.buildEmployeeNumber(user);
+      return employeeNumber != null ? byEmployeeNumber.get(employeeNumber) : null;
+    }
+  }
+
+  private static class SyncRequest {
+    private final Collection<PFUserDO> users;
+
+    private final Collection<GroupDO> groups;
+
+    private SyncRequest(final Collection<PFUserDO> users, final Collection<GroupDO> groups) {
+      this.users = users;
+      this.groups = groups;
     }
-    return null;
   }
 }
@@ -0,0 +1,142 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.ldap;
+
+import org.projectforge.framework.persistence.user.entities.GroupDO;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
+
+import java.util.*;
+
+/**
+ * Remembers the versions of all users and groups written successfully to the LDAP by the
+ * {@link LdapMasterLoginHandler}, so only modified objects have to be synchronized after a refresh of the
+ * UserGroupCache. A full synchronization is done on start-up and after {@link #FULL_SYNC_INTERVAL_MS} for getting
+ * external LDAP modifications overwritten.<br/>
+ * Not thread safe: only used by the single synchronization worker of {@link LdapMasterLoginHandler}.
+ */
+class LdapMasterSyncState {
+  static final long FULL_SYNC_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+
+  private final Map<Long, Long> userVersions = new HashMap<>();
+
+  private final Map<Long, Long> groupVersions = new HashMap<>();
+
+  private long lastFullSync;
+
+  boolean isFullSyncRequired(final long now) {
+    return lastFullSync == 0 || now - lastFullSync >= FULL_SYNC_INTERVAL_MS;
+  }
+
+  /**
+   * Forgets all versions (the objects of a full synchronization will be registered again).
+   */
+  void startFullSync() {
+    userVersions.clear();
+    groupVersions.clear();
+  }
+
+  void fullSyncDone(final long now) {
+    lastFullSync = now;
+  }
+
+  /**
+   * Forces a full synchronization on next run.
+   */
+  void reset() {
+    startFullSync();
+    lastFullSync = 0;
+  }
+
+  /**
+   * @return The ids of all users modified since their last successful synchronization.
+   */
+  Set<Long> getModifiedUserIds(final Collection<PFUserDO> users) {
+    final Set<Long> result = new HashSet<>();
+    for (final PFUserDO user : users) {
+      if (!Objects.equals(userVersions.get(user.getId()), getVersion(user))) {
+        result.add(user.getId());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param modifiedUserIds Groups with modified users are also returned, because the dn of the members may have
+   *                        changed (renamed or deactivated users).
+   * @return The ids of all groups modified since their last successful synchronization.
+   */
+  Set<Long> getModifiedGroupIds(final Collection<GroupDO> groups, final Set<Long> modifiedUserIds) {
+    final Set<Long> result = new HashSet<>();
+    for (final GroupDO group : groups) {
+      if (!Objects.equals(groupVersions.get(group.getId()), getVersion(group))
+          || containsAny(group.getAssignedUsers(), modifiedUserIds)) {
+        result.add(group.getId());
+      }
+    }
+    return result;
+  }
+
+  void synced(final PFUserDO user) {
+    userVersions.put(user.getId(), getVersion(user));
+  }
+
+  void synced(final GroupDO group) {
+    groupVersions.put(group.getId(), getVersion(group));
+  }
+
+  static long getVersion(final PFUserDO user) {
+    final Date lastUpdate = user.getLastUpdate();
+    return lastUpdate != null ? lastUpdate.getTime() : 0L;
+  }
+
+  /**
+   * The membership is part of the version, because assigning users doesn't necessarily touch the group itself.
+   */
+  static long getVersion(final GroupDO group) {
+    final Date lastUpdate = group.getLastUpdate();
+    long version = lastUpdate != null ? lastUpdate.getTime() : 0L;
+    final Set<PFUserDO> assignedUsers = group.getAssignedUsers();
+    if (assignedUsers != null) {
+      long membersHash = 0;
+      for (final PFUserDO user : assignedUsers) {
+        // Order independent:
+        membersHash += Objects.hashCode(user.getId());
+      }
+      version = 31 * version + membersHash + assignedUsers.size();
+    }
+    return version;
+  }
+
+  private static boolean containsAny(final Set<PFUserDO> assignedUsers, final Set<Long> userIds) {
+    if (assignedUsers == null || userIds.isEmpty()) {
+      return false;
+    }
+    for (final PFUserDO user : assignedUsers) {
+      if (userIds.contains(user.getId())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -23,6 +23,12 @@
 
 package org.projectforge.framework.cache;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.projectforge.common.metrics.PfMetrics;
+
+import java.util.concurrent.TimeUnit;
+
 /**
  * This class is usefull, if the stored object of derived classes has to be cached. After reaching expireTime during a
  * request, the method refresh will be called.
@@ -60,6 +66,15 @@ public abstract class AbstractCache {
 
     private transient boolean refreshInProgress = false;
 
+    /**
+     * Meters are created lazily (the cache name isn't known before the constructor of the derived class is finished).
+     */
+    private transient Counter hitCounter;
+
+    private transient Counter refreshCounter;
+
+    private transient Timer refreshTimer;
+
     protected AbstractCache() {
     }
 
@@ -105,7 +120,15 @@ public abstract class AbstractCache {
             // Do nothing because refreshing is already in progress.
             return;
         }
+        if (hitCounter == null) {
+            final String cacheName = getClass().getSimpleName();
+            hitCounter = PfMetrics.counter("cache.access", "cache", cacheName, "result", "hit");
+            refreshCounter = PfMetrics.counter("cache.access", "cache", cacheName, "result", "refresh");
+            refreshTimer = PfMetrics.timer("cache.refresh", "cache", cacheName);
+        }
         if (this.isExpired || System.currentTimeMillis() - this.timeOfLastRefresh > this.expireTime) {
+            refreshCounter.increment();
+            final long start = System.nanoTime();
             try {
                 refreshInProgress = true;
                 this.timeOfLastRefresh = System.currentTimeMillis();
@@ -117,7 +140,10 @@ public abstract class AbstractCache {
                 this.isExpired = false;
             } finally {
                 refreshInProgress = false;
+                refreshTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             }
+        } else {
+            hitCounter.increment();
         }
     }
 
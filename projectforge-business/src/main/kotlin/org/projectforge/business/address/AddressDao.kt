@@ -310,6 +310,31 @@ open class AddressDao : BaseDao<AddressDO>(AddressDO::class.java) {
         return false
     }
 
+    /**
+     * Ids of all address books the given user has select access to. Useful for checking the select access of many
+     * addresses by [hasSelectAccess] (see [hasAccess]).
+     */
+    fun getSelectableAddressbookIds(user: PFUserDO): Set<Long> {
+        if (addressbookRight == null) {
+            addressbookRight = userRights.getRight(UserRightId.MISC_ADDRESSBOOK) as AddressbookRight
+        }
+        return addressbookCache.getAll().filter { ab ->
+            addressbookRight!!.checkGlobal(ab) || addressbookRight!!.getAccessType(ab, user.id).hasAnyAccess()
+        }.mapNotNull { it.id }.toSet()
+    }
+
+    /**
+     * Same as select access of [hasAccess], but uses the given address book ids of the user.
+     * @param selectableAddressbookIds Got by [getSelectableAddressbookIds].
+     */
+    fun hasSelectAccess(obj: AddressDO, selectableAddressbookIds: Set<Long>): Boolean {
+        val addressbookList = addressbookCache.getAddressbooksForAddress(obj) ?: obj.addressbookList
+        if (addressbookList.isNullOrEmpty()) {
+            return true
+        }
+        return addressbookList.any { selectableAddressbookIds.contains(it.id) }
+    }
+
     override fun beforeInsertOrModify(obj: AddressDO, operationType: OperationType) {
         if (obj.id == null) {
             if (obj.addressbookList.isNullOrEmpty()) {
@@ -401,7 +426,7 @@ open class AddressDao : BaseDao<AddressDO>(AddressDO::class.java) {
      * @return The entries are ordered by date of year and name.
      */
     fun getBirthdays(fromDate: Date, toDate: Date, all: Boolean): Set<BirthdayAddress> {
-        return birthdayCache.getBirthdays(fromDate, toDate, all, personalAddressDao.favoriteAddressIdList)
+        return birthdayCache.getBirthdays(fromDate, toDate, all, personalAddressDao.favoriteAddressIdList.toHashSet())
     }
 
     val favoriteVCards: List<PersonalAddressDO>
@@ -0,0 +1,398 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.address
+
+import jakarta.annotation.PostConstruct
+import jakarta.annotation.PreDestroy
+import jakarta.persistence.Tuple
+import mu.KotlinLogging
+import org.projectforge.business.configuration.ConfigurationService
+import org.projectforge.business.image.ImageService
+import org.projectforge.common.DataSizeConfig
+import org.projectforge.common.metrics.PfMetrics
+import org.projectforge.framework.persistence.jpa.PfPersistenceService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Service
+import org.springframework.util.unit.DataUnit
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Serves address images in several renditions. Images are cached in a bounded in-memory LRU cache and in a bounded
+ * on-disk cache (sub directory of ProjectForge's home dir, least recently used files are deleted first). Missing
+ * renditions are loaded from the data base and resized lazily by a small pool of workers.
+ *
+ * Entries are keyed by address id, image version (AddressDO.imageLastUpdate) and rendition, so modified images will
+ * never be served from outdated entries. No access checking is done here, see [AddressImageDao].
+ */
+@Service
+open class AddressImageCache {
+  enum class Rendition(val maxSize: Int?) {
+    /**
+     * The uploaded image.
+     */
+    ORIGINAL(null),
+
+    /**
+     * The preview (25x25) stored in the data base on upload.
+     */
+    PREVIEW(null),
+    SMALL(64),
+    MEDIUM(128),
+    LARGE(256),
+  }
+
+  class CachedImage internal constructor(val addressId: Long, val version: Long, val rendition: Rendition, val bytes: ByteArray) {
+    /**
+     * Strong ETag: the content of a rendition is given by address id and image version.
+     */
+    val etag: String
+      get() = "\"$addressId-$version-${rendition.name.lowercase()}\""
+  }
+
+  @Autowired
+  private lateinit var configurationService: ConfigurationService
+
+  @Autowired
+  private lateinit var imageService: ImageService
+
+  @Autowired
+  private lateinit var persistenceService: PfPersistenceService
+
+  @Value("\${projectforge.address.imageCache.memorySize:20MB}")
+  private var memorySizeConfig: String? = null
+
+  @Value("\${projectforge.address.imageCache.diskSize:200MB}")
+  private var diskSizeConfig: String? = null
+
+  private var maxMemoryBytes = 0L
+
+  internal var maxDiskBytes = 0L
+
+  private val diskBytes = AtomicLong()
+
+  private val diskLock = Any()
+
+  private var memoryBytes = 0L
+
+  private val memoryCache = LinkedHashMap<String, CachedImage>(100, 0.75f, true) // Access order for LRU.
+
+  private val inProgress = ConcurrentHashMap<String, CompletableFuture<CachedImage?>>()
+
+  private lateinit var cacheDir: File
+
+  private lateinit var executor: ExecutorService
+
+  @PostConstruct
+  private fun postConstruct() {
+    maxMemoryBytes = DataSizeConfig.init(memorySizeConfig, DataUnit.MEGABYTES).toBytes()
+    maxDiskBytes = DataSizeConfig.init(diskSizeConfig, DataUnit.MEGABYTES).toBytes()
+    cacheDir = File(configurationService.applicationHomeDir, CACHE_DIR)
+    if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+      log.error { "Can't create cache dir for address images: ${cacheDir.absolutePath}" }
+    }
+    cacheDir.listFiles { _, name -> name.endsWith(".tmp") }?.forEach { it.delete() } // Left by a crash.
+    diskBytes.set(listCachedFiles().sumOf { it.length() })
+    var counter = 0
+    executor = Executors.newFixedThreadPool(WORKERS) { runnable ->
+      Thread(runnable, "address-image-${++counter}").also { it.isDaemon = true }
+    }
+    PfMetrics.gauge("address.image.cache.bytes", this) { synchronized(it.memoryCache) { it.memoryBytes.toDouble() } }
+    PfMetrics.gauge("address.image.cache.disk.bytes", this) { it.diskBytes.get().toDouble() }
+    log.info { "Address image cache: memory size=$memorySizeConfig, disk size=$diskSizeConfig, dir=${cacheDir.absolutePath}" }
+  }
+
+  @PreDestroy
+  private fun preDestroy() {
+    executor.shutdownNow()
+  }
+
+  /**
+   * @param version Version of the address image (imageLastUpdate of the address).
+   * @return The image or null, if the address has no image.
+   */
+  open fun getImage(addressId: Long, version: Long, rendition: Rendition): CachedImage? {
+    val key = getKey(addressId, version, rendition)
+    getFromMemory(key)?.let { return it }
+    val future = inProgress.computeIfAbsent(key) {
+      CompletableFuture.supplyAsync({ load(addressId, version, rendition) }, executor)
+    }
+    // Attached after computeIfAbsent returned: an already completed future would otherwise remove the key inside
+    // computeIfAbsent (recursive update). Only this future is removed, not a newer one of the same key.
+    future.whenComplete { _, _ -> inProgress.remove(key, future) }
+    return try {
+      future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+    } catch (ex: Exception) {
+      log.error("Can't get image of address #$addressId ($rendition): ${ex.message}", ex)
+      null
+    }
+  }
+
+  /**
+   * Gets the images of many addresses. Missing images are selected from the data base in chunks (one query per
+   * chunk instead of one per address) and resized in parallel by the workers.
+   * @param versions Versions of the address images (imageLastUpdate) by address id.
+   * @return The images by address id. Addresses without images are missing.
+   */
+  open fun getImages(versions: Map<Long, Long>, rendition: Rendition): Map<Long, CachedImage> {
+    val result = mutableMapOf<Long, CachedImage>()
+    val missing = mutableMapOf<Long, Long>()
+    versions.forEach { (addressId, version) ->
+      val key = getKey(addressId, version, rendition)
+      val image = getFromMemory(key) ?: readFromDisk(key, addressId, version, rendition)
+      if (image != null) {
+        result[addressId] = image
+      } else {
+        missing[addressId] = version
+      }
+    }
+    val sourceRendition = if (rendition == Rendition.PREVIEW) Rendition.PREVIEW else Rendition.ORIGINAL
+    // Chunks limit the number of original images held in memory at once.
+    missing.keys.chunked(BULK_SIZE).forEach { addressIds ->
+      val futures = selectImages(sourceRendition, addressIds).mapNotNull { (addressId, source) ->
+        val version = missing[addressId] ?: return@mapNotNull null
+        Pair(addressId, CompletableFuture.supplyAsync({ store(addressId, version, rendition, source) }, executor))
+      }
+      val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS)
+      futures.forEach { (addressId, future) ->
+        try {
+          future.get(maxOf(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)?.let { result[addressId] = it }
+        } catch (ex: Exception) {
+          log.error("Can't get image of address #$addressId ($rendition): ${ex.message}", ex)
+        }
+      }
+    }
+    return result
+  }
+
+  /**
+   * Removes all cached images of the given address (memory and disk). Should be called after modification or
+   * deletion of an address image.
+   */
+  open fun evict(addressId: Long) {
+    val prefix = "${addressId}_"
+    synchronized(memoryCache) {
+      val it = memoryCache.entries.iterator()
+      while (it.hasNext()) {
+        val entry = it.next()
+        if (entry.key.startsWith(prefix)) {
+          memoryBytes -= entry.value.bytes.size
+          it.remove()
+        }
+      }
+    }
+    cacheDir.listFiles { _, name -> name.startsWith(prefix) }?.forEach { file ->
+      val length = file.length()
+      if (file.delete()) {
+        diskBytes.addAndGet(-length)
+      }
+    }
+  }
+
+  /**
+   * Number of loads in progress (for testing).
+   */
+  internal val inProgressCount: Int
+    get() = inProgress.size
+
+  /**
+   * Bytes used by the disk cache.
+   */
+  internal val diskSize: Long
+    get() = diskBytes.get()
+
+  /**
+   * Runs in worker threads: disk, then data base (and resizing).
+   */
+  private fun load(addressId: Long, version: Long, rendition: Rendition): CachedImage? {
+    val key = getKey(addressId, version, rendition)
+    readFromDisk(key, addressId, version, rendition)?.let { return it }
+    PfMetrics.counter("address.image.cache", "tier", "database").increment()
+    if (rendition == Rendition.ORIGINAL || rendition == Rendition.PREVIEW) {
+      val query = if (rendition == Rendition.ORIGINAL) AddressImageDO.SELECT_IMAGE else AddressImageDO.SELECT_IMAGE_PREVIEW
+      val bytes = persistenceService.selectNamedSingleResult(query, ByteArray::class.java, Pair("addressId", addressId))
+        ?: return null
+      return store(addressId, version, rendition, bytes)
+    }
+    // Resized from the original image (loaded in this worker thread, the pool mustn't wait for itself).
+    val original = getFromMemory(getKey(addressId, version, Rendition.ORIGINAL))
+      ?: load(addressId, version, Rendition.ORIGINAL)
+      ?: return null
+    return store(addressId, version, rendition, original.bytes, sourceCached = true)
+  }
+
+  /**
+   * Stores the rendition in the caches (disk and memory).
+   * @param source The original image, or the preview image for [Rendition.PREVIEW].
+   * @param sourceCached If false, the original image is also stored, if a resized rendition is requested.
+   * @return The stored rendition or null, if the source image couldn't be resized.
+   */
+  private fun store(
+    addressId: Long,
+    version: Long,
+    rendition: Rendition,
+    source: ByteArray,
+    sourceCached: Boolean = false,
+  ): CachedImage? {
+    val maxSize = rendition.maxSize ?: return putOnDiskAndInMemory(CachedImage(addressId, version, rendition, source))
+    if (!sourceCached) {
+      putOnDiskAndInMemory(CachedImage(addressId, version, Rendition.ORIGINAL, source))
+    }
+    val bytes = imageService.resizeImageToFit(source, maxSize, maxSize) ?: return null // Unreadable image.
+    return putOnDiskAndInMemory(CachedImage(addressId, version, rendition, bytes))
+  }
+
+  /**
+   * @return The images (source rendition) by address id.
+   */
+  private fun selectImages(sourceRendition: Rendition, addressIds: Collection<Long>): Map<Long, ByteArray> {
+    PfMetrics.counter("address.image.cache", "tier", "database").increment(addressIds.size.toDouble())
+    val query = if (sourceRendition == Rendition.ORIGINAL) AddressImageDO.SELECT_IMAGES else AddressImageDO.SELECT_IMAGE_PREVIEWS
+    val result = mutableMapOf<Long, ByteArray>()
+    persistenceService.executeNamedQuery(query, Tuple::class.java, Pair("addressIds", addressIds)).forEach { tuple ->
+      val bytes = tuple[1] as? ByteArray ?: return@forEach
+      result[tuple[0] as Long] = bytes
+    }
+    return result
+  }
+
+  private fun getFromMemory(key: String): CachedImage? {
+    return synchronized(memoryCache) {
+      memoryCache[key]
+    }?.also {
+      PfMetrics.counter("address.image.cache", "tier", "memory").increment()
+    }
+  }
+
+  private fun readFromDisk(key: String, addressId: Long, version: Long, rendition: Rendition): CachedImage? {
+    val file = getFile(key)
+    if (!file.canRead()) {
+      return null
+    }
+    val bytes = try {
+      file.readBytes()
+    } catch (ex: Exception) {
+      return null // Deleted in the meantime (disk cache cleanup).
+    }
+    PfMetrics.counter("address.image.cache", "tier", "disk").increment()
+    file.setLastModified(System.currentTimeMillis()) // Least recently used files are deleted first.
+    return putInMemory(key, CachedImage(addressId, version, rendition, bytes))
+  }
+
+  private fun putOnDiskAndInMemory(image: CachedImage): CachedImage {
+    val key = getKey(image.addressId, image.version, image.rendition)
+    writeFile(getFile(key), image.bytes)
+    return putInMemory(key, image)
+  }
+
+  private fun writeFile(file: File, bytes: ByteArray) {
+    try {
+      // Unique tmp file, the same rendition may be written by concurrent single and bulk loads.
+      val tmpFile = File.createTempFile(file.name, ".tmp", cacheDir)
+      tmpFile.writeBytes(bytes)
+      val oldLength = file.length() // 0, if not exists.
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+      if (diskBytes.addAndGet(bytes.size - oldLength) > maxDiskBytes) {
+        cleanupDisk()
+      }
+    } catch (ex: Exception) {
+      log.warn { "Can't write cached address image '${file.absolutePath}': ${ex.message}" }
+    }
+  }
+
+  /**
+   * Deletes the least recently used files until the disk cache is shrunk to 80% of its maximum size.
+   */
+  private fun cleanupDisk() {
+    synchronized(diskLock) {
+      if (diskBytes.get() <= maxDiskBytes) {
+        return // Done by another thread.
+      }
+      val files = listCachedFiles().sortedBy { it.lastModified() }
+      var size = files.sumOf { it.length() }
+      val maxSize = maxDiskBytes * 8 / 10
+      var counter = 0
+      for (file in files) {
+        if (size <= maxSize) {
+          break
+        }
+        val length = file.length()
+        if (file.delete()) {
+          size -= length
+          ++counter
+        }
+      }
+      diskBytes.set(size)
+      log.info { "Address image cache: $counter files deleted, disk size is now ${size / 1024}KB." }
+    }
+  }
+
+  private fun listCachedFiles(): List<File> {
+    return cacheDir.listFiles { _, name -> name.endsWith(".png") }?.toList() ?: emptyList()
+  }
+
+  private fun putInMemory(key: String, image: CachedImage): CachedImage {
+    if (image.bytes.size > maxMemoryBytes / 10) {
+      return image // Don't cache huge images in memory.
+    }
+    synchronized(memoryCache) {
+      memoryCache.put(key, image)?.let { memoryBytes -= it.bytes.size }
+      memoryBytes += image.bytes.size
+      val it = memoryCache.values.iterator()
+      while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+        memoryBytes -= it.next().bytes.size // Eldest entries first.
+        it.remove()
+      }
+    }
+    return image
+  }
+
+  private fun getKey(addressId: Long, version: Long, rendition: Rendition): String {
+    return "${addressId}_${version}_${rendition.name.lowercase()}"
+  }
+
+  private fun getFile(key: String): File {
+    return File(cacheDir, "$key.png")
+  }
+
+  companion object {
+    private const val CACHE_DIR = "cache/addressImages"
+
+    private const val WORKERS = 2
+
+    private const val TIMEOUT_SECONDS = 30L
+
+    private const val BULK_SIZE = 20
+  }
+}
@@ -38,6 +38,14 @@ import org.projectforge.framework.persistence.api.IdObject
         name = AddressImageDO.SELECT_IMAGE_PREVIEW,
         query = "select imagePreview from AddressImageDO where address.id = :addressId"
     ),
+    NamedQuery(
+        name = AddressImageDO.SELECT_IMAGES,
+        query = "select address.id, image from AddressImageDO where address.id in :addressIds"
+    ),
+    NamedQuery(
+        name = AddressImageDO.SELECT_IMAGE_PREVIEWS,
+        query = "select address.id, imagePreview from AddressImageDO where address.id in :addressIds"
+    ),
     NamedQuery(
         name = AddressImageDO.DELETE_ALL_IMAGES_BY_ADDRESS_ID,
         query = "delete from AddressImageDO where address.id = :addressId"
@@ -66,6 +74,8 @@ open class AddressImageDO : IdObject<Int> {
     companion object {
         internal const val SELECT_IMAGE = "AddressImageDO.selectImage"
         internal const val SELECT_IMAGE_PREVIEW = "AddressImageDO.selectImagePreview"
+        internal const val SELECT_IMAGES = "AddressImageDO.selectImages"
+        internal const val SELECT_IMAGE_PREVIEWS = "AddressImageDO.selectImagePreviews"
         internal const val DELETE_ALL_IMAGES_BY_ADDRESS_ID = "AddressImageDO.deleteAllImagesByAddressId"
     }
 }
@@ -45,28 +45,61 @@ open class AddressImageDao {
     @Autowired
     private lateinit var imageService: ImageService
 
+    @Autowired
+    private lateinit var addressImageCache: AddressImageCache
+
     /**
      * Does the access checking. The user may only get images, if he has the select access to the given address.
      */
     open fun getImage(addressId: Long): ByteArray? {
-        addressDao.find(addressId) ?: return null // For access checking!
-        return persistenceService.selectNamedSingleResult(
-            AddressImageDO.SELECT_IMAGE,
-            ByteArray::class.java,
-            Pair("addressId", addressId),
-        )
+        return getImage(addressId, AddressImageCache.Rendition.ORIGINAL)?.bytes
     }
 
     /**
      * Does the access checking. The user may only get images, if he has the select access to the given address.
      */
     open fun getPreviewImage(addressId: Long): ByteArray? {
-        addressDao.find(addressId) ?: return null // For access checking!
-        return persistenceService.selectNamedSingleResult(
-            AddressImageDO.SELECT_IMAGE_PREVIEW,
-            ByteArray::class.java,
-            Pair("addressId", addressId),
-        )
+        return getImage(addressId, AddressImageCache.Rendition.PREVIEW)?.bytes
+    }
+
+    /**
+     * Does the access checking. The user may only get images, if he has the select access to the given address.
+     * @return The (cached) image or null, if the address doesn't exist or has no image.
+     */
+    open fun getImage(addressId: Long, rendition: AddressImageCache.Rendition): AddressImageCache.CachedImage? {
+        val address = addressDao.find(addressId) ?: return null // For access checking!
+        return getImage(address, rendition)
+    }
+
+    /**
+     * Does the access checking (one query for all addresses). Addresses without images or without access are ignored.
+     * @return The (cached) images by address id.
+     */
+    open fun getImages(
+        addressIds: Collection<Long>,
+        rendition: AddressImageCache.Rendition
+    ): Map<Long, AddressImageCache.CachedImage> {
+        if (addressIds.isEmpty()) {
+            return emptyMap()
+        }
+        val versions = mutableMapOf<Long, Long>()
+        addressDao.select(addressIds, checkAccess = true)?.forEach { address ->
+            if (address.image != false) {
+                versions[address.id!!] = getImageVersion(address)
+            }
+        }
+        return addressImageCache.getImages(versions, rendition)
+    }
+
+    private fun getImage(address: AddressDO, rendition: AddressImageCache.Rendition): AddressImageCache.CachedImage? {
+        if (address.image == false) {
+            return null
+        }
+        return addressImageCache.getImage(address.id!!, getImageVersion(address), rendition)
+    }
+
+    private fun getImageVersion(address: AddressDO): Long {
+        return address.imageLastUpdate?.time ?: 0L
     }
 
     /**
@@ -78,10 +111,11 @@ open class AddressImageDao {
             log.error("Can't save or update immage of address. Address #$addressId not found.")
             return false
         }
-        addressDao.internalModifyImageData(address, true)
-        addressDao.update(address) // Throws an exception if the logged-in user has now access.
-
+        // The image and the new image version of the address (imageLastUpdate) are committed together, so the version
+        // never refers to an image not written yet. The cached images are evicted after the commit.
         persistenceService.runInTransaction { context ->
+            addressDao.internalModifyImageData(address, true)
+            addressDao.update(address) // Throws an exception if the logged-in user has now access.
             val addressImage = context.selectSingleResult(
                 "from ${AddressImageDO::class.java.name} t where t.address = :address",
                 AddressImageDO::class.java,
@@ -98,6 +132,7 @@ open class AddressImageDao {
                 // Insert
                 context.insert(addressImage)
             }
+            persistenceService.runAfterCommit { addressImageCache.evict(addressId) }
         }
         log.info("New image for address ${address.id} (${address.fullName}) saved.")
         return true
@@ -112,10 +147,10 @@ open class AddressImageDao {
             log.error("Can't save or update immage of address. Address #$addressId not found.")
             return false
         }
-        addressDao.internalModifyImageData(address, false)
-        addressDao.update(address) // Throws an exception if the logged-in user has now access.
         var success = false
         persistenceService.runInTransaction { context ->
+            addressDao.internalModifyImageData(address, false)
+            addressDao.update(address) // Throws an exception if the logged-in user has now access.
             // Should be only one image. But for safety reasons we delete all images.
             context.executeQuery(
                 "from ${AddressImageDO::class.java.name} t where t.address.id = :addressId",
@@ -127,6 +162,7 @@ open class AddressImageDao {
                 context.delete(image)
                 success = true
             }
+            persistenceService.runAfterCommit { addressImageCache.evict(addressId) }
         }
         return success
     }
@@ -27,8 +27,9 @@ import mu.KotlinLogging
 import org.projectforge.framework.cache.AbstractCache
 import org.projectforge.framework.persistence.api.QueryFilter
 import org.projectforge.framework.persistence.jpa.PfPersistenceService
-import org.projectforge.framework.time.DateHelper
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.framework.time.PFDateTime
+import java.time.Month
 import java.util.*
 
 private val log = KotlinLogging.logger {}
@@ -42,7 +43,10 @@ class BirthdayCache(private val addressDao: AddressDao, private val persistenceS
     _instance = this
   }
 
-  private var cacheList = mutableListOf<BirthdayAddress>()
+  /**
+   * Birthday addresses by day of year (index 0 is 1st of January, index 59 is 29th of February, see [getDayIndex]).
+   */
+  private var buckets = Array<List<BirthdayAddress>>(DAYS) { emptyList() }
 
   /**
    * Get the birthdays of address entries.
@@ -52,45 +56,40 @@ class BirthdayCache(private val addressDao: AddressDao, private val persistenceS
    * @param all      If false, only the birthdays of favorites will be returned.
    * @return The entries are ordered by date of year and name.
    */
-  fun getBirthdays(fromDate: Date, toDate: Date, all: Boolean, favorites: List<Long>)
+  fun getBirthdays(fromDate: Date, toDate: Date, all: Boolean, favorites: Set<Long>)
       : Set<BirthdayAddress> {
     checkRefresh()
-    // Uses not Collections.sort because every comparison needs Calendar.getDayOfYear().
     val set = TreeSet<BirthdayAddress>()
+    if (!all && favorites.isEmpty()) {
+      return set
+    }
     val from = PFDateTime.from(fromDate) // not null
     val to = PFDateTime.from(toDate) // not null
-    var dh: PFDateTime
-    val fromMonth = from.month
-    val fromDayOfMonth = from.dayOfMonth
-    val toMonth = to.month
-    val toDayOfMonth = to.dayOfMonth
-    for (birthdayAddress in cacheList) {
-      val address = birthdayAddress.address
-      if (!addressDao.hasLoggedInUserSelectAccess(address, false)) {
-        // User has no access to the given address.
-        continue
-      }
-      if (!all && !favorites.contains(address.id)) {
-        // Address is not a favorite address, so ignore it.
-        continue
+    val fromIndex = getDayIndex(from.month, from.dayOfMonth)
+    val toIndex = getDayIndex(to.month, to.dayOfMonth)
+    val buckets = this.buckets
+    // Access is given by the address books of an address, so check the address books only once:
+    val selectableAddressbookIds = addressDao.getSelectableAddressbookIds(ThreadLocalUserContext.requiredLoggedInUser)
+    var index = fromIndex
+    while (true) {
+      for (birthdayAddress in buckets[index]) {
+        val address = birthdayAddress.address
+        if (!all && !favorites.contains(address.id)) {
+          // Address is not a favorite address, so ignore it.
+          continue
+        }
+        if (!addressDao.hasSelectAccess(address, selectableAddressbookIds)) {
+          // User has no access to the given address.
+          continue
+        }
+        val ba = BirthdayAddress(address)
+        ba.isFavorite = favorites.contains(address.id)
+        set.add(ba)
       }
-      dh = PFDateTime.fromOrNull(address.birthday) ?: continue
-      val month = dh.month
-      val dayOfMonth = dh.dayOfMonth
-      if (!DateHelper.dateOfYearBetween(
-          month.value,
-          dayOfMonth,
-          fromMonth.value,
-          fromDayOfMonth,
-          toMonth.value,
-          toDayOfMonth
-        )
-      ) {
-        continue
+      if (index == toIndex) {
+        break
       }
-      val ba = BirthdayAddress(address)
-      ba.isFavorite = favorites.contains(address.id)
-      set.add(ba)
+      index = (index + 1) % DAYS // Period may be at the turn of the year (e. g. NOV - FEB).
     }
     return set
   }
@@ -102,18 +101,28 @@ class BirthdayCache(private val addressDao: AddressDao, private val persistenceS
       filter.add(QueryFilter.isNotNull("birthday"))
       filter.deleted = false
       val addressList = addressDao.select(filter, checkAccess = false)
-      val newList = mutableListOf<BirthdayAddress>()
+      val newBuckets = Array(DAYS) { mutableListOf<BirthdayAddress>() }
       addressList.forEach {
         if (it.deleted != true) { // deleted shouldn't occur, already filtered above.
-          newList.add(BirthdayAddress(it))
+          val birthdayAddress = BirthdayAddress(it)
+          newBuckets[getDayIndex(birthdayAddress.month, birthdayAddress.dayOfMonth)].add(birthdayAddress)
         }
       }
-      cacheList = newList
+      buckets = Array(DAYS) { newBuckets[it].toList() }
     }
     log.info("Refreshing BirthdayCache done.")
   }
 
   companion object {
+    private const val DAYS = 366
+
+    /**
+     * Day of year (0-based) in a leap year, so the 29th of February has its own index.
+     */
+    internal fun getDayIndex(month: Month, dayOfMonth: Int): Int {
+      return month.firstDayOfYear(true) + dayOfMonth - 2
+    }
+
     private var _instance: BirthdayCache? = null
 
     @JvmStatic
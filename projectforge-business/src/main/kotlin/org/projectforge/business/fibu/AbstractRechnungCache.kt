@@ -25,7 +25,11 @@ package org.projectforge.business.fibu
 
 import mu.KotlinLogging
 import org.projectforge.common.logging.LogDuration
-import org.projectforge.framework.cache.AbstractCache
+import org.projectforge.framework.cache.AbstractCache.TICKS_PER_HOUR
+import org.projectforge.framework.cache.AbstractCache.TICKS_PER_MINUTE
+import org.projectforge.framework.cache.AbstractDeltaRefreshCache
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.reflect.KClass
 
 private val log = KotlinLogging.logger {}
@@ -33,22 +37,25 @@ private val log = KotlinLogging.logger {}
 /**
  * Caches the order positions assigned to invoice positions.
  *
+ * Only invoices modified since the last refresh are reloaded (delta refresh), all invoices are reloaded periodically.
+ * The maps are concurrent maps, so readers don't need any synchronization.
+ *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
 abstract class AbstractRechnungCache(
     val entityClass: KClass<out AbstractRechnungDO>,
     protected val rechnungJdbcService: RechnungJdbcService,
-) : AbstractCache() {
+) : AbstractDeltaRefreshCache(DELTA_REFRESH_INTERVAL, FULL_REFRESH_INTERVAL) {
     private val entityName = entityClass.simpleName
 
-    protected var invoiceInfoMap = mutableMapOf<Long, RechnungInfo>()
+    @Volatile
+    protected var invoiceInfoMap: MutableMap<Long, RechnungInfo> = ConcurrentHashMap()
 
-    protected var invoicePosInfoMap = mutableMapOf<Long, RechnungPosInfo>()
+    @Volatile
+    protected var invoicePosInfoMap: MutableMap<Long, RechnungPosInfo> = ConcurrentHashMap()
 
     open fun update(invoice: AbstractRechnungDO) {
-        synchronized(invoiceInfoMap) {
-            invoiceInfoMap[invoice.id!!] = RechnungCalculator.calculate(invoice)
-        }
+        putRechnungInfo(RechnungCalculator.calculate(invoice))
     }
 
     /**
@@ -63,9 +70,7 @@ abstract class AbstractRechnungCache(
             return info
         }
         return RechnungCalculator.calculate(rechnung).also {
-            synchronized(invoiceInfoMap) {
-                invoiceInfoMap[rechnung.id!!] = it
-            }
+            invoiceInfoMap[rechnung.id!!] = it
             // rechnung.info = it // Set by RechnungsCalculator.
         }
     }
@@ -73,17 +78,13 @@ abstract class AbstractRechnungCache(
     fun getRechnungInfo(rechnungId: Long?): RechnungInfo? {
         rechnungId ?: return null
         checkRefresh()
-        synchronized(invoiceInfoMap) {
-            return invoiceInfoMap[rechnungId]
-        }
+        return invoiceInfoMap[rechnungId]
     }
 
     open fun getRechnungInfo(rechnung: AbstractRechnungDO?): RechnungInfo? {
         val rechnungId = rechnung?.id ?: return null
         checkRefresh()
-        synchronized(invoiceInfoMap) {
-            return invoiceInfoMap[rechnungId]
-        }
+        return invoiceInfoMap[rechnungId]
     }
 
     /**
@@ -100,11 +101,9 @@ abstract class AbstractRechnungCache(
         val info = getRechnungInfo(pos.rechnungId)
         posInfo = RechnungPosInfo(info, pos)
         return RechnungCalculator.calculate(posInfo, pos).also {
-            synchronized(invoiceInfoMap) {
-                pos.id?.let { posId ->
-                    // pos.id is null for cloned invoices.
-                    invoicePosInfoMap[posId] = it
-                }
+            pos.id?.let { posId ->
+                // pos.id is null for cloned invoices.
+                invoicePosInfoMap[posId] = it
             }
             // rechnung.info = it // Set by RechnungsCalculator.
         }
@@ -113,35 +112,63 @@ abstract class AbstractRechnungCache(
     fun getRechnungPosInfo(rechnungPosId: Long?): RechnungPosInfo? {
         rechnungPosId ?: return null
         checkRefresh()
-        synchronized(invoicePosInfoMap) {
-            return invoicePosInfoMap[rechnungPosId]
+        return invoicePosInfoMap[rechnungPosId]
+    }
+
+    /**
+     * Stores the given info and its positions. Positions of the previous info of this invoice are removed.
+     */
+    protected fun putRechnungInfo(
+        rechnungInfo: RechnungInfo,
+        infoMap: MutableMap<Long, RechnungInfo> = invoiceInfoMap,
+        posInfoMap: MutableMap<Long, RechnungPosInfo> = invoicePosInfoMap,
+    ) {
+        infoMap.put(rechnungInfo.id, rechnungInfo)?.positions?.forEach { oldPos ->
+            oldPos.id?.let { posInfoMap.remove(it) }
+        }
+        rechnungInfo.positions?.forEach { pos ->
+            val posId = pos.id
+            if (posId != null) {
+                posInfoMap[posId] = pos
+            } else {
+                log.error { "Position without id found in invoice: ${rechnungInfo.id}." }
+            }
         }
     }
 
     /**
      * This method will be called by CacheHelper and is synchronized via getData();
      */
-    override fun refresh() {
+    override fun refreshFull() {
         log.info("Initializing cache (${entityName})...")
         val duration = LogDuration()
         // This method must not be synchronized because it works with new copies of maps.
         log.info("Getting all invoices ($entityName)...")
-        val nInvoiceInfoMap = mutableMapOf<Long, RechnungInfo>()
-        val nInvoicePosInfoMap = mutableMapOf<Long, RechnungPosInfo>()
+        val nInvoiceInfoMap = ConcurrentHashMap<Long, RechnungInfo>()
+        val nInvoicePosInfoMap = ConcurrentHashMap<Long, RechnungPosInfo>()
         rechnungJdbcService.selectRechnungInfos(entityClass).forEach { rechnungInfo ->
-            nInvoiceInfoMap[rechnungInfo.id] = rechnungInfo.also { info ->
-                info.positions?.forEach { pos ->
-                    val posId = pos.id
-                    if (posId != null) {
-                        nInvoicePosInfoMap[posId] = pos
-                    } else {
-                        log.error { "Position without id found in invoice: ${info.id}." }
-                    }
-                }
-            }
+            putRechnungInfo(rechnungInfo, nInvoiceInfoMap, nInvoicePosInfoMap)
         }
         this.invoiceInfoMap = nInvoiceInfoMap
         this.invoicePosInfoMap = nInvoicePosInfoMap
         log.info { "Initializing cache (${entityName}) done: ${duration.toSeconds()}." }
     }
+
+    /**
+     * Recalculates only the invoices modified since the last refresh.
+     */
+    override fun refreshDelta(modifiedSince: Date) {
+        val duration = LogDuration()
+        val modified = rechnungJdbcService.selectRechnungInfos(entityClass, modifiedSince)
+        modified.forEach { putRechnungInfo(it) }
+        if (modified.isNotEmpty()) {
+            log.info { "Delta refresh of cache (${entityName}) done: ${modified.size} modified invoices, ${duration.toSeconds()}." }
+        }
+    }
+
+    companion object {
+        const val DELTA_REFRESH_INTERVAL = 5 * TICKS_PER_MINUTE
+
+        const val FULL_REFRESH_INTERVAL = 4 * TICKS_PER_HOUR
+    }
 }
@@ -32,11 +32,14 @@ import org.projectforge.framework.persistence.jpa.PfPersistenceService
 import org.projectforge.framework.persistence.user.entities.PFUserDO
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Component
+import java.math.BigDecimal
+import java.time.LocalDate
 
 private val log = KotlinLogging.logger {}
 
 /**
- * Caches employees with actual status and annual leave days for faster access.
+ * Caches employees with actual status and annual leave days for faster access. Employees are indexed by user id and
+ * staff number and the effective-dated status and annual leave days are available for any date.
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -54,14 +57,14 @@ open class EmployeeCache : AbstractCache() {
     }
 
     /**
-     * The key is the employee id (database pk). Mustn't be synchronized, because it is only read.
+     * Mustn't be synchronized, because it is only read and replaced as a whole on refresh.
      */
-    private var employeeMap: Map<Long, EmployeeDO> = emptyMap()
+    private var data = EmployeeCacheData(emptyList(), emptyList())
 
     fun getEmployee(id: Long?): EmployeeDO? {
         id ?: return null
         checkRefresh()
-        return employeeMap[id]?.also { it.user = userGroupCache.getUserIfNotInitialized(it.user) }
+        return data.employeeMap[id]?.also { it.user = userGroupCache.getUserIfNotInitialized(it.user) }
     }
 
     /**
@@ -80,13 +83,13 @@ open class EmployeeCache : AbstractCache() {
     fun getEmployeeByUserId(userId: Long?): EmployeeDO? {
         userId ?: return null
         checkRefresh()
-        return employeeMap.values.firstOrNull { it.user?.id == userId }
+        return data.employeeByUserIdMap[userId]
     }
 
     fun getEmployeeIdByUserId(userId: Long?): Long? {
         userId ?: return null
         checkRefresh()
-        return employeeMap.values.firstOrNull { it.user?.id == userId }?.id
+        return data.employeeByUserIdMap[userId]?.id
     }
 
     fun getUser(employee: EmployeeDO?): PFUserDO? {
@@ -104,7 +107,7 @@ open class EmployeeCache : AbstractCache() {
     fun setStatusAndAnnualLeave(employee: EmployeeDO?) {
         employee ?: return
         checkRefresh()
-        val cached = employeeMap[employee.id] ?: return
+        val cached = data.employeeMap[employee.id] ?: return
         employee.status = cached.status
         employee.annualLeave = cached.annualLeave
     }
@@ -116,69 +119,71 @@ open class EmployeeCache : AbstractCache() {
     fun findByStaffNumber(staffNumber: String?): EmployeeDO? {
         staffNumber ?: return null
         checkRefresh()
-        return employeeMap.values.firstOrNull { it.staffNumber == staffNumber }
+        return data.employeeByStaffNumberMap[staffNumber]
+    }
+
+    /**
+     * @param employeeId The id of the employee.
+     * @param date The date the status should be valid at (default is today).
+     * @return The status of the employee valid at the given date.
+     */
+    fun getEmployeeStatus(employeeId: Long?, date: LocalDate = LocalDate.now()): EmployeeStatus? {
+        employeeId ?: return null
+        checkRefresh()
+        return data.getStatus(employeeId, date)
+    }
+
+    /**
+     * @param employeeId The id of the employee.
+     * @param date The date the annual leave days should be valid at (default is today).
+     * @return The annual leave days of the employee valid at the given date.
+     */
+    fun getAnnualLeaveDays(employeeId: Long?, date: LocalDate = LocalDate.now()): BigDecimal? {
+        employeeId ?: return null
+        checkRefresh()
+        return data.getAnnualLeave(employeeId, date)
     }
 
     fun setStatusAndAnnualLeave(employees: Collection<EmployeeDO>) {
         employees.forEach { setStatusAndAnnualLeave(it) }
     }
 
+    /**
+     * Expires the cache after the commit of the current transaction (or immediately, if no transaction is active).
+     * The refresh reads in its own isolated context, so expiring the cache before the commit would reload (and keep)
+     * the state before the modification.
+     */
+    fun setExpiredAfterCommit() {
+        persistenceService.runAfterCommit { setExpired() }
+    }
+
     /**
      * This method will be called by CacheHelper and is synchronized via getData();
      */
     public override fun refresh() {
         persistenceService.runIsolatedReadOnly(recordCallStats = true) { context ->
             // This method must not be synchronized because it works with a new copy of maps.
-            val map = mutableMapOf<Long, EmployeeDO>()
-            persistenceService.executeQuery(
+            val employees = persistenceService.executeQuery(
                 "from EmployeeDO t where deleted=false",
                 EmployeeDO::class.java,
-            ).forEach { employee ->
-                map[employee.id!!] = employee
-            }
-            getLatestValidSinceEntries(EmployeeValidSinceAttrType.STATUS)
-                .forEach { validSinceEntry ->
-                    log.debug { "EmployeeCache.refresh: Processing $validSinceEntry" }
-                    validSinceEntry.employee?.id?.let { employeeId ->
-                        map[employeeId]?.let { employee ->
-                            employee.status = validSinceEntry.status
-                            log.debug { "EmployeeCache.refresh: Set status=${validSinceEntry.status} for employeeId=$employeeId, userId=${employee.user?.id}" }
-                        }
-                    }
-                }
-            getLatestValidSinceEntries(EmployeeValidSinceAttrType.ANNUAL_LEAVE)
-                .forEach { validSinceEntry ->
-                    log.debug { "EmployeeCache.refresh: Processing $validSinceEntry" }
-                    validSinceEntry.employee?.id?.let { employeeId ->
-                        map[employeeId]?.let { employee ->
-                            employee.annualLeave = validSinceEntry.annualLeave
-                            log.debug { "EmployeeCache.refresh: Set annualLeave=${validSinceEntry.annualLeave} for employeeId=$employeeId, userId=${employee.user?.id}" }
-                        }
-                    }
-                }
-            this.employeeMap = map
+            )
+            val validSinceAttrs = persistenceService.executeQuery(
+                queryAllValidSinceValues,
+                EmployeeValidSinceAttrDO::class.java,
+            )
+            this.data = EmployeeCacheData(employees, validSinceAttrs)
             log.info { "EmployeeCache.refresh done. ${context.formatStats()}" }
         }
     }
 
-    private fun getLatestValidSinceEntries(type: EmployeeValidSinceAttrType): Collection<EmployeeValidSinceAttrDO> {
-        return persistenceService.executeQuery(
-            queryAllValidSinceValues,
-            EmployeeValidSinceAttrDO::class.java,
-            Pair("type", type),
-        ).groupBy { it.employee?.id } // Group by employee id
-            .mapValues { entry -> entry.value.first() } // Get the first record (latest) in each group
-            .values // Extract the results as a collection of latest records
-    }
-
     companion object {
         @JvmStatic
         lateinit var instance: EmployeeCache
             private set
 
-        // select * from t_fibu_employee_valid_since_attr t where type='STATUS' AND t.deleted=false order by t.employee_fk, t.valid_since desc;
+        // select * from t_fibu_employee_valid_since_attr t where t.deleted=false;
         const val queryAllValidSinceValues =
-            "SELECT t FROM EmployeeValidSinceAttrDO t WHERE t.type=:type AND t.deleted=false ORDER BY t.employee.id, t.validSince DESC"
+            "SELECT t FROM EmployeeValidSinceAttrDO t WHERE t.deleted=false"
 
         // Following query didn't work properly with PostgreSQL (some entries were missing):
         // Gets the validSince attribute for all employees and takes the last (max) entry.
@@ -0,0 +1,138 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.business.fibu
+
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.time.Month
+import java.util.*
+
+/**
+ * Immutable snapshot of the employees used by [EmployeeCache]: all employees by id, user id and staff number and
+ * the effective-dated timelines of status and annual leave days of each employee. The snapshot is built on refresh
+ * and replaced as a whole, so it mustn't be synchronized.
+ */
+internal class EmployeeCacheData(
+    employees: Collection<EmployeeDO>,
+    validSinceAttrs: Collection<EmployeeValidSinceAttrDO>,
+) {
+    /**
+     * The key is the employee id (database pk).
+     */
+    val employeeMap: Map<Long, EmployeeDO>
+
+    /**
+     * The key is the user id of the employee.
+     */
+    val employeeByUserIdMap: Map<Long, EmployeeDO>
+
+    val employeeByStaffNumberMap: Map<String, EmployeeDO>
+
+    /**
+     * The key is the employee id.
+     */
+    private val statusTimelines: Map<Long, Timeline<EmployeeStatus>>
+
+    /**
+     * The key is the employee id.
+     */
+    private val annualLeaveTimelines: Map<Long, Timeline<BigDecimal>>
+
+    init {
+        val map = mutableMapOf<Long, EmployeeDO>()
+        val byUserId = mutableMapOf<Long, EmployeeDO>()
+        val byStaffNumber = mutableMapOf<String, EmployeeDO>()
+        employees.forEach { employee ->
+            map[employee.id!!] = employee
+            // First one wins for duplicate users or staff numbers (as the former linear scans did):
+            employee.user?.id?.let { byUserId.putIfAbsent(it, employee) }
+            employee.staffNumber?.let { byStaffNumber.putIfAbsent(it, employee) }
+        }
+        val attrsByType = validSinceAttrs.filter { !it.deleted && it.employee?.id != null }.groupBy { it.type }
+        statusTimelines = buildTimelines(attrsByType[EmployeeValidSinceAttrType.STATUS]) { it.status }
+        annualLeaveTimelines = buildTimelines(attrsByType[EmployeeValidSinceAttrType.ANNUAL_LEAVE]) { it.annualLeave }
+        map.values.forEach { employee ->
+            // Latest entries, independent of their validSince date:
+            employee.status = statusTimelines[employee.id]?.latest
+            employee.annualLeave = annualLeaveTimelines[employee.id]?.latest
+        }
+        employeeMap = map
+        employeeByUserIdMap = byUserId
+        employeeByStaffNumberMap = byStaffNumber
+    }
+
+    /**
+     * @return The status of the employee valid at the given date or null, if no status is given.
+     */
+    fun getStatus(employeeId: Long?, date: LocalDate): EmployeeStatus? {
+        return statusTimelines[employeeId]?.getValue(date)
+    }
+
+    /**
+     * @return The annual leave days of the employee valid at the given date or null, if not given.
+     */
+    fun getAnnualLeave(employeeId: Long?, date: LocalDate): BigDecimal? {
+        return annualLeaveTimelines[employeeId]?.getValue(date)
+    }
+
+    private fun <T> buildTimelines(
+        attrs: List<EmployeeValidSinceAttrDO>?,
+        getValue: (EmployeeValidSinceAttrDO) -> T?,
+    ): Map<Long, Timeline<T>> {
+        attrs ?: return emptyMap()
+        return attrs.groupBy { it.employee!!.id!! }.mapValues { Timeline(it.value, getValue) }
+    }
+
+    /**
+     * Values ordered by their validSince date. An entry without validSince date is valid since 1970-01-01 (as
+     * [EmployeeServiceSupport.getActiveEntry] handles it).
+     */
+    private class Timeline<T>(attrs: List<EmployeeValidSinceAttrDO>, getValue: (EmployeeValidSinceAttrDO) -> T?) {
+        private val validSinceDays: LongArray
+        private val values: List<T?>
+
+        init {
+            val sorted = attrs.sortedBy { ensure(it.validSince) }
+            validSinceDays = LongArray(sorted.size) { ensure(sorted[it].validSince).toEpochDay() }
+            values = sorted.map { getValue(it) }
+        }
+
+        val latest: T?
+            get() = values.lastOrNull()
+
+        /**
+         * Binary search for the last entry with validSince <= date.
+         */
+        fun getValue(date: LocalDate): T? {
+            var index = Arrays.binarySearch(validSinceDays, date.toEpochDay())
+            if (index < 0) {
+                index = -index - 2 // Entry before the insertion point.
+            }
+            return if (index >= 0) values[index] else null
+        }
+
+        private fun ensure(validSince: LocalDate?): LocalDate {
+            return validSince ?: LocalDate.of(1970, Month.JANUARY, 1)
+        }
+    }
+}
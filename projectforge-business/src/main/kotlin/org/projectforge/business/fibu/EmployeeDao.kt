@@ -177,7 +177,7 @@ open class EmployeeDao : BaseDao<EmployeeDO>(EmployeeDO::class.java) {
     }
 
     override fun afterInsertOrModify(obj: EmployeeDO, operationType: OperationType) {
-        employeeCache.setExpired()
+        employeeCache.setExpiredAfterCommit()
     }
 
     override fun newInstance(): EmployeeDO {
@@ -23,7 +23,6 @@
 
 package org.projectforge.business.fibu
 
-import mu.KotlinLogging
 import org.projectforge.framework.persistence.api.BaseDOPersistenceService
 import org.projectforge.framework.persistence.api.EntityCopyStatus
 import org.projectforge.framework.persistence.jpa.PfPersistenceService
@@ -34,8 +33,6 @@ import java.time.LocalDate
 import java.time.Month
 import java.util.*
 
-private val log = KotlinLogging.logger {}
-
 /**
  * Standard implementation of the Employee service interface.
  *
@@ -121,32 +118,22 @@ internal class EmployeeServiceSupport {
         employee: EmployeeDO,
         checkAccess: Boolean = true
     ): EmployeeStatus? {
-        val list = selectAllValidSinceAttrs(
-            employee,
-            EmployeeValidSinceAttrType.STATUS,
-            deleted = false,
-            checkAccess = checkAccess
-        )
-        val validEntry = getActiveEntry(list)
-        val status = validEntry?.value
-        if (status != null) {
-            try {
-                return EmployeeStatus.safeValueOf(status)
-            } catch (e: IllegalArgumentException) {
-                log.error { "Oups, unknown status value in validSinceAttr: $validEntry" }
-            }
+        requireNotNull(employee.id) { "Employee id must not be null." }
+        if (checkAccess) {
+            employeeDao.checkLoggedInUserSelectAccess(employee)
         }
-        return null
+        return employeeCache.getEmployeeStatus(employee.id)
     }
 
     fun getAnnualLeaveDays(employee: EmployeeDO?, validAtDate: LocalDate?, checkAccess: Boolean = true): BigDecimal? {
         if (employee == null || validAtDate == null) { // Should only occur in CallAllPagesTest (Wicket).
             return null
         }
-        return getActiveEntry(
-            selectAnnualLeaveDayEntries(employee, deleted = false, checkAccess = checkAccess),
-            validAtDate
-        )?.value?.toBigDecimal()
+        requireNotNull(employee.id) { "Employee id must not be null." }
+        if (checkAccess) {
+            employeeDao.checkLoggedInUserSelectAccess(employee)
+        }
+        return employeeCache.getAnnualLeaveDays(employee.id, validAtDate)
     }
 
     private fun ensure(validAtDate: LocalDate?): LocalDate {
@@ -276,7 +263,7 @@ internal class EmployeeServiceSupport {
             return other.id
         }
         val result = baseDOPersistenceService.insert(attrDO, checkAccess = checkAccess)
-        employeeCache.setExpired()
+        employeeCache.setExpiredAfterCommit()
         return result
     }
 
@@ -332,7 +319,7 @@ internal class EmployeeServiceSupport {
             }
             return baseDOPersistenceService.update(attrDO, checkAccess = checkAccess)
         } finally {
-            employeeCache.setExpired()
+            employeeCache.setExpiredAfterCommit()
         }
     }
 
@@ -344,7 +331,7 @@ internal class EmployeeServiceSupport {
         val employee = employeeDao.find(employeeId)!!
         val attrDO = findValidSinceAttr(attrId, checkAccess = checkAccess)!!
         markValidSinceAttrAsDeleted(employee, attrDO, checkAccess)
-        employeeCache.setExpired()
+        employeeCache.setExpiredAfterCommit()
     }
 
     fun markValidSinceAttrAsDeleted(
@@ -358,7 +345,7 @@ internal class EmployeeServiceSupport {
         }
         validate(attrDO)
         baseDOPersistenceService.markAsDeleted(obj = attrDO, checkAccess = checkAccess)
-        employeeCache.setExpired()
+        employeeCache.setExpiredAfterCommit()
     }
 
     fun undeleteValidSinceAttr(
@@ -371,6 +358,6 @@ internal class EmployeeServiceSupport {
         }
         validate(attrDO)
         baseDOPersistenceService.undelete(obj = attrDO, checkAccess = checkAccess)
-        employeeCache.setExpired()
+        employeeCache.setExpiredAfterCommit()
     }
 }
@@ -79,17 +79,7 @@ class RechnungCache(rechnungJdbcService: RechnungJdbcService) :
     }
 
     fun update(invoice: RechnungDO) {
-        val rechnungInfo = synchronized(invoiceInfoMap) {
-            RechnungCalculator.calculate(invoice, useCaches = false).also {
-                invoiceInfoMap[invoice.id!!] = it
-            }
-        }
-        synchronized(invoiceInfoMap) {
-            rechnungInfo.positions?.forEach { posInfo ->
-                invoicePosInfoMap[invoice.id!!] = posInfo
-            }
-        }
-
+        putRechnungInfo(RechnungCalculator.calculate(invoice, useCaches = false))
     }
 
     fun update(invoice: EingangsrechnungDO) {
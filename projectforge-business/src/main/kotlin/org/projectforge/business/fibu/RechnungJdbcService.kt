@@ -38,6 +38,8 @@ import org.springframework.jdbc.core.RowMapper
 import org.springframework.stereotype.Service
 import java.sql.ResultSet
 import java.sql.SQLException
+import java.sql.Timestamp
+import java.util.*
 import kotlin.reflect.KClass
 import kotlin.reflect.full.createInstance
 
@@ -51,11 +53,14 @@ class RechnungJdbcService {
     @Autowired
     private lateinit var jdbcTemplate: JdbcTemplate
 
-    fun selectRechnungInfos(entityClass: KClass<out AbstractRechnungDO>): List<RechnungInfo> {
+    /**
+     * @param modifiedSince If given, only invoices with lastUpdate >= modifiedSince are selected (used for delta refresh).
+     */
+    fun selectRechnungInfos(entityClass: KClass<out AbstractRechnungDO>, modifiedSince: Date? = null): List<RechnungInfo> {
         val rechnungen = mutableMapOf<Long, AbstractRechnungDO>()
         val sql =
             if (entityClass == RechnungDO::class) SELECT_RECHNUNG_WITH_KOST else SELECT_EINGANGS_RECHNUNG_WITH_KOST
-        jdbcTemplate.query(sql, ResultSetExtractor { rs ->
+        val extractor = ResultSetExtractor<Unit> { rs ->
             while (rs.next()) {
                 val rechnungId = rs.getLong("rechnung_id")
                 val rechnung = rechnungen.computeIfAbsent(rechnungId) {
@@ -120,7 +125,12 @@ class RechnungJdbcService {
                 pos.kostZuweisungen = pos.kostZuweisungen ?: mutableListOf()
                 pos.kostZuweisungen!!.add(kost)
             }
-        })
+        }
+        if (modifiedSince == null) {
+            jdbcTemplate.query(sql, extractor)
+        } else {
+            jdbcTemplate.query("$sql\nWHERE r.last_update >= ?", extractor, Timestamp(modifiedSince.time))
+        }
         return rechnungen.map { RechnungCalculator.calculate(it.value, useCaches = false) }
     }
 
@@ -218,6 +218,14 @@ open class SipgateContactSyncDO {
       return syncObject
     }
 
+    /**
+     * @return The sync info of the given contact as json (as stored in [syncInfoAsJson]). Used for detecting remote
+     * modifications since the last sync.
+     */
+    fun createSyncInfoAsJson(contact: SipgateContact): String {
+      return JsonUtils.toJson(SyncInfo.create(contact))
+    }
+
     fun getName(address: AddressDO): String {
       val sb = StringBuilder()
       /*address.title?.let {
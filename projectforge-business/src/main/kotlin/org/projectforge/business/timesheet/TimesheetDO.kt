@@ -70,7 +70,15 @@ import org.hibernate.search.mapper.pojo.mapping.definition.annotation.*
   NamedQuery(
     name = TimesheetDO.SELECT_REFERENCES_BY_TASK_ID,
     query = "select distinct reference from TimesheetDO where deleted=false and task.id in :taskIds and reference is not NULL"
-  )
+  ),
+  NamedQuery(
+    name = TimesheetDO.SELECT_INTERVALS_OF_USER_SINCE,
+    query = "select id, startTime, stopTime from TimesheetDO where user.id=:userId and deleted=false and startTime>=:since"
+  ),
+  NamedQuery(
+    name = TimesheetDO.SELECT_OVERLAPPING_INTERVAL,
+    query = "select id, startTime, stopTime from TimesheetDO where user.id=:userId and deleted=false and startTime<:stopTime and stopTime>:startTime and id<>:excludeId"
+  ),
 )
 open class TimesheetDO : DefaultBaseDO(), Comparable<TimesheetDO> {
 
@@ -277,5 +285,7 @@ open class TimesheetDO : DefaultBaseDO(), Comparable<TimesheetDO> {
     internal const val SELECT_RECENT_USED_LOCATIONS_BY_USER_AND_LAST_UPDATE =
       "TimesheetDO_SelectRecentUsedLocationsByUserAndLastUpdate"
     internal const val SELECT_REFERENCES_BY_TASK_ID = "TimesheetDO_SelectReferencesByTaskId"
+    internal const val SELECT_INTERVALS_OF_USER_SINCE = "TimesheetDO_SelectIntervalsOfUserSince"
+    internal const val SELECT_OVERLAPPING_INTERVAL = "TimesheetDO_SelectOverlappingInterval"
   }
 }
@@ -38,6 +38,7 @@ import org.projectforge.business.user.ProjectForgeGroup
 import org.projectforge.business.user.UserDao
 import org.projectforge.common.i18n.MessageParam
 import org.projectforge.common.i18n.UserException
+import org.projectforge.common.metrics.PfMetrics
 import org.projectforge.common.task.TaskStatus
 import org.projectforge.common.task.TimesheetBookingStatus
 import org.projectforge.framework.access.AccessException
@@ -51,11 +52,8 @@ import org.projectforge.framework.persistence.api.QueryFilter
 import org.projectforge.framework.persistence.api.QueryFilter.Companion.and
 import org.projectforge.framework.persistence.api.QueryFilter.Companion.eq
 import org.projectforge.framework.persistence.api.QueryFilter.Companion.ge
-import org.projectforge.framework.persistence.api.QueryFilter.Companion.gt
 import org.projectforge.framework.persistence.api.QueryFilter.Companion.isIn
 import org.projectforge.framework.persistence.api.QueryFilter.Companion.le
-import org.projectforge.framework.persistence.api.QueryFilter.Companion.lt
-import org.projectforge.framework.persistence.api.QueryFilter.Companion.ne
 import org.projectforge.framework.persistence.api.SortProperty.Companion.asc
 import org.projectforge.framework.persistence.api.SortProperty.Companion.desc
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
@@ -85,6 +83,9 @@ open class TimesheetDao : BaseDao<TimesheetDO>(TimesheetDO::class.java) {
     @Autowired
     private lateinit var taskTree: TaskTree
 
+    @Autowired
+    private lateinit var timesheetIntervalIndex: TimesheetIntervalIndex
+
     /**
      * Return list of configured tags including any already given tag in time sheet.
      */
@@ -269,6 +270,7 @@ open class TimesheetDao : BaseDao<TimesheetDO>(TimesheetDO::class.java) {
      */
     override fun afterInsertOrModify(obj: TimesheetDO, operationType: OperationType) {
         taskTree.resetTotalDuration(obj.taskId!!)
+        timesheetIntervalIndex.update(obj, operationType)
     }
 
     /**
@@ -356,40 +358,59 @@ open class TimesheetDao : BaseDao<TimesheetDO>(TimesheetDO::class.java) {
      * Checks if the time sheet overlaps with another time sheet of the same user. Should be checked on every insert or
      * update (also undelete). For time collision detection deleted time sheets are ignored.
      *
+     * Recent time periods are checked by [TimesheetIntervalIndex] (found overlaps are verified by the database, so
+     * stale index entries don't block any user), older ones by a single row query.
+     *
      * @return The existing time sheet with the time period collision.
      */
     open fun hasTimeOverlap(timesheet: TimesheetDO, throwException: Boolean): Boolean {
-        val begin = System.currentTimeMillis()
-        requireNotNull(timesheet.user)
-        val queryFilter = QueryFilter()
-        queryFilter.add(eq("user", timesheet.user!!))
-        queryFilter.add(eq("deleted", false))
-        timesheet.stopTime?.let { queryFilter.add(lt("startTime", it)) }
-        timesheet.startTime?.let { queryFilter.add(gt("stopTime", it)) }
-        if (timesheet.id != null) {
-            // Update time sheet, do not compare with itself.
-            queryFilter.add(ne("id", timesheet.id!!))
-        }
-        val list = select(queryFilter)
-        if (list.isNotEmpty()) {
-            val ts = list[0]
-            if (throwException) {
-                log.info("Time sheet collision detected of time sheet $timesheet with existing time sheet $ts")
-                val startTime = DateHelper.formatIsoTimestamp(ts.startTime)
-                val stopTime = DateHelper.formatIsoTimestamp(ts.stopTime)
-                throw UserException(
-                    "timesheet.error.timeperiodOverlapDetection", MessageParam(
-                        ts.id
-                    ), MessageParam(startTime), MessageParam(stopTime)
-                )
+        val userId = requireNotNull(timesheet.user).id!!
+        val startTime = timesheet.startTime
+        val stopTime = timesheet.stopTime
+        if (startTime == null || stopTime == null) {
+            return false // Time sheet will be rejected by onInsertOrModify.
+        }
+        val overlap = if (timesheetIntervalIndex.covers(startTime)) {
+            PfMetrics.counter("timesheet.overlapCheck", "source", "index").increment()
+            timesheetIntervalIndex.findOverlap(userId, startTime, stopTime, timesheet.id)?.let {
+                selectOverlap(userId, startTime, stopTime, timesheet.id)
             }
-            val end = System.currentTimeMillis()
-            log.info("TimesheetDao.hasTimeOverlap took: " + (end - begin) + " ms.")
-            return true
+        } else {
+            PfMetrics.counter("timesheet.overlapCheck", "source", "database").increment()
+            selectOverlap(userId, startTime, stopTime, timesheet.id)
+        } ?: return false
+        if (throwException) {
+            log.info("Time sheet collision detected of time sheet $timesheet with existing time sheet #${overlap.id}")
+            throw UserException(
+                "timesheet.error.timeperiodOverlapDetection",
+                MessageParam(overlap.id),
+                MessageParam(DateHelper.formatIsoTimestamp(Date(overlap.startTime))),
+                MessageParam(DateHelper.formatIsoTimestamp(Date(overlap.stopTime))),
+            )
+        }
+        return true
+    }
+
+    /**
+     * Selects only id, start and stop time of the first overlapping time sheet (no entity loading, no access checks).
+     */
+    private fun selectOverlap(
+        userId: Long,
+        startTime: Date,
+        stopTime: Date,
+        excludeId: Long?
+    ): TimesheetIntervalIndex.Interval? {
+        return persistenceService.executeNamedQuery(
+            TimesheetDO.SELECT_OVERLAPPING_INTERVAL,
+            Tuple::class.java,
+            Pair("userId", userId),
+            Pair("startTime", startTime),
+            Pair("stopTime", stopTime),
+            Pair("excludeId", excludeId ?: -1L),
+            maxResults = 1,
+        ).firstOrNull()?.let { tuple ->
+            TimesheetIntervalIndex.Interval(tuple[0] as Long, (tuple[1] as Date).time, (tuple[2] as Date).time)
         }
-        val end = System.currentTimeMillis()
-        log.info("TimesheetDao.hasTimeOverlap took: " + (end - begin) + " ms.")
-        return false
     }
 
     /**
@@ -0,0 +1,201 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.business.timesheet
+
+import jakarta.persistence.Tuple
+import mu.KotlinLogging
+import org.projectforge.common.metrics.PfMetrics
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.cache.AbstractCache
+import org.projectforge.framework.persistence.jpa.PfPersistenceService
+import org.projectforge.framework.time.PFDateTime
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Service
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Per-user index of the time intervals of recent time sheets (since the beginning of the previous month) for overlap
+ * checks in O(log n) without any database query. Time sheets of a user are loaded on first access, the index is
+ * kept in sync by [TimesheetDao.afterInsertOrModify] (see [update]) and rebuilt daily (moving the window).
+ *
+ * Older time periods aren't covered, [TimesheetDao.hasTimeOverlap] queries the database for them.
+ */
+@Service
+class TimesheetIntervalIndex : AbstractCache(TICKS_PER_DAY) {
+    class Interval(val id: Long, val startTime: Long, val stopTime: Long)
+
+    private class UserIntervals {
+        val byStartTime = TreeMap<Long, MutableList<Interval>>()
+        val byId = mutableMapOf<Long, Interval>()
+
+        /**
+         * Longest interval, for finding intervals starting before the checked period.
+         */
+        var maxDuration = TimesheetDao.MAXIMUM_DURATION
+
+        @Synchronized
+        fun add(interval: Interval) {
+            remove(interval.id)
+            byStartTime.getOrPut(interval.startTime) { mutableListOf() }.add(interval)
+            byId[interval.id] = interval
+            maxDuration = maxOf(maxDuration, interval.stopTime - interval.startTime)
+        }
+
+        @Synchronized
+        fun remove(id: Long) {
+            val interval = byId.remove(id) ?: return
+            byStartTime[interval.startTime]?.let { list ->
+                list.removeIf { it.id == id }
+                if (list.isEmpty()) {
+                    byStartTime.remove(interval.startTime)
+                }
+            }
+        }
+
+        @Synchronized
+        fun findOverlap(startTime: Long, stopTime: Long, excludeId: Long?): Interval? {
+            byStartTime.subMap(startTime - maxDuration, false, stopTime, false).values.forEach { list ->
+                list.forEach { interval ->
+                    if (interval.stopTime > startTime && interval.id != excludeId) {
+                        return interval
+                    }
+                }
+            }
+            return null
+        }
+    }
+
+    @Autowired
+    private lateinit var persistenceService: PfPersistenceService
+
+    private val users = ConcurrentHashMap<Long, UserIntervals>()
+
+    /**
+     * User id of each indexed time sheet (the user of a time sheet may change).
+     */
+    private val userIdByTimesheetId = ConcurrentHashMap<Long, Long>()
+
+    private val loadLock = Any()
+
+    @Volatile
+    private var windowStart = 0L
+
+    /**
+     * @return true, if all time sheets possibly overlapping a period starting at the given time are indexed.
+     */
+    fun covers(startTime: Date): Boolean {
+        checkRefresh()
+        return startTime.time - TimesheetDao.MAXIMUM_DURATION >= windowStart
+    }
+
+    /**
+     * The period must be covered by this index, see [covers].
+     * @param excludeId The time sheet to check itself (on update).
+     * @return Any non-deleted time sheet of the given user overlapping the given period or null, if no overlap exists.
+     */
+    fun findOverlap(userId: Long, startTime: Date, stopTime: Date, excludeId: Long?): Interval? {
+        return getUserIntervals(userId).findOverlap(startTime.time, stopTime.time, excludeId)
+    }
+
+    /**
+     * Called after any modification of the given time sheet (inside the transaction).
+     *
+     * The index is updated at once, so overlap checks of the same transaction see the modification. Other
+     * transactions may see it before the commit, but found overlaps are verified by the database. The update is
+     * applied again after the commit (a user loaded concurrently may have missed it). After a rollback, the users
+     * of the time sheet are removed from the index and will be reloaded on next access.
+     */
+    fun update(timesheet: TimesheetDO, operationType: OperationType) {
+        val id = timesheet.id ?: return
+        val interval = if (operationType == OperationType.DELETE || timesheet.deleted) {
+            null
+        } else {
+            val startTime = timesheet.startTime?.time
+            val stopTime = timesheet.stopTime?.time
+            if (startTime != null && stopTime != null) Interval(id, startTime, stopTime) else null
+        }
+        val userId = timesheet.user?.id
+        val previousUserId = userIdByTimesheetId[id]
+        apply(id, userId, interval)
+        persistenceService.runAfterCommit { apply(id, userId, interval) }
+        persistenceService.runAfterRollback {
+            synchronized(loadLock) {
+                userId?.let { users.remove(it) }
+                previousUserId?.let { users.remove(it) }
+            }
+        }
+    }
+
+    /**
+     * Idempotent. Synchronized with the loading of users, so a user is loaded either before (and updated) or after
+     * (loaded from the database).
+     * @param interval The new interval or null, if the time sheet is deleted.
+     */
+    private fun apply(id: Long, userId: Long?, interval: Interval?) {
+        synchronized(loadLock) {
+            userIdByTimesheetId.remove(id)?.let { users[it]?.remove(id) }
+            if (userId == null || interval == null || interval.startTime < windowStart) {
+                return
+            }
+            // Not loaded users will be loaded from the database on first access.
+            users[userId]?.let { userIntervals ->
+                userIntervals.add(interval)
+                userIdByTimesheetId[id] = userId
+            }
+        }
+    }
+
+    private fun getUserIntervals(userId: Long): UserIntervals {
+        checkRefresh()
+        users[userId]?.let { return it }
+        synchronized(loadLock) {
+            users[userId]?.let { return it }
+            val userIntervals = UserIntervals()
+            persistenceService.executeNamedQuery(
+                TimesheetDO.SELECT_INTERVALS_OF_USER_SINCE,
+                Tuple::class.java,
+                Pair("userId", userId),
+                Pair("since", Date(windowStart)),
+            ).forEach { tuple ->
+                val id = tuple[0] as Long
+                userIntervals.add(Interval(id, (tuple[1] as Date).time, (tuple[2] as Date).time))
+                userIdByTimesheetId[id] = userId
+            }
+            users[userId] = userIntervals
+            PfMetrics.counter("timesheet.intervalIndex.load").increment()
+            return userIntervals
+        }
+    }
+
+    override fun refresh() {
+        synchronized(loadLock) {
+            log.info("Clearing TimesheetIntervalIndex.")
+            windowStart = PFDateTime.now().beginOfMonth.minusMonths(1).utilDate.time
+            users.clear()
+            userIdByTimesheetId.clear()
+        }
+    }
+}
@@ -24,8 +24,11 @@
 package org.projectforge.business.user
 
 import mu.KotlinLogging
+import org.hibernate.Session
+import org.projectforge.Constants
 import org.projectforge.ShutdownListener
 import org.projectforge.business.user.UserPrefCache.Companion.dontCallShutdownInTestMode
+import org.projectforge.common.metrics.PfMetrics
 import org.projectforge.framework.ToStringUtil
 import org.projectforge.framework.access.AccessChecker
 import org.projectforge.framework.cache.AbstractCache
@@ -34,12 +37,16 @@ import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext.loggedInUserId
 import org.projectforge.framework.persistence.user.entities.PFUserDO
 import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.scheduling.annotation.Scheduled
 
 private val log = KotlinLogging.logger {}
 
 /**
  * Stores all user persistent objects such as filter settings, personal settings and persists them to the database.
  *
+ * Entries put are marked as dirty and written every minute by [flushDirtyEntries] (write-behind). Entries read are
+ * checked for modifications on logout, refresh and shutdown. Entries neither put nor read aren't serialized at all.
+ *
  * Extended by [UserPrefCache] and [UserXmlPreferencesCache].
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
@@ -57,8 +64,27 @@ abstract class AbstractUserPrefCache<DBObj : IUserPref>(
 
     private val allPreferences = mutableMapOf<Long, UserPrefCacheData>()
 
+    /**
+     * Avoids concurrent flushes of the same entries (e. g. write-behind and logout).
+     */
+    private val flushLock = Any()
+
+    init {
+        PfMetrics.gauge("userprefs.dirty", this, "cache", title) { cache ->
+            synchronized(cache.allPreferences) { cache.allPreferences.values.sumOf { it.dirtyCount } }.toDouble()
+        }
+    }
+
     protected abstract fun selectUserPreferencesByUserId(userId: Long): Collection<DBObj>?
     protected abstract fun saveOrUpdate(userId: Long, key: UserPrefCacheDataKey, value: Any, checkAccess: Boolean)
+
+    /**
+     * Writes all modified entries of a user within the current transaction. Should be overridden for writing them
+     * without flushes between the entries (JDBC batching), the default saves them one by one.
+     */
+    protected open fun saveOrUpdate(userId: Long, entries: Map<UserPrefCacheDataKey, Any>, checkAccess: Boolean) {
+        entries.forEach { (key, value) -> saveOrUpdate(userId, key, value, checkAccess) }
+    }
     protected abstract fun deserialize(userPref: DBObj): Any?
 
     /**
@@ -142,26 +168,49 @@ abstract class AbstractUserPrefCache<DBObj : IUserPref>(
         remove(uid, key)
     }
 
-    internal fun insertOrUpdateUserEntriesIfModified(data: UserPrefCacheData, checkAccess: Boolean) {
-        val userId = data.userId ?: return
+    /**
+     * Writes the modified entries of the given user in a new transaction. The entries are marked as flushed only after
+     * the transaction is committed, so they're written again by the next flush on any failure (e. g. rollback).
+     * @param onlyDirty If true, only the entries put since the last flush are checked, otherwise all entries put or read.
+     * @return The number of written entries.
+     * @throws Exception if the transaction fails. No entry is marked as flushed in this case.
+     */
+    internal fun insertOrUpdateUserEntriesIfModified(
+        data: UserPrefCacheData,
+        checkAccess: Boolean,
+        onlyDirty: Boolean = false,
+    ): Int {
+        val userId = data.userId ?: return 0
         var counter = 0
-        data.persistentDataForeach { key, value ->
-            if (isModified(data, key, value)) {
-                log.debug { "${title}: User preference modified: ${createLogMessagePart(userId, key)}" }
-                // Only save if changed to avoid unnecessary database updates.
-                ++counter
-                try {
-                    saveOrUpdate(userId, key, value, checkAccess)
-                } catch (ex: Throwable) {
-                    log.warn(ex.message, ex)
+        val flushedEntries = persistenceService.runInNewTransaction { context ->
+            context.em.unwrap(Session::class.java).jdbcBatchSize = BATCH_SIZE
+            val flushed = mutableListOf<FlushedEntry>()
+            val modified = mutableListOf<FlushedEntry>()
+            data.getModificationCandidates(onlyDirty).forEach { (key, value) ->
+                val serializedHashCode = serialize(value).hashCode()
+                if (data.getOriginalDataHashCode(key) != serializedHashCode) {
+                    log.debug { "${title}: User preference modified: ${createLogMessagePart(userId, key)}" }
+                    // Only save if changed to avoid unnecessary database updates.
+                    modified.add(FlushedEntry(key, value, serializedHashCode))
+                } else {
+                    log.debug { "User preference not modified: ${createLogMessagePart(userId, key)}" }
+                    flushed.add(FlushedEntry(key, value, serializedHashCode))
                 }
-            } else {
-                log.debug { "User preference not modified: ${createLogMessagePart(userId, key)}" }
             }
+            if (modified.isNotEmpty()) {
+                // All modified entries at once, written by the flush on commit in batches.
+                saveOrUpdate(userId, modified.associate { it.key to it.value }, checkAccess)
+                counter = modified.size
+                flushed.addAll(modified)
+            }
+            flushed
         }
+        // Transaction is committed, now the entries are persisted.
+        flushedEntries.forEach { data.markAsFlushed(it.key, it.value, it.serializedHashCode) }
         if (counter > 0) {
             log.info { "Saved $counter modified entries of user=${data.userId}" }
         }
+        return counter
     }
 
     internal fun isModified(data: UserPrefCacheData, key: UserPrefCacheDataKey, value: Any?): Boolean {
@@ -238,19 +287,45 @@ abstract class AbstractUserPrefCache<DBObj : IUserPref>(
     /**
      * Flushes the user settings to the database (independent from the expire mechanism). Should be used after the user's
      * logout. If the user data isn't modified, then nothing will be done.
+     * The data of users whose flush failed is kept in the cache for the next try.
      */
     private fun flushAllToDB() {
         log.info("$title: Flushing all user preferences to database....")
-        persistenceService.runInNewTransaction {
-            synchronized(allPreferences) {
-                allPreferences.forEach { (_, data) ->
-                    insertOrUpdateUserEntriesIfModified(data, checkAccess = false)
+        synchronized(flushLock) {
+            PfMetrics.record("userprefs.flush", "cache", title, "mode", "all") {
+                val allData = synchronized(allPreferences) { allPreferences.values.toList() }
+                allData.forEach { data ->
+                    val userId = data.userId ?: return@forEach
+                    if (flushUserEntries(data, checkAccess = false, onlyDirty = false) != null) {
+                        synchronized(allPreferences) {
+                            allPreferences.remove(userId, data)
+                        }
+                    }
                 }
-                allPreferences.clear()
             }
         }
     }
 
+    /**
+     * Write-behind: writes the entries put since the last run. Each user is written in its own transaction (JDBC
+     * batching), so a failure of one user doesn't affect the others. The user data is kept in the cache.
+     */
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MILLIS, initialDelay = FLUSH_INTERVAL_MILLIS)
+    fun flushDirtyEntries() {
+        synchronized(flushLock) {
+            val dirtyData = synchronized(allPreferences) {
+                allPreferences.values.filter { it.dirtyCount > 0 }
+            }
+            if (dirtyData.isEmpty()) {
+                return
+            }
+            val counter = PfMetrics.record("userprefs.flush", "cache", title, "mode", "dirty") {
+                dirtyData.sumOf { flushUserEntries(it, checkAccess = false, onlyDirty = true) ?: 0 }
+            }
+            log.debug { "$title: Write-behind flush of ${dirtyData.size} users, $counter entries written." }
+        }
+    }
+
     private fun flushToDB(userId: Long, checkAccess: Boolean) {
         if (checkAccess) {
             if (userId != loggedInUserId) {
@@ -264,16 +339,28 @@ abstract class AbstractUserPrefCache<DBObj : IUserPref>(
                 return
             }
         }
-        persistenceService.runInNewTransaction {
-            synchronized(allPreferences) {
-                allPreferences[userId]?.let { data ->
-                    insertOrUpdateUserEntriesIfModified(data, checkAccess)
+        synchronized(flushLock) {
+            val data = getUserPreferencesData(userId) ?: return
+            if (flushUserEntries(data, checkAccess, onlyDirty = false) != null) {
+                synchronized(allPreferences) {
+                    allPreferences.remove(userId, data)
                 }
-                allPreferences.remove(userId)
             }
         }
     }
 
+    /**
+     * @return The number of written entries or null, if the transaction failed (the entries are still dirty).
+     */
+    private fun flushUserEntries(data: UserPrefCacheData, checkAccess: Boolean, onlyDirty: Boolean): Int? {
+        return try {
+            insertOrUpdateUserEntriesIfModified(data, checkAccess, onlyDirty)
+        } catch (ex: Exception) {
+            log.error(ex) { "$title: Error while flushing user preferences of user=${data.userId}: ${ex.message}" }
+            null
+        }
+    }
+
     /**
      * Stores the PersistentUserObjects in the database or on start up restores the persistent user objects from the
      * database.
@@ -312,4 +399,12 @@ abstract class AbstractUserPrefCache<DBObj : IUserPref>(
         }
         flushAllToDB()
     }
+
+    private class FlushedEntry(val key: UserPrefCacheDataKey, val value: Any, val serializedHashCode: Int)
+
+    companion object {
+        private const val FLUSH_INTERVAL_MILLIS = Constants.MILLIS_PER_MINUTE
+
+        private const val BATCH_SIZE = 50
+    }
 }
@@ -46,14 +46,6 @@ class UserPrefCacheData {
 
     private val persistentData = mutableMapOf<UserPrefCacheDataKey, Any>()
 
-    internal fun persistentDataForeach(action: (key: UserPrefCacheDataKey, value: Any) -> Unit) {
-        synchronized(persistentData) {
-            persistentData.forEach { (identifier, value) ->
-                action(identifier, value)
-            }
-        }
-    }
-
     @XStreamOmitField
     @Transient
     @JsonIgnore
@@ -68,6 +60,23 @@ class UserPrefCacheData {
     @JsonIgnore
     private var originalPersistentDataHashCode = mutableMapOf<UserPrefCacheDataKey, Int>()
 
+    /**
+     * Keys of the persistent entries put since the last flush (dirty). Written by the write-behind flush.
+     */
+    @XStreamOmitField
+    @Transient
+    @JsonIgnore
+    private var dirtyKeys = mutableSetOf<UserPrefCacheDataKey>()
+
+    /**
+     * Keys of the persistent entries read since loading. The callers may modify these values in place without putting
+     * them again, so they're checked for modifications on full flushes (logout, refresh and shutdown). All other
+     * entries are unchanged and not serialized at all.
+     */
+    @XStreamOmitField
+    @Transient
+    @JsonIgnore
+    private var accessedKeys = mutableSetOf<UserPrefCacheDataKey>()
 
     fun containsPersistentEntry(key: UserPrefCacheDataKey): Boolean {
         return synchronized(persistentData) {
@@ -86,6 +95,7 @@ class UserPrefCacheData {
      * @param value
      * @param persistent If true, the object will be marked as modified and persisted in the database.
      * @param originalSerializedHashCode The original value as xml (uncompressed)/json for storing as original value.
+     * If given, the entry is loaded from the database and isn't marked as dirty.
      */
     fun putEntry(key: UserPrefCacheDataKey, value: Any?, persistent: Boolean, originalSerializedHashCode: Int? = null) {
         value ?: return
@@ -94,9 +104,13 @@ class UserPrefCacheData {
             synchronized(persistentData) {
                 persistentData[key] = value
             }
-            originalSerializedHashCode?.let {
+            if (originalSerializedHashCode != null) {
                 synchronized(originalPersistentDataHashCode) {
-                    originalPersistentDataHashCode[key] = it
+                    originalPersistentDataHashCode[key] = originalSerializedHashCode
+                }
+            } else {
+                synchronized(dirtyKeys) {
+                    dirtyKeys.add(key)
                 }
             }
         } else {
@@ -114,9 +128,15 @@ class UserPrefCacheData {
      * existing, otherwise null;
      */
     fun getEntry(key: UserPrefCacheDataKey): Any? {
-        return synchronized(persistentData) {
+        synchronized(persistentData) {
             persistentData[key]
-        } ?: synchronized(volatileData) {
+        }?.let { value ->
+            synchronized(accessedKeys) {
+                accessedKeys.add(key)
+            }
+            return value
+        }
+        return synchronized(volatileData) {
             volatileData[key]
         }
     }
@@ -135,6 +155,45 @@ class UserPrefCacheData {
         }
     }
 
+    /**
+     * Number of persistent entries put since the last flush.
+     */
+    internal val dirtyCount: Int
+        get() = synchronized(dirtyKeys) { dirtyKeys.size }
+
+    /**
+     * Gets the persistent entries to check for modifications.
+     * @param onlyDirty If true, only the entries put since the last flush are returned, otherwise all entries put or
+     * read since loading.
+     */
+    internal fun getModificationCandidates(onlyDirty: Boolean): List<Pair<UserPrefCacheDataKey, Any>> {
+        val keys = synchronized(dirtyKeys) { dirtyKeys.toMutableSet() }
+        if (!onlyDirty) {
+            synchronized(accessedKeys) { keys.addAll(accessedKeys) }
+        }
+        return synchronized(persistentData) {
+            keys.mapNotNull { key -> persistentData[key]?.let { Pair(key, it) } }
+        }
+    }
+
+    /**
+     * Marks the given entry as flushed (written or unmodified).
+     * @param value The flushed value. The dirty flag is kept, if the entry was replaced in the meantime.
+     * @param serializedHashCode The hash code of the serialized value, which is now the original value.
+     */
+    internal fun markAsFlushed(key: UserPrefCacheDataKey, value: Any, serializedHashCode: Int) {
+        synchronized(originalPersistentDataHashCode) {
+            originalPersistentDataHashCode[key] = serializedHashCode
+        }
+        synchronized(persistentData) {
+            if (persistentData[key] === value) {
+                synchronized(dirtyKeys) {
+                    dirtyKeys.remove(key)
+                }
+            }
+        }
+    }
+
     /**
      * Removes the entry from persistent and volatile storage if exist. Does not remove the entry from the database!
      *
@@ -148,6 +207,12 @@ class UserPrefCacheData {
         val volatileValue = synchronized(volatileData) {
             volatileData.remove(key)
         }
+        synchronized(dirtyKeys) {
+            dirtyKeys.remove(key)
+        }
+        synchronized(accessedKeys) {
+            accessedKeys.remove(key)
+        }
         return value ?: volatileValue
     }
 
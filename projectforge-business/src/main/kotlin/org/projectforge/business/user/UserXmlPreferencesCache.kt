@@ -63,6 +63,10 @@ class UserXmlPreferencesCache
         userXmlPreferencesDao.saveOrUpdate(userId, key.identifier, value, checkAccess)
     }
 
+    override fun saveOrUpdate(userId: Long, entries: Map<UserPrefCacheDataKey, Any>, checkAccess: Boolean) {
+        userXmlPreferencesDao.saveOrUpdate(userId, entries.mapKeys { it.key.identifier }, checkAccess)
+    }
+
     override fun remove(userId: Long, key: UserPrefCacheDataKey) {
         userXmlPreferencesDao.remove(userId, key.identifier)
     }
@@ -254,6 +254,52 @@ class UserXmlPreferencesDao {
         }
     }
 
+    /**
+     * Saves or updates the given entries (by key) of the user in one transaction: the existing entries are selected by
+     * one query and all entries are written by the flush on commit, so Hibernate may batch the statements (see
+     * AbstractUserPrefCache.insertOrUpdateUserEntriesIfModified).
+     */
+    fun saveOrUpdate(userId: Long, entries: Map<String, Any?>, checkAccess: Boolean) {
+        if (entries.isEmpty() || accessChecker.isDemoUser(userId)) {
+            return
+        }
+        if (checkAccess) {
+            if (userId != loggedInUserId) {
+                throw AccessException("$title: User '$loggedInUserId' has no access to write user preferences of other user '$userId'.")
+            }
+        }
+        synchronized(this) {
+            // Avoid parallel insert, update, delete operations.
+            val date = Date()
+            persistenceService.runInTransaction { context ->
+                val existing = context.executeQuery(
+                    "from UserXmlPreferencesDO where user.id=:userId and key in :keys",
+                    UserXmlPreferencesDO::class.java,
+                    Pair("userId", userId),
+                    Pair("keys", entries.keys),
+                    attached = true,
+                ).associateBy { it.key }
+                entries.forEach { (key, value) ->
+                    val userPrefs = existing[key] ?: UserXmlPreferencesDO().also {
+                        it.created = date
+                        it.user = PFUserDO().also { it.id = userId }
+                        it.key = key
+                    }
+                    val serialized = serialize(value, compressBigContent = true)
+                    userPrefs.lastUpdate = date
+                    userPrefs.serializedValue = serialized
+                    userPrefs.setVersion()
+                    if (userPrefs.id == null) {
+                        log.debug { "Storing new user preference for user '$userId': ${serialized.abbreviate(40)}" }
+                        context.insert(userPrefs)
+                    } else {
+                        log.debug { "Updating user preference for user '$userId': ${serialized.abbreviate(40)}" }
+                    }
+                }
+            }
+        }
+    }
+
     fun remove(userId: Long, key: String?) {
         if (accessChecker.isDemoUser(userId)) {
             // Do nothing.
@@ -0,0 +1,114 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.framework.cache
+
+import java.util.*
+
+/**
+ * Cache supporting delta refreshes: After expiring, only the entries modified since the last refresh (watermark
+ * compared with lastUpdate of the entities) are reloaded by [refreshDelta]. A full refresh ([refreshFull]) is done
+ * on first usage, after [setExpired] and periodically after [fullRefreshInterval] as safety net (e.g. for entries
+ * deleted or modified directly in the database).
+ *
+ * Derived caches should publish their data lock-free (e.g. concurrent maps modified by delta refreshes and replaced
+ * as a whole by full refreshes). Readers don't wait for a running refresh, if the data was already loaded once.
+ *
+ * @param deltaRefreshInterval Milliseconds after which a delta refresh is done.
+ * @param fullRefreshInterval Milliseconds after which a full refresh is done.
+ */
+abstract class AbstractDeltaRefreshCache(
+    deltaRefreshInterval: Long,
+    private val fullRefreshInterval: Long,
+) : AbstractCache(deltaRefreshInterval) {
+    /**
+     * Entries modified since this date will be reloaded by the next delta refresh. Null, if no data was loaded yet.
+     */
+    @Volatile
+    private var watermark: Date? = null
+
+    @Volatile
+    private var fullRefreshRequired = true
+
+    private var timeOfLastFullRefresh = 0L
+
+    /**
+     * Loads all entries and replaces the whole data of the cache.
+     */
+    protected abstract fun refreshFull()
+
+    /**
+     * Reloads and replaces all entries modified since the given date (lastUpdate >= modifiedSince).
+     */
+    protected abstract fun refreshDelta(modifiedSince: Date)
+
+    /**
+     * Forces a full refresh before next use.
+     */
+    override fun setExpired() {
+        fullRefreshRequired = true
+        super.setExpired()
+    }
+
+    /**
+     * The modified entries will be reloaded before next use (delta refresh).
+     */
+    fun setDeltaExpired() {
+        super.setExpired()
+    }
+
+    /**
+     * Readers don't wait for a running refresh (if any data was already loaded), they use the current data instead.
+     */
+    override fun checkRefresh() {
+        if (watermark != null && isRefreshInProgress) {
+            return
+        }
+        super.checkRefresh()
+    }
+
+    /**
+     * Calls [refreshFull] or [refreshDelta]. Called by [checkRefresh], don't call it directly.
+     */
+    final override fun refresh() {
+        // Entries committed by longer transactions may have older lastUpdate values than the start of this refresh:
+        val now = System.currentTimeMillis()
+        val nextWatermark = Date(now - WATERMARK_OVERLAP)
+        val modifiedSince = watermark
+        if (modifiedSince == null || fullRefreshRequired || now - timeOfLastFullRefresh > fullRefreshInterval) {
+            fullRefreshRequired = false
+            refreshFull()
+            timeOfLastFullRefresh = now
+        } else {
+            refreshDelta(modifiedSince)
+        }
+        watermark = nextWatermark
+    }
+
+    companion object {
+        /**
+         * The watermark is set to the start of the last refresh minus this overlap (milliseconds), so entries of
+         * transactions running while refreshing are reloaded again by the next delta refresh.
+         */
+        const val WATERMARK_OVERLAP = AbstractCache.TICKS_PER_MINUTE
+    }
+}
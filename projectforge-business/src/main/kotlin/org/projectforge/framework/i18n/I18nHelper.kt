@@ -29,25 +29,53 @@ import org.projectforge.framework.persistence.user.entities.PFUserDO
 import org.slf4j.LoggerFactory
 import java.text.MessageFormat
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * ThreadLocal context.
  *
+ * All bundles are merged per locale into one translation table on first use (the first bundle added wins for keys
+ * defined in multiple bundles), so each translation is a single hash lookup. The tables are rebuilt after adding
+ * bundles (e. g. on plugin activation).
+ *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
 object I18nHelper {
   private val log = LoggerFactory.getLogger(I18nHelper::class.java)
-  private val BUNDLE_NAMES: MutableSet<String> = HashSet()
+  private const val MESSAGE_FORMAT_CACHE_SIZE = 1000
+  private val BUNDLE_NAMES: MutableSet<String> = LinkedHashSet()
   private lateinit var i18nService: I18nService
 
+  /**
+   * Immutable translation tables (all bundles merged) by locale.
+   */
+  private val translationTables = ConcurrentHashMap<Locale, Map<String, String>>()
+
+  /**
+   * Parsed message formats by locale and i18n key (LRU). MessageFormat isn't thread safe, so only clones are used.
+   */
+  private val messageFormats = object : LinkedHashMap<Pair<Locale, String>, MessageFormat>(16, 0.75f, true) {
+    override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Pair<Locale, String>, MessageFormat>?): Boolean {
+      return size > MESSAGE_FORMAT_CACHE_SIZE
+    }
+  }
+
   @JvmStatic
   fun addBundleName(bundleName: String) {
-    BUNDLE_NAMES.add(bundleName)
+    synchronized(BUNDLE_NAMES) {
+      if (!BUNDLE_NAMES.add(bundleName)) {
+        return
+      }
+    }
+    translationTables.clear()
+    synchronized(messageFormats) {
+      messageFormats.clear()
+    }
   }
 
   @JvmStatic
   val bundleNames: Set<String>
-    get() = BUNDLE_NAMES
+    get() = synchronized(BUNDLE_NAMES) { BUNDLE_NAMES.toSet() }
 
   @JvmStatic
   fun getI18nService(): I18nService {
@@ -78,42 +106,45 @@ object I18nHelper {
   @JvmStatic
   fun getLocalizedMessage(locale: Locale?, i18nKey: String?, vararg params: Any?): String {
     i18nKey ?: return "???"
-    val localized = getLocalizedString(locale, i18nKey)
+    val lc = locale ?: ThreadLocalUserContext.locale!!
+    // Is already translated, if key not found:
+    val localized = getTranslationTable(lc)[i18nKey] ?: i18nKey
     if (params.isEmpty()) {
       return localized
     }
-    return if (localized.startsWith("???")) {
+    if (localized.startsWith("???")) {
       // I18n-key not found (e. g. in test cases).
-      "$localized (${params.joinToString { it.toString() }})???"
-    } else MessageFormat.format(localized, *params)
-  }
-
-  private fun getLocalizedString(locale: Locale?, i18nKey: String): String {
-    val lc = locale ?: ThreadLocalUserContext.locale!!
-    for (bundleName in BUNDLE_NAMES) {
-      val translation = getLocalizedString(bundleName, lc, i18nKey)
-      if (translation != null) {
-        return translation
-      }
+      return "$localized (${params.joinToString { it.toString() }})???"
     }
-    // log.warn("Resource key '$i18nKey' not found for locale '$locale' in bundles ${BUNDLE_NAMES.joinToString { it }}")
-    // Is already translated (or key not found):
-    return i18nKey
+    val cacheKey = Pair(lc, i18nKey)
+    val messageFormat = synchronized(messageFormats) {
+      messageFormats.getOrPut(cacheKey) { MessageFormat(localized) }.clone() as MessageFormat
+    }
+    return messageFormat.format(params)
   }
 
-  private fun getLocalizedString(bundleName: String, locale: Locale, i18nKey: String): String? {
-    try {
-      val bundle = getResourceBundle(bundleName, locale)
-      return if (bundle.containsKey(i18nKey)) {
-        bundle.getString(i18nKey)
-      } else {
-        null
-        //i18nService.getAdditionalString(i18nKey, locale)
+  private fun getTranslationTable(locale: Locale): Map<String, String> {
+    translationTables[locale]?.let { return it }
+    val table = HashMap<String, String>()
+    val bundleNames = bundleNames
+    for (bundleName in bundleNames) {
+      try {
+        val bundle = getResourceBundle(bundleName, locale)
+        for (key in bundle.keySet()) {
+          if (!table.containsKey(key)) {
+            table[key] = bundle.getString(key)
+          }
+        }
+      } catch (ex: Exception) {
+        log.warn("Exception while trying to access bundle '$bundleName' for locale '$locale': ${ex.message}")
       }
-    } catch (ex: Exception) {
-      log.warn("Exception while trying to access key '$i18nKey' for locale '$locale' and bundle '$bundleName': ${ex.message}")
     }
-    return null
+    val result = Collections.unmodifiableMap(table)
+    if (bundleNames == this.bundleNames) {
+      // Don't cache tables built concurrently to adding bundles.
+      translationTables[locale] = result
+    }
+    return result
   }
 
   /**
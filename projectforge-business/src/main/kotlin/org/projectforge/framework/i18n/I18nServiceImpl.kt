@@ -33,6 +33,7 @@ import java.net.MalformedURLException
 import java.net.URL
 import java.net.URLClassLoader
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 @Service
 class I18nServiceImpl : I18nService {
@@ -43,6 +44,11 @@ class I18nServiceImpl : I18nService {
 
     private var localeResourceBundleMap: MutableMap<Pair<Locale, String>, ResourceBundle>? = null
 
+    /**
+     * All resource bundles merged by locale (the first bundle wins for keys defined in multiple bundles).
+     */
+    private val translationTables = ConcurrentHashMap<Locale, Map<String, String>>()
+
     @PostConstruct
     fun init() {
         I18nHelper.setI18nService(this)
@@ -88,6 +94,7 @@ class I18nServiceImpl : I18nService {
                 }
             }
         }
+        translationTables.clear()
     }
 
     override fun getLocalizedStringForKey(i18nKey: String, locale: Locale): String {
@@ -104,33 +111,24 @@ class I18nServiceImpl : I18nService {
     }
 
     private fun getValueFromBundles(key: String, locale: Locale): String? {
+        return translationTables.computeIfAbsent(locale) { buildTranslationTable(it) }[key]
+    }
+
+    private fun buildTranslationTable(locale: Locale): Map<String, String> {
+        val map = localeResourceBundleMap!!
+        val table = HashMap<String, String>()
         for (resourceBundle in resourceBundles) {
-            // the pair searched for
-            var localeStringPair = Pair(locale, resourceBundle)
-            if (!localeResourceBundleMap!!.keys.contains(localeStringPair)) {
-                for (iterationPair in localeResourceBundleMap!!.keys) {
-                    if (!iterationPair.first.equals(Locale.ROOT) && locale.toString()
-                            .startsWith(iterationPair.second.toString())
-                    ) {
-                        // replace searched for with nearest candidate e.g. for de_de use de
-                        localeStringPair = iterationPair
-                        break
-                    }
+            // Use the default language, if no bundle for the given locale exists:
+            val bundle = map[Pair(locale, resourceBundle)]
+                ?: map[Pair(Locale(Locale.getDefault().language), resourceBundle)]
+                ?: continue
+            for (bundleKey in bundle.keySet()) {
+                if (!table.containsKey(bundleKey)) {
+                    (bundle.getObject(bundleKey) as? String)?.let { table[bundleKey] = it }
                 }
-                // if no candidate was found use default
-                if (Pair(locale, resourceBundle).equals(localeStringPair)) {
-                    localeStringPair = Pair(Locale(Locale.getDefault().language), resourceBundle)
-                }
-            }
-
-            val resourceBundleFile = localeResourceBundleMap!![localeStringPair]
-            try {
-                return resourceBundleFile!!.getObject(key) as String
-            } catch (ignored: MissingResourceException) {
-                // not found
             }
         }
-        return null
+        return Collections.unmodifiableMap(table)
     }
 
     override fun getResourceBundleFor(name: String, locale: Locale): ResourceBundle {
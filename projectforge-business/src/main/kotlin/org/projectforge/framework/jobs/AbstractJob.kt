@@ -139,6 +139,11 @@ abstract class AbstractJob(
   var status: Status = Status.WAITING
     internal set
 
+  /**
+   * Waiting jobs with higher priority are started first by the [JobHandler] (default is 0).
+   */
+  open val priority: Int = 0
+
   var totalNumber: Int = -1
     protected set
 
@@ -30,7 +30,9 @@ import mu.KotlinLogging
 import org.projectforge.Constants
 import org.projectforge.ShutdownListener
 import org.projectforge.ShutdownService
+import org.projectforge.business.admin.SystemStatistics
 import org.projectforge.business.configuration.ConfigurationService
+import org.projectforge.common.metrics.PfMetrics
 import org.projectforge.framework.calendar.DurationUtils
 import org.projectforge.framework.i18n.I18nHelper.getLocalizedMessage
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
@@ -39,10 +41,18 @@ import org.projectforge.mail.SendMail
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Service
 import java.lang.management.ManagementFactory
-import kotlin.concurrent.thread
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 
 private val log = KotlinLogging.logger {}
 
+/**
+ * Schedules the jobs: new jobs are queued and started by a bounded pool of workers ([MAX_RUNNING_JOBS]). A waiting job
+ * is started as soon as a worker is free and no running job of the same area is blocking it (see
+ * [AbstractJob.isBlocking]). Waiting jobs are re-checked whenever a job terminates, so there is no polling.
+ * Jobs of higher [AbstractJob.priority] are started first, then jobs of users with fewer running jobs (fairness),
+ * then the oldest jobs.
+ */
 @Service
 class JobHandler : ShutdownListener {
     @Autowired
@@ -54,11 +64,58 @@ class JobHandler : ShutdownListener {
     @Autowired
     private lateinit var shutdownService: ShutdownService
 
+    @Autowired
+    private lateinit var systemStatistics: SystemStatistics
+
+    /**
+     * All jobs (waiting, running and terminated ones). [waitingJobs], [runningJobsByArea] and [runningJobsPerUser]
+     * are also guarded by this list.
+     */
     private val jobs = mutableListOf<AbstractJob>()
 
+    private val waitingJobs = mutableListOf<AbstractJob>()
+
+    /**
+     * The area is the resource key of a job: only running jobs of the same area may block a waiting job.
+     */
+    private val runningJobsByArea = mutableMapOf<String?, MutableList<AbstractJob>>()
+
+    private val runningJobsPerUser = mutableMapOf<Long?, Int>()
+
+    private var runningJobsCounter = 0
+
+    private var shutdownInProgress = false
+
+    private var workerCounter = 0
+
+    /**
+     * The workers. Threads are created on demand, the number of running jobs is limited by [dispatch].
+     */
+    private val dispatcher = Executors.newFixedThreadPool(MAX_RUNNING_JOBS) { runnable ->
+        Thread(runnable, "job-worker-${++workerCounter}").also { it.isDaemon = true }
+    }.asCoroutineDispatcher()
+
+    private val scope = CoroutineScope(SupervisorJob() + dispatcher)
+
+    private val waitingTimer = PfMetrics.timer("jobs.waiting")
+
+    internal var maxWaitingTimeMs = MAX_WAITING_TIME_MS // Used by test class.
+
     @PostConstruct
     private fun postConstruct() {
         shutdownService.registerListener(this)
+        AbstractJob.Status.entries.forEach { status ->
+            PfMetrics.gauge("jobs", this, "status", status.key) { handler ->
+                synchronized(handler.jobs) { handler.jobs.count { it.status == status }.toDouble() }
+            }
+        }
+        PfMetrics.gauge("jobs.queue.size", this) { handler ->
+            synchronized(handler.jobs) { handler.waitingJobs.size.toDouble() }
+        }
+        PfMetrics.gauge("jobs.running", this) { handler ->
+            synchronized(handler.jobs) { handler.runningJobsCounter.toDouble() }
+        }
+        systemStatistics.registerStatisticsBuilder(JobHandlerStatisticsBuilder(this))
     }
 
     /**
@@ -71,88 +128,121 @@ class JobHandler : ShutdownListener {
                 internalCancelJob(job)
             }
         }
-        terminatedJobs.forEach { job ->
-            val time = job.terminatedTimeMillis ?: job.startTimeMillis ?: job.createdTimeMillis
-            if (System.currentTimeMillis() - time > KEEP_TERMINATED_JOBS_INTERVALL_MS) {
-                synchronized(jobs) {
-                    jobs.remove(job)
-                }
+        val expiredWaitingJobs = synchronized(jobs) {
+            waitingJobs.filter { System.currentTimeMillis() - it.createdTimeMillis > maxWaitingTimeMs }.also {
+                waitingJobs.removeAll(it)
+            }
+        }
+        expiredWaitingJobs.forEach { job ->
+            log.error { "Couldn't start job due to long running job(s) blocking this job: ${job.logInfo}" }
+            job.markJobAsFailed(errorMessage = "jobs.error.waitingTimeExceeded")
+            job.onAfterFailure(error = AbstractJob.ErrorCode.TIMEOUT_WHILE_WAITING)
+            job.onAfterTermination()
+            job.coroutinesJob.cancel() // Never started, otherwise the lazy coroutine remains a child of the scope.
+        }
+        synchronized(jobs) {
+            jobs.removeIf { job ->
+                val time = job.terminatedTimeMillis ?: job.startTimeMillis ?: job.createdTimeMillis
+                job.terminated && System.currentTimeMillis() - time > KEEP_TERMINATED_JOBS_INTERVALL_MS
             }
         }
     }
 
     /**
+     * Queues the given job. It will be started as soon as possible.
      * @return Given job for chaining.
      */
     fun addJob(job: AbstractJob): AbstractJob {
-        synchronized(jobs) {
-            jobs.add(job)
-        }
         val userContext = ThreadLocalUserContext.userContext!!
         val locale = ThreadLocalUserContext.locale
         val mdcContext = MDCContext() // For MDC context of logger.
-        thread {
-            var start = true
-            runBlocking {
-                job.coroutinesJob = launch(
-                    Dispatchers.Default + ThreadLocalUserContext.getUserAsContextElement(userContext) + ThreadLocalUserContext.getLocaleAsContextElement(
-                        locale
-                    ) + mdcContext
-                ) {
-                    for (i in 0..10000) {// Paranoia counter (wait time max 10.000s)
-                        var blocking: AbstractJob.Status? = null
-                        synchronized(jobs) {
-                            for (other in jobs) {
-                                if (other != job) {
-                                    blocking = other.isBlocking(job)
-                                    if (blocking != null) {
-                                        break
-                                    }
-                                }
-                            }
-                            if (blocking == null) {
-                                // Must be set here, otherwise two waiting jobs may run simultanously
-                                job.status = AbstractJob.Status.RUNNING
-                            }
-                        }
-                        val status = blocking
-                        if (status != null) {
-                            job.status = status
-                            start = false
-                            if (status == AbstractJob.Status.REFUSED) {
-                                break
-                            }
-                            delay(1000)
-                        } else {
-                            start = true
-                            break
-                        }
-                    }
-                    if (start) {
-                        yield()
-                        job.onBeforeStart()
-                        job.start()
-                        job.onFinish()
-                    } else {
-                        if (job.status == AbstractJob.Status.REFUSED) {
-                            log.error { "Couldn't start job, because another job is already running: ${job.logInfo}" }
-                            job.markJobAsRefused(errorMessage = "jobs.error.refusedByAnotherRunningJob")
-                            job.onAfterFailure(error = AbstractJob.ErrorCode.REFUSED_BY_ANOTHER_RUNNING_JOB)
-                            job.onAfterTermination()
-                        } else {
-                            log.error { "Couldn't start job due to long running job(s) blocking this job: ${job.logInfo}" }
-                            job.markJobAsFailed(errorMessage = "jobs.error.waitingTimeExceeded")
-                            job.onAfterFailure(error = AbstractJob.ErrorCode.TIMEOUT_WHILE_WAITING)
-                            job.onAfterTermination()
-                        }
-                    }
-                }
-                if (start) {
-                    job.coroutinesJob.join()
+        job.coroutinesJob = scope.launch(
+            ThreadLocalUserContext.getUserAsContextElement(userContext) + ThreadLocalUserContext.getLocaleAsContextElement(
+                locale
+            ) + mdcContext,
+            start = CoroutineStart.LAZY, // Started by dispatch().
+        ) {
+            job.onBeforeStart()
+            job.start()
+            job.onFinish()
+        }
+        // Called also for cancelled jobs, which were never started:
+        job.coroutinesJob.invokeOnCompletion { onTermination(job) }
+        synchronized(jobs) {
+            jobs.add(job)
+            waitingJobs.add(job)
+        }
+        dispatch()
+        return job
+    }
+
+    /**
+     * Starts waiting jobs if workers are available and the jobs aren't blocked by running jobs. Waiting jobs, which
+     * are blocked and configured to be refused ([AbstractJob.QueueStrategy.REFUSE_PER_QUEUE]) are refused.
+     */
+    private fun dispatch() {
+        val jobsToStart = mutableListOf<AbstractJob>()
+        val jobsToRefuse = mutableListOf<AbstractJob>()
+        synchronized(jobs) {
+            if (shutdownInProgress) {
+                return
+            }
+            waitingJobs.removeIf { job ->
+                (getBlockingStatus(job) == AbstractJob.Status.REFUSED).also { if (it) jobsToRefuse.add(job) }
+            }
+            while (runningJobsCounter < MAX_RUNNING_JOBS) {
+                val job = waitingJobs.filter { getBlockingStatus(it) == null }
+                    .minWithOrNull(compareBy<AbstractJob>({ -it.priority }, { runningJobsPerUser[it.ownerId] ?: 0 }, { it.id }))
+                    ?: break
+                waitingJobs.remove(job)
+                // Must be set here, otherwise two waiting jobs of the same queue may run simultaneously:
+                job.status = AbstractJob.Status.RUNNING
+                runningJobsByArea.getOrPut(job.area) { mutableListOf() }.add(job)
+                runningJobsPerUser[job.ownerId] = (runningJobsPerUser[job.ownerId] ?: 0) + 1
+                ++runningJobsCounter
+                jobsToStart.add(job)
+            }
+        }
+        jobsToRefuse.forEach { job ->
+            log.error { "Couldn't start job, because another job is already running: ${job.logInfo}" }
+            job.markJobAsRefused(errorMessage = "jobs.error.refusedByAnotherRunningJob")
+            job.onAfterFailure(error = AbstractJob.ErrorCode.REFUSED_BY_ANOTHER_RUNNING_JOB)
+            job.onAfterTermination()
+            job.coroutinesJob.cancel() // Never started, otherwise the lazy coroutine remains a child of the scope.
+        }
+        jobsToStart.forEach { job ->
+            waitingTimer.record(System.currentTimeMillis() - job.createdTimeMillis, TimeUnit.MILLISECONDS)
+            job.coroutinesJob.start()
+        }
+    }
+
+    /**
+     * Must be called inside synchronized(jobs).
+     * @return The blocking status of the first running job (of same area) blocking the given job or null.
+     */
+    private fun getBlockingStatus(job: AbstractJob): AbstractJob.Status? {
+        runningJobsByArea[job.area]?.forEach { other ->
+            other.isBlocking(job)?.let { return it }
+        }
+        return null
+    }
+
+    /**
+     * Releases the worker of the terminated (or cancelled) job and wakes up the waiting jobs.
+     */
+    private fun onTermination(job: AbstractJob) {
+        synchronized(jobs) {
+            waitingJobs.remove(job)
+            val running = runningJobsByArea[job.area]
+            if (running?.remove(job) == true) {
+                if (running.isEmpty()) {
+                    runningJobsByArea.remove(job.area)
                 }
+                runningJobsPerUser.computeIfPresent(job.ownerId) { _, count -> if (count > 1) count - 1 else null }
+                --runningJobsCounter
             }
         }
-        return job
+        dispatch()
     }
 
     fun getJobById(id: Int): AbstractJob? {
@@ -198,9 +288,43 @@ class JobHandler : ShutdownListener {
 
     private fun internalCancelJob(job: AbstractJob) {
         log.warn { "Job ${job.logInfo} is going to be cancelled." }
+        synchronized(jobs) {
+            waitingJobs.remove(job)
+        }
         job.cancel()
     }
 
+    internal val statistics: Statistics
+        get() = synchronized(jobs) {
+            Statistics(
+                waiting = waitingJobs.size,
+                running = runningJobsCounter,
+                maxRunning = MAX_RUNNING_JOBS,
+                runningPerUser = runningJobsPerUser.size,
+                longestWaitingMillis = waitingJobs.minOfOrNull { it.createdTimeMillis }
+                    ?.let { System.currentTimeMillis() - it },
+                total = jobs.size,
+            )
+        }
+
+    internal class Statistics(
+        val waiting: Int,
+        val running: Int,
+        val maxRunning: Int,
+        /**
+         * Number of users with running jobs.
+         */
+        val runningPerUser: Int,
+        val longestWaitingMillis: Long?,
+        val total: Int,
+    )
+
+    /**
+     * Number of coroutines of the scope (waiting and running jobs), used by test class.
+     */
+    internal val coroutinesCount: Int
+        get() = scope.coroutineContext.job.children.count()
+
     private val runningJobs: List<AbstractJob>
         get() {
             synchronized(jobs) {
@@ -219,6 +343,9 @@ class JobHandler : ShutdownListener {
         }
 
     override fun shutdown() {
+        synchronized(jobs) {
+            shutdownInProgress = true // Don't start waiting jobs anymore.
+        }
         runBlocking {
             runningJobs.forEach { job ->
                 if (job.status == AbstractJob.Status.RUNNING) {
@@ -287,5 +414,15 @@ class JobHandler : ShutdownListener {
          * Keep terminated jobs not older than this given intervall in ms.
          */
         internal const val KEEP_TERMINATED_JOBS_INTERVALL_MS = Constants.MILLIS_PER_HOUR
+
+        /**
+         * Waiting jobs will fail after this time in ms.
+         */
+        internal const val MAX_WAITING_TIME_MS = 10_000 * Constants.MILLIS_PER_SECOND
+
+        /**
+         * Maximum number of jobs running in parallel (size of the worker pool). Further jobs are queued.
+         */
+        internal val MAX_RUNNING_JOBS = maxOf(4, Runtime.getRuntime().availableProcessors())
     }
 }
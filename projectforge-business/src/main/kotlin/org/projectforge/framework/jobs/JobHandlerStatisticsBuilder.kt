@@ -0,0 +1,48 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.jobs
+
+import org.projectforge.business.admin.SystemStatisticsData
+import org.projectforge.business.admin.SystemsStatisticsBuilderInterface
+import org.projectforge.framework.calendar.DurationUtils
+
+/**
+ * Adds the state of the job queue and the workers of [JobHandler] to the system statistics.
+ */
+internal class JobHandlerStatisticsBuilder(private val jobHandler: JobHandler) : SystemsStatisticsBuilderInterface {
+  override fun addStatisticsEntries(stats: SystemStatisticsData) {
+    val statistics = jobHandler.statistics
+    stats.add("jobs.running", GROUP, "'running", "${statistics.running}/${statistics.maxRunning} (users: ${statistics.runningPerUser})")
+    stats.add("jobs.waiting", GROUP, "'waiting", statistics.waiting)
+    stats.add(
+      "jobs.longestWaiting", GROUP, "'longest waiting",
+      statistics.longestWaitingMillis?.let { DurationUtils.getFormattedDaysHoursAndMinutes(it) },
+    )
+    stats.add("jobs.total", GROUP, "'total (incl. terminated)", statistics.total)
+  }
+
+  companion object {
+    private const val GROUP = "jobs"
+  }
+}
@@ -26,6 +26,7 @@ package org.projectforge.framework.persistence.api
 import jakarta.persistence.EntityManager
 import mu.KotlinLogging
 import org.hibernate.search.mapper.orm.Search
+import org.projectforge.common.metrics.PfMetrics
 import org.projectforge.framework.ToStringUtil
 import org.projectforge.framework.access.AccessChecker
 import org.projectforge.framework.access.AccessException
@@ -71,7 +72,7 @@ class BaseDOPersistenceService {
      * @return The id of the object.
      */
     internal fun <O : ExtendedBaseDO<Long>> insert(baseDao: BaseDao<O>, obj: O, checkAccess: Boolean = true): Long? {
-        privateInsert(obj, baseDao, checkAccess = checkAccess)
+        measure(OP_INSERT, obj, baseDao) { privateInsert(obj, baseDao, checkAccess = checkAccess) }
         return obj.id
     }
 
@@ -83,7 +84,7 @@ class BaseDOPersistenceService {
      * @return The id of the object.
      */
     fun <O : ExtendedBaseDO<Long>> insert(obj: O, checkAccess: Boolean, logMessage: Boolean = true): Long? {
-        privateInsert(obj, checkAccess = checkAccess, logMessage = logMessage)
+        measure(OP_INSERT, obj) { privateInsert(obj, checkAccess = checkAccess, logMessage = logMessage) }
         return obj.id
     }
 
@@ -131,13 +132,15 @@ class BaseDOPersistenceService {
         dbObj: O? = null,
     ): EntityCopyStatus {
         val res = ResultObject<O>()
-        privateUpdate(
-            obj = obj,
-            res = res,
-            baseDao = baseDao,
-            checkAccess = checkAccess,
-            dbObj = dbObj,
-        )
+        measure(OP_UPDATE, obj, baseDao) {
+            privateUpdate(
+                obj = obj,
+                res = res,
+                baseDao = baseDao,
+                checkAccess = checkAccess,
+                dbObj = dbObj,
+            )
+        }
         return res.modStatus!!
     }
 
@@ -147,7 +150,7 @@ class BaseDOPersistenceService {
         logMessage: Boolean = true,
     ): EntityCopyStatus {
         val res = ResultObject<O>()
-        privateUpdate(obj, res, checkAccess = checkAccess, logMessage = logMessage)
+        measure(OP_UPDATE, obj) { privateUpdate(obj, res, checkAccess = checkAccess, logMessage = logMessage) }
         return res.modStatus!!
     }
 
@@ -237,6 +240,15 @@ class BaseDOPersistenceService {
         obj: O,
         checkAccess: Boolean,
         logMessage: Boolean = baseDao?.logDatabaseActions ?: true,
+    ): EntityCopyStatus {
+        return measure(OP_MARK_AS_DELETED, obj, baseDao) { privateMarkAsDeleted(baseDao, obj, checkAccess, logMessage) }
+    }
+
+    private fun <O : ExtendedBaseDO<Long>> privateMarkAsDeleted(
+        baseDao: BaseDao<O>?,
+        obj: O,
+        checkAccess: Boolean,
+        logMessage: Boolean,
     ): EntityCopyStatus {
         if (obj.id == null) {
             val msg = "Could not mark object as deleted unless id is not given:$obj"
@@ -300,6 +312,15 @@ class BaseDOPersistenceService {
         checkAccess: Boolean
     ):
             EntityCopyStatus {
+        return measure(OP_UNDELETE, obj, baseDao) { privateUndelete(baseDao, obj, logMessage, checkAccess) }
+    }
+
+    private fun <O : ExtendedBaseDO<Long>> privateUndelete(
+        baseDao: BaseDao<O>?,
+        obj: O,
+        logMessage: Boolean,
+        checkAccess: Boolean,
+    ): EntityCopyStatus {
         if (obj.id == null) {
             val msg = "Could not undelete object unless id is not given:$obj"
             log.error(msg)
@@ -355,6 +376,16 @@ class BaseDOPersistenceService {
         checkAccess: Boolean,
         force: Boolean = false,
         logMessage: Boolean = baseDao?.logDatabaseActions ?: true,
+    ) {
+        measure(OP_DELETE, obj, baseDao) { privateDelete(baseDao, obj, checkAccess, force, logMessage) }
+    }
+
+    private fun <O : ExtendedBaseDO<Long>> privateDelete(
+        baseDao: BaseDao<O>?,
+        obj: O,
+        checkAccess: Boolean,
+        force: Boolean,
+        logMessage: Boolean,
     ) {
         val id = obj.id
         if (id == null) {
@@ -424,6 +455,19 @@ class BaseDOPersistenceService {
         return dbOj
     }
 
+    /**
+     * Records the duration of the given operation as timer `projectforge.dao`, tagged by entity and operation.
+     */
+    private inline fun <O : ExtendedBaseDO<Long>, T> measure(
+        operation: String,
+        obj: O,
+        baseDao: BaseDao<O>? = null,
+        block: () -> T,
+    ): T {
+        val entity = (baseDao?.doClass ?: obj.javaClass).simpleName
+        return PfMetrics.record(METER_DAO, "entity", entity, "operation", operation, block = block)
+    }
+
     private fun flushSearchSession(em: EntityManager?) {
         if (LUCENE_FLUSH_ALWAYS) {
             val searchSession = Search.session(em)
@@ -435,6 +479,13 @@ class BaseDOPersistenceService {
     companion object {
         private const val LUCENE_FLUSH_ALWAYS = false
 
+        private const val METER_DAO = "dao"
+        private const val OP_INSERT = "insert"
+        private const val OP_UPDATE = "update"
+        private const val OP_MARK_AS_DELETED = "markAsDeleted"
+        private const val OP_UNDELETE = "undelete"
+        private const val OP_DELETE = "delete"
+
         @JvmStatic
         @JvmOverloads
         fun returnFalseOrThrowException(
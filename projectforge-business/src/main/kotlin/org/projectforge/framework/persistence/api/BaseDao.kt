@@ -24,6 +24,7 @@
 package org.projectforge.framework.persistence.api
 
 import jakarta.annotation.PostConstruct
+import jakarta.persistence.OneToMany
 import jakarta.persistence.criteria.Root
 import mu.KotlinLogging
 import org.apache.commons.lang3.StringUtils
@@ -44,12 +45,14 @@ import org.projectforge.framework.persistence.history.*
 import org.projectforge.framework.persistence.history.HistoryLoadContext
 import org.projectforge.framework.persistence.jpa.PersistenceCallsRecorder
 import org.projectforge.framework.persistence.jpa.PfPersistenceService
+import org.projectforge.framework.persistence.metamodel.HibernateMetaModel
 import org.projectforge.framework.persistence.search.HibernateSearchDependentObjectsReindexer
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext.loggedInUser
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext.requiredLoggedInUser
 import org.projectforge.framework.persistence.user.entities.PFUserDO
 import org.projectforge.framework.time.PFDateTime.Companion.now
 import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.util.ClassUtils
 import java.io.Serializable
 import java.util.*
 
@@ -402,6 +405,29 @@ protected constructor(open var doClass: Class<O>) : IDao<O>, BaseDaoPersistenceL
         return loadContext
     }
 
+    /**
+     * True, if the history of an object consists only of its own history entries, so it may be loaded page-wise (see
+     * [HistoryService.loadHistoryPage]). Not pageable are objects with embedded objects (one-to-many) and objects of
+     * daos overriding [addOwnHistoryEntries].
+     */
+    open val isHistoryPageable: Boolean
+        get() = !overridesAddOwnHistoryEntries
+                && HibernateMetaModel.getEntityInfo(doClass)?.getPropertiesWithAnnotation(OneToMany::class).isNullOrEmpty()
+
+    /**
+     * Detected by reflection on the class of this dao (not on a Spring proxy class).
+     */
+    private val overridesAddOwnHistoryEntries: Boolean by lazy {
+        var clazz: Class<*> = ClassUtils.getUserClass(this)
+        while (clazz != BaseDao::class.java) {
+            if (clazz.declaredMethods.any { it.name == "addOwnHistoryEntries" }) {
+                return@lazy true
+            }
+            clazz = clazz.superclass
+        }
+        false
+    }
+
     /**
      * Override this method if you want to add your own history entries to the list or modify the existing ones.
      * Called by [loadHistory].
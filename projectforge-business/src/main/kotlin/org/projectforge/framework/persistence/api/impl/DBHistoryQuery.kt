@@ -29,6 +29,7 @@ import mu.KotlinLogging
 import org.hibernate.search.mapper.orm.Search
 import org.projectforge.framework.ToStringUtil
 import org.projectforge.framework.persistence.history.HistoryEntryDO
+import org.projectforge.framework.persistence.history.HistoryWriteBehindService
 import java.util.*
 
 private val log = KotlinLogging.logger {}
@@ -41,6 +42,8 @@ internal object DBHistoryQuery {
         clazz: Class<*>,
         searchParams: DBHistorySearchParams
     ): Set<Long> {
+        // Pending entries of the write-behind outbox should be found, too:
+        HistoryWriteBehindService.instance?.flushIfPending()
         val cb = entityManager.criteriaBuilder
         val cr = cb.createQuery(Long::class.java)
         val root = cr.from(HistoryEntryDO::class.java)
@@ -79,7 +82,8 @@ internal object DBHistoryQuery {
                 }"
             )
         }
-        val query = entityManager.createQuery(cr.select(root.get("entityId")).where(*predicates.toTypedArray()))
+        // Distinct: entities modified several times would otherwise fill up MAX_RESULT_SIZE.
+        val query = entityManager.createQuery(cr.select(root.get("entityId")).distinct(true).where(*predicates.toTypedArray()))
         query.maxResults = MAX_RESULT_SIZE
         val result = query.resultList
         if (result.isNullOrEmpty()) {
@@ -93,6 +97,8 @@ internal object DBHistoryQuery {
         clazz: Class<*>,
         searchParams: DBHistorySearchParams
     ): Set<Long> {
+        // Pending entries of the write-behind outbox should be found, too:
+        HistoryWriteBehindService.instance?.flushIfPending()
         val result = Search.session(entityManager).search(HistoryEntryDO::class.java).where { q ->
             q.bool().with { bool ->
                 bool.must { must ->
@@ -24,6 +24,7 @@
 package org.projectforge.framework.persistence.api.impl
 
 import mu.KotlinLogging
+import org.projectforge.common.metrics.PfMetrics
 import org.projectforge.framework.access.AccessChecker
 import org.projectforge.framework.persistence.api.BaseDao
 import org.projectforge.framework.persistence.api.ExtendedBaseDO
@@ -35,6 +36,7 @@ import org.projectforge.framework.persistence.jpa.PfPersistenceService
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Service
+import java.util.concurrent.TimeUnit
 
 private val log = KotlinLogging.logger {}
 
@@ -107,6 +109,9 @@ open class DBQuery {
                 list = dbResultIterator.sort(list)
 
                 val end = System.currentTimeMillis()
+                val entity = baseDao.doClass.simpleName
+                PfMetrics.timer("dbquery", "entity", entity).record(end - begin, TimeUnit.MILLISECONDS)
+                PfMetrics.summary("dbquery.result.size", "rows", "entity", entity).record(list.size.toDouble())
                 if (end - begin > 2000) {
                     // Show only slow requests.
                     log.info(
@@ -151,6 +156,10 @@ open class DBQuery {
                 DBHistoryQuery.searchHistoryEntryByFullTextQuery(em, baseDao.doClass, historSearchParams)
                 //baseDao.getHistoryEntriesFullTextSearch(baseDao.entityManager, baseSearchFilter)
             }
+            if (idSet.isEmpty()) {
+                // No entity was modified by the given user and/or in the given time period.
+                return list
+            }
             while (next != null) {
                 val id = next.id
                 if (id != null && !ensureUniqueSet.contains(id)) {
@@ -0,0 +1,123 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.candh
+
+import mu.KotlinLogging
+import org.projectforge.common.KClassUtils
+import org.projectforge.framework.persistence.api.BaseDO
+import org.projectforge.framework.persistence.api.HibernateUtils
+import org.projectforge.framework.persistence.history.HistoryServiceUtils
+import java.lang.reflect.Method
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.reflect.KClass
+import kotlin.reflect.KMutableProperty1
+import kotlin.reflect.jvm.javaGetter
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * The copy plan of an entity class contains everything [CandHMaster.copyValues] needs to know about the properties of
+ * the class: the properties to process (persisted ones first), the matching handlers and a cached getter. The plan is
+ * built only once per class, so the Kotlin reflection and the Hibernate meta model aren't queried on every update.
+ */
+internal class CandHCopyPlan private constructor(kClass: KClass<*>, handlers: List<CandHIHandler>) {
+    class PlanProperty(
+        val property: KMutableProperty1<BaseDO<*>, Any?>,
+        /**
+         * Handlers accepting this property in the order of registration.
+         */
+        val handlers: Array<CandHIHandler>,
+        /**
+         * False, if the property isn't accepted by [CandHMaster.accept] (transient, static etc.).
+         */
+        val accepted: Boolean,
+        /**
+         * True, if the property is persisted by Hibernate.
+         */
+        val persisted: Boolean,
+        /**
+         * True, if the property is persisted and not marked as no-history property.
+         */
+        val historized: Boolean,
+    ) {
+        val name = property.name
+
+        private val getter: Method? = property.javaGetter?.also {
+            try {
+                it.isAccessible = true
+            } catch (ex: Exception) {
+                log.debug { "Can't make getter of property '$name' accessible: ${ex.message}" }
+            }
+        }
+
+        fun get(obj: BaseDO<*>): Any? {
+            return if (getter != null) getter.invoke(obj) else property.get(obj)
+        }
+    }
+
+    /**
+     * All public mutable properties, the persisted ones first.
+     */
+    val properties: List<PlanProperty>
+
+    init {
+        val allProperties = KClassUtils.filterPublicMutableProperties(kClass)
+        val persisted = allProperties.filter { HibernateUtils.isPersistedProperty(kClass, it.name) }
+        val persistedNames = persisted.mapTo(mutableSetOf()) { it.name }
+        val processedProperties = mutableSetOf<String>()
+        val list = mutableListOf<PlanProperty>()
+        (persisted + allProperties).forEach { property ->
+            if (!processedProperties.add(property.name)) {
+                return@forEach // Don't process properties twice.
+            }
+            val accepted = CandHMaster.accept(property)
+            val propertyHandlers = if (accepted) handlers.filter { it.accept(property) } else emptyList()
+            val isPersisted = persistedNames.contains(property.name)
+            @Suppress("UNCHECKED_CAST")
+            list.add(
+                PlanProperty(
+                    property as KMutableProperty1<BaseDO<*>, Any?>,
+                    handlers = propertyHandlers.toTypedArray(),
+                    accepted = accepted,
+                    persisted = isPersisted,
+                    historized = isPersisted && !isNoHistoryProperty(kClass, property.name),
+                )
+            )
+        }
+        properties = list
+        log.debug { "Copy plan of class $kClass created: ${list.joinToString { it.name }}" }
+    }
+
+    companion object {
+        private val plans = ConcurrentHashMap<KClass<*>, CandHCopyPlan>()
+
+        fun get(kClass: KClass<*>, handlers: List<CandHIHandler>): CandHCopyPlan {
+            return plans.computeIfAbsent(kClass) { CandHCopyPlan(kClass, handlers) }
+        }
+
+        private fun isNoHistoryProperty(kClass: KClass<*>, propertyName: String): Boolean {
+            return HistoryServiceUtils.get().isNoHistoryProperty(kClass.java, propertyName)
+        }
+    }
+}
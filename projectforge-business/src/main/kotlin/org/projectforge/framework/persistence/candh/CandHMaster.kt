@@ -27,7 +27,6 @@ import mu.KotlinLogging
 import org.apache.commons.lang3.ClassUtils
 import org.hibernate.Hibernate
 import org.hibernate.proxy.HibernateProxy
-import org.projectforge.common.KClassUtils
 import org.projectforge.framework.persistence.api.BaseDO
 import org.projectforge.framework.persistence.api.EntityCopyStatus
 import org.projectforge.framework.persistence.api.HibernateUtils
@@ -40,7 +39,6 @@ import java.lang.reflect.Member
 import java.lang.reflect.Modifier
 import kotlin.reflect.KCallable
 import kotlin.reflect.KClass
-import kotlin.reflect.KMutableProperty1
 
 private val log = KotlinLogging.logger {}
 
@@ -178,15 +176,13 @@ object CandHMaster {
         vararg ignoreProperties: String,
     ) {
         log.debug { "copyProperties: Processing class $kClass" }
-        KClassUtils.filterPublicMutableProperties(kClass).forEach { property ->
-            @Suppress("UNCHECKED_CAST")
-            property as KMutableProperty1<BaseDO<*>, Any?>
-            val propertyName = property.name
+        CandHCopyPlan.get(kClass, registeredHandlers).properties.forEach { planProperty ->
+            val propertyName = planProperty.name
             if (processedProperties.contains(propertyName)) {
                 // Don't process properties twice.
                 return@forEach
             }
-            if (onlyPersistedProperties && !HibernateUtils.isPersistedProperty(kClass, propertyName)) {
+            if (onlyPersistedProperties && !planProperty.persisted) {
                 return@forEach
             }
             processedProperties.add(propertyName)
@@ -195,31 +191,30 @@ object CandHMaster {
                 return@forEach
             }
 
-            if (!accept(property)) {
+            if (!planProperty.accepted) {
                 log.debug { "copyProperties: Ignoring property '${kClass.simpleName}.$propertyName', not accepted." }
                 return@forEach
             }
             log.debug { "copyProperties: Processing property '${kClass.simpleName}.$propertyName'." }
 
             try {
-                val srcValue = property.get(src)
-                val destValue = property.get(dest)
+                val srcValue = planProperty.get(src)
+                val destValue = planProperty.get(dest)
                 val propertyContext = PropertyContext(
                     src = src,
                     dest = dest,
                     propertyName = propertyName,
-                    property = property,
+                    property = planProperty.property,
                     srcPropertyValue = srcValue,
                     destPropertyValue = destValue,
                 )
+                propertyContext.historizedProperty = planProperty.historized
                 var processed = false
-                for (handler in registeredHandlers) {
-                    if (handler.accept(property)) {
-                        log.debug { "copyProperties: Processing property '${kClass.simpleName}.$propertyName' with handler: ${handler.javaClass.simpleName}" }
-                        if (handler.process(propertyContext, context = context)) {
-                            processed = true
-                            break
-                        }
+                for (handler in planProperty.handlers) {
+                    log.debug { "copyProperties: Processing property '${kClass.simpleName}.$propertyName' with handler: ${handler.javaClass.simpleName}" }
+                    if (handler.process(propertyContext, context = context)) {
+                        processed = true
+                        break
                     }
                 }
                 if (!processed) {
@@ -243,9 +238,10 @@ object CandHMaster {
         type: PropertyOpType?,
     ) {
         propertyContext.apply {
-            if (HistoryServiceUtils.get().isNoHistoryProperty(src.javaClass, propertyName)
-                || !HibernateUtils.isPersistedProperty(src.javaClass, propertyName)
-            ) {
+            val historized = historizedProperty
+                ?: (!HistoryServiceUtils.get().isNoHistoryProperty(src.javaClass, propertyName)
+                        && HibernateUtils.isPersistedProperty(src.javaClass, propertyName))
+            if (!historized) {
                 // This property is not historized, so no major update:
                 log.debug { "propertyWasModified: Property '$propertyName' not historizable -> MINOR." }
                 context.combine(EntityCopyStatus.MINOR)
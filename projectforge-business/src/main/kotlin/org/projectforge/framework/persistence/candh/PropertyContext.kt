@@ -49,6 +49,12 @@ class PropertyContext(
      */
     var entriesHistorizable: Boolean? = null
 
+    /**
+     * Precalculated by [CandHCopyPlan]: true, if the property is persisted and not marked as no-history property.
+     * If null, it will be determined by [CandHMaster.propertyWasModified].
+     */
+    internal var historizedProperty: Boolean? = null
+
     /**
      * @see CollectionUtils.getTypeClassOfEntries
      */
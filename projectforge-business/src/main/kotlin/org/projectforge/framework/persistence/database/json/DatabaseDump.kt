@@ -23,39 +23,51 @@
 
 package org.projectforge.framework.persistence.database.json
 
-import org.hibernate.SessionFactory
-import org.slf4j.LoggerFactory
+import org.projectforge.framework.persistence.metamodel.HibernateMetaModel
 import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Value
 import org.springframework.stereotype.Service
-import java.io.InputStream
-import java.io.OutputStream
-import jakarta.annotation.PostConstruct
-import jakarta.persistence.EntityManagerFactory
+import java.nio.file.Path
+import javax.sql.DataSource
 
 /**
- * WIP: Trying to export and import whole database as json (for db migration and for creating test data).
+ * Export and import of the whole database as json (for backups and for cloning test environments without pg_dump).
+ * See [DatabaseWriter] for details.
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
 @Service
 class DatabaseDump {
-    private val log = LoggerFactory.getLogger(DatabaseDump::class.java)
-
     @Autowired
-    private lateinit var emgrFactory: EntityManagerFactory
+    private lateinit var dataSource: DataSource
+
+    @Value("\${spring.flyway.table:${DatabaseWriter.DEFAULT_FLYWAY_TABLE}}")
+    private lateinit var flywayTable: String
+
+    /**
+     * The migration history of flyway is never dumped or restored.
+     */
+    private val excludedTables: List<String>
+        get() = listOf(flywayTable, DatabaseWriter.DEFAULT_FLYWAY_TABLE)
 
-    @PostConstruct
-    fun init() {
+    /**
+     * Tables of the entities by class name (entity names of the history entries).
+     */
+    private val entityTables by lazy {
+        HibernateMetaModel.allEntityInfos().filter { it.tableName != null }.associate { it.entityClass.name to it.tableName!! }
     }
 
     /**
-     * @param out
+     * Dumps all tables into the given directory (one newline-delimited json file per table).
      */
-    fun dump(out: OutputStream) {
-        DatabaseWriter(emgrFactory).dump(out)
+    fun dump(dir: Path, settings: DatabaseWriter.DumpSettings = DatabaseWriter.DumpSettings()): List<DatabaseWriter.TableStats> {
+        return DatabaseWriter(dataSource, excludedTables).dump(dir, settings)
     }
 
-    fun restore(inputStream: InputStream) {
-        DatabaseWriter(emgrFactory).restore(inputStream)
+    /**
+     * Restores a dump created by [dump].
+     */
+    fun restore(dir: Path, settings: DatabaseWriter.RestoreSettings = DatabaseWriter.RestoreSettings()): List<DatabaseWriter.TableStats> {
+        return DatabaseWriter(dataSource, excludedTables) { entityTables[it] }.restore(dir, settings)
     }
 }
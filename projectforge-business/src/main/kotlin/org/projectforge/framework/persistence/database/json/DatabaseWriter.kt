@@ -23,111 +23,710 @@
 
 package org.projectforge.framework.persistence.database.json
 
-import com.fasterxml.jackson.annotation.JsonAutoDetect
-import com.fasterxml.jackson.annotation.JsonInclude
-import com.fasterxml.jackson.annotation.PropertyAccessor
 import com.fasterxml.jackson.core.JsonEncoding
-import com.fasterxml.jackson.core.JsonFactory
 import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.databind.DeserializationFeature
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.databind.SerializationFeature
 import com.fasterxml.jackson.module.kotlin.KotlinModule
-import jakarta.persistence.EntityManagerFactory
-import org.hibernate.Session
+import mu.KotlinLogging
 import org.projectforge.ProjectForgeVersion
-import org.projectforge.framework.ToStringUtil
-import org.projectforge.framework.json.TimestampSerializer
-import org.projectforge.framework.json.UtilDateFormat
-import org.projectforge.framework.json.UtilDateSerializer
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.framework.time.PFDateTime
-import org.slf4j.LoggerFactory
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
 import java.io.InputStream
 import java.io.OutputStream
-import java.io.Writer
-import java.sql.Timestamp
+import java.nio.file.Files
+import java.nio.file.Path
+import java.sql.Connection
+import java.sql.DatabaseMetaData
+import java.sql.PreparedStatement
+import java.sql.ResultSet
+import java.sql.Types
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.LocalTime
+import java.time.OffsetDateTime
+import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import javax.sql.DataSource
+
+private val log = KotlinLogging.logger {}
 
 /**
- * WIP: Trying to export and import whole database as json (for db migration and for creating test data).
+ * Streaming dump and restore of the whole data base as newline-delimited json (one file per table plus
+ * [MANIFEST_FILE]).
+ *
+ * The tables are read via JDBC with a fixed fetch size, so no table is loaded into memory. All tables are dumped in
+ * parallel (each worker with its own read-only connection). Please note: the tables aren't dumped within one
+ * snapshot, so a dump of a running system with modifications may be inconsistent.
+ *
+ * Restore inserts the rows via JDBC batch inserts. The tables are restored in the order of their foreign key
+ * dependencies, independent tables in parallel. Foreign keys which can't be satisfied by this order (self references
+ * such as parent tasks with higher ids and cyclic dependencies) are inserted as null and set by a second pass after
+ * all tables are restored. If [RestoreSettings.remapIds] is given, all primary keys are replaced by new ids of the
+ * hibernate sequence and all foreign keys are remapped accordingly (via [ObjectIdRegistry]), so a dump may be
+ * imported into a non-empty data base (e. g. for cloning test environments). Polymorphic ids (e. g.
+ * t_pf_history.entity_id) are remapped via the table of their entity name (see [entityTableResolver]).
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
-class DatabaseWriter(val emgrFactory: EntityManagerFactory) {
-    private val log = LoggerFactory.getLogger(DatabaseWriter::class.java)
+class DatabaseWriter(
+    val dataSource: DataSource,
+    /**
+     * Tables neither dumped nor restored (e.g. the migration history of flyway, which must match the schema of the
+     * target data base and not the dumped one).
+     */
+    excludedTables: Collection<String> = listOf(DEFAULT_FLYWAY_TABLE),
+    /**
+     * Resolves the table name of an entity name (class name) of polymorphic id columns (see [POLYMORPHIC_ID_COLUMNS]).
+     * Required for restoring tables with such columns with [RestoreSettings.remapIds].
+     */
+    private val entityTableResolver: ((entityName: String) -> String?)? = null,
+) {
+    private val excludedTables = excludedTables.map { it.lowercase() }.toSet()
 
-    private lateinit var writer: Writer
+    enum class Compression(val suffix: String) { NONE(""), GZIP(".gz") }
+
+    class DumpSettings(
+        val compression: Compression = Compression.GZIP,
+        val threads: Int = DEFAULT_THREADS,
+        val fetchSize: Int = DEFAULT_FETCH_SIZE,
+    )
 
     /**
-     * @param out
+     * @param tables If given, only these tables of the dump are restored (case-insensitive).
      */
-    fun dump(out: OutputStream?) {
-        val jfactory = JsonFactory()
-        val jgen = jfactory.createGenerator(out, JsonEncoding.UTF8)
-        jgen.codec = getObjectMapper()
-        jgen.writeStartObject();
-        jgen.writeStringField("date", PFDateTime.now().isoString)
-        jgen.writeStringField("app", ProjectForgeVersion.APP_ID)
-        jgen.writeStringField("version", ProjectForgeVersion.VERSION_STRING)
-        jgen.writeStringField("user", ThreadLocalUserContext.loggedInUser!!.username)
-        jgen.writeArrayFieldStart("database")
-       /* val session = sessionFactory.openSession()
-        session.use {
-            dump(PFUserDO::class.java, session, jgen)
-            val entities = emgrFactory.metadataRepository.tableEntities
-            for (entity in entities) {
-                val entityClass = entity.javaType
-                //val entitySimpleName = entityClass.simpleName
-                //val entityType = entityClass.name
-                log.info("entityClass: ${entityClass.name}")
-            }
-        }*/
-        jgen.writeEndArray()
-        jgen.writeEndObject()
-        jgen.flush()
-    }
-
-    @Suppress("UNUSED_PARAMETER")
-    fun restore(inputStream: InputStream) {
-        //createObjectMapper().readValue(in, )
-    }
-
-    private fun getObjectMapper(): ObjectMapper {
-        if (objectMapper != null) {
-            return objectMapper!!
-        }
-        val mapper = ObjectMapper()
-        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
-        mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL)
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_DEFAULT)
-        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
-        mapper.configure(SerializationFeature.FAIL_ON_SELF_REFERENCES, false)
-        val module = MyJacksonModule()
-        module.addSerializer(java.util.Date::class.java, UtilDateSerializer(UtilDateFormat.ISO_DATE_TIME_SECONDS))
-        module.addSerializer(Timestamp::class.java, TimestampSerializer(UtilDateFormat.ISO_DATE_TIME_MILLIS))
-        module.addSerializer(java.sql.Date::class.java, ToStringUtil.SqlDateSerializer())
-        mapper.registerModule(module)
+    class RestoreSettings(
+        val remapIds: Boolean = false,
+        val tables: Collection<String>? = null,
+        val threads: Int = DEFAULT_THREADS,
+        val batchSize: Int = DEFAULT_BATCH_SIZE,
+    )
+
+    /**
+     * Statistics of a dumped or restored table.
+     */
+    class TableStats(val table: String, val rows: Long, val millis: Long) {
+        val rowsPerSecond: Long
+            get() = if (millis > 0) rows * 1000 / millis else rows
+
+        override fun toString(): String {
+            return "$table: $rows rows in $millis ms ($rowsPerSecond rows/s)"
+        }
+    }
+
+    class ManifestTable(
+        var name: String? = null,
+        var file: String? = null,
+        var rows: Long = 0,
+        var maxId: Long? = null,
+    )
+
+    class Manifest(
+        var date: String? = null,
+        var app: String? = null,
+        var version: String? = null,
+        var user: String? = null,
+        var compression: Compression = Compression.NONE,
+        var tables: List<ManifestTable> = emptyList(),
+    )
+
+    private class TableInfo(
+        val name: String,
+        /**
+         * Single column primary key of integral type, otherwise null (e. g. join tables).
+         */
+        val idColumn: String?,
+        /**
+         * Foreign key columns (lower case) -> referenced table.
+         */
+        val foreignKeys: Map<String, String>,
+        /**
+         * Nullable columns (lower case).
+         */
+        val nullableColumns: Set<String>,
+        /**
+         * Polymorphic id columns (lower case) -> column of the entity name (lower case).
+         */
+        val polymorphicIds: Map<String, String>,
+    )
+
+    /**
+     * @param deferredForeignKeys Foreign key columns (lower case) by table (lower case), which are set after all
+     * tables are restored.
+     */
+    private class DependencyLevels(
+        val levels: List<List<TableInfo>>,
+        val deferredForeignKeys: Map<String, Set<String>>,
+    )
+
+    private val objectMapper = ObjectMapper().also { mapper ->
         mapper.registerModule(KotlinModule.Builder().build())
-        objectMapper = mapper
-        return mapper
+        mapper.configure(SerializationFeature.INDENT_OUTPUT, true)
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        mapper.configure(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS, true)
+    }
+
+    /**
+     * Dumps all tables into the given directory.
+     */
+    fun dump(dir: Path, settings: DumpSettings = DumpSettings()): List<TableStats> {
+        Files.createDirectories(dir)
+        val tables = readTableInfos().values.toList()
+        log.info { "Dumping ${tables.size} tables into '${dir.toAbsolutePath()}' (${settings.threads} threads)..." }
+        val manifestTables = Collections.synchronizedList(mutableListOf<ManifestTable>())
+        val stats = runParallel(settings.threads, tables.map { table ->
+            Callable {
+                val manifestTable = ManifestTable(table.name, "${table.name.lowercase()}.ndjson${settings.compression.suffix}")
+                val tableStats = dumpTable(table, dir.resolve(manifestTable.file!!), manifestTable, settings)
+                manifestTables.add(manifestTable)
+                tableStats
+            }
+        })
+        val manifest = Manifest(
+            date = PFDateTime.now().isoString,
+            app = ProjectForgeVersion.APP_ID,
+            version = ProjectForgeVersion.VERSION_STRING,
+            user = ThreadLocalUserContext.loggedInUser?.username,
+            compression = settings.compression,
+            tables = manifestTables.sortedBy { it.name },
+        )
+        objectMapper.writeValue(dir.resolve(MANIFEST_FILE).toFile(), manifest)
+        logStats("Dump", stats)
+        return stats
+    }
+
+    /**
+     * Restores all tables of the dump in the given directory. The tables must exist (created by flyway).
+     */
+    fun restore(dir: Path, settings: RestoreSettings = RestoreSettings()): List<TableStats> {
+        val manifest = objectMapper.readValue(dir.resolve(MANIFEST_FILE).toFile(), Manifest::class.java)
+        val tableInfos = readTableInfos()
+        val onlyTables = settings.tables?.map { it.lowercase() }?.toSet()
+        val dumpTables = manifest.tables.filter { manifestTable ->
+            onlyTables == null || onlyTables.contains(manifestTable.name!!.lowercase())
+        }.filter { manifestTable ->
+            !excludedTables.contains(manifestTable.name!!.lowercase()).also {
+                if (it) log.info { "Table '${manifestTable.name}' of dump is excluded from restore, skipping it." }
+            }
+        }.filter { manifestTable ->
+            (tableInfos[manifestTable.name!!.lowercase()] != null).also {
+                if (!it) log.warn { "Table '${manifestTable.name}' of dump doesn't exist in data base, skipping it." }
+            }
+        }.associateBy { it.name!!.lowercase() }
+        val objectIdRegistry = ObjectIdRegistry()
+        if (settings.remapIds) {
+            val count = dumpTables.values.filter { tableInfos[it.name!!.lowercase()]?.idColumn != null }.sumOf { it.rows }
+            val firstId = reserveSequenceIds(count + SEQUENCE_GAP)
+            objectIdRegistry.reserveIds(firstId, firstId + count + SEQUENCE_GAP - 1)
+        }
+        val remappedTables = if (settings.remapIds) {
+            dumpTables.keys.filter { tableInfos[it]?.idColumn != null }.toSet()
+        } else emptySet()
+        if (settings.remapIds && entityTableResolver == null) {
+            dumpTables.keys.mapNotNull { tableInfos[it] }.find { it.polymorphicIds.isNotEmpty() }?.let { table ->
+                throw IllegalArgumentException(
+                    "Can't remap the polymorphic ids of table '${table.name}' without entityTableResolver."
+                )
+            }
+        }
+        val dependencyLevels = getDependencyLevels(dumpTables.keys.mapNotNull { tableInfos[it] })
+        log.info { "Restoring ${dumpTables.size} tables from '${dir.toAbsolutePath()}' (remapIds=${settings.remapIds})..." }
+        val stats = mutableListOf<TableStats>()
+        dependencyLevels.levels.forEach { level ->
+            stats.addAll(runParallel(settings.threads, level.map { table ->
+                Callable {
+                    val manifestTable = dumpTables[table.name.lowercase()]!!
+                    restoreTable(
+                        table, dir.resolve(manifestTable.file!!), manifest.compression, settings, objectIdRegistry,
+                        remappedTables, dependencyLevels.deferredForeignKeys[table.name.lowercase()] ?: emptySet(),
+                    )
+                }
+            }))
+        }
+        // Second pass: all referenced rows exist now.
+        runParallel(settings.threads, dependencyLevels.deferredForeignKeys.map { (tableName, columns) ->
+            Callable {
+                val table = tableInfos[tableName]!!
+                val manifestTable = dumpTables[tableName]!!
+                restoreDeferredForeignKeys(
+                    table, columns, dir.resolve(manifestTable.file!!), manifest.compression, settings,
+                    objectIdRegistry, remappedTables,
+                )
+            }
+        })
+        if (!settings.remapIds) {
+            val maxId = dumpTables.values.mapNotNull { it.maxId }.maxOrNull()
+            if (maxId != null) {
+                ensureSequenceAbove(maxId)
+            }
+        }
+        logStats("Restore", stats)
+        return stats
     }
 
-    private fun dump(entityClass: Class<*>, session: Session, jgen: JsonGenerator) {
-        val sql = "select o from ${entityClass.name} o"
-        val list = session.createQuery(sql).setReadOnly(true).list()
-        if (list.isEmpty()) return
-        jgen.writeStartObject();
-        jgen.writeArrayFieldStart("${entityClass.simpleName}")
-        list.forEach {
-            var obj = it!!
-            //var type = it::class.java
-            jgen.writeObject(obj)
+    private fun dumpTable(table: TableInfo, file: Path, manifestTable: ManifestTable, settings: DumpSettings): TableStats {
+        val started = System.currentTimeMillis()
+        var rows = 0L
+        var maxId: Long? = null
+        dataSource.connection.use { connection ->
+            connection.autoCommit = false // Needed by PostgreSQL for using cursors (fetch size).
+            connection.isReadOnly = true
+            val quote = connection.metaData.identifierQuoteString.trim()
+            val orderBy = table.idColumn?.let { " order by $quote$it$quote" } ?: ""
+            connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY).use { stmt ->
+                stmt.fetchSize = settings.fetchSize
+                stmt.executeQuery("select * from $quote${table.name}$quote$orderBy").use { rs ->
+                    val metaData = rs.metaData
+                    val columns = (1..metaData.columnCount).map { metaData.getColumnName(it) }
+                    val types = (1..metaData.columnCount).map { metaData.getColumnType(it) }
+                    openOutputStream(file, settings.compression).use { out ->
+                        objectMapper.factory.createGenerator(out, JsonEncoding.UTF8).use { gen ->
+                            gen.setRootValueSeparator(null)
+                            while (rs.next()) {
+                                gen.writeStartObject()
+                                for (i in columns.indices) {
+                                    writeValue(gen, rs, i + 1, columns[i], types[i])
+                                }
+                                gen.writeEndObject()
+                                gen.writeRaw('\n')
+                                if (table.idColumn != null) {
+                                    val id = rs.getLong(table.idColumn)
+                                    if (!rs.wasNull() && (maxId == null || id > maxId!!)) {
+                                        maxId = id
+                                    }
+                                }
+                                ++rows
+                            }
+                        }
+                    }
+                }
+            }
+            connection.rollback()
         }
-        jgen.writeEndArray()
-        jgen.writeEndObject()
+        manifestTable.rows = rows
+        manifestTable.maxId = maxId
+        return TableStats(table.name, rows, System.currentTimeMillis() - started)
+    }
+
+    private fun writeValue(gen: JsonGenerator, rs: ResultSet, index: Int, column: String, type: Int) {
+        val value: Any? = when (type) {
+            Types.BIT, Types.BOOLEAN -> rs.getBoolean(index)
+            Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> rs.getLong(index)
+            Types.REAL, Types.FLOAT, Types.DOUBLE -> rs.getDouble(index)
+            Types.NUMERIC, Types.DECIMAL -> rs.getBigDecimal(index)
+            Types.DATE -> rs.getObject(index, LocalDate::class.java)
+            Types.TIME -> rs.getObject(index, LocalTime::class.java)
+            Types.TIMESTAMP -> rs.getObject(index, LocalDateTime::class.java)
+            Types.TIMESTAMP_WITH_TIMEZONE -> rs.getObject(index, OffsetDateTime::class.java)
+            Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> rs.getBytes(index)
+            else -> rs.getString(index)
+        }
+        if (value == null || rs.wasNull()) {
+            return // Null values aren't written.
+        }
+        gen.writeFieldName(column)
+        when (value) {
+            is Boolean -> gen.writeBoolean(value)
+            is Long -> gen.writeNumber(value)
+            is Double -> gen.writeNumber(value)
+            is java.math.BigDecimal -> gen.writeNumber(value)
+            is ByteArray -> gen.writeBinary(value)
+            else -> gen.writeString(value.toString())
+        }
+    }
+
+    private fun restoreTable(
+        table: TableInfo,
+        file: Path,
+        compression: Compression,
+        settings: RestoreSettings,
+        objectIdRegistry: ObjectIdRegistry,
+        remappedTables: Set<String>,
+        deferredForeignKeys: Set<String>,
+    ): TableStats {
+        val started = System.currentTimeMillis()
+        var rows = 0L
+        val entityTables = mutableMapOf<String, String?>()
+        dataSource.connection.use { connection ->
+            connection.autoCommit = false
+            val quote = connection.metaData.identifierQuoteString.trim()
+            // Column names and types of the target data base:
+            val columns = mutableListOf<String>()
+            val types = mutableListOf<Int>()
+            connection.createStatement().use { stmt ->
+                stmt.executeQuery("select * from $quote${table.name}$quote where 1=0").use { rs ->
+                    for (i in 1..rs.metaData.columnCount) {
+                        columns.add(rs.metaData.getColumnName(i))
+                        types.add(rs.metaData.getColumnType(i))
+                    }
+                }
+            }
+            val sql = "insert into $quote${table.name}$quote (${columns.joinToString { "$quote$it$quote" }}) " +
+                    "values (${columns.joinToString { "?" }})"
+            // Referenced table of each column, if the ids of the referenced table are remapped:
+            val remapTables = columns.map { column ->
+                if (column.equals(table.idColumn, ignoreCase = true) && remappedTables.contains(table.name.lowercase())) {
+                    table.name
+                } else {
+                    table.foreignKeys[column.lowercase()]?.takeIf { remappedTables.contains(it.lowercase()) }
+                }
+            }
+            val deferred = columns.map { deferredForeignKeys.contains(it.lowercase()) }
+            connection.prepareStatement(sql).use { stmt ->
+                openInputStream(file, compression).use { input ->
+                    objectMapper.readerFor(Map::class.java).readValues<Map<String, Any?>>(input).use { iterator ->
+                        while (iterator.hasNext()) {
+                            val row = iterator.next().mapKeys { it.key.lowercase() }
+                            for (i in columns.indices) {
+                                if (deferred[i]) {
+                                    setValue(stmt, i + 1, null, types[i]) // Set by restoreDeferredForeignKeys.
+                                    continue
+                                }
+                                val column = columns[i].lowercase()
+                                var value = row[column]
+                                val remapTable = remapTables[i] ?: getPolymorphicTable(
+                                    table, column, row, remappedTables, entityTables,
+                                )
+                                if (remapTable != null && value is Number) {
+                                    value = objectIdRegistry.getRemappedId(remapTable, value.toLong())
+                                }
+                                setValue(stmt, i + 1, value, types[i])
+                            }
+                            stmt.addBatch()
+                            if (++rows % settings.batchSize == 0L) {
+                                stmt.executeBatch()
+                            }
+                        }
+                    }
+                }
+                stmt.executeBatch()
+            }
+            connection.commit()
+        }
+        return TableStats(table.name, rows, System.currentTimeMillis() - started)
+    }
+
+    /**
+     * Sets the given foreign key columns (inserted as null by [restoreTable]) by updates via the primary key.
+     */
+    private fun restoreDeferredForeignKeys(
+        table: TableInfo,
+        deferredForeignKeys: Set<String>,
+        file: Path,
+        compression: Compression,
+        settings: RestoreSettings,
+        objectIdRegistry: ObjectIdRegistry,
+        remappedTables: Set<String>,
+    ) {
+        val idColumn = table.idColumn!!
+        val columns = deferredForeignKeys.toList()
+        var rows = 0L
+        dataSource.connection.use { connection ->
+            connection.autoCommit = false
+            val quote = connection.metaData.identifierQuoteString.trim()
+            // Column names of the target data base (case sensitive, if quoted):
+            val columnNames = mutableMapOf<String, String>()
+            connection.createStatement().use { stmt ->
+                stmt.executeQuery("select * from $quote${table.name}$quote where 1=0").use { rs ->
+                    for (i in 1..rs.metaData.columnCount) {
+                        columnNames[rs.metaData.getColumnName(i).lowercase()] = rs.metaData.getColumnName(i)
+                    }
+                }
+            }
+            val setColumns = columns.joinToString { "$quote${columnNames[it]}$quote=?" }
+            val sql = "update $quote${table.name}$quote set $setColumns where $quote$idColumn$quote=?"
+            connection.prepareStatement(sql).use { stmt ->
+                openInputStream(file, compression).use { input ->
+                    objectMapper.readerFor(Map::class.java).readValues<Map<String, Any?>>(input).use { iterator ->
+                        while (iterator.hasNext()) {
+                            val row = iterator.next().mapKeys { it.key.lowercase() }
+                            if (columns.all { row[it] == null }) {
+                                continue // Nothing to do, the columns are already null.
+                            }
+                            columns.forEachIndexed { i, column ->
+                                val referencedTable = table.foreignKeys[column]!!
+                                val value = (row[column] as Number?)?.toLong()?.let { id ->
+                                    if (remappedTables.contains(referencedTable.lowercase())) {
+                                        objectIdRegistry.getRemappedId(referencedTable, id)
+                                    } else id
+                                }
+                                stmt.setObject(i + 1, value, Types.BIGINT)
+                            }
+                            var id = (row[idColumn.lowercase()] as Number).toLong()
+                            if (remappedTables.contains(table.name.lowercase())) {
+                                id = objectIdRegistry.getRemappedId(table.name, id)
+                            }
+                            stmt.setLong(columns.size + 1, id)
+                            stmt.addBatch()
+                            if (++rows % settings.batchSize == 0L) {
+                                stmt.executeBatch()
+                            }
+                        }
+                    }
+                }
+                stmt.executeBatch()
+            }
+            connection.commit()
+        }
+        log.info { "Restore: foreign keys ${columns.joinToString()} of table ${table.name} set for $rows rows." }
+    }
+
+    /**
+     * @return The table of the entity referenced by the given polymorphic id column, if its ids are remapped.
+     */
+    private fun getPolymorphicTable(
+        table: TableInfo,
+        column: String,
+        row: Map<String, Any?>,
+        remappedTables: Set<String>,
+        entityTables: MutableMap<String, String?>,
+    ): String? {
+        if (remappedTables.isEmpty()) {
+            return null
+        }
+        val entityName = table.polymorphicIds[column]?.let { row[it] as String? } ?: return null
+        val entityTable = entityTables.getOrPut(entityName) {
+            entityTableResolver!!(entityName).also {
+                if (it == null) {
+                    log.warn { "Unknown entity '$entityName' in table '${table.name}', keeping ids of column '$column'." }
+                }
+            }
+        }
+        // Ids of tables not being restored are kept (as for foreign keys).
+        return entityTable?.takeIf { remappedTables.contains(it.lowercase()) }
+    }
+
+    private fun setValue(stmt: PreparedStatement, index: Int, value: Any?, type: Int) {
+        if (value == null) {
+            stmt.setNull(index, type)
+            return
+        }
+        when (type) {
+            Types.DATE -> stmt.setObject(index, LocalDate.parse(value as String))
+            Types.TIME -> stmt.setObject(index, LocalTime.parse(value as String))
+            Types.TIMESTAMP -> stmt.setObject(index, LocalDateTime.parse(value as String))
+            Types.TIMESTAMP_WITH_TIMEZONE -> stmt.setObject(index, OffsetDateTime.parse(value as String))
+            Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB ->
+                stmt.setBytes(index, Base64.getDecoder().decode(value as String))
+
+            else -> stmt.setObject(index, value)
+        }
+    }
+
+    /**
+     * @return All tables of the current schema (except the excluded ones) by lower case name.
+     */
+    private fun readTableInfos(): Map<String, TableInfo> {
+        val result = mutableMapOf<String, TableInfo>()
+        dataSource.connection.use { connection ->
+            val metaData = connection.metaData
+            val tableNames = mutableListOf<String>()
+            metaData.getTables(connection.catalog, connection.schema, "%", arrayOf("TABLE")).use { rs ->
+                while (rs.next()) {
+                    val name = rs.getString("TABLE_NAME")
+                    if (!excludedTables.contains(name.lowercase())) {
+                        tableNames.add(name)
+                    }
+                }
+            }
+            tableNames.forEach { tableName ->
+                val columnTypes = mutableMapOf<String, Int>()
+                val nullableColumns = mutableSetOf<String>()
+                metaData.getColumns(connection.catalog, connection.schema, tableName, "%").use { rs ->
+                    while (rs.next()) {
+                        val column = rs.getString("COLUMN_NAME").lowercase()
+                        columnTypes[column] = rs.getInt("DATA_TYPE")
+                        if (rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls) {
+                            nullableColumns.add(column)
+                        }
+                    }
+                }
+                val primaryKeys = mutableListOf<String>()
+                metaData.getPrimaryKeys(connection.catalog, connection.schema, tableName).use { rs ->
+                    while (rs.next()) {
+                        primaryKeys.add(rs.getString("COLUMN_NAME"))
+                    }
+                }
+                val idColumn = primaryKeys.singleOrNull()?.takeIf { columnTypes[it.lowercase()] in INTEGRAL_TYPES }
+                val foreignKeys = mutableMapOf<String, String>()
+                metaData.getImportedKeys(connection.catalog, connection.schema, tableName).use { rs ->
+                    while (rs.next()) {
+                        foreignKeys[rs.getString("FKCOLUMN_NAME").lowercase()] = rs.getString("PKTABLE_NAME")
+                    }
+                }
+                val polymorphicIds = POLYMORPHIC_ID_COLUMNS.filter { (idColumn, nameColumn) ->
+                    columnTypes.containsKey(idColumn) && columnTypes.containsKey(nameColumn)
+                }
+                result[tableName.lowercase()] =
+                    TableInfo(tableName, idColumn, foreignKeys, nullableColumns, polymorphicIds)
+            }
+        }
+        return result
+    }
+
+    /**
+     * Sorts the tables by their foreign key dependencies. Tables of the same level are independent of each other.
+     * Self references and the references of a table breaking a cyclic dependency are deferred: they are set after
+     * all tables are restored. This isn't possible for tables without single primary key or for not nullable
+     * columns, the insert may fail in this case.
+     */
+    private fun getDependencyLevels(tables: List<TableInfo>): DependencyLevels {
+        val remaining = tables.associateBy { it.name.lowercase() }.toMutableMap()
+        val levels = mutableListOf<List<TableInfo>>()
+        val deferredForeignKeys = mutableMapOf<String, MutableSet<String>>()
+        fun defer(table: TableInfo, columns: Collection<String>) {
+            if (columns.isEmpty()) {
+                return
+            }
+            val deferrable = columns.filter { table.idColumn != null && table.nullableColumns.contains(it) }
+            if (deferrable.size < columns.size) {
+                val others = (columns - deferrable.toSet()).joinToString()
+                log.warn { "Can't defer foreign keys $others of table '${table.name}', insert may fail." }
+            }
+            if (deferrable.isNotEmpty()) {
+                deferredForeignKeys.getOrPut(table.name.lowercase()) { mutableSetOf() }.addAll(deferrable)
+            }
+        }
+        tables.forEach { table ->
+            defer(table, table.foreignKeys.filterValues { it.equals(table.name, ignoreCase = true) }.keys)
+        }
+        while (remaining.isNotEmpty()) {
+            var level = remaining.values.filter { table ->
+                table.foreignKeys.values.none { referenced ->
+                    val key = referenced.lowercase()
+                    key != table.name.lowercase() && remaining.containsKey(key)
+                }
+            }
+            if (level.isEmpty()) {
+                val table = remaining.values.minBy { it.name }
+                log.info { "Cyclic foreign key dependencies detected, restoring table '${table.name}' first." }
+                defer(table, table.foreignKeys.filterValues { referenced ->
+                    !referenced.equals(table.name, ignoreCase = true) && remaining.containsKey(referenced.lowercase())
+                }.keys)
+                level = listOf(table)
+            }
+            level.forEach { remaining.remove(it.name.lowercase()) }
+            levels.add(level)
+        }
+        return DependencyLevels(levels, deferredForeignKeys)
+    }
+
+    /**
+     * Advances the hibernate sequence by the given count.
+     * @return The first reserved id.
+     */
+    private fun reserveSequenceIds(count: Long): Long {
+        dataSource.connection.use { connection ->
+            val next = nextSequenceValue(connection)
+            restartSequence(connection, next + count)
+            return next
+        }
+    }
+
+    /**
+     * Ensures, that the hibernate sequence will not deliver ids of restored objects.
+     */
+    private fun ensureSequenceAbove(maxId: Long) {
+        dataSource.connection.use { connection ->
+            if (nextSequenceValue(connection) <= maxId) {
+                restartSequence(connection, maxId + SEQUENCE_GAP)
+            }
+        }
+    }
+
+    private fun nextSequenceValue(connection: Connection): Long {
+        val sql = if (isPostgreSQL(connection)) {
+            "select nextval('$SEQUENCE')"
+        } else {
+            "call next value for $SEQUENCE" // HSQLDB
+        }
+        connection.createStatement().use { stmt ->
+            stmt.executeQuery(sql).use { rs ->
+                rs.next()
+                return rs.getLong(1)
+            }
+        }
+    }
+
+    private fun restartSequence(connection: Connection, value: Long) {
+        connection.createStatement().use { stmt ->
+            if (isPostgreSQL(connection)) {
+                stmt.execute("select setval('$SEQUENCE', $value)")
+            } else {
+                stmt.execute("alter sequence $SEQUENCE restart with $value") // HSQLDB
+            }
+        }
+        if (!connection.autoCommit) {
+            connection.commit()
+        }
+    }
+
+    private fun isPostgreSQL(connection: Connection): Boolean {
+        return connection.metaData.databaseProductName.contains("PostgreSQL", ignoreCase = true)
+    }
+
+    private fun <T> runParallel(threads: Int, tasks: List<Callable<T>>): List<T> {
+        if (tasks.isEmpty()) {
+            return emptyList()
+        }
+        val executor = Executors.newFixedThreadPool(threads.coerceIn(1, tasks.size))
+        try {
+            return executor.invokeAll(tasks).map { it.get() }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun openOutputStream(file: Path, compression: Compression): OutputStream {
+        val out = BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)
+        return if (compression == Compression.GZIP) GZIPOutputStream(out, BUFFER_SIZE) else out
+    }
+
+    private fun openInputStream(file: Path, compression: Compression): InputStream {
+        val input = BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)
+        return if (compression == Compression.GZIP) GZIPInputStream(input, BUFFER_SIZE) else input
+    }
+
+    private fun logStats(operation: String, stats: List<TableStats>) {
+        stats.sortedByDescending { it.millis }.forEach { log.info { "$operation: $it" } }
+        log.info { "$operation finished: ${stats.size} tables, ${stats.sumOf { it.rows }} rows." }
     }
 
     companion object {
-        private var objectMapper: ObjectMapper? = null
+        const val MANIFEST_FILE = "manifest.json"
+
+        private const val DEFAULT_THREADS = 4
+
+        private const val DEFAULT_FETCH_SIZE = 1000
+
+        private const val DEFAULT_BATCH_SIZE = 500
+
+        private const val BUFFER_SIZE = 64 * 1024
+
+        private const val SEQUENCE = "hibernate_sequence"
+
+        /**
+         * Gap between the restored ids and the hibernate sequence (pooled optimizer of Hibernate).
+         */
+        private const val SEQUENCE_GAP = 1000L
+
+        /**
+         * Default name of flyway's history table (ProjectForge configures its own name by spring.flyway.table).
+         */
+        const val DEFAULT_FLYWAY_TABLE = "flyway_schema_history"
+
+        /**
+         * Polymorphic id columns (without foreign key constraint) -> column of the entity name (class name) of the
+         * referenced object (e. g. t_pf_history).
+         */
+        val POLYMORPHIC_ID_COLUMNS = mapOf("entity_id" to "entity_name")
+
+        private val INTEGRAL_TYPES = setOf(Types.INTEGER, Types.BIGINT, Types.SMALLINT)
     }
 }
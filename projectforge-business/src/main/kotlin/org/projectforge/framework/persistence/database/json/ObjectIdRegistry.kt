@@ -24,15 +24,50 @@
 package org.projectforge.framework.persistence.database.json
 
 import org.projectforge.framework.persistence.entities.AbstractBaseDO
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
 
 /**
- * WIP: Trying to export and import whole database as json (for db migration and for creating test data).
+ * Registry of written objects (json export) and of remapped ids (restore of database dumps, see [DatabaseWriter]).
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
 internal class ObjectIdRegistry {
     private val writtenObjects = mutableMapOf<Class<*>, MutableList<Any>>()
 
+    /**
+     * Remapped ids by table: old id (of the dump) -> new id.
+     */
+    private val remappedIds = ConcurrentHashMap<String, ConcurrentHashMap<Long, Long>>()
+
+    private var nextId: AtomicLong? = null
+
+    private var lastId = 0L
+
+    /**
+     * Reserves the id range [firstId]..[lastId] for remapping (the sequence of the data base must already be
+     * advanced).
+     */
+    internal fun reserveIds(firstId: Long, lastId: Long) {
+        this.nextId = AtomicLong(firstId)
+        this.lastId = lastId
+    }
+
+    /**
+     * Gets the new id for the given old id of the given table. If the old id wasn't seen before (as primary key or as
+     * foreign key), a new id of the reserved range is assigned. So forward references (e. g. parent tasks with higher
+     * ids than their children) are also supported.
+     */
+    internal fun getRemappedId(table: String, oldId: Long): Long {
+        return remappedIds.computeIfAbsent(table.lowercase()) { ConcurrentHashMap() }.computeIfAbsent(oldId) {
+            val newId = nextId?.getAndIncrement() ?: throw IllegalStateException("No ids reserved for remapping.")
+            if (newId > lastId) {
+                throw IllegalStateException("Reserved id range exceeded (last reserved id: $lastId).")
+            }
+            newId
+        }
+    }
+
     internal fun wasWritten(obj: AbstractBaseDO<*>): Boolean {
         val list = writtenObjects[obj::class.java] ?: return false
         return list.find {
@@ -87,11 +87,19 @@ object HistoryBaseDaoAdapter {
         return insertHistoryEntry(historyEntry, context)
     }
 
+    /**
+     * Inserts the history entry or, in write-behind mode, stores it in the outbox (see [HistoryWriteBehindService]).
+     */
     fun insertHistoryEntry(
         historyEntry: HistoryEntryDO,
         context: PfPersistenceContext,
     ): HistoryEntryDO {
-        context.insert(historyEntry)
+        val writeBehindService = HistoryWriteBehindService.instance
+        if (writeBehindService?.enabled == true) {
+            writeBehindService.capture(historyEntry, context)
+        } else {
+            context.insert(historyEntry)
+        }
         return historyEntry
     }
 
@@ -0,0 +1,57 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.framework.persistence.history
+
+/**
+ * Position in the history timeline of an object. The timeline is ordered by modifiedAt and id descending, the cursor
+ * points to the last entry of a page (the next page starts with the entry after it).
+ *
+ * Serialized as "<modifiedAt in epoch millis>-<id>" for usage in rest calls.
+ */
+class HistoryCursor(val modifiedAt: Long, val id: Long) {
+    /**
+     * @return true, if the given entry is located after this cursor in the timeline.
+     */
+    fun isBefore(modifiedAt: Long, id: Long): Boolean {
+        return modifiedAt < this.modifiedAt || (modifiedAt == this.modifiedAt && id < this.id)
+    }
+
+    override fun toString(): String {
+        return "$modifiedAt-$id"
+    }
+
+    companion object {
+        /**
+         * @return The cursor or null, if the given string is blank or invalid.
+         */
+        fun parse(str: String?): HistoryCursor? {
+            val parts = str?.split('-') ?: return null
+            if (parts.size != 2) {
+                return null
+            }
+            val modifiedAt = parts[0].toLongOrNull() ?: return null
+            val id = parts[1].toLongOrNull() ?: return null
+            return HistoryCursor(modifiedAt, id)
+        }
+    }
+}
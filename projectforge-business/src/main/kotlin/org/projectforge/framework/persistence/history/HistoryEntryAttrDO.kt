@@ -58,10 +58,7 @@ import kotlin.reflect.KMutableProperty1
 @Entity
 @Table(
     name = "t_pf_history_attr",
-    //indexes = [Index(
-    //    name = "ix_pf_history_ent",
-    //    columnList = "ENTITY_ID,ENTITY_NAME"
-    //), Index(name = "ix_pf_history_mod", columnList = "MODIFIEDAT")]
+    indexes = [Index(name = "ix_pf_history_attr_masterpk", columnList = "master_fk")]
 )
 @Indexed
 //@ClassBridge(impl = HistoryMasterClassBridge::class)
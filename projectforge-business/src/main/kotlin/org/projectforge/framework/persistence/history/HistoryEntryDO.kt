@@ -59,14 +59,19 @@ import java.util.*
         name = HistoryEntryDO.SELECT_HISTORY_BY_ENTITY_IDS,
         query = "from HistoryEntryDO as m left join fetch m.attributes where m.entityId in :entityIds and m.entityName=:entityName order by m.id desc"
     ),
+    NamedQuery(
+        name = HistoryEntryDO.SELECT_HISTORY_BY_IDS,
+        query = "from HistoryEntryDO as m left join fetch m.attributes where m.id in :ids"
+    ),
 )
 @Entity
 @Table(
     name = "t_pf_history",
-    //indexes = [Index(
-    //    name = "ix_pf_history_ent",
-    //    columnList = "ENTITY_ID,ENTITY_NAME"
-    //), Index(name = "ix_pf_history_mod", columnList = "MODIFIEDAT")]
+    indexes = [
+        Index(name = "idx_t_pf_history_entity", columnList = "entity_name,entity_id,modifiedat"),
+        Index(name = "idx_t_pf_history_entity_modifiedat", columnList = "entity_name,modifiedat"),
+        Index(name = "idx_t_pf_history_modifiedby", columnList = "modifiedby,modifiedat"),
+    ]
 )
 @Indexed
 //@ClassBridge(impl = HistoryMasterClassBridge::class)
@@ -132,6 +137,7 @@ class HistoryEntryDO : HistoryEntry {
     companion object {
         internal const val SELECT_HISTORY_FOR_BASEDO = "HistoryEntryDO_SelectForBaseDO"
         internal const val SELECT_HISTORY_BY_ENTITY_IDS = "HistoryEntryDO_SelectByEntityIds"
+        internal const val SELECT_HISTORY_BY_IDS = "HistoryEntryDO_SelectByIds"
 
         fun asEntityName(obj: Any): String {
             return HibernateUtils.getRealClass(obj).name
@@ -45,6 +45,9 @@ class HistoryFormatService {
     @Autowired
     private lateinit var applicationContext: ApplicationContext
 
+    @Autowired
+    private lateinit var historyService: HistoryService
+
     @Autowired
     private lateinit var historyValueService: HistoryValueService
 
@@ -87,6 +90,47 @@ class HistoryFormatService {
         return entries.sortedByDescending { it.modifiedAt }
     }
 
+    /**
+     * Selects one page of the history timeline of the given item (ordered by modifiedAt and id descending). For
+     * pageable objects (see [BaseDao.isHistoryPageable]) only the entries of the requested page are loaded, for all
+     * other objects the page is taken from the complete history.
+     * @param cursor The cursor of the previous page (see [HistoryTimelinePage.nextCursor]) or null for the first page.
+     */
+    fun <O : ExtendedBaseDO<Long>> selectTimelinePage(
+        baseDao: BaseDao<O>,
+        item: O,
+        cursor: HistoryCursor?,
+        pageSize: Int,
+        checkAccess: Boolean = true,
+    ): HistoryTimelinePage {
+        if (!baseDao.isHistoryPageable) {
+            val entries = selectAsDisplayEntries(baseDao, item, checkAccess = checkAccess)
+                .sortedWith(compareByDescending<DisplayHistoryEntry> { it.modifiedAt }.thenByDescending { it.id })
+                .filter { cursor == null || cursor.isBefore(it.modifiedAt?.time ?: 0L, it.id ?: 0L) }
+            return createTimelinePage(entries.take(pageSize), entries.size > pageSize)
+        }
+        if (item.id == null || (checkAccess && !baseDao.hasLoggedInUserHistoryAccess(item, false))) {
+            return HistoryTimelinePage(emptyList(), null)
+        }
+        val loadContext = HistoryLoadContext(baseDao)
+        val hasMore = historyService.loadHistoryPage(item, loadContext, cursor, pageSize)
+        val entries = loadContext.originUnsortedEntries.map { convert(item, it, loadContext) }.toMutableList()
+        historyServiceAdapters[item::class.java.name]?.convertEntries(item, entries, loadContext)
+        return createTimelinePage(
+            entries.sortedWith(compareByDescending<DisplayHistoryEntry> { it.modifiedAt }.thenByDescending { it.id }),
+            hasMore,
+        )
+    }
+
+    private fun createTimelinePage(entries: List<DisplayHistoryEntry>, hasMore: Boolean): HistoryTimelinePage {
+        val nextCursor = if (hasMore) {
+            entries.lastOrNull()?.let { HistoryCursor(it.modifiedAt?.time ?: 0L, it.id ?: 0L).toString() }
+        } else {
+            null
+        }
+        return HistoryTimelinePage(entries, nextCursor)
+    }
+
     fun <O : BaseDO<*>> convert(
         item: O,
         historyEntry: HistoryEntryDO,
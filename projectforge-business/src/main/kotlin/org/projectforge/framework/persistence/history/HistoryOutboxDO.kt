@@ -0,0 +1,79 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.history
+
+import jakarta.persistence.*
+import java.util.*
+
+/**
+ * Outbox of history entries written in write-behind mode (see [HistoryWriteBehindService]). The history entries
+ * (including their attributes) are serialized as json and inserted in the transaction of the modified entity. They
+ * are moved to [HistoryEntryDO] and [HistoryEntryAttrDO] by the background writer, so no history entry gets lost on
+ * crashes.
+ */
+@Entity
+@Table(name = "t_pf_history_outbox")
+@NamedQueries(
+    NamedQuery(
+        name = HistoryOutboxDO.SELECT_PENDING,
+        query = "from HistoryOutboxDO where attempts<:maxAttempts order by id"
+    ),
+    NamedQuery(name = HistoryOutboxDO.DELETE_BY_IDS, query = "delete from HistoryOutboxDO where id in :ids"),
+    NamedQuery(
+        name = HistoryOutboxDO.COUNT_FAILED,
+        query = "select count(*) from HistoryOutboxDO where attempts>=:maxAttempts"
+    ),
+    NamedQuery(
+        name = HistoryOutboxDO.DELETE_FAILED,
+        query = "delete from HistoryOutboxDO where attempts>=:maxAttempts and created<:createdBefore"
+    ),
+)
+class HistoryOutboxDO {
+    @get:GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "hibernate_sequence")
+    @get:Column(name = "pk")
+    @get:Id
+    var id: Long? = null
+
+    @get:Column(name = "created", nullable = false)
+    var created: Date? = null
+
+    /**
+     * The history entry with its attributes as json, see [HistoryWriteBehindService.OutboxEntry].
+     */
+    @get:Column(name = "payload", length = 1_000_000, nullable = false)
+    var payload: String? = null
+
+    /**
+     * Number of failed attempts to write this entry.
+     */
+    @get:Column(name = "attempts", nullable = false)
+    var attempts: Int = 0
+
+    companion object {
+        internal const val SELECT_PENDING = "HistoryOutboxDO_SelectPending"
+        internal const val DELETE_BY_IDS = "HistoryOutboxDO_DeleteByIds"
+        internal const val COUNT_FAILED = "HistoryOutboxDO_CountFailed"
+        internal const val DELETE_FAILED = "HistoryOutboxDO_DeleteFailed"
+    }
+}
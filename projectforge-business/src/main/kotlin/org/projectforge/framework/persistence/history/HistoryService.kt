@@ -53,6 +53,9 @@ class HistoryService {
     @Autowired
     private lateinit var persistenceService: PfPersistenceService
 
+    @Autowired
+    private lateinit var historyWriteBehindService: HistoryWriteBehindService
+
     init {
         instance = this
     }
@@ -71,6 +74,7 @@ class HistoryService {
      */
     fun loadHistory(baseDO: BaseDO<Long>, baseDao: BaseDao<*>? = null): HistoryLoadContext {
         val loadContext = HistoryLoadContext(baseDao)
+        historyWriteBehindService.flushIfPending()
         persistenceService.runReadOnly { context ->
             loadAndMergeHistory(baseDO::class.java, baseDO.id, loadContext, context)
         }
@@ -86,6 +90,7 @@ class HistoryService {
         baseDO: BaseDO<Long>, loadContext: HistoryLoadContext,
         customize: ((entry: HistoryEntryDO) -> Unit)? = null,
     ): HistoryLoadContext {
+        historyWriteBehindService.flushIfPending()
         persistenceService.runReadOnly { context ->
             loadAndMergeHistory(baseDO::class.java, baseDO.id, loadContext, context, customize)
         }
@@ -93,6 +98,56 @@ class HistoryService {
     }
 
 
+    /**
+     * Loads one page of the own history entries of the given object (history entries of embedded objects aren't
+     * included), ordered by modifiedAt and id descending. Only the ids of the page are selected (by index), the
+     * entries with their attributes are loaded afterward.
+     * @param cursor The last entry of the previous page or null for the first page.
+     * @return true, if there are more entries after this page.
+     */
+    fun loadHistoryPage(
+        baseDO: BaseDO<Long>,
+        loadContext: HistoryLoadContext,
+        cursor: HistoryCursor?,
+        pageSize: Int,
+    ): Boolean {
+        val entityId = baseDO.id ?: return false
+        historyWriteBehindService.flushIfPending()
+        return persistenceService.runReadOnly { context ->
+            val sb = StringBuilder("select m.id from HistoryEntryDO m where m.entityId=:entityId and m.entityName=:entityName")
+            val keyValues = mutableListOf<Pair<String, Any?>>(
+                Pair("entityId", entityId),
+                Pair("entityName", baseDO::class.java.name),
+            )
+            if (cursor != null) {
+                sb.append(" and (m.modifiedAt<:modifiedAt or (m.modifiedAt=:modifiedAt and m.id<:id))")
+                keyValues.add(Pair("modifiedAt", Date(cursor.modifiedAt)))
+                keyValues.add(Pair("id", cursor.id))
+            }
+            sb.append(" order by m.modifiedAt desc, m.id desc")
+            val ids = context.executeQuery(
+                sb.toString(),
+                Long::class.java,
+                *keyValues.toTypedArray(),
+                maxResults = pageSize + 1,
+            )
+            if (ids.isEmpty()) {
+                return@runReadOnly false
+            }
+            val entries = context.executeNamedQuery(
+                HistoryEntryDO.SELECT_HISTORY_BY_IDS,
+                HistoryEntryDO::class.java,
+                Pair("ids", ids.take(pageSize)),
+            )
+            entries.forEach { entry ->
+                HistoryOldFormatConverter.transformOldAttributes(entry)
+                loadContext.setCurrent(entry)
+            }
+            mergeHistoryEntries(loadContext, entries)
+            ids.size > pageSize
+        }
+    }
+
     /**
      * Loads all history entries for the given entity by class and id's.
      * Please note: Embedded objects are only loaded, if they're part of any history entry attribute of the given object.
@@ -106,6 +161,7 @@ class HistoryService {
         entityIds: Collection<Long>,
         loadContext: HistoryLoadContext,
     ) {
+        historyWriteBehindService.flushIfPending()
         persistenceService.runReadOnly { context ->
             loadAndMergeHistory(entityClass, entityIds, context, loadContext)
         }
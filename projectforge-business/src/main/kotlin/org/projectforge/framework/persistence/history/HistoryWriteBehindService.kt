@@ -0,0 +1,304 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.history
+
+import jakarta.annotation.PostConstruct
+import mu.KotlinLogging
+import org.hibernate.Session
+import org.projectforge.Constants
+import org.projectforge.common.metrics.PfMetrics
+import org.projectforge.framework.json.JsonUtils
+import org.projectforge.framework.persistence.jpa.PfPersistenceContext
+import org.projectforge.framework.persistence.jpa.PfPersistenceService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.scheduling.annotation.Scheduled
+import org.springframework.stereotype.Service
+import java.util.*
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Optional write-behind mode for history entries (projectforge.history.writeBehind=true).
+ *
+ * Without write-behind, every history entry and every attribute is inserted (and indexed by Hibernate Search) in the
+ * transaction of the modified entity. With write-behind, only one outbox row per history entry is inserted
+ * ([HistoryOutboxDO]), and the background writer moves the outbox entries in batches (JDBC batch inserts) into the
+ * history tables. Outbox rows and history entries are written/deleted in the same transaction, so outbox entries left
+ * by a crash are simply written on the next run.
+ *
+ * Outbox entries failing [MAX_ATTEMPTS] times aren't tried again. They're counted by the gauge history.outbox.failed
+ * and deleted after [FAILED_RETENTION_DAYS] days (their payloads are logged on giving up).
+ */
+@Service
+class HistoryWriteBehindService {
+    class OutboxEntry(
+        var entityName: String? = null,
+        var entityId: Long? = null,
+        var entityOpType: EntityOpType? = null,
+        var modifiedBy: String? = null,
+        var modifiedAt: Long? = null,
+        var attributes: List<OutboxAttr>? = null,
+    )
+
+    class OutboxAttr(
+        var propertyName: String? = null,
+        var propertyTypeClass: String? = null,
+        var opType: PropertyOpType? = null,
+        var value: String? = null,
+        var oldValue: String? = null,
+    )
+
+    @Autowired
+    private lateinit var persistenceService: PfPersistenceService
+
+    @Value("\${projectforge.history.writeBehind:false}")
+    var enabled: Boolean = false
+        internal set // internal for test cases.
+
+    /**
+     * Set on every capture, cleared if the outbox was found empty. Avoids unnecessary queries in [flushIfPending].
+     */
+    @Volatile
+    private var pending = true
+
+    /**
+     * Number of outbox entries given up (updated by [cleanupFailedEntries]).
+     */
+    @Volatile
+    private var failedCount = 0L
+
+    @PostConstruct
+    private fun postConstruct() {
+        instance = this
+        PfMetrics.gauge("history.outbox.failed", this) { it.failedCount.toDouble() }
+        if (enabled) {
+            log.info { "History write-behind mode enabled." }
+        }
+    }
+
+    /**
+     * Stores the given history entry (with its attributes) in the outbox. Must be called inside the transaction of
+     * the modified entity.
+     */
+    fun capture(historyEntry: HistoryEntryDO, context: PfPersistenceContext) {
+        val entry = OutboxEntry(
+            entityName = historyEntry.entityName,
+            entityId = historyEntry.entityId,
+            entityOpType = historyEntry.entityOpType,
+            modifiedBy = historyEntry.modifiedBy,
+            modifiedAt = historyEntry.modifiedAt?.time,
+            attributes = historyEntry.attributes?.map { attr ->
+                OutboxAttr(
+                    propertyName = attr.propertyName,
+                    propertyTypeClass = attr.propertyTypeClass,
+                    opType = attr.opType,
+                    value = attr.value,
+                    oldValue = attr.oldValue,
+                )
+            },
+        )
+        val outbox = HistoryOutboxDO()
+        outbox.created = Date()
+        outbox.payload = JsonUtils.toJson(entry)
+        context.insert(outbox)
+        pending = true
+    }
+
+    /**
+     * Writes all pending outbox entries, if write-behind is enabled. Called before loading history entries, so
+     * users always see their own modifications.
+     */
+    fun flushIfPending() {
+        if (enabled && pending) {
+            flush()
+        }
+    }
+
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MILLIS, initialDelay = FLUSH_INTERVAL_MILLIS)
+    fun scheduledFlush() {
+        if (enabled) {
+            flush()
+        }
+    }
+
+    /**
+     * Moves all outbox entries into the history tables (in chunks of [BATCH_SIZE]).
+     */
+    @Synchronized
+    fun flush() {
+        try {
+            while (true) {
+                val outboxEntries = persistenceService.runIsolatedReadOnly { context ->
+                    context.executeNamedQuery(
+                        HistoryOutboxDO.SELECT_PENDING,
+                        HistoryOutboxDO::class.java,
+                        Pair("maxAttempts", MAX_ATTEMPTS),
+                        maxResults = BATCH_SIZE,
+                    )
+                }
+                if (outboxEntries.isEmpty()) {
+                    pending = false
+                    return
+                }
+                try {
+                    write(outboxEntries)
+                } catch (ex: Exception) {
+                    log.warn(ex) { "Error while writing ${outboxEntries.size} history entries, trying them one by one: ${ex.message}" }
+                    outboxEntries.forEach { writeSingle(it) }
+                }
+                if (outboxEntries.size < BATCH_SIZE) {
+                    pending = false
+                    return
+                }
+            }
+        } catch (ex: Exception) {
+            log.error(ex) { "Error while flushing history outbox: ${ex.message}" }
+        }
+    }
+
+    /**
+     * Deletes the given up outbox entries older than [FAILED_RETENTION_DAYS] days and updates the number of the given
+     * up entries.
+     */
+    @Scheduled(cron = "0 15 3 * * *")
+    fun cleanupFailedEntries() {
+        try {
+            deleteFailedEntries(Date(System.currentTimeMillis() - FAILED_RETENTION_DAYS * Constants.MILLIS_PER_DAY))
+        } catch (ex: Exception) {
+            log.error(ex) { "Error while deleting failed history outbox entries: ${ex.message}" }
+        }
+    }
+
+    /**
+     * @return The number of deleted entries.
+     */
+    internal fun deleteFailedEntries(createdBefore: Date): Int {
+        val deleted = persistenceService.runInNewTransaction { context ->
+            context.executeUpdate(
+                HistoryOutboxDO.DELETE_FAILED,
+                Pair("maxAttempts", MAX_ATTEMPTS),
+                Pair("createdBefore", createdBefore),
+                namedQuery = true,
+            )
+        }
+        if (deleted > 0) {
+            log.warn { "$deleted history outbox entries deleted, which couldn't be written in $MAX_ATTEMPTS attempts." }
+        }
+        failedCount = countFailedEntries()
+        if (failedCount > 0) {
+            log.warn { "$failedCount history outbox entries couldn't be written in $MAX_ATTEMPTS attempts." }
+        }
+        return deleted
+    }
+
+    internal fun countFailedEntries(): Long {
+        return persistenceService.runIsolatedReadOnly { context ->
+            context.selectNamedSingleResult(
+                HistoryOutboxDO.COUNT_FAILED,
+                Long::class.java,
+                Pair("maxAttempts", MAX_ATTEMPTS),
+            )
+        } ?: 0L
+    }
+
+    private fun write(outboxEntries: List<HistoryOutboxDO>) {
+        persistenceService.runInNewTransaction { context ->
+            context.em.unwrap(Session::class.java).jdbcBatchSize = BATCH_SIZE
+            val attributes = outboxEntries.flatMap { outbox ->
+                persist(outbox, context)
+            }
+            // Inserted after all entries: hibernate.order_inserts isn't enabled, so interleaved inserts of entries and
+            // their attributes would break every JDBC batch.
+            attributes.forEach { context.insert(it) }
+            context.executeUpdate(
+                HistoryOutboxDO.DELETE_BY_IDS,
+                Pair("ids", outboxEntries.map { it.id }),
+                namedQuery = true,
+            )
+        }
+    }
+
+    private fun writeSingle(outbox: HistoryOutboxDO) {
+        try {
+            write(listOf(outbox))
+        } catch (ex: Exception) {
+            val attempts = outbox.attempts + 1
+            if (attempts >= MAX_ATTEMPTS) {
+                log.error(ex) { "Giving up writing history outbox entry #${outbox.id} after $attempts attempts: ${outbox.payload}" }
+                ++failedCount
+            } else {
+                log.warn(ex) { "Error while writing history outbox entry #${outbox.id} (attempt $attempts): ${ex.message}" }
+            }
+            persistenceService.runInNewTransaction { context ->
+                context.executeUpdate(
+                    "update HistoryOutboxDO set attempts=:attempts where id=:id",
+                    Pair("attempts", attempts),
+                    Pair("id", outbox.id),
+                )
+            }
+        }
+    }
+
+    /**
+     * Inserts the history entry of the given outbox entry.
+     * @return The attributes of the history entry to insert (not yet persisted).
+     */
+    private fun persist(outbox: HistoryOutboxDO, context: PfPersistenceContext): List<HistoryEntryAttrDO> {
+        val entry = JsonUtils.fromJson(outbox.payload, OutboxEntry::class.java, failOnUnknownProps = false)
+            ?: throw IllegalStateException("Can't deserialize history outbox entry #${outbox.id}.")
+        val historyEntry = HistoryEntryDO()
+        historyEntry.entityName = entry.entityName
+        historyEntry.entityId = entry.entityId
+        historyEntry.entityOpType = entry.entityOpType
+        historyEntry.modifiedBy = entry.modifiedBy
+        historyEntry.modifiedAt = entry.modifiedAt?.let { Date(it) } ?: outbox.created
+        context.insert(historyEntry)
+        // Not added to the attributes of the history entry, so they aren't persisted by cascade.
+        return entry.attributes?.map { outboxAttr ->
+            val attr = HistoryEntryAttrDO()
+            attr.propertyName = outboxAttr.propertyName
+            attr.propertyTypeClass = outboxAttr.propertyTypeClass
+            attr.opType = outboxAttr.opType
+            attr.value = outboxAttr.value
+            attr.oldValue = outboxAttr.oldValue
+            attr.parent = historyEntry
+            attr
+        } ?: emptyList()
+    }
+
+    companion object {
+        private const val FLUSH_INTERVAL_MILLIS = 1000L
+
+        private const val BATCH_SIZE = 100
+
+        internal const val MAX_ATTEMPTS = 5
+
+        private const val FAILED_RETENTION_DAYS = 30L
+
+        @JvmStatic
+        var instance: HistoryWriteBehindService? = null
+            private set
+    }
+}
@@ -0,0 +1,86 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.jpa
+
+import io.micrometer.core.instrument.FunctionCounter
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.binder.MeterBinder
+import jakarta.persistence.EntityManagerFactory
+import org.hibernate.SessionFactory
+import org.hibernate.stat.Statistics
+import org.projectforge.common.metrics.PfMetrics
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Component
+
+/**
+ * Exposes Hibernate's statistics (hibernate.generate_statistics=true) as meters. Spring Boot's actuator binds all
+ * [MeterBinder] beans automatically to its registries.
+ */
+@Component
+class HibernateStatisticsMetrics : MeterBinder {
+    @Autowired
+    private lateinit var entityManagerFactory: EntityManagerFactory
+
+    override fun bindTo(registry: MeterRegistry) {
+        val statistics = entityManagerFactory.unwrap(SessionFactory::class.java).statistics
+        if (!statistics.isStatisticsEnabled) {
+            return
+        }
+        counter(registry, statistics, "queries", "executed") { it.queryExecutionCount }
+        counter(registry, statistics, "entities", "loaded") { it.entityLoadCount }
+        counter(registry, statistics, "entities", "fetched") { it.entityFetchCount }
+        counter(registry, statistics, "entities", "inserted") { it.entityInsertCount }
+        counter(registry, statistics, "entities", "updated") { it.entityUpdateCount }
+        counter(registry, statistics, "entities", "deleted") { it.entityDeleteCount }
+        counter(registry, statistics, "collections", "loaded") { it.collectionLoadCount }
+        counter(registry, statistics, "collections", "fetched") { it.collectionFetchCount }
+        counter(registry, statistics, "cache.second-level", "hit") { it.secondLevelCacheHitCount }
+        counter(registry, statistics, "cache.second-level", "miss") { it.secondLevelCacheMissCount }
+        counter(registry, statistics, "transactions", "committed") { it.successfulTransactionCount }
+        counter(registry, statistics, "transactions", "total") { it.transactionCount }
+        counter(registry, statistics, "sessions", "opened") { it.sessionOpenCount }
+        counter(registry, statistics, "sessions", "closed") { it.sessionCloseCount }
+        counter(registry, statistics, "statements", "prepared") { it.prepareStatementCount }
+        Gauge.builder("${METER_PREFIX}queries.max.time", statistics) { it.queryExecutionMaxTime.toDouble() }
+            .baseUnit("milliseconds")
+            .register(registry)
+    }
+
+    private fun counter(
+        registry: MeterRegistry,
+        statistics: Statistics,
+        name: String,
+        result: String,
+        value: (Statistics) -> Long,
+    ) {
+        FunctionCounter.builder("$METER_PREFIX$name", statistics) { value(it).toDouble() }
+            .tag("result", result)
+            .register(registry)
+    }
+
+    companion object {
+        private const val METER_PREFIX = "${PfMetrics.PREFIX}hibernate."
+    }
+}
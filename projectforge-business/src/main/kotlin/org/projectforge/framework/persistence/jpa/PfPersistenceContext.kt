@@ -96,6 +96,37 @@ class PfPersistenceContext internal constructor(
         return callStats?.getStats() ?: PersistenceCallsStats()
     }
 
+    /**
+     * Actions to run after the commit of this transaction, see [PfPersistenceService.runAfterCommit].
+     */
+    private var afterCommitActions: MutableList<() -> Unit>? = null
+
+    /**
+     * Actions to run after the rollback of this transaction, see [PfPersistenceService.runAfterRollback].
+     */
+    private var afterRollbackActions: MutableList<() -> Unit>? = null
+
+    internal fun registerAfterCommit(action: () -> Unit) {
+        require(type == ContextType.TRANSACTION) { "After commit actions are only supported by transactional contexts." }
+        (afterCommitActions ?: mutableListOf<() -> Unit>().also { afterCommitActions = it }).add(action)
+    }
+
+    internal fun registerAfterRollback(action: () -> Unit) {
+        require(type == ContextType.TRANSACTION) { "After rollback actions are only supported by transactional contexts." }
+        (afterRollbackActions ?: mutableListOf<() -> Unit>().also { afterRollbackActions = it }).add(action)
+    }
+
+    /**
+     * Gets and clears the registered actions.
+     * @param committed If true, the after commit actions are returned, otherwise the after rollback actions.
+     */
+    internal fun pollCompletionActions(committed: Boolean): List<() -> Unit>? {
+        val actions = if (committed) afterCommitActions else afterRollbackActions
+        afterCommitActions = null
+        afterRollbackActions = null
+        return actions
+    }
+
     /* init {
         openEntityManagers.add(em)
         log.info { "Created EntityManager: $em (${openEntityManagers.size} opened entity managers)." }
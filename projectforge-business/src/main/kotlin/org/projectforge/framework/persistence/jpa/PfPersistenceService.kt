@@ -118,6 +118,28 @@ open class PfPersistenceService {
         )
     }
 
+    /**
+     * Runs the given action after the commit of the current transaction (the outermost one, if joined). The action is
+     * discarded on rollback. Without transaction, the action is run immediately.
+     * Should be used for updating caches by modifications, so they never contain uncommitted data.
+     */
+    fun runAfterCommit(action: () -> Unit) {
+        PfPersistenceContextThreadLocal.getTransactional()?.let {
+            it.registerAfterCommit(action)
+            return
+        }
+        action()
+    }
+
+    /**
+     * Runs the given action after the rollback of the current transaction (the outermost one, if joined). Without
+     * transaction, the action is never run.
+     * Should be used for invalidating caches updated by uncommitted modifications.
+     */
+    fun runAfterRollback(action: () -> Unit) {
+        PfPersistenceContextThreadLocal.getTransactional()?.registerAfterRollback(action)
+    }
+
     /**
      * Creates a new PfPersistenceContext (EntityManager), also if any EntityManager is available in ThreadLocal.
      * Any previous transactional context in ThreadLocal will be restored after finishing the block.
@@ -128,6 +150,7 @@ open class PfPersistenceService {
         run: (context: PfPersistenceContext) -> T
     ): T {
         val saved = PfPersistenceContextThreadLocal.getTransactional()
+        var completionActions: List<() -> Unit>? = null
         try {
             PfPersistenceContext(
                 entityManagerFactory,
@@ -146,10 +169,12 @@ open class PfPersistenceService {
                 try {
                     val ret = run(context)
                     em.transaction.commit()
+                    completionActions = context.pollCompletionActions(committed = true)
                     //openedTransactions.remove(em.transaction)
                     //log.info { "Commit transaction ${em.transaction}..." }
                     return ret
                 } catch (ex: Exception) {
+                    completionActions = context.pollCompletionActions(committed = false)
                     em.transaction.rollback()
                     //openedTransactions.remove(em.transaction)
                     //log.info { "Rollback transaction ${em.transaction}..." }
@@ -162,6 +187,14 @@ open class PfPersistenceService {
             log.debug { "Remove transactional context=${removed?.contextId} from ThreadLocal... (restored context=${saved?.contextId})" }
             saved?.let { PfPersistenceContextThreadLocal.setTransactional(it) } // Restore previous context, if any.
             PfPersistenceContextThreadLocal.getStatsState().transactionClosed()
+            // Outside the completed transaction, the actions may use their own contexts.
+            completionActions?.forEach { action ->
+                try {
+                    action()
+                } catch (ex: Exception) {
+                    log.error(ex) { "Error while running action after commit or rollback: ${ex.message}" }
+                }
+            }
         }
     }
 
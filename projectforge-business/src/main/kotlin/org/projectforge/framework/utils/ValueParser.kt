@@ -45,9 +45,7 @@ object ValueParser {
     patterns.forEach { pattern ->
       try {
         val decimalFormat = getIntFormat(pattern)
-        synchronized(decimalFormat) {
-          return decimalFormat.parse(value) as Long
-        }
+        return decimalFormat.parse(value) as Long
       } catch (ex: Exception) {
         // Might occur.
       }
@@ -85,9 +83,7 @@ object ValueParser {
           usePattern = sb.toString()
         }*/
         val decimalFormat = getBigDecimalFormat(pattern)
-        synchronized(decimalFormat) {
-          return decimalFormat.parse(value) as BigDecimal
-        }
+        return decimalFormat.parse(value) as BigDecimal
       } catch (ex: Exception) {
         // Might occur.
       }
@@ -135,23 +131,16 @@ object ValueParser {
     return getFormat(intFormatMap, pattern, true)
   }
 
-  private fun getFormat(map: MutableMap<String, DecimalFormat>, pattern: String, integer: Boolean): DecimalFormat {
-    synchronized(map) {
-      val result = map[pattern]
-      if (result != null) {
-        return result
+  private fun getFormat(map: ThreadLocal<MutableMap<String, DecimalFormat>>, pattern: String, integer: Boolean): DecimalFormat {
+    return map.get().getOrPut(pattern) {
+      buildDecimalFormat(pattern).also {
+        if (integer) {
+          it.isParseIntegerOnly = true
+        } else {
+          it.isParseBigDecimal = true
+        }
       }
     }
-    val decimalFormat = buildDecimalFormat(pattern)
-    if (integer) {
-      decimalFormat.isParseIntegerOnly = true
-    } else {
-      decimalFormat.isParseBigDecimal = true
-    }
-    synchronized(map) {
-      map[pattern] = decimalFormat
-    }
-    return decimalFormat
   }
 
   private fun buildDecimalFormat(str: String): DecimalFormat {
@@ -182,6 +171,7 @@ object ValueParser {
     return DecimalFormat(javaPattern, symbols)
   }
 
-  private val bigDecimalFormatMap = mutableMapOf<String, DecimalFormat>()
-  private val intFormatMap = mutableMapOf<String, DecimalFormat>()
+  // DecimalFormat isn't thread safe, so every thread uses its own formats (e. g. for parallel imports).
+  private val bigDecimalFormatMap = ThreadLocal.withInitial { mutableMapOf<String, DecimalFormat>() }
+  private val intFormatMap = ThreadLocal.withInitial { mutableMapOf<String, DecimalFormat>() }
 }
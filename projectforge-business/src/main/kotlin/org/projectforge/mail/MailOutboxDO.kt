@@ -0,0 +1,95 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.mail
+
+import jakarta.persistence.*
+import java.util.*
+
+/**
+ * Persistent outbox of mails sent asynchronously (see [MailOutboxService]). The mail is stored as fully rendered
+ * MIME message (base64 encoded), so it survives restarts and may be re-sent without any further context.
+ */
+@Entity
+@Table(
+    name = "t_pf_mail_outbox",
+    indexes = [Index(name = "idx_t_pf_mail_outbox_next_attempt", columnList = "next_attempt")]
+)
+@NamedQueries(
+    NamedQuery(
+        name = MailOutboxDO.SELECT_DUE,
+        query = "from MailOutboxDO where attempts<:maxAttempts and nextAttempt<=:now order by id"
+    ),
+    NamedQuery(
+        name = MailOutboxDO.COUNT_PENDING,
+        query = "select count(*) from MailOutboxDO where attempts<:maxAttempts"
+    ),
+    NamedQuery(name = MailOutboxDO.DELETE_BY_IDS, query = "delete from MailOutboxDO where id in :ids"),
+)
+class MailOutboxDO {
+    @get:GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "hibernate_sequence")
+    @get:Column(name = "pk")
+    @get:Id
+    var id: Long? = null
+
+    @get:Column(name = "created", nullable = false)
+    var created: Date? = null
+
+    /**
+     * The mail isn't sent before this time (used for retries with backoff).
+     */
+    @get:Column(name = "next_attempt", nullable = false)
+    var nextAttempt: Date? = null
+
+    /**
+     * Number of failed attempts to send this mail.
+     */
+    @get:Column(name = "attempts", nullable = false)
+    var attempts: Int = 0
+
+    /**
+     * Recipients and subject, only for logging.
+     */
+    @get:Column(name = "info", length = 4000)
+    var info: String? = null
+
+    /**
+     * The base64 encoded MIME message.
+     */
+    @get:Column(name = "message", length = MAX_MESSAGE_LENGTH, nullable = false)
+    var message: String? = null
+
+    @get:Column(name = "last_error", length = 1000)
+    var lastError: String? = null
+
+    companion object {
+        /**
+         * Maximum length of the encoded message (limited by PostgreSQL's maximum length of character varying).
+         * Larger mails are sent without outbox.
+         */
+        const val MAX_MESSAGE_LENGTH = 10_000_000
+
+        internal const val SELECT_DUE = "MailOutboxDO_SelectDue"
+        internal const val COUNT_PENDING = "MailOutboxDO_CountPending"
+        internal const val DELETE_BY_IDS = "MailOutboxDO_DeleteByIds"
+    }
+}
@@ -0,0 +1,306 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.mail
+
+import jakarta.annotation.PostConstruct
+import jakarta.annotation.PreDestroy
+import jakarta.mail.MessagingException
+import jakarta.mail.SendFailedException
+import jakarta.mail.Transport
+import jakarta.mail.internet.MimeMessage
+import mu.KotlinLogging
+import org.projectforge.Constants
+import org.projectforge.common.metrics.PfMetrics
+import org.projectforge.framework.persistence.jpa.PfPersistenceService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.scheduling.annotation.Scheduled
+import org.springframework.stereotype.Service
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.*
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Sends asynchronous mails of [SendMail] through a persistent outbox ([MailOutboxDO]).
+ *
+ * Mails are rendered by the caller and stored in the outbox, so they survive restarts. A dedicated sender thread
+ * sends them in batches over one reused SMTP connection with a limited send rate. Failed mails are retried with
+ * exponential backoff and kept in the outbox after [MAX_ATTEMPTS] attempts for inspection.
+ */
+@Service
+class MailOutboxService {
+    @Autowired
+    private lateinit var persistenceService: PfPersistenceService
+
+    @Autowired
+    private lateinit var sendMail: SendMail
+
+    @Value("\${projectforge.mail.outbox.enabled:true}")
+    var enabled: Boolean = true
+        internal set // internal for test cases.
+
+    /**
+     * Maximum number of mails per second sent by the outbox, 0 means unlimited.
+     */
+    @Value("\${projectforge.mail.outbox.maxMailsPerSecond:10}")
+    var maxMailsPerSecond: Int = 10
+        internal set // internal for test cases.
+
+    private val executor = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "MailOutboxSender").also { it.isDaemon = true }
+    }
+
+    /**
+     * Coalesces triggers: only one processing run is queued at a time.
+     */
+    private val processingQueued = AtomicBoolean(false)
+
+    private val pendingCount = AtomicLong()
+
+    private var transport: Transport? = null
+
+    private var transportLastUsed = 0L
+
+    private var nextSendNanos = 0L
+
+    @PostConstruct
+    private fun postConstruct() {
+        PfMetrics.gauge("mail.outbox.size", pendingCount) { it.toDouble() }
+    }
+
+    @PreDestroy
+    private fun shutdown() {
+        executor.shutdownNow()
+        synchronized(this) {
+            closeTransport()
+        }
+    }
+
+    /**
+     * Stores the given message in the outbox and triggers the sender.
+     * @return false, if the message is too large for the outbox.
+     */
+    fun enqueue(message: MimeMessage): Boolean {
+        val encoded = ByteArrayOutputStream().use { out ->
+            message.writeTo(out)
+            Base64.getEncoder().encodeToString(out.toByteArray())
+        }
+        if (encoded.length > MailOutboxDO.MAX_MESSAGE_LENGTH) {
+            return false
+        }
+        val entry = MailOutboxDO()
+        entry.created = Date()
+        entry.nextAttempt = entry.created
+        entry.info = "to=[${message.allRecipients?.joinToString()}], subject='${message.subject}'".take(4000)
+        entry.message = encoded
+        persistenceService.runInNewTransaction { context ->
+            context.insert(entry)
+        }
+        pendingCount.incrementAndGet()
+        trigger()
+        return true
+    }
+
+    /**
+     * Queues a processing run in the sender thread, if not already queued.
+     */
+    fun trigger() {
+        if (processingQueued.compareAndSet(false, true)) {
+            executor.execute {
+                processingQueued.set(false)
+                try {
+                    processOutbox()
+                } catch (ex: Exception) {
+                    log.error(ex) { "Error while processing mail outbox: ${ex.message}" }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends mails due for retry (and mails left by a restart) and closes idle connections.
+     */
+    @Scheduled(fixedDelay = PROCESSING_INTERVAL_MILLIS, initialDelay = PROCESSING_INTERVAL_MILLIS)
+    fun scheduledProcessing() {
+        if (!enabled) {
+            return
+        }
+        trigger()
+        executor.execute {
+            synchronized(this) {
+                if (transport != null && System.currentTimeMillis() - transportLastUsed > IDLE_TIMEOUT_MILLIS) {
+                    closeTransport()
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends all due mails of the outbox (in chunks of [BATCH_SIZE]).
+     * @return Number of successfully sent mails.
+     */
+    @Synchronized
+    internal fun processOutbox(): Int {
+        var sent = 0
+        while (true) {
+            val entries = persistenceService.runIsolatedReadOnly { context ->
+                context.executeNamedQuery(
+                    MailOutboxDO.SELECT_DUE,
+                    MailOutboxDO::class.java,
+                    Pair("maxAttempts", MAX_ATTEMPTS),
+                    Pair("now", Date()),
+                    maxResults = BATCH_SIZE,
+                )
+            }
+            if (entries.isNotEmpty()) {
+                sent += sendBatch(entries)
+            }
+            if (entries.size < BATCH_SIZE) {
+                break
+            }
+        }
+        pendingCount.set(persistenceService.runIsolatedReadOnly { context ->
+            context.selectNamedSingleResult(
+                MailOutboxDO.COUNT_PENDING,
+                Long::class.java,
+                Pair("maxAttempts", MAX_ATTEMPTS),
+            )
+        } ?: 0L)
+        return sent
+    }
+
+    private fun sendBatch(entries: List<MailOutboxDO>): Int {
+        val sentIds = mutableListOf<Long>()
+        val failed = mutableListOf<Pair<MailOutboxDO, Exception>>()
+        entries.forEach { entry ->
+            try {
+                val message = MimeMessage(sendMail.session, ByteArrayInputStream(Base64.getDecoder().decode(entry.message)))
+                awaitRateLimit()
+                PfMetrics.record("mail.outbox.send") {
+                    send(message)
+                }
+                sentIds.add(entry.id!!)
+                PfMetrics.counter("mail.outbox.sent").increment()
+                log.info { "E-Mail successfully sent: ${entry.info}" }
+            } catch (ex: Exception) {
+                failed.add(Pair(entry, ex))
+                PfMetrics.counter("mail.outbox.failed").increment()
+            }
+        }
+        persistenceService.runInNewTransaction { context ->
+            if (sentIds.isNotEmpty()) {
+                context.executeNamedUpdate(MailOutboxDO.DELETE_BY_IDS, Pair("ids", sentIds))
+            }
+            failed.forEach { (entry, ex) ->
+                val attempts = entry.attempts + 1
+                if (attempts >= MAX_ATTEMPTS) {
+                    log.error(ex) { "Giving up sending mail #${entry.id} after $attempts attempts: ${entry.info}" }
+                } else {
+                    log.warn { "Error while sending mail #${entry.id} (attempt $attempts): ${entry.info}: ${ex.message}" }
+                }
+                context.executeUpdate(
+                    "update MailOutboxDO set attempts=:attempts, nextAttempt=:nextAttempt, lastError=:lastError where id=:id",
+                    Pair("attempts", attempts),
+                    Pair("nextAttempt", Date(System.currentTimeMillis() + getBackoffMillis(attempts))),
+                    Pair("lastError", "${ex::class.java.simpleName}: ${ex.message}".take(1000)),
+                    Pair("id", entry.id),
+                )
+            }
+        }
+        return sentIds.size
+    }
+
+    /**
+     * Sends the message over the reused connection. A broken connection (e. g. closed by the server while idle) is
+     * re-opened once.
+     */
+    private fun send(message: MimeMessage) {
+        try {
+            getTransport().sendMessage(message, message.allRecipients)
+        } catch (ex: SendFailedException) {
+            // Rejected recipients, the connection is still usable.
+            throw ex
+        } catch (ex: MessagingException) {
+            log.info { "Re-opening SMTP connection after error: ${ex.message}" }
+            closeTransport()
+            getTransport().sendMessage(message, message.allRecipients)
+        }
+        transportLastUsed = System.currentTimeMillis()
+    }
+
+    private fun getTransport(): Transport {
+        transport?.let {
+            if (it.isConnected) {
+                return it
+            }
+            closeTransport()
+        }
+        val newTransport = sendMail.session.getTransport("smtp")
+        newTransport.connect()
+        transport = newTransport
+        transportLastUsed = System.currentTimeMillis()
+        return newTransport
+    }
+
+    private fun closeTransport() {
+        try {
+            transport?.close()
+        } catch (ex: Exception) {
+            log.debug { "Error while closing SMTP connection: ${ex.message}" }
+        }
+        transport = null
+    }
+
+    private fun awaitRateLimit() {
+        if (maxMailsPerSecond <= 0) {
+            return
+        }
+        val now = System.nanoTime()
+        if (nextSendNanos > now) {
+            Thread.sleep((nextSendNanos - now) / 1_000_000, ((nextSendNanos - now) % 1_000_000).toInt())
+        }
+        nextSendNanos = maxOf(now, nextSendNanos) + 1_000_000_000L / maxMailsPerSecond
+    }
+
+    companion object {
+        private const val PROCESSING_INTERVAL_MILLIS = 10 * Constants.MILLIS_PER_SECOND
+
+        private const val IDLE_TIMEOUT_MILLIS = 30 * Constants.MILLIS_PER_SECOND
+
+        private const val BATCH_SIZE = 50
+
+        internal const val MAX_ATTEMPTS = 8
+
+        /**
+         * 1, 2, 4, ... minutes, but at most one hour.
+         */
+        internal fun getBackoffMillis(attempts: Int): Long {
+            return minOf(Constants.MILLIS_PER_MINUTE shl (attempts - 1).coerceIn(0, 6), 60 * Constants.MILLIS_PER_MINUTE)
+        }
+    }
+}
@@ -66,6 +66,9 @@ open class SendMail {
   @Autowired
   private lateinit var domainService: DomainService
 
+  @Autowired
+  private lateinit var mailOutboxService: MailOutboxService
+
   enum class Protocol {
     Plain, StartTLS, SSL;
 
@@ -113,6 +116,9 @@ open class SendMail {
 
   private val random = Random()
 
+  @Volatile
+  private var cachedSession: Session? = null
+
   @PostConstruct
   private fun postConstruct() {
     log.info { info }
@@ -160,6 +166,9 @@ open class SendMail {
       throw UserException("mail.error.missingToAddress")
     }
     if (async) {
+      if (!testMode && isConfigured && mailOutboxService.enabled && enqueue(composedMessage, icalContent, attachments)) {
+        return true
+      }
       CompletableFuture.runAsync { sendIt(composedMessage, icalContent, attachments) }
     } else {
       sendIt(composedMessage, icalContent, attachments)
@@ -170,7 +179,36 @@ open class SendMail {
   val isConfigured: Boolean
     get() = this.mailingEnabled == "true" && !this.mailSmtpHost.isNullOrBlank()
 
-  private val session: Session?
+  /**
+   * Stores the message in the persistent outbox, sent by [MailOutboxService].
+   * @return false, if the message couldn't be stored in the outbox (it's sent directly instead).
+   */
+  private fun enqueue(
+    composedMessage: Mail, icalContent: String?,
+    attachments: Collection<MailAttachment>?
+  ): Boolean {
+    try {
+      if (mailOutboxService.enqueue(createMessage(composedMessage, icalContent, attachments))) {
+        log.info("E-mail message queued: " + StringUtils.join(composedMessage.to, ", "))
+        return true
+      }
+      log.info("E-mail message too large for outbox, sending it directly: $composedMessage")
+    } catch (ex: Exception) {
+      log.error("While queuing message (sending it directly): $composedMessage", ex)
+    }
+    return false
+  }
+
+  /**
+   * The mail session is created only once (it's thread safe).
+   */
+  internal val session: Session
+    get() {
+      cachedSession?.let { return it }
+      return newSession.also { cachedSession = it }
+    }
+
+  private val newSession: Session
     get() {
       val properties = Properties()
       properties["mail.smtp.host"] = this.mailSmtpHost // Replace with your SMTP server
@@ -206,55 +244,25 @@ open class SendMail {
       return Session.getInstance(properties)
     }
 
+  /**
+   * For test cases only: sends mails to the given server.
+   * @return The previous host and port.
+   */
+  internal fun internalSetSmtpServer(host: String?, port: String?): Pair<String?, String?> {
+    val previous = Pair(mailSmtpHost, mailSmtpPort)
+    mailSmtpHost = host
+    mailSmtpPort = port
+    cachedSession = null
+    return previous
+  }
+
   private fun sendIt(
     composedMessage: Mail, icalContent: String?,
     attachments: Collection<MailAttachment>?
   ) {
     log.info("Start sending e-mail message: " + StringUtils.join(composedMessage.to, ", "))
     try {
-      val session = session
-      /*if (SystemStatus.isDevelopmentMode()) {
-        session!!.setDebug(true)
-      }*/
-      val message = MimeMessage(session)
-      if (composedMessage.from != null) {
-        message.setFrom(InternetAddress(composedMessage.from))
-      } else {
-        mailFromStandardEmailSender
-          ?.takeIf { it.isNotBlank() }
-          ?.let { message.setFrom(InternetAddress(it)) }
-          ?: message.setFrom()
-      }
-      message.setRecipients(
-        Message.RecipientType.TO,
-        composedMessage.to.toTypedArray<Address>()
-      )
-      if (CollectionUtils.isNotEmpty(composedMessage.cc)) {
-        message.setRecipients(
-          Message.RecipientType.CC,
-          composedMessage.cc.toTypedArray<Address>()
-        )
-      }
-      //message.setHeader("Return-Path", "")
-      //message.setHeader("Reply-To", "")
-      val subject = composedMessage.subject
-      message.setSubject(subject, CHARSET)
-      message.sentDate = Date()
-      if (StringUtils.isBlank(icalContent) && attachments == null) {
-        // create message without attachments
-        if (composedMessage.contentType != null) {
-          message.setText(composedMessage.content, composedMessage.charset, composedMessage.contentType)
-        } else {
-          message.setText(composedMessage.content, CHARSET)
-        }
-        // message.setContent("Dies ist eine einfache Testnachricht.", "text/plain; charset=UTF-8");
-        // message.setText("Einfache Textnachricht")
-      } else {
-        // create message with attachments
-        val mp = createMailAttachmentContent(message, composedMessage, icalContent, attachments, CHARSET)
-        message.setContent(mp)
-      }
-      message.saveChanges() // don't forget this
+      val message = createMessage(composedMessage, icalContent, attachments)
       if (testMode) {
         log.info("Test mode, do not really send e-mails (OK only for test cases).")
       } else {
@@ -267,6 +275,55 @@ open class SendMail {
     log.info("E-Mail successfully sent: $composedMessage")
   }
 
+  private fun createMessage(
+    composedMessage: Mail, icalContent: String?,
+    attachments: Collection<MailAttachment>?
+  ): MimeMessage {
+    /*if (SystemStatus.isDevelopmentMode()) {
+      session!!.setDebug(true)
+    }*/
+    val message = MimeMessage(session)
+    if (composedMessage.from != null) {
+      message.setFrom(InternetAddress(composedMessage.from))
+    } else {
+      mailFromStandardEmailSender
+        ?.takeIf { it.isNotBlank() }
+        ?.let { message.setFrom(InternetAddress(it)) }
+        ?: message.setFrom()
+    }
+    message.setRecipients(
+      Message.RecipientType.TO,
+      composedMessage.to.toTypedArray<Address>()
+    )
+    if (CollectionUtils.isNotEmpty(composedMessage.cc)) {
+      message.setRecipients(
+        Message.RecipientType.CC,
+        composedMessage.cc.toTypedArray<Address>()
+      )
+    }
+    //message.setHeader("Return-Path", "")
+    //message.setHeader("Reply-To", "")
+    val subject = composedMessage.subject
+    message.setSubject(subject, CHARSET)
+    message.sentDate = Date()
+    if (StringUtils.isBlank(icalContent) && attachments == null) {
+      // create message without attachments
+      if (composedMessage.contentType != null) {
+        message.setText(composedMessage.content, composedMessage.charset, composedMessage.contentType)
+      } else {
+        message.setText(composedMessage.content, CHARSET)
+      }
+      // message.setContent("Dies ist eine einfache Testnachricht.", "text/plain; charset=UTF-8");
+      // message.setText("Einfache Textnachricht")
+    } else {
+      // create message with attachments
+      val mp = createMailAttachmentContent(message, composedMessage, icalContent, attachments, CHARSET)
+      message.setContent(mp)
+    }
+    message.saveChanges() // don't forget this
+    return message
+  }
+
   @Throws(MessagingException::class)
   private fun createMailAttachmentContent(
     message: MimeMessage, composedMessage: Mail, icalContent: String?,
@@ -61,6 +61,16 @@ class Menu() {
         add(MenuItem(menuItemDef))
     }
 
+    /**
+     * @return Deep copy of this menu.
+     */
+    fun copy(): Menu {
+        val copy = Menu()
+        menuItems.forEach { copy.menuItems.add(it.copy()) }
+        copy.badge = badge?.copy()
+        return copy
+    }
+
     fun getAllDescendants(): List<MenuItem> {
         val result = mutableListOf<MenuItem>()
         menuItems.forEach { child ->
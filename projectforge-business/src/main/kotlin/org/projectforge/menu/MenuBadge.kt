@@ -28,4 +28,8 @@ import java.io.Serializable
 class MenuBadge(var counter: Int? = null,
                 var value: String? = null,
                 var tooltip: String? = null,
-                var style: String? = null): Serializable
+                var style: String? = null): Serializable {
+    fun copy(): MenuBadge {
+        return MenuBadge(counter, value, tooltip, style)
+    }
+}
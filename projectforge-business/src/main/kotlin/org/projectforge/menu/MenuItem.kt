@@ -53,7 +53,7 @@ class MenuItem(var id: String? = null,
         key = menuItemDef.id
         url = menuItemDef.url
         if (menuItemDef.badgeCounter != null) {
-            badge = MenuBadge(counter = menuItemDef.badgeCounter?.invoke())
+            badge = MenuBadge(counter = menuItemDef.evaluateBadgeCounter())
         }
     }
 
@@ -128,6 +128,18 @@ class MenuItem(var id: String? = null,
         subMenu?.removeIf { !it.isLeaf() && it.subMenu.isNullOrEmpty() }
     }
 
+    /**
+     * @return Deep copy of this menu item (including sub menus and badge).
+     */
+    fun copy(): MenuItem {
+        val copy = MenuItem(
+            id = id, title = title, i18nKey = i18nKey, tooltip = tooltip, tooltipTitle = tooltipTitle, url = url,
+            key = key, badge = badge?.copy(), type = type,
+        )
+        copy.subMenu = subMenu?.mapTo(mutableListOf()) { it.copy() }
+        return copy
+    }
+
     fun addDescendants(items: MutableList<MenuItem>) {
         subMenu?.forEach { child ->
             items.add(child)
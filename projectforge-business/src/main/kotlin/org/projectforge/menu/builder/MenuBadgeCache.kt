@@ -0,0 +1,239 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.menu.builder
+
+import jakarta.annotation.PostConstruct
+import jakarta.annotation.PreDestroy
+import mu.KotlinLogging
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import org.projectforge.framework.persistence.user.api.UserContext
+import org.springframework.scheduling.annotation.Scheduled
+import org.springframework.stereotype.Service
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Caches the badge counters of the menu entries per user. Some badge counters are expensive (data base queries), so
+ * they are computed asynchronously: an expired counter is returned as is and will be recomputed in the background
+ * (stale-while-revalidate). Only the very first computation of a counter is waited for (max. [COLD_WAIT_MILLIS]).
+ *
+ * Every change of a user's counters increments the user's version, so clients may long-poll for changes without
+ * blocking a thread while waiting, see [addChangeListener].
+ */
+@Service
+class MenuBadgeCache {
+    private class Entry(
+        @Volatile
+        var counter: Int?,
+        @Volatile
+        var timestamp: Long,
+    ) {
+        @Volatile
+        var refreshing = false
+    }
+
+    private class UserState(
+        @Volatile
+        var lastAccess: Long,
+    ) {
+        val entries = ConcurrentHashMap<MenuItemDef, Entry>()
+
+        /**
+         * Incremented on every change of a counter. Guarded (together with [changeListeners]) by this user state.
+         */
+        var version = 0L
+
+        val changeListeners = mutableListOf<(Long) -> Unit>()
+    }
+
+    private val userStates = ConcurrentHashMap<Long, UserState>()
+
+    internal var executor: ExecutorService = Executors.newFixedThreadPool(THREADS) { runnable ->
+        Thread(runnable, "MenuBadgeCounter").also { it.isDaemon = true }
+    } // Used by test class.
+
+    internal var currentTimeMillis: () -> Long = System::currentTimeMillis // Used by test class.
+
+    internal var coldWaitMillis = COLD_WAIT_MILLIS // Used by test class.
+
+    @PostConstruct
+    private fun postConstruct() {
+        instance = this
+    }
+
+    @PreDestroy
+    private fun shutdown() {
+        executor.shutdownNow()
+    }
+
+    /**
+     * @return The (cached) badge counter of the given menu entry for the logged-in user or null, if not available
+     * (yet).
+     */
+    fun getCounter(menuItemDef: MenuItemDef): Int? {
+        val badgeCounter = menuItemDef.badgeCounter ?: return null
+        val userContext = ThreadLocalUserContext.userContext
+        val userId = userContext?.user?.id
+        if (userId == null || MenuCreator.testCase) {
+            return badgeCounter()
+        }
+        val userState = getUserState(userId)
+        userState.lastAccess = currentTimeMillis()
+        val entry = userState.entries[menuItemDef]
+        if (entry == null) {
+            val placeholder = Entry(null, 0L).also { it.refreshing = true }
+            if (userState.entries.putIfAbsent(menuItemDef, placeholder) != null) {
+                // Concurrent first access, the counter is already in computation.
+                return userState.entries[menuItemDef]?.counter
+            }
+            // First access: wait a short time for the result, otherwise the counter is shown by the next menu build.
+            val future = executor.submit<Int?> { compute(menuItemDef, userContext, userState) }
+            return try {
+                future.get(coldWaitMillis, TimeUnit.MILLISECONDS)
+            } catch (ex: TimeoutException) {
+                null
+            }
+        }
+        val ttl = menuItemDef.badgeCounterTtlMillis ?: DEFAULT_TTL_MILLIS
+        if (currentTimeMillis() - entry.timestamp > ttl && !entry.refreshing) {
+            entry.refreshing = true
+            executor.execute { compute(menuItemDef, userContext, userState) }
+        }
+        return entry.counter
+    }
+
+    /**
+     * @return Current version of the user's badge counters.
+     */
+    fun getVersion(userId: Long): Long {
+        val userState = userStates[userId] ?: return 0L
+        synchronized(userState) {
+            return userState.version
+        }
+    }
+
+    /**
+     * Registers a listener called once with the new version, as soon as the version of the user's badge counters
+     * differs from the given one. If it differs already, the listener is called immediately. The listener is called
+     * by the thread computing the counter, so it mustn't block.
+     * @return The given listener (for [removeChangeListener]).
+     */
+    fun addChangeListener(userId: Long, version: Long, listener: (version: Long) -> Unit): (Long) -> Unit {
+        val userState = getUserState(userId)
+        val currentVersion = synchronized(userState) {
+            if (userState.version == version) {
+                userState.changeListeners.add(listener)
+                return listener
+            }
+            userState.version
+        }
+        listener(currentVersion)
+        return listener
+    }
+
+    /**
+     * Removes a listener not called yet (e. g. after the timeout of the client's request).
+     */
+    fun removeChangeListener(userId: Long, listener: (Long) -> Unit) {
+        val userState = userStates[userId] ?: return
+        synchronized(userState) {
+            userState.changeListeners.remove(listener)
+        }
+    }
+
+    /**
+     * Removes the counters of users not seen for a while.
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000L)
+    fun cleanup() {
+        val threshold = currentTimeMillis() - EVICT_AFTER_MILLIS
+        userStates.entries.removeIf { it.value.lastAccess < threshold }
+    }
+
+    private fun getUserState(userId: Long): UserState {
+        return userStates.computeIfAbsent(userId) { UserState(currentTimeMillis()) }
+    }
+
+    private fun compute(menuItemDef: MenuItemDef, userContext: UserContext, userState: UserState): Int? {
+        val counter = try {
+            ThreadLocalUserContext.userContext = userContext
+            menuItemDef.badgeCounter?.invoke()
+        } catch (ex: Exception) {
+            log.error(ex) { "Error while computing badge counter of menu entry '${menuItemDef.id}': ${ex.message}" }
+            null
+        } finally {
+            ThreadLocalUserContext.clear()
+        }
+        val entry = userState.entries[menuItemDef]
+        if (entry == null) {
+            userState.entries[menuItemDef] = Entry(counter, currentTimeMillis())
+            if (counter != null) {
+                notifyChanged(userState)
+            }
+        } else {
+            val changed = entry.counter != counter
+            entry.counter = counter
+            entry.timestamp = currentTimeMillis()
+            entry.refreshing = false
+            if (changed) {
+                notifyChanged(userState)
+            }
+        }
+        return counter
+    }
+
+    private fun notifyChanged(userState: UserState) {
+        val (version, listeners) = synchronized(userState) {
+            val listeners = userState.changeListeners.toList()
+            userState.changeListeners.clear()
+            Pair(++userState.version, listeners)
+        }
+        listeners.forEach { listener ->
+            try {
+                listener(version)
+            } catch (ex: Exception) {
+                log.error(ex) { "Error while notifying badge counter listener: ${ex.message}" }
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_TTL_MILLIS = 60 * 1000L
+
+        const val COLD_WAIT_MILLIS = 100L
+
+        private const val EVICT_AFTER_MILLIS = 60 * 60 * 1000L
+
+        private const val THREADS = 2
+
+        @JvmStatic
+        var instance: MenuBadgeCache? = null
+            private set
+    }
+}
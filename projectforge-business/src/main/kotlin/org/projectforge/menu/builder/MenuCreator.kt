@@ -39,6 +39,7 @@ import org.projectforge.business.orga.PosteingangDao
 import org.projectforge.business.orga.VisitorbookDao
 import org.projectforge.business.sipgate.SipgateConfiguration
 import org.projectforge.business.user.ProjectForgeGroup
+import org.projectforge.business.user.UserGroupCache
 import org.projectforge.business.user.UserRightValue
 import org.projectforge.business.vacation.service.ConflictingVacationsCache
 import org.projectforge.business.vacation.service.VacationMenuCounterCache
@@ -53,6 +54,7 @@ import org.projectforge.menu.MenuItem
 import org.projectforge.sms.SmsSenderConfig
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Component
+import java.util.concurrent.ConcurrentHashMap
 
 private val log = KotlinLogging.logger {}
 
@@ -108,8 +110,27 @@ open class MenuCreator {
     @Autowired
     private lateinit var auftragDao: AuftragDao
 
+    @Autowired
+    private lateinit var userGroupCache: UserGroupCache
+
     private var initialized = false
 
+    /**
+     * The user's menu without badges, built only if the user's rights, groups etc. were changed.
+     * The badges are applied on every [build] call.
+     */
+    private class MenuSnapshot(val key: String, val menu: Menu, val badgeItems: Map<String, MenuItemDef>) {
+        val created = System.currentTimeMillis()
+    }
+
+    private val snapshots = ConcurrentHashMap<Pair<Long, Boolean>, MenuSnapshot>()
+
+    /**
+     * Incremented on every modification of the menu definitions, invalidates all snapshots.
+     */
+    @Volatile
+    private var generation = 0
+
     /**
      * Plugins may register entries for the user's personal menu at the top right.
      */
@@ -123,6 +144,8 @@ open class MenuCreator {
          */
         @JvmStatic
         var testCase = false
+
+        private const val SNAPSHOT_TTL_MILLIS = 5 * 60 * 1000L
     }
 
     @Synchronized
@@ -130,6 +153,7 @@ open class MenuCreator {
         initialized = false
         menuItemDefHolder = MenuItemDefHolder()
         initialize()
+        invalidateSnapshots()
     }
 
     /**
@@ -147,6 +171,15 @@ open class MenuCreator {
                 log.error { "Can't add Menu ${menuItemDef.id}: parentId=$parentId not found." }
             }
         }
+        invalidateSnapshots()
+    }
+
+    /**
+     * Forces rebuilding of the users' menus (badge counters aren't affected).
+     */
+    fun invalidateSnapshots() {
+        ++generation
+        snapshots.clear()
     }
 
     /**
@@ -224,7 +257,9 @@ open class MenuCreator {
             .add(MenuItemDef(MenuItemDefId.TEAMCALENDAR))
             .add(
                 MenuItemDef(MenuItemDefId.VACATION,
-                    badgeCounter = { vacationMenuCounterCache.getOpenLeaveApplicationsForUser(ThreadLocalUserContext.loggedInUser) })
+                    badgeCounter = { vacationMenuCounterCache.getOpenLeaveApplicationsForUser(ThreadLocalUserContext.loggedInUser) }).also {
+                    it.badgeCounterTtlMillis = 30 * 1000L
+                }
             )
             .add(MenuItemDef(MenuItemDefId.BOOK_LIST))
             .add(MenuItemDef(MenuItemDefId.ADDRESSBOOK_LIST))
@@ -551,14 +586,52 @@ open class MenuCreator {
      */
     fun build(menuCreatorContext: MenuCreatorContext): Menu {
         initialize()
+        val userId = menuCreatorContext.user.id
+        if (userId == null || testCase) {
+            val menu = buildMenu(menuCreatorContext)
+            menu.postProcess()
+            return menu
+        }
+        val mapKey = Pair(userId, menuCreatorContext.translate)
+        val key = getSnapshotKey(menuCreatorContext)
+        var snapshot = snapshots[mapKey]
+        if (snapshot == null || snapshot.key != key || System.currentTimeMillis() - snapshot.created > SNAPSHOT_TTL_MILLIS) {
+            val badgeItems = mutableMapOf<String, MenuItemDef>()
+            menuCreatorContext.badgeItems = badgeItems
+            try {
+                snapshot = MenuSnapshot(key, buildMenu(menuCreatorContext), badgeItems)
+            } finally {
+                menuCreatorContext.badgeItems = null
+            }
+            snapshots[mapKey] = snapshot
+        }
+        val menu = snapshot.menu.copy()
+        menu.getAllDescendants().forEach { menuItem ->
+            snapshot.badgeItems[menuItem.key]?.applyBadge(menuItem)
+        }
+        menu.postProcess()
+        return menu
+    }
+
+    private fun buildMenu(menuCreatorContext: MenuCreatorContext): Menu {
         val menu = Menu()
         menuItemDefHolder.menuItems.forEach { menuItemDef ->
             menu.add(build(null, menuItemDef, menuCreatorContext))
         }
-        menu.postProcess()
         return menu
     }
 
+    /**
+     * The snapshot key contains everything the visibility of menu entries depends on.
+     */
+    private fun getSnapshotKey(menuCreatorContext: MenuCreatorContext): String {
+        val user = menuCreatorContext.user
+        val groups = userGroupCache.getUserGroups(user)?.sorted()?.joinToString(",")
+        val rights = userGroupCache.getUserRights(user.id)?.map { "${it.rightIdString}=${it.value}" }?.sorted()
+            ?.joinToString(",")
+        return "$generation|${user.lastUpdate?.time}|${ThreadLocalUserContext.locale}|${accessChecker.isRestrictedUser}|$groups|$rights"
+    }
+
     private fun build(parent: MenuItem?, menuItemDef: MenuItemDef, menuCreatorContext: MenuCreatorContext): MenuItem? {
         if (!checkAccess(menuCreatorContext, menuItemDef))
             return null // No access
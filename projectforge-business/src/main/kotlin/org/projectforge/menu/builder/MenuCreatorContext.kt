@@ -26,4 +26,10 @@ package org.projectforge.menu.builder
 import org.projectforge.framework.persistence.user.entities.PFUserDO
 
 class MenuCreatorContext(val user: PFUserDO,
-                         val translate : Boolean = true)
+                         val translate : Boolean = true) {
+    /**
+     * If given, the badge counters aren't evaluated while building the menu, but the menu items with badges are
+     * collected (key of menu item -> definition). Used for building cacheable menu snapshots.
+     */
+    internal var badgeItems: MutableMap<String, MenuItemDef>? = null
+}
@@ -59,6 +59,11 @@ constructor(
 
   var requiredGroups: Array<ProjectForgeGroup>? = null
 
+  /**
+   * Time to live of the cached [badgeCounter] (see [MenuBadgeCache]). Default is [MenuBadgeCache.DEFAULT_TTL_MILLIS].
+   */
+  var badgeCounterTtlMillis: Long? = null
+
   internal var children: MutableList<MenuItemDef>? = null
 
   init {
@@ -137,13 +142,33 @@ constructor(
       menuItem.key = "${parentMenu.key}.$id"
     else
       menuItem.key = id
-    val counter = badgeCounter?.invoke()
+    if (badgeCounter != null) {
+      val badgeItems = menuCreatorContext.badgeItems
+      if (badgeItems != null) {
+        // Menu snapshot: badges are applied on every request by [applyBadge].
+        badgeItems[menuItem.key!!] = this
+      } else {
+        applyBadge(menuItem)
+      }
+    }
+    return menuItem
+  }
+
+  internal fun applyBadge(menuItem: MenuItem) {
+    val counter = evaluateBadgeCounter()
     if (counter ?: -1 > 0) {
       menuItem.badge = MenuBadge(counter, style = "danger")
       if (badgeTooltipKey != null)
         menuItem.badge?.tooltip = translate(badgeTooltipKey)
     }
-    return menuItem
+  }
+
+  /**
+   * @return The badge counter for the logged-in user, served by [MenuBadgeCache] if available.
+   */
+  fun evaluateBadgeCounter(): Int? {
+    val cache = MenuBadgeCache.instance ?: return badgeCounter?.invoke()
+    return cache.getCounter(this)
   }
 
   companion object {
@@ -0,0 +1,17 @@
+-- Indexed lookups of history entries by entity (replaces ix_pf_history_ent):
+CREATE INDEX idx_t_pf_history_entity
+    ON t_pf_history (entity_name, entity_id, modifiedat);
+
+DROP INDEX ix_pf_history_ent;
+
+-- Outbox for history entries written in write-behind mode (projectforge.history.writeBehind):
+CREATE TABLE t_pf_history_outbox
+(
+    pk       BIGINT                      NOT NULL,
+    created  TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    payload  CHARACTER VARYING(1000000)  NOT NULL,
+    attempts INTEGER                     NOT NULL
+);
+
+ALTER TABLE t_pf_history_outbox
+    ADD CONSTRAINT t_pf_history_outbox_pkey PRIMARY KEY (pk);
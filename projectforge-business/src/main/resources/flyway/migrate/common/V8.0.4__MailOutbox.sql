@@ -0,0 +1,17 @@
+-- Persistent outbox for mails sent asynchronously (see MailOutboxService):
+CREATE TABLE t_pf_mail_outbox
+(
+    pk           BIGINT                       NOT NULL,
+    created      TIMESTAMP WITHOUT TIME ZONE  NOT NULL,
+    next_attempt TIMESTAMP WITHOUT TIME ZONE  NOT NULL,
+    attempts     INTEGER                      NOT NULL,
+    info         CHARACTER VARYING(4000),
+    message      CHARACTER VARYING(10000000)  NOT NULL,
+    last_error   CHARACTER VARYING(1000)
+);
+
+ALTER TABLE t_pf_mail_outbox
+    ADD CONSTRAINT t_pf_mail_outbox_pkey PRIMARY KEY (pk);
+
+CREATE INDEX idx_t_pf_mail_outbox_next_attempt
+    ON t_pf_mail_outbox (next_attempt);
@@ -0,0 +1,7 @@
+-- History search of an entity type by modification period:
+CREATE INDEX idx_t_pf_history_entity_modifiedat
+    ON t_pf_history (entity_name, modifiedat);
+
+-- History search by modifying user and period:
+CREATE INDEX idx_t_pf_history_modifiedby
+    ON t_pf_history (modifiedby, modifiedat);
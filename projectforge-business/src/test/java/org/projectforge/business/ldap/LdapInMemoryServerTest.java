@@ -0,0 +1,157 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.business.ldap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.directory.server.annotations.CreateLdapServer;
+import org.apache.directory.server.annotations.CreateTransport;
+import org.apache.directory.server.core.DirectoryService;
+import org.apache.directory.server.core.annotations.ContextEntry;
+import org.apache.directory.server.core.annotations.CreateDS;
+import org.apache.directory.server.core.annotations.CreatePartition;
+import org.apache.directory.server.core.factory.DSAnnotationProcessor;
+import org.apache.directory.server.factory.ServerAnnotationProcessor;
+import org.apache.directory.server.ldap.LdapServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.Description;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the ldap daos against an embedded ApacheDS server (started once for this class on a free port).
+ */
+@CreateDS(
+    name = "LdapInMemoryServerTest",
+    partitions = {
+        @CreatePartition(
+            name = "example",
+            suffix = "dc=example,dc=org",
+            contextEntry = @ContextEntry(
+                entryLdif = "dn: dc=example,dc=org\n" +
+                    "dc: example\n" +
+                    "objectClass: top\n" +
+                    "objectClass: domain\n\n"
+            ))
+    })
+@CreateLdapServer(
+    transports = {
+        @CreateTransport(protocol = "LDAP")
+    })
+public class LdapInMemoryServerTest {
+  private static final String USER_BASE = "ou=users";
+
+  private static final int NUMBER_OF_USERS = 25;
+
+  private static DirectoryService directoryService;
+
+  private static LdapServer ldapServer;
+
+  private static LdapUserDao ldapUserDao;
+
+  @BeforeAll
+  static void startServer() throws Exception {
+    final Description description = Description.createSuiteDescription(LdapInMemoryServerTest.class);
+    directoryService = DSAnnotationProcessor.getDirectoryService(description);
+    ldapServer = ServerAnnotationProcessor.getLdapServer(description, directoryService, 1024);
+
+    final LdapConfig ldapConfig = new LdapConfig();
+    ldapConfig.setServer("ldap://localhost");
+    ldapConfig.setPort(ldapServer.getPort());
+    ldapConfig.setBaseDN("dc=example,dc=org");
+    ldapConfig.setUserBase(USER_BASE);
+    ldapConfig.setGroupBase("ou=groups");
+    ldapConfig.setAuthentication("simple");
+    ldapConfig.setManagerUser("uid=admin,ou=system");
+    ldapConfig.setManagerPassword("secret");
+    final LdapServiceImpl ldapService = new LdapServiceImpl();
+    ldapService.setLdapConfig(ldapConfig);
+    final LdapConnector ldapConnector = new LdapConnector(ldapConfig);
+
+    final LdapOrganizationalUnitDao ldapOrganizationalUnitDao = new LdapOrganizationalUnitDao();
+    ldapOrganizationalUnitDao.setLdapConnector(ldapConnector);
+    ldapOrganizationalUnitDao.createIfNotExist(USER_BASE, "Users of LdapInMemoryServerTest.");
+    final LdapPersonDao ldapPersonDao = new LdapPersonDao();
+    ldapPersonDao.setLdapConnector(ldapConnector);
+    ldapUserDao = new LdapUserDao();
+    ldapUserDao.init();
+    ldapUserDao.ldapService = ldapService;
+    ldapUserDao.setLdapConnector(ldapConnector);
+    ldapUserDao.setLdapPersonDao(ldapPersonDao);
+    for (int i = 0; i < NUMBER_OF_USERS; i++) {
+      final LdapUser user = (LdapUser) new LdapUser().setUid("user" + i).setGivenName("Firstname" + i)
+          .setSurname("Lastname" + i).setEmployeeNumber("PF-" + i);
+      user.setOrganizationalUnit(USER_BASE);
+      ldapUserDao.createOrUpdate(USER_BASE, user);
+    }
+  }
+
+  @AfterAll
+  static void stopServer() throws Exception {
+    if (ldapServer != null) {
+      ldapServer.stop();
+    }
+    if (directoryService != null) {
+      directoryService.shutdown();
+      FileUtils.deleteQuietly(directoryService.getWorkingDirectory());
+    }
+  }
+
+  @Test
+  void pagedSearch() {
+    final int pageSize = ldapUserDao.pageSize;
+    try {
+      ldapUserDao.pageSize = 10; // 3 pages.
+      final List<LdapUser> users = ldapUserDao.findAll(USER_BASE);
+      assertEquals(NUMBER_OF_USERS, users.size());
+      final Set<String> uids = new HashSet<>();
+      users.forEach(user -> uids.add(user.getUid()));
+      assertEquals(NUMBER_OF_USERS, uids.size(), "Entries of different pages shouldn't overlap.");
+
+      final LdapMasterLoginHandler.LdapUserIndex index = new LdapMasterLoginHandler.LdapUserIndex(users);
+      final PFUserDO user = new PFUserDO();
+      user.setUsername("user7");
+      assertEquals("Firstname7", index.get(user).getGivenName());
+      user.setUsername("unknown");
+      assertNull(index.get(user));
+    } finally {
+      ldapUserDao.pageSize = pageSize;
+    }
+  }
+
+  @Test
+  void authenticate() {
+    final LdapUser user = ldapUserDao.findByUsername("user3", USER_BASE);
+    assertNotNull(user);
+    assertEquals("PF-3", user.getEmployeeNumber());
+    ldapUserDao.changePassword(user, null, "test123".toCharArray());
+    assertNotNull(ldapUserDao.authenticate("user3", "test123".toCharArray(), USER_BASE));
+    assertNull(ldapUserDao.authenticate("user3", "wrong".toCharArray(), USER_BASE));
+  }
+}
@@ -0,0 +1,115 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.ldap;
+
+import org.junit.jupiter.api.Test;
+import org.projectforge.framework.persistence.user.entities.GroupDO;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LdapMasterSyncStateTest {
+  @Test
+  void modifiedUsersAndGroups() {
+    final LdapMasterSyncState state = new LdapMasterSyncState();
+    assertTrue(state.isFullSyncRequired(System.currentTimeMillis()));
+    final PFUserDO kai = createUser(1L, "kai", 1000L);
+    final PFUserDO horst = createUser(2L, "horst", 1000L);
+    final List<PFUserDO> users = Arrays.asList(kai, horst);
+    final GroupDO group = createGroup(10L, 1000L, kai);
+    final List<GroupDO> groups = Collections.singletonList(group);
+    assertEquals(2, state.getModifiedUserIds(users).size());
+    state.startFullSync();
+    users.forEach(state::synced);
+    state.synced(group);
+    final long now = System.currentTimeMillis();
+    state.fullSyncDone(now);
+    assertFalse(state.isFullSyncRequired(now + 1000));
+    assertTrue(state.isFullSyncRequired(now + LdapMasterSyncState.FULL_SYNC_INTERVAL_MS));
+
+    Set<Long> modifiedUserIds = state.getModifiedUserIds(users);
+    assertTrue(modifiedUserIds.isEmpty());
+    assertTrue(state.getModifiedGroupIds(groups, modifiedUserIds).isEmpty());
+
+    horst.setLastUpdate(new Date(2000L));
+    modifiedUserIds = state.getModifiedUserIds(users);
+    assertEquals(Collections.singleton(2L), modifiedUserIds);
+    assertTrue(state.getModifiedGroupIds(groups, modifiedUserIds).isEmpty(), "horst isn't member of group.");
+
+    kai.setLastUpdate(new Date(2000L));
+    modifiedUserIds = state.getModifiedUserIds(users);
+    assertEquals(2, modifiedUserIds.size());
+    assertEquals(Collections.singleton(10L), state.getModifiedGroupIds(groups, modifiedUserIds), "kai is member of group.");
+    users.forEach(state::synced);
+
+    group.addUser(horst);
+    assertEquals(Collections.singleton(10L), state.getModifiedGroupIds(groups, state.getModifiedUserIds(users)),
+        "Membership changed without modification of the group itself.");
+    state.synced(group);
+    assertTrue(state.getModifiedGroupIds(groups, state.getModifiedUserIds(users)).isEmpty());
+
+    state.reset();
+    assertTrue(state.isFullSyncRequired(now + 1000));
+    assertEquals(2, state.getModifiedUserIds(users).size());
+  }
+
+  @Test
+  void ldapUserIndex() {
+    final LdapUser byUid = new LdapUser();
+    byUid.setUid("kai");
+    byUid.setEmployeeNumber("PF-1");
+    final LdapUser byEmployeeNumber = new LdapUser();
+    byEmployeeNumber.setUid("old-name");
+    byEmployeeNumber.setEmployeeNumber(PFUserDOConverter.buildEmployeeNumber(createUser(2L, "horst", 0L)));
+    final LdapMasterLoginHandler.LdapUserIndex index = new LdapMasterLoginHandler.LdapUserIndex(
+        Arrays.asList(byUid, byEmployeeNumber));
+    assertSame(byUid, index.get(createUser(1L, "kai", 0L)));
+    assertSame(byEmployeeNumber, index.get(createUser(2L, "horst", 0L)), "User renamed.");
+    assertNull(index.get(createUser(3L, "unknown", 0L)));
+  }
+
+  private static PFUserDO createUser(final Long id, final String username, final long lastUpdate) {
+    final PFUserDO user = new PFUserDO();
+    user.setId(id);
+    user.setUsername(username);
+    user.setLastUpdate(new Date(lastUpdate));
+    return user;
+  }
+
+  private static GroupDO createGroup(final Long id, final long lastUpdate, final PFUserDO... users) {
+    final GroupDO group = new GroupDO();
+    group.setId(id);
+    group.setLastUpdate(new Date(lastUpdate));
+    for (final PFUserDO user : users) {
+      group.addUser(user);
+    }
+    return group;
+  }
+}
@@ -0,0 +1,153 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.business.address
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+import java.awt.image.BufferedImage
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import javax.imageio.ImageIO
+
+class AddressImageCacheTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var addressDao: AddressDao
+
+    @Autowired
+    private lateinit var addressImageCache: AddressImageCache
+
+    @Autowired
+    private lateinit var addressImageDao: AddressImageDao
+
+    @Test
+    fun concurrentLoadTest() {
+        logon(ADMIN)
+        val address = createAddressWithImage("concurrentLoad", 300, 200)
+        val version = address.imageLastUpdate!!.time
+        val executor = Executors.newFixedThreadPool(10)
+        try {
+            val futures = (1..10).map {
+                executor.submit(Callable {
+                    addressImageCache.getImage(address.id!!, version, AddressImageCache.Rendition.MEDIUM)
+                })
+            }
+            val images = futures.map { it.get(30, TimeUnit.SECONDS) }
+            images.forEach {
+                Assertions.assertNotNull(it)
+                Assertions.assertArrayEquals(images[0]!!.bytes, it!!.bytes)
+            }
+            assertSize(images[0]!!.bytes, 128, 85)
+        } finally {
+            executor.shutdownNow()
+        }
+        // The futures are removed after completion, also if the load was already completed (no recursive update):
+        for (i in 1..50) {
+            if (addressImageCache.inProgressCount == 0) {
+                break
+            }
+            Thread.sleep(20)
+        }
+        Assertions.assertEquals(0, addressImageCache.inProgressCount)
+        val image = addressImageCache.getImage(address.id!!, version, AddressImageCache.Rendition.MEDIUM)
+        Assertions.assertEquals(0, addressImageCache.inProgressCount, "Served from memory.")
+        assertSize(image!!.bytes, 128, 85)
+    }
+
+    @Test
+    fun getImagesTest() {
+        logon(ADMIN)
+        val a1 = createAddressWithImage("getImages1", 300, 200)
+        val a2 = createAddressWithImage("getImages2", 100, 400)
+        val a3 = AddressDO()
+        a3.name = "getImages3"
+        addressDao.insert(a3) // No image.
+        val ids = listOf(a1.id!!, a2.id!!, a3.id!!)
+        val images = addressImageDao.getImages(ids, AddressImageCache.Rendition.SMALL)
+        Assertions.assertEquals(2, images.size)
+        assertSize(images[a1.id]!!.bytes, 64, 43)
+        assertSize(images[a2.id]!!.bytes, 16, 64)
+        // Originals are cached by bulk loads as well:
+        assertSize(addressImageDao.getImage(a1.id!!, AddressImageCache.Rendition.ORIGINAL)!!.bytes, 300, 200)
+        val previews = addressImageDao.getImages(ids, AddressImageCache.Rendition.PREVIEW)
+        Assertions.assertEquals(2, previews.size)
+        // Served from the caches:
+        Assertions.assertSame(images[a1.id], addressImageDao.getImages(ids, AddressImageCache.Rendition.SMALL)[a1.id])
+    }
+
+    @Test
+    fun evictAndDiskLimitTest() {
+        logon(ADMIN)
+        val address = createAddressWithImage("evict", 300, 200)
+        val image = addressImageDao.getImage(address.id!!, AddressImageCache.Rendition.LARGE)!!
+        assertSize(image.bytes, 256, 171)
+        addressImageDao.saveOrUpdate(address.id!!, createImage(200, 300))
+        // Evicted on update:
+        val updated = addressImageDao.getImage(address.id!!, AddressImageCache.Rendition.LARGE)!!
+        assertSize(updated.bytes, 171, 256)
+
+        val maxDiskBytes = addressImageCache.maxDiskBytes
+        try {
+            addressImageCache.maxDiskBytes = addressImageCache.diskSize + 1000
+            val others = (1..5).map { createAddressWithImage("diskLimit$it", 400, 400) }
+            others.forEach { addressImageDao.getImage(it.id!!, AddressImageCache.Rendition.ORIGINAL) }
+            Assertions.assertTrue(
+                addressImageCache.diskSize <= addressImageCache.maxDiskBytes,
+                "Disk cache should be shrunk: ${addressImageCache.diskSize} > ${addressImageCache.maxDiskBytes}",
+            )
+            // Images deleted from disk are still served (loaded again from the data base):
+            others.forEach {
+                Assertions.assertNotNull(addressImageDao.getImage(it.id!!, AddressImageCache.Rendition.ORIGINAL))
+            }
+        } finally {
+            addressImageCache.maxDiskBytes = maxDiskBytes
+        }
+    }
+
+    private fun createAddressWithImage(name: String, width: Int, height: Int): AddressDO {
+        val address = AddressDO()
+        address.name = name
+        addressDao.insert(address)
+        addressImageDao.saveOrUpdate(address.id!!, createImage(width, height))
+        return addressDao.find(address.id)!!
+    }
+
+    private fun createImage(width: Int, height: Int): ByteArray {
+        val image = BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+        val graphics = image.createGraphics()
+        graphics.fillOval(0, 0, width, height)
+        graphics.dispose()
+        val baos = ByteArrayOutputStream()
+        ImageIO.write(image, "png", baos)
+        return baos.toByteArray()
+    }
+
+    private fun assertSize(bytes: ByteArray, expectedWidth: Int, expectedHeight: Int) {
+        val image = ImageIO.read(bytes.inputStream())
+        Assertions.assertEquals(expectedWidth, image.width)
+        Assertions.assertEquals(expectedHeight, image.height)
+    }
+}
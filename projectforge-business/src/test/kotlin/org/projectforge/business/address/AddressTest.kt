@@ -32,9 +32,12 @@ import org.projectforge.framework.persistence.api.BaseDao
 import org.projectforge.framework.persistence.api.BaseSearchFilter
 import org.projectforge.framework.persistence.api.QueryFilter
 import org.projectforge.framework.persistence.api.SortProperty.Companion.asc
+import org.projectforge.framework.time.PFDay
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired
+import java.time.LocalDate
+import java.time.Month
 
 class AddressTest : AbstractTestBase() {
     @Autowired
@@ -211,6 +214,42 @@ class AddressTest : AbstractTestBase() {
         }
     }
 
+    @Test
+    fun birthdaysTest() {
+        logon(ADMIN)
+        listOf(
+            "Birthday-Dec30" to LocalDate.of(1970, Month.DECEMBER, 30),
+            "Birthday-Jan02" to LocalDate.of(1980, Month.JANUARY, 2),
+            "Birthday-Feb29" to LocalDate.of(1984, Month.FEBRUARY, 29),
+            "Birthday-Mar01" to LocalDate.of(1990, Month.MARCH, 1),
+        ).forEach { (name, birthday) ->
+            val address = AddressDO()
+            address.name = name
+            address.birthday = birthday
+            addressDao.insert(address)
+        }
+        fun getBirthdays(from: LocalDate, to: LocalDate): List<String> {
+            return addressDao.getBirthdays(PFDay.from(from).utilDate, PFDay.from(to).utilDate, true)
+                .map { it.address.name!! }.filter { it.startsWith("Birthday-") }
+        }
+        // Turn of the year:
+        Assertions.assertEquals(
+            listOf("Birthday-Jan02", "Birthday-Dec30"),
+            getBirthdays(LocalDate.of(2023, Month.DECEMBER, 28), LocalDate.of(2024, Month.JANUARY, 3)),
+        )
+        Assertions.assertEquals(
+            listOf("Birthday-Feb29", "Birthday-Mar01"),
+            getBirthdays(LocalDate.of(2024, Month.FEBRUARY, 28), LocalDate.of(2024, Month.MARCH, 1)),
+        )
+        Assertions.assertEquals(
+            listOf("Birthday-Mar01"),
+            getBirthdays(LocalDate.of(2023, Month.MARCH, 1), LocalDate.of(2023, Month.MARCH, 5)),
+        )
+        Assertions.assertEquals(0, BirthdayCache.getDayIndex(Month.JANUARY, 1))
+        Assertions.assertEquals(59, BirthdayCache.getDayIndex(Month.FEBRUARY, 29))
+        Assertions.assertEquals(365, BirthdayCache.getDayIndex(Month.DECEMBER, 31))
+    }
+
     /**
      * The user shouldn't be able to remove address books from addresses he has no access to.
      */
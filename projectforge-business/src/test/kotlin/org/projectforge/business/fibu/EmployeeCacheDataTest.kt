@@ -0,0 +1,80 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.business.fibu
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.time.Month
+
+class EmployeeCacheDataTest {
+    @Test
+    fun timelineTest() {
+        val employee = createEmployee(1)
+        val attrs = listOf(
+            createAttr(employee, EmployeeValidSinceAttrType.STATUS, null, EmployeeStatus.STUDENTISCHE_HILFSKRAFT.name),
+            createAttr(employee, EmployeeValidSinceAttrType.STATUS, LocalDate.of(2023, Month.JULY, 1), EmployeeStatus.FEST_ANGESTELLTER.name),
+            createAttr(employee, EmployeeValidSinceAttrType.ANNUAL_LEAVE, LocalDate.of(2022, Month.JANUARY, 1), "28"),
+            createAttr(employee, EmployeeValidSinceAttrType.ANNUAL_LEAVE, LocalDate.of(2024, Month.JANUARY, 1), "30"),
+            createAttr(employee, EmployeeValidSinceAttrType.ANNUAL_LEAVE, LocalDate.of(2025, Month.JANUARY, 1), "32", deleted = true),
+        )
+        val data = EmployeeCacheData(listOf(employee), attrs.shuffled())
+        Assertions.assertEquals(EmployeeStatus.STUDENTISCHE_HILFSKRAFT, data.getStatus(1, LocalDate.of(2023, Month.JUNE, 30)))
+        Assertions.assertEquals(EmployeeStatus.FEST_ANGESTELLTER, data.getStatus(1, LocalDate.of(2023, Month.JULY, 1)))
+        Assertions.assertNull(data.getStatus(1, LocalDate.of(1969, Month.DECEMBER, 31)))
+        Assertions.assertNull(data.getAnnualLeave(1, LocalDate.of(2021, Month.DECEMBER, 31)))
+        Assertions.assertEquals(BigDecimal("28"), data.getAnnualLeave(1, LocalDate.of(2023, Month.DECEMBER, 31)))
+        Assertions.assertEquals(BigDecimal("30"), data.getAnnualLeave(1, LocalDate.of(2024, Month.JANUARY, 1)))
+        Assertions.assertEquals(BigDecimal("30"), data.getAnnualLeave(1, LocalDate.of(2026, Month.JANUARY, 1)))
+        Assertions.assertNull(data.getStatus(2, LocalDate.now()))
+        // Latest values (deleted entries ignored):
+        Assertions.assertEquals(EmployeeStatus.FEST_ANGESTELLTER, employee.status)
+        Assertions.assertEquals(BigDecimal("30"), employee.annualLeave)
+    }
+
+    private fun createEmployee(id: Long): EmployeeDO {
+        val employee = EmployeeDO()
+        employee.id = id
+        employee.user = PFUserDO().also { it.id = 1000 + id }
+        employee.staffNumber = "S$id"
+        return employee
+    }
+
+    private fun createAttr(
+        employee: EmployeeDO,
+        type: EmployeeValidSinceAttrType,
+        validSince: LocalDate?,
+        value: String,
+        deleted: Boolean = false,
+    ): EmployeeValidSinceAttrDO {
+        val attr = EmployeeValidSinceAttrDO()
+        attr.employee = employee
+        attr.type = type
+        attr.validSince = validSince
+        attr.value = value
+        attr.deleted = deleted
+        return attr
+    }
+}
@@ -28,9 +28,11 @@ import org.junit.jupiter.api.Test
 import org.projectforge.business.fibu.RechnungDao.Companion.getNettoSumme
 import org.projectforge.framework.time.PFDay.Companion.now
 import org.projectforge.business.test.AbstractTestBase
+import org.projectforge.framework.cache.AbstractCache
 import org.springframework.beans.factory.annotation.Autowired
 import java.math.BigDecimal
 import java.time.LocalDate
+import java.util.*
 
 class RechnungCacheTest : AbstractTestBase() {
     @Autowired
@@ -122,6 +124,50 @@ class RechnungCacheTest : AbstractTestBase() {
         Assertions.assertEquals(0, BigDecimal("300").compareTo(getNettoSumme(posInfos)))
     }
 
+    @Test
+    fun deltaRefreshTest() {
+        logon(getUser(TEST_FINANCE_USER))
+        val rechnung = RechnungDO().also {
+            val position = RechnungsPositionDO()
+            position.einzelNetto = BigDecimal("100")
+            position.text = "1"
+            it.addPosition(position)
+            it.nummer = rechnungDao.getNextNumber(it)
+            it.datum = LocalDate.now()
+            it.faelligkeit = LocalDate.now()
+            it.projekt = initTestDB.addProjekt(null, 2, "bar")
+        }
+        rechnungDao.insert(rechnung)
+        rechnungCache.forceReload()
+        Assertions.assertNull(rechnungCache.getRechnungInfo(rechnung.id)!!.zahlBetrag)
+
+        // Modifications outside the dao (without cache update) with older lastUpdate aren't detected by delta refresh:
+        setZahlBetrag(rechnung.id!!, BigDecimal("10"), Date(System.currentTimeMillis() - 2 * AbstractCache.TICKS_PER_HOUR))
+        rechnungCache.setDeltaExpired()
+        Assertions.assertNull(rechnungCache.getRechnungInfo(rechnung.id)!!.zahlBetrag)
+
+        setZahlBetrag(rechnung.id!!, BigDecimal("20"), Date())
+        rechnungCache.setDeltaExpired()
+        Assertions.assertEquals(0, BigDecimal("20").compareTo(rechnungCache.getRechnungInfo(rechnung.id)!!.zahlBetrag))
+        Assertions.assertNotNull(rechnungCache.getRechnungPosInfo(rechnung.positionen!![0].id))
+
+        // Full refresh:
+        setZahlBetrag(rechnung.id!!, BigDecimal("30"), Date(System.currentTimeMillis() - 2 * AbstractCache.TICKS_PER_HOUR))
+        rechnungCache.setExpired()
+        Assertions.assertEquals(0, BigDecimal("30").compareTo(rechnungCache.getRechnungInfo(rechnung.id)!!.zahlBetrag))
+    }
+
+    private fun setZahlBetrag(rechnungId: Long, zahlBetrag: BigDecimal, lastUpdate: Date) {
+        persistenceService.runInTransaction { context ->
+            context.executeUpdate(
+                "update RechnungDO set zahlBetrag=:zahlBetrag, lastUpdate=:lastUpdate where id=:id",
+                Pair("zahlBetrag", zahlBetrag),
+                Pair("lastUpdate", lastUpdate),
+                Pair("id", rechnungId),
+            )
+        }
+    }
+
     private fun createOrder(): AuftragDO {
         return AuftragDO().also {
             it.status = AuftragsStatus.GELEGT
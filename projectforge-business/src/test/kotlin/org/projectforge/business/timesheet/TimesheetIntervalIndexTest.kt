@@ -0,0 +1,115 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.business.timesheet
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.test.AbstractTestBase
+import org.projectforge.framework.time.PFDateTime
+import org.springframework.beans.factory.annotation.Autowired
+import java.time.Month
+
+class TimesheetIntervalIndexTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var timesheetDao: TimesheetDao
+
+    @Autowired
+    private lateinit var timesheetIntervalIndex: TimesheetIntervalIndex
+
+    @Test
+    fun overlapTest() {
+        logon(ADMIN)
+        persistenceService.runInTransaction { _ ->
+            initTestDB.addUser(user)
+            initTestDB.addTask(prefix, "root")
+        }
+        val today = PFDateTime.now().beginOfDay
+        val old = PFDateTime.withDate(2008, Month.MARCH, 3)
+        Assertions.assertTrue(timesheetIntervalIndex.covers(today.utilDate))
+        Assertions.assertFalse(timesheetIntervalIndex.covers(old.utilDate))
+
+        val ts1 = createTimesheet(today, 8, 9)
+        timesheetDao.insert(ts1, checkAccess = false)
+        createTimesheet(today, 9, 10).let {
+            timesheetDao.insert(it, checkAccess = false)
+        }
+        Assertions.assertTrue(timesheetDao.hasTimeOverlap(createTimesheet(today, 8, 9), false))
+        Assertions.assertTrue(timesheetDao.hasTimeOverlap(createTimesheet(today, 7, 11), false))
+        Assertions.assertFalse(timesheetDao.hasTimeOverlap(createTimesheet(today, 10, 11), false))
+        Assertions.assertFalse(timesheetDao.hasTimeOverlap(createTimesheet(today, 6, 8), false))
+        Assertions.assertFalse(timesheetDao.hasTimeOverlap(ts1, false), "Time sheet must not overlap with itself.")
+
+        // Move ts1 from 8-9 to 11-12:
+        val moved = timesheetDao.find(ts1.id, checkAccess = false)!!
+        moved.startTime = today.plusHours(11).utilDate
+        moved.stopTime = today.plusHours(12).utilDate
+        timesheetDao.update(moved, checkAccess = false)
+        Assertions.assertFalse(timesheetDao.hasTimeOverlap(createTimesheet(today, 8, 9), false))
+        Assertions.assertTrue(timesheetDao.hasTimeOverlap(createTimesheet(today, 11, 12), false))
+
+        timesheetDao.markAsDeleted(moved, checkAccess = false)
+        Assertions.assertFalse(timesheetDao.hasTimeOverlap(createTimesheet(today, 11, 12), false))
+
+        // Rolled back modifications don't remain in the index:
+        val ts2 = createTimesheet(today, 13, 14)
+        timesheetDao.insert(ts2, checkAccess = false)
+        suppressErrorLogs {
+            try {
+                persistenceService.runInTransaction { _ ->
+                    val ts = timesheetDao.find(ts2.id, checkAccess = false)!!
+                    ts.startTime = today.plusHours(15).utilDate
+                    ts.stopTime = today.plusHours(16).utilDate
+                    timesheetDao.update(ts, checkAccess = false)
+                    Assertions.assertTrue(
+                        timesheetDao.hasTimeOverlap(createTimesheet(today, 15, 16), false),
+                        "Modification should be visible in the same transaction.",
+                    )
+                    throw IllegalStateException("Rollback for testing.")
+                }
+            } catch (ex: IllegalStateException) {
+                // Expected.
+            }
+        }
+        Assertions.assertTrue(timesheetDao.hasTimeOverlap(createTimesheet(today, 13, 14), false))
+        Assertions.assertFalse(timesheetDao.hasTimeOverlap(createTimesheet(today, 15, 16), false))
+
+        // Old time periods aren't indexed:
+        timesheetDao.insert(createTimesheet(old, 8, 9), checkAccess = false)
+        Assertions.assertTrue(timesheetDao.hasTimeOverlap(createTimesheet(old, 8, 10), false))
+        Assertions.assertFalse(timesheetDao.hasTimeOverlap(createTimesheet(old, 9, 10), false))
+    }
+
+    private fun createTimesheet(day: PFDateTime, fromHour: Long, toHour: Long): TimesheetDO {
+        val ts = TimesheetDO()
+        ts.startTime = day.plusHours(fromHour).utilDate
+        ts.stopTime = day.plusHours(toHour).utilDate
+        ts.task = initTestDB.getTask(prefix)
+        ts.user = getUser(user)
+        return ts
+    }
+
+    companion object {
+        const val prefix = "tii"
+        const val user = "$prefix-user"
+    }
+}
@@ -63,6 +63,52 @@ class UserXmlPreferencesTestFork : AbstractTestBase() {
         Assertions.assertEquals("ProjectForge", userXmlPreferencesCache.getEntry(null, "application", user1.id!!))
     }
 
+    @Test
+    fun writeBehindTest() {
+        val user = getUser("user1")
+        val userId = user.id!!
+        logon(user)
+        userXmlPreferencesCache.putEntry(null, "writeBehind", "Hurzel", true, userId)
+        val data = userXmlPreferencesCache.ensureAndGetUserPreferencesData(userId)
+        Assertions.assertEquals(1, data.dirtyCount)
+        Assertions.assertEquals(1, userXmlPreferencesCache.insertOrUpdateUserEntriesIfModified(data, false, onlyDirty = true))
+        Assertions.assertEquals(0, data.dirtyCount)
+        assert(userId, "writeBehind", false, "Entry should be flushed to db and shouldn't be modified.")
+        // Unmodified entries put again aren't written:
+        userXmlPreferencesCache.putEntry(null, "writeBehind", "Hurzel", true, userId)
+        Assertions.assertEquals(0, userXmlPreferencesCache.insertOrUpdateUserEntriesIfModified(data, false, onlyDirty = true))
+        Assertions.assertEquals(0, data.dirtyCount)
+        // Entries read and modified in place are written on full flushes only:
+        val list = mutableListOf("a")
+        userXmlPreferencesCache.putEntry(null, "list", list, true, userId)
+        userXmlPreferencesCache.insertOrUpdateUserEntriesIfModified(data, false, onlyDirty = true)
+        @Suppress("UNCHECKED_CAST")
+        (userXmlPreferencesCache.getEntry(null, "list", userId) as MutableList<String>).add("b")
+        Assertions.assertEquals(0, userXmlPreferencesCache.insertOrUpdateUserEntriesIfModified(data, false, onlyDirty = true))
+        Assertions.assertEquals(1, userXmlPreferencesCache.insertOrUpdateUserEntriesIfModified(data, false))
+        userXmlPreferencesCache.clear(userId)
+        Assertions.assertEquals(listOf("a", "b"), userXmlPreferencesCache.getEntry(null, "list", userId))
+    }
+
+    @Test
+    fun batchWriteTest() {
+        val user = getUser("user2")
+        val userId = user.id!!
+        logon(user)
+        userXmlPreferencesCache.putEntry(null, "batch1", "one", true, userId)
+        val data = userXmlPreferencesCache.ensureAndGetUserPreferencesData(userId)
+        Assertions.assertEquals(1, userXmlPreferencesCache.insertOrUpdateUserEntriesIfModified(data, false))
+        // One update and two inserts are written together:
+        userXmlPreferencesCache.putEntry(null, "batch1", "uno", true, userId)
+        userXmlPreferencesCache.putEntry(null, "batch2", "two", true, userId)
+        userXmlPreferencesCache.putEntry(null, "batch3", 3, true, userId)
+        Assertions.assertEquals(3, userXmlPreferencesCache.insertOrUpdateUserEntriesIfModified(data, false))
+        userXmlPreferencesCache.clear(userId)
+        Assertions.assertEquals("uno", userXmlPreferencesCache.getEntry(null, "batch1", userId))
+        Assertions.assertEquals("two", userXmlPreferencesCache.getEntry(null, "batch2", userId))
+        Assertions.assertEquals(3, userXmlPreferencesCache.getEntry(null, "batch3", userId))
+    }
+
     private fun assert(userId: Long?, key: String, expectedModified: Boolean, msg: String? = null) {
         val data = userXmlPreferencesCache.ensureAndGetUserPreferencesData(userId!!)
         val value = data.getEntry(null, key)
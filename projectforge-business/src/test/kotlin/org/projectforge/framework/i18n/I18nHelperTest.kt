@@ -0,0 +1,45 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.framework.i18n
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.projectforge.Constants
+import java.util.*
+
+class I18nHelperTest {
+  @Test
+  fun translationTableTest() {
+    I18nHelper.addBundleName(Constants.RESOURCE_BUNDLE_NAME)
+    assertEquals("Cancel", I18nHelper.getLocalizedMessage(Locale.ENGLISH, "cancel"))
+    assertEquals("Abbrechen", I18nHelper.getLocalizedMessage(Locale.GERMAN, "cancel"))
+    assertEquals("unknown.key", I18nHelper.getLocalizedMessage(Locale.ENGLISH, "unknown.key"))
+    // Cached message formats are used concurrently:
+    (1..100).toList().parallelStream().forEach {
+      assertEquals(
+        "Value out of range $it-${it + 1}.",
+        I18nHelper.getLocalizedMessage(Locale.ENGLISH, "validation.error.range.integerOutOfRange", "$it", "${it + 1}"),
+      )
+    }
+  }
+}
@@ -106,6 +106,86 @@ class JobsHandlerTest {
     Assertions.assertTrue(onAfterException)
   }
 
+  @Test
+  fun queueTest() {
+    ThreadLocalUserContext.setUser(PFUserDO())
+    val jobHandler = JobHandler()
+    val finished = mutableListOf<String>()
+    val job1 = jobHandler.addJob(createQueuedJob("job1", finished, AbstractJob.QueueStrategy.PER_QUEUE))
+    val job2 = jobHandler.addJob(createQueuedJob("job2", finished, AbstractJob.QueueStrategy.PER_QUEUE))
+    val job3 = jobHandler.addJob(createQueuedJob("job3", finished, AbstractJob.QueueStrategy.REFUSE_PER_QUEUE))
+    Assertions.assertEquals(AbstractJob.Status.RUNNING, job1.status)
+    Assertions.assertEquals(AbstractJob.Status.WAITING, job2.status, "Blocked by job1.")
+    Assertions.assertEquals(AbstractJob.Status.REFUSED, job3.status, "Refused, because job1 is running.")
+    runBlocking {
+      for (i in 0..50) {
+        delay(100)
+        if (job2.status == AbstractJob.Status.FINISHED && jobHandler.statistics.running == 0) {
+          break
+        }
+      }
+    }
+    Assertions.assertEquals(AbstractJob.Status.FINISHED, job1.status)
+    Assertions.assertEquals(AbstractJob.Status.FINISHED, job2.status)
+    synchronized(finished) {
+      Assertions.assertEquals(listOf("job1", "job2"), finished)
+    }
+    Assertions.assertEquals(0, jobHandler.statistics.running)
+    Assertions.assertEquals(0, jobHandler.statistics.waiting)
+  }
+
+  @Test
+  fun refusedAndExpiredJobsTest() {
+    ThreadLocalUserContext.setUser(PFUserDO())
+    val jobHandler = JobHandler()
+    jobHandler.maxWaitingTimeMs = -1 // All waiting jobs are expired.
+    val finished = mutableListOf<String>()
+    TestUtils.suppressErrorLogs {
+      val job1 = jobHandler.addJob(createQueuedJob("job1", finished, AbstractJob.QueueStrategy.PER_QUEUE))
+      val job2 = jobHandler.addJob(createQueuedJob("job2", finished, AbstractJob.QueueStrategy.REFUSE_PER_QUEUE))
+      val job3 = jobHandler.addJob(createQueuedJob("job3", finished, AbstractJob.QueueStrategy.PER_QUEUE))
+      Assertions.assertEquals(AbstractJob.Status.REFUSED, job2.status)
+      Assertions.assertEquals(AbstractJob.Status.WAITING, job3.status, "Blocked by job1.")
+      jobHandler.tidyUp()
+      Assertions.assertEquals(AbstractJob.Status.FAILED, job3.status, "Waiting time exceeded.")
+      runBlocking {
+        for (i in 0..50) {
+          delay(100)
+          if (job1.status == AbstractJob.Status.FINISHED && jobHandler.coroutinesCount == 0) {
+            break
+          }
+        }
+      }
+      Assertions.assertEquals(AbstractJob.Status.FINISHED, job1.status)
+    }
+    Assertions.assertEquals(0, jobHandler.coroutinesCount, "Refused and expired jobs must not remain in the scope.")
+    synchronized(finished) {
+      Assertions.assertEquals(listOf("job1"), finished)
+    }
+  }
+
+  private fun createQueuedJob(
+    title: String,
+    finished: MutableList<String>,
+    queueStrategy: AbstractJob.QueueStrategy,
+  ): AbstractJob {
+    return object : AbstractJob(title, area = "area", queueStrategy = queueStrategy) {
+      override suspend fun run() {
+        delay(300L)
+      }
+
+      override fun writeAccess(user: PFUserDO?): Boolean {
+        return true
+      }
+
+      override fun onAfterFinish() {
+        synchronized(finished) {
+          finished.add(title)
+        }
+      }
+    }
+  }
+
   companion object {
     @JvmStatic
     fun madin(args: Array<String>) {
@@ -0,0 +1,87 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.framework.persistence.history
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.address.AddressDO
+import org.projectforge.business.address.AddressDao
+import org.projectforge.business.fibu.EmployeeDao
+import org.projectforge.business.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+
+class HistoryTimelineTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var addressDao: AddressDao
+
+    @Autowired
+    private lateinit var employeeDao: EmployeeDao
+
+    @Autowired
+    private lateinit var historyFormatService: HistoryFormatService
+
+    @Test
+    fun cursorTest() {
+        HistoryCursor.parse("1700000000000-42")!!.let { cursor ->
+            Assertions.assertEquals(1700000000000L, cursor.modifiedAt)
+            Assertions.assertEquals(42L, cursor.id)
+            Assertions.assertEquals("1700000000000-42", cursor.toString())
+            Assertions.assertTrue(cursor.isBefore(1700000000000L, 41L))
+            Assertions.assertTrue(cursor.isBefore(1699999999999L, 43L))
+            Assertions.assertFalse(cursor.isBefore(1700000000000L, 42L))
+        }
+        Assertions.assertNull(HistoryCursor.parse(null))
+        Assertions.assertNull(HistoryCursor.parse(""))
+        Assertions.assertNull(HistoryCursor.parse("1700000000000"))
+        Assertions.assertNull(HistoryCursor.parse("abc-42"))
+    }
+
+    @Test
+    fun timelinePagingTest() {
+        logon(ADMIN)
+        val address = AddressDO()
+        address.name = "Timeline"
+        addressDao.insert(address)
+        for (i in 1..4) {
+            address.firstName = "Version $i"
+            addressDao.update(address)
+        }
+        Assertions.assertTrue(addressDao.isHistoryPageable)
+        Assertions.assertFalse(employeeDao.isHistoryPageable, "EmployeeDao overrides addOwnHistoryEntries.")
+        val all = historyFormatService.selectTimelinePage(addressDao, address, null, 100).entries
+        Assertions.assertEquals(5, all.size)
+        val paged = mutableListOf<DisplayHistoryEntry>()
+        var cursor: HistoryCursor? = null
+        var pages = 0
+        do {
+            val page = historyFormatService.selectTimelinePage(addressDao, address, cursor, 2)
+            Assertions.assertTrue(page.entries.size <= 2)
+            paged.addAll(page.entries)
+            cursor = HistoryCursor.parse(page.nextCursor)
+            ++pages
+        } while (cursor != null)
+        Assertions.assertEquals(3, pages)
+        Assertions.assertEquals(all.map { it.id }, paged.map { it.id })
+        Assertions.assertEquals(paged.size, paged.map { it.id }.distinct().size)
+    }
+}
@@ -0,0 +1,120 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.history
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.address.AddressDO
+import org.projectforge.business.address.AddressDao
+import org.projectforge.business.test.AbstractTestBase
+import org.projectforge.framework.persistence.api.impl.DBHistoryQuery
+import org.projectforge.framework.persistence.api.impl.DBHistorySearchParams
+import org.springframework.beans.factory.annotation.Autowired
+import java.util.Date
+
+class HistoryWriteBehindServiceTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var addressDao: AddressDao
+
+    @Autowired
+    private lateinit var historyWriteBehindService: HistoryWriteBehindService
+
+    @Test
+    fun writeBehindTest() {
+        logon(ADMIN)
+        historyWriteBehindService.enabled = true
+        try {
+            val address = AddressDO()
+            address.name = "Write-behind"
+            addressDao.insert(address)
+            address.name = "Write-behind (modified)"
+            addressDao.update(address)
+            Assertions.assertEquals(2, countOutboxEntries(), "Insert and update entry expected in outbox.")
+
+            val entries = historyService.loadHistory(address).originUnsortedEntries
+            Assertions.assertEquals(0, countOutboxEntries(), "Outbox should be flushed before loading history.")
+            Assertions.assertEquals(2, entries.size)
+            val updateEntry = entries.first { it.entityOpType == EntityOpType.Update }
+            Assertions.assertEquals(address.id, updateEntry.entityId)
+            Assertions.assertEquals(AddressDO::class.java.name, updateEntry.entityName)
+            val attr = updateEntry.attributes!!.first { it.propertyName == "name" }
+            Assertions.assertEquals("Write-behind", attr.oldValue)
+            Assertions.assertEquals("Write-behind (modified)", attr.value)
+        } finally {
+            historyWriteBehindService.flush()
+            historyWriteBehindService.enabled = false
+        }
+    }
+
+    @Test
+    fun historySearchTest() {
+        logon(ADMIN)
+        historyWriteBehindService.enabled = true
+        try {
+            val address = AddressDO()
+            address.name = "Write-behind search"
+            addressDao.insert(address)
+            Assertions.assertEquals(1, countOutboxEntries(), "Insert entry expected in outbox.")
+            val ids = persistenceService.runReadOnly { context ->
+                DBHistoryQuery.searchHistoryEntryByCriteria(
+                    context.em,
+                    AddressDO::class.java,
+                    DBHistorySearchParams(modifiedByUserId = getUser(ADMIN).id),
+                )
+            }
+            Assertions.assertEquals(0, countOutboxEntries(), "Outbox should be flushed before searching history.")
+            Assertions.assertTrue(ids.contains(address.id), "Pending history entry should be found.")
+        } finally {
+            historyWriteBehindService.flush()
+            historyWriteBehindService.enabled = false
+        }
+    }
+
+    @Test
+    fun failedEntriesTest() {
+        val failedBefore = historyWriteBehindService.countFailedEntries()
+        val outbox = HistoryOutboxDO()
+        outbox.created = Date(System.currentTimeMillis() - 60 * 24 * 60 * 60 * 1000L) // 60 days ago.
+        outbox.payload = "{ no valid json"
+        persistenceService.runInTransaction { context -> context.insert(outbox) }
+        suppressErrorLogs {
+            repeat(HistoryWriteBehindService.MAX_ATTEMPTS + 1) { historyWriteBehindService.flush() }
+        }
+        Assertions.assertEquals(failedBefore + 1, historyWriteBehindService.countFailedEntries(), "Entry given up.")
+        Assertions.assertEquals(
+            0,
+            historyWriteBehindService.deleteFailedEntries(Date(System.currentTimeMillis() - 90 * 24 * 60 * 60 * 1000L)),
+            "Entry is younger than 90 days.",
+        )
+        Assertions.assertTrue(historyWriteBehindService.deleteFailedEntries(Date()) >= 1)
+        Assertions.assertEquals(0, historyWriteBehindService.countFailedEntries())
+        Assertions.assertEquals(0, countOutboxEntries())
+    }
+
+    private fun countOutboxEntries(): Long {
+        return persistenceService.runReadOnly { context ->
+            context.selectSingleResult("select count(*) from HistoryOutboxDO", Long::class.java)
+        } ?: 0L
+    }
+}
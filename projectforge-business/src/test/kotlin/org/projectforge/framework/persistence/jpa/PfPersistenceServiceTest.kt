@@ -140,6 +140,40 @@ class PfPersistenceServiceTest : AbstractTestBase() {
         )
     }
 
+    @Test
+    fun runAfterCommitTest() {
+        val actions = mutableListOf<String>()
+        persistenceService.runAfterCommit { actions.add("no transaction") } // Run immediately.
+        Assertions.assertEquals(listOf("no transaction"), actions)
+        persistenceService.runInTransaction {
+            persistenceService.runInTransaction { // Joins the outer transaction.
+                persistenceService.runAfterCommit { actions.add("inner") }
+            }
+            persistenceService.runInNewTransaction {
+                persistenceService.runAfterCommit { actions.add("new") }
+            }
+            Assertions.assertEquals(listOf("no transaction", "new"), actions, "Not run before the outer commit.")
+            persistenceService.runAfterCommit { actions.add("outer") }
+        }
+        Assertions.assertEquals(listOf("no transaction", "new", "inner", "outer"), actions)
+        persistenceService.runInTransaction {
+            persistenceService.runAfterRollback { actions.add("rollback") }
+        }
+        actions.clear()
+        suppressErrorLogs {
+            try {
+                persistenceService.runInTransaction {
+                    persistenceService.runAfterCommit { actions.add("commit") }
+                    persistenceService.runAfterRollback { actions.add("rollback") }
+                    throw IllegalArgumentException("Some exception for testing.")
+                }
+            } catch (e: IllegalArgumentException) {
+                // Expected.
+            }
+        }
+        Assertions.assertEquals(listOf("rollback"), actions, "After commit actions are discarded on rollback.")
+    }
+
     private fun assertContextCounter(numberOfExpectedTransactions: Long, numberOfEexpectedReadonlyContexts: Long) {
         Assertions.assertEquals(
             numberOfExpectedTransactions,
@@ -0,0 +1,181 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.mail
+
+import jakarta.mail.Message
+import jakarta.mail.internet.InternetAddress
+import jakarta.mail.internet.MimeMessage
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.Constants
+import org.projectforge.business.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.util.*
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+/**
+ * Sends mails through the outbox to a local SMTP stand-in.
+ */
+class MailOutboxServiceTest : AbstractTestBase() {
+    /**
+     * Minimal SMTP server accepting all mails except for recipients containing "reject".
+     */
+    class SmtpStandIn {
+        val connections = AtomicInteger()
+        val messages = Collections.synchronizedList(mutableListOf<String>())
+        private val serverSocket = ServerSocket(0, 50, InetAddress.getLoopbackAddress())
+
+        val port: Int
+            get() = serverSocket.localPort
+
+        init {
+            thread(isDaemon = true, name = "SmtpStandIn") {
+                while (!serverSocket.isClosed) {
+                    val socket = try {
+                        serverSocket.accept()
+                    } catch (ex: Exception) {
+                        break
+                    }
+                    connections.incrementAndGet()
+                    thread(isDaemon = true) { handle(socket) }
+                }
+            }
+        }
+
+        fun stop() {
+            serverSocket.close()
+        }
+
+        private fun handle(socket: Socket) {
+            socket.use {
+                val reader = socket.getInputStream().bufferedReader(Charsets.ISO_8859_1)
+                val writer = socket.getOutputStream().bufferedWriter(Charsets.ISO_8859_1)
+                fun reply(line: String) {
+                    writer.write("$line\r\n")
+                    writer.flush()
+                }
+                reply("220 localhost ESMTP")
+                while (true) {
+                    val command = reader.readLine()?.uppercase() ?: return
+                    when {
+                        command.startsWith("EHLO") || command.startsWith("HELO") -> reply("250 localhost")
+                        command.startsWith("RCPT TO:") && command.contains("REJECT") -> reply("550 Mailbox unavailable")
+                        command == "DATA" -> {
+                            reply("354 End data with <CR><LF>.<CR><LF>")
+                            val sb = StringBuilder()
+                            while (true) {
+                                val line = reader.readLine() ?: return
+                                if (line == ".") {
+                                    break
+                                }
+                                sb.appendLine(line)
+                            }
+                            messages.add(sb.toString())
+                            reply("250 OK")
+                        }
+
+                        command == "QUIT" -> {
+                            reply("221 Bye")
+                            return
+                        }
+
+                        else -> reply("250 OK") // MAIL FROM, RCPT TO, RSET, NOOP
+                    }
+                }
+            }
+        }
+    }
+
+    @Autowired
+    private lateinit var sendMail: SendMail
+
+    @Autowired
+    private lateinit var mailOutboxService: MailOutboxService
+
+    @Test
+    fun outboxTest() {
+        val smtp = SmtpStandIn()
+        val previous = sendMail.internalSetSmtpServer("localhost", "${smtp.port}")
+        mailOutboxService.maxMailsPerSecond = 0
+        try {
+            deleteOutboxEntries()
+            // SendMail.send doesn't use the outbox in test mode (set by AbstractTestBase), so enqueue the messages directly:
+            for (i in 1..20) {
+                Assertions.assertTrue(mailOutboxService.enqueue(createMessage("user$i@example.org", "Outbox test $i")))
+            }
+            Assertions.assertTrue(mailOutboxService.enqueue(createMessage("reject@example.org", "Outbox test rejected")))
+            // Waits for the sender thread, if already running:
+            mailOutboxService.processOutbox()
+
+            Assertions.assertEquals(20, smtp.messages.size)
+            for (i in 1..20) {
+                Assertions.assertEquals(1, smtp.messages.count { it.contains("Subject: Outbox test $i\n") })
+            }
+            Assertions.assertEquals(1, smtp.connections.get(), "All mails should be sent over one connection.")
+
+            val entries = persistenceService.runReadOnly { context ->
+                context.executeQuery("from MailOutboxDO", MailOutboxDO::class.java)
+            }
+            Assertions.assertEquals(1, entries.size, "Only the rejected mail should be left in the outbox.")
+            val rejected = entries[0]
+            Assertions.assertEquals(1, rejected.attempts)
+            Assertions.assertTrue(rejected.nextAttempt!!.time > System.currentTimeMillis())
+            Assertions.assertTrue(rejected.info!!.contains("reject@example.org"))
+            Assertions.assertNotNull(rejected.lastError)
+            Assertions.assertEquals(0, mailOutboxService.processOutbox(), "Rejected mail isn't due yet.")
+        } finally {
+            smtp.stop()
+            sendMail.internalSetSmtpServer(previous.first, previous.second)
+            mailOutboxService.maxMailsPerSecond = 10
+            deleteOutboxEntries()
+        }
+    }
+
+    @Test
+    fun backoffTest() {
+        Assertions.assertEquals(Constants.MILLIS_PER_MINUTE, MailOutboxService.getBackoffMillis(1))
+        Assertions.assertEquals(2 * Constants.MILLIS_PER_MINUTE, MailOutboxService.getBackoffMillis(2))
+        Assertions.assertEquals(32 * Constants.MILLIS_PER_MINUTE, MailOutboxService.getBackoffMillis(6))
+        Assertions.assertEquals(60 * Constants.MILLIS_PER_MINUTE, MailOutboxService.getBackoffMillis(7))
+        Assertions.assertEquals(60 * Constants.MILLIS_PER_MINUTE, MailOutboxService.getBackoffMillis(20))
+    }
+
+    private fun createMessage(to: String, subject: String): MimeMessage {
+        val message = MimeMessage(sendMail.session)
+        message.setFrom(InternetAddress("sender@example.org"))
+        message.setRecipient(Message.RecipientType.TO, InternetAddress(to))
+        message.subject = subject
+        message.setText("Test mail: $subject")
+        return message
+    }
+
+    private fun deleteOutboxEntries() {
+        persistenceService.runInNewTransaction { context ->
+            context.executeUpdate("delete from MailOutboxDO")
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.menu.builder
+
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import org.projectforge.framework.persistence.user.api.UserContext
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+import java.util.concurrent.AbstractExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class MenuBadgeCacheTest {
+    /**
+     * Executes the tasks not before [runAll] is called (or immediately, if [direct] is true). The user context of the
+     * calling thread is preserved, as if the tasks were run by another thread.
+     */
+    private class ManualExecutor : AbstractExecutorService() {
+        private val tasks = mutableListOf<Runnable>()
+
+        var direct = true
+
+        override fun execute(command: Runnable) {
+            if (direct) runIsolated(command) else tasks.add(command)
+        }
+
+        fun runAll() {
+            val list = tasks.toList()
+            tasks.clear()
+            list.forEach { runIsolated(it) }
+        }
+
+        private fun runIsolated(command: Runnable) {
+            val userContext = ThreadLocalUserContext.userContext
+            try {
+                command.run()
+            } finally {
+                ThreadLocalUserContext.userContext = userContext
+            }
+        }
+
+        override fun shutdown() {}
+
+        override fun shutdownNow(): List<Runnable> = emptyList()
+
+        override fun isShutdown(): Boolean = false
+
+        override fun isTerminated(): Boolean = false
+
+        override fun awaitTermination(timeout: Long, unit: TimeUnit): Boolean = true
+    }
+
+    private val executor = ManualExecutor()
+
+    private var now = 1_000_000L
+
+    private val cache = MenuBadgeCache().also {
+        it.executor = executor
+        it.currentTimeMillis = { now }
+        it.coldWaitMillis = 0L
+    }
+
+    @BeforeEach
+    fun login() {
+        ThreadLocalUserContext.userContext = UserContext(PFUserDO().also { it.id = 42 })
+    }
+
+    @AfterEach
+    fun logout() {
+        ThreadLocalUserContext.clear()
+    }
+
+    @Test
+    fun staleWhileRevalidateTest() {
+        val counter = AtomicInteger(1)
+        val calls = AtomicInteger()
+        val menuItemDef = MenuItemDef("TEST", "test", badgeCounter = {
+            calls.incrementAndGet()
+            counter.get()
+        })
+        menuItemDef.badgeCounterTtlMillis = 100
+        Assertions.assertEquals(1, cache.getCounter(menuItemDef), "First computation is waited for.")
+        counter.set(2)
+        Assertions.assertEquals(1, cache.getCounter(menuItemDef), "Cached value within ttl.")
+        Assertions.assertEquals(1, calls.get())
+        now += 150
+        executor.direct = false
+        Assertions.assertEquals(1, cache.getCounter(menuItemDef), "Expired value is returned, recomputed in background.")
+        Assertions.assertEquals(1, cache.getCounter(menuItemDef), "Recomputation is already scheduled.")
+        executor.runAll()
+        Assertions.assertEquals(2, cache.getCounter(menuItemDef))
+        Assertions.assertEquals(2, calls.get())
+    }
+
+    @Test
+    fun slowCounterTest() {
+        val menuItemDef = MenuItemDef("SLOW", "slow", badgeCounter = { 5 })
+        executor.direct = false
+        Assertions.assertNull(cache.getCounter(menuItemDef), "Slow first computation isn't waited for.")
+        Assertions.assertNull(cache.getCounter(menuItemDef), "Computation is still running.")
+        executor.runAll()
+        Assertions.assertEquals(5, cache.getCounter(menuItemDef))
+    }
+
+    @Test
+    fun failingCounterTest() {
+        val menuItemDef = MenuItemDef("FAILING", "failing", badgeCounter = { throw IllegalStateException("Test") })
+        Assertions.assertNull(cache.getCounter(menuItemDef))
+        Assertions.assertNull(cache.getCounter(menuItemDef))
+    }
+
+    @Test
+    fun perUserTest() {
+        val menuItemDef = MenuItemDef("USER", "user", badgeCounter = { ThreadLocalUserContext.loggedInUserId!!.toInt() })
+        Assertions.assertEquals(42, cache.getCounter(menuItemDef))
+        ThreadLocalUserContext.userContext = UserContext(PFUserDO().also { it.id = 43 })
+        Assertions.assertEquals(43, cache.getCounter(menuItemDef))
+    }
+
+    @Test
+    fun changeListenerTest() {
+        val counter = AtomicInteger(1)
+        val menuItemDef = MenuItemDef("CHANGE", "change", badgeCounter = { counter.get() })
+        menuItemDef.badgeCounterTtlMillis = 100
+        cache.getCounter(menuItemDef)
+        val version = cache.getVersion(42)
+        Assertions.assertEquals(1L, version, "First counter is a change.")
+        val notified = mutableListOf<Long>()
+        cache.addChangeListener(42, version - 1) { notified.add(it) }
+        Assertions.assertEquals(listOf(version), notified, "Outdated version is notified immediately.")
+
+        notified.clear()
+        cache.addChangeListener(42, version) { notified.add(it) }
+        now += 150
+        cache.getCounter(menuItemDef) // Recomputation without change.
+        Assertions.assertTrue(notified.isEmpty())
+        counter.set(2)
+        now += 150
+        cache.getCounter(menuItemDef)
+        Assertions.assertEquals(listOf(version + 1), notified)
+        counter.set(3)
+        now += 150
+        cache.getCounter(menuItemDef)
+        Assertions.assertEquals(listOf(version + 1), notified, "Listener is called only once.")
+
+        val removed = cache.addChangeListener(42, cache.getVersion(42)) { notified.add(it) }
+        cache.removeChangeListener(42, removed)
+        counter.set(4)
+        now += 150
+        cache.getCounter(menuItemDef)
+        Assertions.assertEquals(listOf(version + 1), notified, "Removed listener isn't called.")
+    }
+}
@@ -28,6 +28,7 @@ import jakarta.servlet.http.HttpServletRequest
 import jakarta.servlet.http.HttpServletResponse
 import mu.KotlinLogging
 import org.projectforge.carddav.CardDavInit.Companion.CARD_DAV_BASE_PATH
+import org.projectforge.common.metrics.PfMetrics
 import org.projectforge.rest.utils.RequestLog
 import org.projectforge.web.rest.BasicAuthenticationData
 import org.projectforge.web.rest.RestAuthenticationUtils
@@ -96,7 +97,9 @@ class CardDavFilter : Filter {
             return
         }
         log.info { "Call for us: ${RequestLog.asString(request)}" }
-        cardDavService.dispatch(request, response as HttpServletResponse)
+        PfMetrics.record("carddav.requests", "method", request.method) {
+            cardDavService.dispatch(request, response as HttpServletResponse)
+        }
     }
 
     companion object {
@@ -40,7 +40,8 @@ open class CardDavInit {
     fun init(sc: ServletContext) {
         if (cardDavConfig.enable) {
             log.info { "Enabling CardDav-Server by registering CardDavFilter (projectforge.properties:projectforge.carddav.server.enable)..." }
-            RestUtils.registerFilter(sc, "CardDavFilter", CardDavFilter::class.java, false, "/*")
+            // Mapped to all urls, so async requests must be supported (e. g. MenuRest.waitForBadges):
+            RestUtils.registerFilter(sc, "CardDavFilter", CardDavFilter::class.java, false, "/*").setAsyncSupported(true)
         } else {
             log.info { "CardDav-Server disabled in projectforge.properties:projectforge.carddav.server.enable" }
         }
@@ -39,6 +39,7 @@ dependencies {
     api(libs.org.jetbrains.kotlin.reflect)
     api(libs.org.apache.commons.collections4)
     api(libs.org.apache.commons.lang3)
+    api(libs.io.micrometer.core)
     testImplementation(project(":projectforge-commons-test"))
     testImplementation(libs.org.mockito.core)
 }
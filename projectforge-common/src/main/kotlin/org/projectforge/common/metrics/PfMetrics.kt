@@ -0,0 +1,123 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.common.metrics
+
+import io.micrometer.core.instrument.Counter
+import io.micrometer.core.instrument.DistributionSummary
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.Meter
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.Metrics
+import io.micrometer.core.instrument.Timer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Central access to ProjectForge's meters. All meters are registered in Micrometer's global registry, which is
+ * populated by Spring Boot's actuator (e. g. the Prometheus registry). Without any registry (e. g. in tests),
+ * all meters are no-ops.
+ *
+ * All meter names are prefixed by [PREFIX].
+ *
+ * Timers, counters and summaries are cached per name and tags, so they may be got on every call of hot paths (e. g.
+ * per db query) without building and looking up the meter in the registry. The cached meters of the global
+ * (composite) registry also record to registries added later.
+ */
+object PfMetrics {
+    const val PREFIX = "projectforge."
+
+    const val TAG_OUTCOME = "outcome"
+    const val OUTCOME_SUCCESS = "success"
+    const val OUTCOME_ERROR = "error"
+
+    @JvmStatic
+    val registry: MeterRegistry
+        get() = Metrics.globalRegistry
+
+    private data class MeterKey(val type: Meter.Type, val name: String, val baseUnit: String?, val tags: List<String>)
+
+    private val meters = ConcurrentHashMap<MeterKey, Meter>()
+
+    /**
+     * @param tags key-value pairs.
+     */
+    @JvmStatic
+    fun timer(name: String, vararg tags: String): Timer {
+        return getOrRegister(MeterKey(Meter.Type.TIMER, name, null, tags.asList())) {
+            Timer.builder(PREFIX + name).tags(*tags).register(registry)
+        }
+    }
+
+    /**
+     * @param tags key-value pairs.
+     */
+    @JvmStatic
+    fun counter(name: String, vararg tags: String): Counter {
+        return getOrRegister(MeterKey(Meter.Type.COUNTER, name, null, tags.asList())) {
+            Counter.builder(PREFIX + name).tags(*tags).register(registry)
+        }
+    }
+
+    /**
+     * @param baseUnit e. g. "bytes" or "rows".
+     * @param tags key-value pairs.
+     */
+    @JvmStatic
+    fun summary(name: String, baseUnit: String?, vararg tags: String): DistributionSummary {
+        return getOrRegister(MeterKey(Meter.Type.DISTRIBUTION_SUMMARY, name, baseUnit, tags.asList())) {
+            DistributionSummary.builder(PREFIX + name).baseUnit(baseUnit).tags(*tags).register(registry)
+        }
+    }
+
+    /**
+     * Registers a gauge. Micrometer holds only a weak reference to [obj], so use it for long living objects
+     * (e. g. Spring beans).
+     * @param tags key-value pairs.
+     */
+    @JvmStatic
+    fun <T : Any> gauge(name: String, obj: T, vararg tags: String, valueFunction: (T) -> Double): Gauge {
+        return Gauge.builder(PREFIX + name, obj) { valueFunction(it) }.tags(*tags).register(registry)
+    }
+
+    /**
+     * Records the duration of the given call as timer with tag [TAG_OUTCOME] ([OUTCOME_SUCCESS] or [OUTCOME_ERROR]).
+     * @param tags key-value pairs.
+     */
+    inline fun <T> record(name: String, vararg tags: String, block: () -> T): T {
+        val start = System.nanoTime()
+        var outcome = OUTCOME_ERROR
+        try {
+            val result = block()
+            outcome = OUTCOME_SUCCESS
+            return result
+        } finally {
+            timer(name, *tags, TAG_OUTCOME, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS)
+        }
+    }
+
+    private inline fun <M : Meter> getOrRegister(key: MeterKey, crossinline register: () -> M): M {
+        @Suppress("UNCHECKED_CAST")
+        return (meters[key] ?: meters.computeIfAbsent(key) { register() }) as M
+    }
+}
@@ -0,0 +1,89 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.common.metrics
+
+import io.micrometer.core.instrument.Metrics
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+
+class PfMetricsTest {
+    private val registry = SimpleMeterRegistry()
+
+    @BeforeEach
+    fun setUp() {
+        Metrics.addRegistry(registry)
+    }
+
+    @AfterEach
+    fun tearDown() {
+        Metrics.removeRegistry(registry)
+        registry.close()
+    }
+
+    @Test
+    fun recordTest() {
+        Assertions.assertEquals(42, PfMetrics.record("test.op", "entity", "Test") { 42 })
+        Assertions.assertEquals(42, PfMetrics.record("test.op", "entity", "Test") { 42 })
+        Assertions.assertThrows(IllegalStateException::class.java) {
+            PfMetrics.record("test.op", "entity", "Test") { throw IllegalStateException() }
+        }
+        Assertions.assertEquals(2, timerCount(PfMetrics.OUTCOME_SUCCESS))
+        Assertions.assertEquals(1, timerCount(PfMetrics.OUTCOME_ERROR))
+    }
+
+    @Test
+    fun summaryTest() {
+        PfMetrics.summary("test.bytes", "bytes", "direction", "upload").record(100.0)
+        PfMetrics.summary("test.bytes", "bytes", "direction", "upload").record(50.0)
+        val summary = registry.get("projectforge.test.bytes").tag("direction", "upload").summary()
+        Assertions.assertEquals(2, summary.count())
+        Assertions.assertEquals(150.0, summary.totalAmount())
+    }
+
+    @Test
+    fun cachedMetersTest() {
+        val timer = PfMetrics.timer("test.cached", "entity", "Test")
+        Assertions.assertSame(timer, PfMetrics.timer("test.cached", "entity", "Test"))
+        Assertions.assertNotSame(timer, PfMetrics.timer("test.cached", "entity", "Other"))
+        Assertions.assertSame(PfMetrics.counter("test.cached"), PfMetrics.counter("test.cached"))
+
+        // Cached meters also record to registries added later:
+        val laterRegistry = SimpleMeterRegistry()
+        Metrics.addRegistry(laterRegistry)
+        try {
+            PfMetrics.counter("test.cached").increment()
+            Assertions.assertEquals(1.0, laterRegistry.get("projectforge.test.cached").counter().count())
+        } finally {
+            Metrics.removeRegistry(laterRegistry)
+            laterRegistry.close()
+        }
+    }
+
+    private fun timerCount(outcome: String): Long {
+        return registry.get("projectforge.test.op").tags("entity", "Test", PfMetrics.TAG_OUTCOME, outcome).timer().count()
+    }
+}
@@ -34,6 +34,7 @@ import org.apache.jackrabbit.oak.spi.state.NodeStore
 import org.projectforge.common.CryptStreamUtils
 import org.projectforge.common.FormatterUtils
 import org.projectforge.common.NumberOfBytes
+import org.projectforge.common.metrics.PfMetrics
 import org.springframework.stereotype.Service
 import java.io.File
 import java.io.InputStream
@@ -190,6 +191,7 @@ open class RepoService {
         }
         fileNode.setProperty(PROPERTY_FILECONTENT, bin)
         fileObject.size = bin?.size
+        fileObject.size?.let { recordBytes(DIRECTION_UPLOAD, it) }
         Integer.MAX_VALUE
       } finally {
         bin?.dispose()
@@ -469,6 +471,7 @@ open class RepoService {
       } else {
         fileObject.copyFrom(node)
         fileObject.content = getFileContent(node, fileObject, password)
+        fileObject.content?.let { recordBytes(DIRECTION_DOWNLOAD, it.size.toLong()) }
         true
       }
     }
@@ -487,6 +490,10 @@ open class RepoService {
     }
   }
 
+  private fun recordBytes(direction: String, size: Long) {
+    PfMetrics.summary("jcr.bytes", "bytes", "direction", direction).record(size.toDouble())
+  }
+
   internal fun getFileContent(
     node: Node?, fileObject: FileObject,
     password: String? = null,
@@ -684,6 +691,8 @@ open class RepoService {
 
   companion object {
     const val NODENAME_FILES = "__FILES"
+    private const val DIRECTION_UPLOAD = "upload"
+    private const val DIRECTION_DOWNLOAD = "download"
     internal const val PROPERTY_FILENAME = "fileName"
     internal const val PROPERTY_FILESIZE = "size"
     internal const val PROPERTY_FILECONTENT = "content"
@@ -24,18 +24,21 @@
 package org.projectforge.rest
 
 import mu.KotlinLogging
+import org.projectforge.business.address.AddressImageCache
 import org.projectforge.business.address.AddressImageDao
 import org.projectforge.common.DataSizeConfig
 import org.projectforge.jcr.FileInfo
 import org.projectforge.jcr.FileSizeStandardChecker
 import org.projectforge.rest.config.Rest
-import org.projectforge.rest.config.RestUtils
 import org.projectforge.rest.core.ExpiringSessionAttributes
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.beans.factory.annotation.Value
 import org.springframework.core.io.ByteArrayResource
 import org.springframework.core.io.Resource
+import org.springframework.http.CacheControl
+import org.springframework.http.HttpHeaders
 import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
 import org.springframework.http.ResponseEntity
 import org.springframework.util.unit.DataSize
 import org.springframework.util.unit.DataUnit
@@ -43,6 +46,7 @@ import org.springframework.web.bind.annotation.*
 import org.springframework.web.multipart.MultipartFile
 import jakarta.annotation.PostConstruct
 import jakarta.servlet.http.HttpServletRequest
+import java.util.*
 
 
 private val log = KotlinLogging.logger {}
@@ -97,22 +101,73 @@ class AddressImageServicesRest {
 
   /**
    * @param id The id of the address the image is assigned to.
+   * @param size Optional rendition (SMALL, MEDIUM, LARGE), the original image is returned at default.
    */
   @GetMapping("image/{id}")
-  fun getImage(@PathVariable("id") id: Long): ResponseEntity<Resource> {
-    val image = addressImageDao.getImage(id) ?: return ResponseEntity(HttpStatus.NOT_FOUND)
-    val resource = ByteArrayResource(image)
-    return RestUtils.downloadFile("ProjectForge-addressImage_$id.png", resource)
+  fun getImage(
+    @PathVariable("id") id: Long,
+    @RequestParam("size", required = false) size: AddressImageCache.Rendition?,
+    request: HttpServletRequest,
+  ): ResponseEntity<Resource> {
+    val rendition = size ?: AddressImageCache.Rendition.ORIGINAL
+    val image = addressImageDao.getImage(id, rendition) ?: return ResponseEntity(HttpStatus.NOT_FOUND)
+    val filename = if (rendition == AddressImageCache.Rendition.ORIGINAL) {
+      "ProjectForge-addressImage_$id.png"
+    } else {
+      "ProjectForge-addressImage_${id}_${rendition.name.lowercase()}.png"
+    }
+    return download(image, filename, request)
   }
 
   /**
    * @param id The id of the address the image is assigned to.
    */
   @GetMapping("imagePreview/{id}")
-  fun getImagePreview(@PathVariable("id") id: Long): ResponseEntity<Resource> {
-    val image = addressImageDao.getPreviewImage(id) ?: return ResponseEntity(HttpStatus.NOT_FOUND)
-    val resource = ByteArrayResource(image)
-    return RestUtils.downloadFile("ProjectForge-addressImagePreview_$id.png", resource)
+  fun getImagePreview(@PathVariable("id") id: Long, request: HttpServletRequest): ResponseEntity<Resource> {
+    val image = addressImageDao.getImage(id, AddressImageCache.Rendition.PREVIEW)
+      ?: return ResponseEntity(HttpStatus.NOT_FOUND)
+    return download(image, "ProjectForge-addressImagePreview_$id.png", request)
+  }
+
+  /**
+   * Gets the images of many addresses in one request (e. g. for list views). Addresses without image or without
+   * access are ignored.
+   * @param ids The ids of the addresses (max. [MAX_BATCH_SIZE]).
+   * @param size The rendition, [AddressImageCache.Rendition.PREVIEW] at default.
+   * @return Map of address ids and images as data urls.
+   */
+  @GetMapping("images")
+  fun getImages(
+    @RequestParam("ids") ids: List<Long>,
+    @RequestParam("size", required = false) size: AddressImageCache.Rendition?,
+  ): ResponseEntity<Map<Long, String>> {
+    if (ids.size > MAX_BATCH_SIZE) {
+      log.warn { "Too many images requested: ${ids.size} (max. $MAX_BATCH_SIZE)." }
+      return ResponseEntity(HttpStatus.BAD_REQUEST)
+    }
+    val images = addressImageDao.getImages(ids.toSet(), size ?: AddressImageCache.Rendition.PREVIEW)
+    val result = images.mapValues { "data:image/png;base64,${Base64.getEncoder().encodeToString(it.value.bytes)}" }
+    return ResponseEntity.ok()
+      .cacheControl(CacheControl.noCache().cachePrivate())
+      .body(result)
+  }
+
+  /**
+   * Images are served with strong ETags. Clients have to revalidate (images may be modified and access rights
+   * may change), but unmodified images are answered by 304 (not modified).
+   */
+  private fun download(image: AddressImageCache.CachedImage, filename: String, request: HttpServletRequest)
+      : ResponseEntity<Resource> {
+    val cacheControl = CacheControl.noCache().cachePrivate()
+    if (request.getHeader(HttpHeaders.IF_NONE_MATCH)?.split(',')?.any { it.trim() == image.etag } == true) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(image.etag).cacheControl(cacheControl).build()
+    }
+    return ResponseEntity.ok()
+      .contentType(MediaType.IMAGE_PNG)
+      .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=$filename")
+      .eTag(image.etag)
+      .cacheControl(cacheControl)
+      .body(ByteArrayResource(image.bytes))
   }
 
   /**
@@ -132,6 +187,7 @@ class AddressImageServicesRest {
 
   companion object {
     internal const val SESSION_IMAGE_ATTR = "uploadedAddressImage"
+    const val MAX_BATCH_SIZE = 500
     private const val MAX_IMAGE_SIZE_SPRING_PROPERTY = "projectforge.address.maxImageSize"
   }
 }
@@ -34,14 +34,22 @@ import org.projectforge.rest.my2fa.My2FASetupMenuBadge
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.web.bind.annotation.GetMapping
 import org.springframework.web.bind.annotation.RequestMapping
+import org.springframework.web.bind.annotation.RequestParam
 import org.springframework.web.bind.annotation.RestController
+import org.springframework.web.context.request.async.DeferredResult
 
 @RestController
 @RequestMapping("${Rest.URL}/menu")
 class MenuRest {
   // favoritesMenu and myAccountMenu used by rest client.
   @Suppress("unused")
-  class Menus(val mainMenu: Menu, val favoritesMenu: Menu, val myAccountMenu: Menu)
+  class Menus(val mainMenu: Menu, val favoritesMenu: Menu, val myAccountMenu: Menu, val badgesVersion: Long)
+
+  /**
+   * @param changed True, if the badge counters were changed since the given version. The client should reload the menu.
+   */
+  @Suppress("unused")
+  class BadgesVersion(val version: Long, val changed: Boolean)
 
   @Autowired
   private lateinit var accessChecker: AccessChecker
@@ -55,6 +63,14 @@ class MenuRest {
   @Autowired
   private lateinit var favoritesMenuCreator: FavoritesMenuCreator
 
+  @Autowired
+  private lateinit var menuBadgeCache: MenuBadgeCache
+
+  // Must be the same instance for every request, the badge counters are cached per menu item definition.
+  private val my2FASetupMenuItemDef by lazy {
+    MenuItemDef(MenuItemDefId.MY_2FA_SETUP, badgeCounter = { my2FASetupMenuBadge.badgeCounter })
+  }
+
   @GetMapping
   fun getMenu(): Menus {
     val mainMenu = menuCreator.build(MenuCreatorContext(ThreadLocalUserContext.loggedInUser!!))
@@ -65,7 +81,7 @@ class MenuRest {
     myAccountMenu.add(userNameItem)
     userNameItem.add(MenuItem(MenuItemDefId.FEEDBACK))
     userNameItem.add(MenuItemDef(MenuItemDefId.MY_ACCOUNT))
-    userNameItem.add(MenuItemDef(MenuItemDefId.MY_2FA_SETUP, badgeCounter = { my2FASetupMenuBadge.badgeCounter }))
+    userNameItem.add(my2FASetupMenuItemDef)
     if (!accessChecker.isRestrictedUser) {
       if (ThreadLocalUserContext.userContext!!.employeeId != null) {
         userNameItem.add(MenuItem(MenuItemDefId.VACATION_ACCOUNT))
@@ -77,6 +93,28 @@ class MenuRest {
 
     userNameItem.add(MenuItem(MenuItemDefId.LOGOUT, type = MenuItemTargetType.RESTCALL))
     userNameItem.postProcess()
-    return Menus(mainMenu, favoritesMenu, myAccountMenu)
+    val badgesVersion = menuBadgeCache.getVersion(ThreadLocalUserContext.loggedInUserId!!)
+    return Menus(mainMenu, favoritesMenu, myAccountMenu, badgesVersion)
+  }
+
+  /**
+   * Long polling: returns if the user's badge counters were changed since the given version (e. g. after an
+   * asynchronous recalculation of a counter), but at latest after [BADGES_POLL_TIMEOUT_MILLIS]. The request is
+   * processed asynchronously, so no request thread is blocked while waiting.
+   */
+  @GetMapping("badges")
+  fun waitForBadges(@RequestParam version: Long): DeferredResult<BadgesVersion> {
+    val userId = ThreadLocalUserContext.loggedInUserId!!
+    val result = DeferredResult<BadgesVersion>(BADGES_POLL_TIMEOUT_MILLIS)
+    val listener = menuBadgeCache.addChangeListener(userId, version) { newVersion ->
+      result.setResult(BadgesVersion(newVersion, true))
+    }
+    result.onTimeout { result.setResult(BadgesVersion(version, false)) }
+    result.onCompletion { menuBadgeCache.removeChangeListener(userId, listener) }
+    return result
+  }
+
+  companion object {
+    private const val BADGES_POLL_TIMEOUT_MILLIS = 25 * 1000L
   }
 }
@@ -54,8 +54,8 @@ object RestUtils {
     filterClass: Class<out Filter?>,
     isMatchAfter: Boolean,
     vararg patterns: String?
-  ): FilterRegistration {
-    val filterRegistration: FilterRegistration = sc.addFilter(name, filterClass)
+  ): FilterRegistration.Dynamic {
+    val filterRegistration = sc.addFilter(name, filterClass)
     filterRegistration.addMappingForUrlPatterns(null, isMatchAfter, *patterns)
     log.info(
       "Registering filter '" + name + "' of class '" + filterClass.name + "' for urls: " + StringHelper.listToString(
@@ -85,11 +85,15 @@ object RestUtils {
       .body(content)
   }
 
-  fun downloadFile(filename: String, resource: ByteArrayResource): ResponseEntity<Resource> {
-    return ResponseEntity.ok()
+  /**
+   * @param etag Optional ETag header for conditional requests.
+   */
+  fun downloadFile(filename: String, resource: ByteArrayResource, etag: String? = null): ResponseEntity<Resource> {
+    val builder = ResponseEntity.ok()
       .contentType(getDownloadContentType())
       .header(HttpHeaders.CONTENT_DISPOSITION, getDownloadContentDisposition(filename))
-      .body(resource)
+    etag?.let { builder.eTag(it) }
+    return builder.body(resource)
   }
 
   fun setContentDisposition(response: HttpServletResponse, filename: String) {
@@ -36,6 +36,7 @@ import org.projectforge.framework.access.AccessChecker
 import org.projectforge.framework.access.OperationType
 import org.projectforge.framework.api.TechnicalException
 import org.projectforge.framework.i18n.InternalErrorException
+import org.projectforge.framework.i18n.addTranslations
 import org.projectforge.framework.i18n.translate
 import org.projectforge.framework.i18n.translateMsg
 import org.projectforge.framework.jcr.AttachmentsAccessChecker
@@ -44,7 +45,9 @@ import org.projectforge.framework.jcr.AttachmentsService
 import org.projectforge.framework.persistence.api.*
 import org.projectforge.framework.persistence.api.impl.CustomResultFilter
 import org.projectforge.framework.persistence.history.DisplayHistoryEntry
+import org.projectforge.framework.persistence.history.HistoryCursor
 import org.projectforge.framework.persistence.history.HistoryFormatService
+import org.projectforge.framework.persistence.history.HistoryTimelinePage
 import org.projectforge.framework.utils.NumberHelper
 import org.projectforge.jcr.FileSizeStandardChecker
 import org.projectforge.menu.MenuItem
@@ -121,6 +124,8 @@ constructor(
         const val CREATE_MENU = "CREATE"
         const val USER_PREF_PARAM_HIGHLIGHT_ROW = "highlightedRow"
         const val JCR_PATH_PREFIX: String = "org.projectforge"
+        private const val HISTORY_TIMELINE_PAGE_SIZE = 50
+        private const val HISTORY_TIMELINE_MAX_PAGE_SIZE = 500
 
         fun getJcrPath(identifier: String): String {
             return "$JCR_PATH_PREFIX.$identifier"
@@ -255,18 +260,23 @@ constructor(
             )
         )
 
-        layout.addTranslations(
-            "reset", "datatable.no-records-found", "date.begin", "date.end", "exportAsXls",
-            "search.lastMinute", "search.lastHour", "calendar.today", "search.sinceYesterday",
-            "multiselection.button",
-        )
-        layout.addTranslation("search.lastMinutes.10", translateMsg("search.lastMinutes", 10))
-        layout.addTranslation("search.lastMinutes.30", translateMsg("search.lastMinutes", 30))
-        layout.addTranslation("search.lastHours.4", translateMsg("search.lastHours", 4))
-        layout.addTranslation("search.lastDays.3", translateMsg("search.lastDays", 3))
-        layout.addTranslation("search.lastDays.7", translateMsg("search.lastDays", 7))
-        layout.addTranslation("search.lastDays.30", translateMsg("search.lastDays", 30))
-        layout.addTranslation("search.lastDays.90", translateMsg("search.lastDays", 90))
+        layout.translations.putAll(LayoutCache.getOrCreate(AbstractPagesRest::class.java, "listTranslations") {
+            val translations = mutableMapOf<String, String>()
+            addTranslations(
+                "reset", "datatable.no-records-found", "date.begin", "date.end", "exportAsXls",
+                "search.lastMinute", "search.lastHour", "calendar.today", "search.sinceYesterday",
+                "multiselection.button",
+                translations = translations,
+            )
+            translations["search.lastMinutes.10"] = translateMsg("search.lastMinutes", 10)
+            translations["search.lastMinutes.30"] = translateMsg("search.lastMinutes", 30)
+            translations["search.lastHours.4"] = translateMsg("search.lastHours", 4)
+            translations["search.lastDays.3"] = translateMsg("search.lastDays", 3)
+            translations["search.lastDays.7"] = translateMsg("search.lastDays", 7)
+            translations["search.lastDays.30"] = translateMsg("search.lastDays", 30)
+            translations["search.lastDays.90"] = translateMsg("search.lastDays", 90)
+            translations.toMap()
+        })
         createListLayout(request, layout, magicFilter, userAccess)
         return LayoutUtils.processListPage(layout, this)
     }
@@ -421,15 +431,15 @@ constructor(
                 "searchFilter",
                 "nothingFound"
             )
-        val searchFilterContainer = LayoutListFilterUtils.createNamedSearchFilterContainer(this, lc)
-        val filterEntries = mutableSetOf<String>()
-        searchFilterContainer.content.forEach {
-            if (it is UIFilterElement) {
-                filterEntries.add(it.id)
-            }
+        // The search filter container is shared by all requests of the same locale and access profile, so each request
+        // gets its own copy (the layout processing modifies keys and labels):
+        val searchFilter = LayoutCache.getOrCreate(this::class.java, "searchFilter") {
+            val container = LayoutListFilterUtils.createNamedSearchFilterContainer(this, lc)
+            val filterEntries = container.content.filterIsInstance<UIFilterElement>().map { it.id }.toSet()
+            Pair(container, filterEntries)
         }
-        removeUnknownFilterEntries(filter, filterEntries)
-        ui.add(searchFilterContainer)
+        removeUnknownFilterEntries(filter, searchFilter.second)
+        ui.add(LayoutListFilterUtils.copySearchFilterContainer(searchFilter.first))
         if (classicsLinkListUrl != null) {
             ui.add(
                 MenuItem(
@@ -914,6 +924,35 @@ constructor(
         return ResponseEntity(historyDTOs, HttpStatus.OK)
     }
 
+    /**
+     * Gets one page of the history timeline of the given entity (newest entries first).
+     * @param id Id of the item to get the history entries for.
+     * @param cursor The nextCursor of the previous page or null for the first page.
+     * @param size Page size (default is 50).
+     */
+    @GetMapping("history/{id}/timeline")
+    fun getHistoryTimeline(
+        @PathVariable("id") id: Long?,
+        @RequestParam("cursor", required = false) cursor: String?,
+        @RequestParam("size", required = false) size: Int?,
+    ): ResponseEntity<HistoryTimelinePage> {
+        if (id == null) {
+            return ResponseEntity(HttpStatus.BAD_REQUEST)
+        }
+        val historyCursor = HistoryCursor.parse(cursor)
+        if (!cursor.isNullOrBlank() && historyCursor == null) {
+            return ResponseEntity(HttpStatus.BAD_REQUEST)
+        }
+        val item = baseDao.find(id) ?: return ResponseEntity(HttpStatus.BAD_REQUEST)
+        val page = historyFormatService.selectTimelinePage(
+            baseDao,
+            item,
+            historyCursor,
+            (size ?: HISTORY_TIMELINE_PAGE_SIZE).coerceIn(1, HISTORY_TIMELINE_MAX_PAGE_SIZE),
+        )
+        return ResponseEntity(page, HttpStatus.OK)
+    }
+
     /**
      * Will be called by clone button. Sets the id of the form data object to null and deleted to false.
      * @return ResponseAction with [TargetType.UPDATE] and variable "initial" with all the initial data of [getItemAndLayout] as given for new objects.
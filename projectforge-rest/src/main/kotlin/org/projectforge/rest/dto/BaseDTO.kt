@@ -23,21 +23,13 @@
 
 package org.projectforge.rest.dto
 
-import mu.KotlinLogging
-import org.projectforge.common.BeanHelper
-import org.projectforge.framework.persistence.api.BaseDO
 import org.projectforge.framework.persistence.api.ExtendedBaseDO
 import org.projectforge.framework.persistence.api.IdObject
-import org.projectforge.framework.persistence.entities.AbstractHistorizableBaseDO
-import java.lang.reflect.AccessibleObject
-import java.lang.reflect.Field
 import java.util.*
 
-private val log = KotlinLogging.logger {}
-
 /**
  * BaseHistorizableDTO is a DTO representation of a AbstractHistorizableBaseDO<Long>. It copies most fields automatically by name and type from
- * DTO to  AbstractHistorizableBaseDO<Long> and vice versa.
+ * DTO to  AbstractHistorizableBaseDO<Long> and vice versa (see [DTOMapper]).
  */
 open class BaseDTO<T : ExtendedBaseDO<Long>>(
   override var id: Long? = null,
@@ -79,7 +71,7 @@ open class BaseDTO<T : ExtendedBaseDO<Long>>(
     deleted = src.deleted
   }
 
-  private fun _copyFromMinimal(src: Any?) {
+  internal fun _copyFromMinimal(src: Any?) {
     if (src == null) {
       // Nothing to copy
       return
@@ -90,102 +82,7 @@ open class BaseDTO<T : ExtendedBaseDO<Long>>(
 
   companion object {
     private fun copy(src: Any, dest: Any) {
-      val destClazz = dest.javaClass
-      val destFields = BeanHelper.getAllDeclaredFields(destClazz)
-      AccessibleObject.setAccessible(destFields, true)
-      val srcClazz = src.javaClass
-      destFields.forEach { destField ->
-        val destType = destField.type
-        var srcField: Field? = null
-        if (destField.name != "log"
-          && destField.name != "serialVersionUID"
-          && destField.name != "Companion"
-          && !destField.name.startsWith("$")
-        ) {
-          // Fields log, serialVersionUID, Companion and $* may result in Exceptions and shouldn't be copied in any case.
-          try {
-            srcField = BeanHelper.getDeclaredField(srcClazz, destField.name)
-          } catch (ex: Exception) {
-            log.debug("srcField named '${destField.name}' not found in class '$srcClazz'. Can't copy it to destination of type '$destClazz'. Ignoring...")
-          }
-          try {
-            if (srcField != null) {
-              if (srcField.type == destType) {
-                if (Collection::class.java.isAssignableFrom(destType)) {
-                  // Do not copy collections automatically (for now).
-                } else {
-                  srcField.isAccessible = true
-                  destField.isAccessible = true
-                  destField.set(dest, srcField.get(src))
-                }
-              } else {
-                if (BaseDTO::class.java.isAssignableFrom(destType) && AbstractHistorizableBaseDO::class.java.isAssignableFrom(
-                    srcField.type
-                  )
-                ) {
-                  // Copy AbstractHistorizableBaseDO -> BaseObject
-                  srcField.isAccessible = true
-                  val srcValue = srcField.get(src)
-                  if (srcValue != null) {
-                    val instance = destType.getDeclaredConstructor().newInstance()
-                    (instance as BaseDTO<*>)._copyFromMinimal(srcValue)
-                    destField.isAccessible = true
-                    destField.set(dest, instance)
-                  }
-                } else if (BaseDO::class.java.isAssignableFrom(destType) && BaseDTO::class.java.isAssignableFrom(
-                    srcField.type
-                  )
-                ) {
-                  // Copy BaseObject -> AbstractHistorizableBaseDO
-                  srcField.isAccessible = true
-                  val srcValue = srcField.get(src)
-                  if (srcValue != null) {
-                    val instance = destType.getDeclaredConstructor().newInstance()
-                    (instance as BaseDO<Long>).id = (srcValue as BaseDTO<*>).id
-                    destField.isAccessible = true
-                    destField.set(dest, instance)
-                  }
-                } else {
-                  if (srcField.type.isPrimitive) { // boolean, ....
-                    var value: Any? = null
-                    @Suppress("RemoveRedundantQualifierName")
-                    if (srcField.type == kotlin.Boolean::class.java) { // kotlin.Boolean needed (or not?)
-                      srcField.isAccessible = true
-                      value = (srcField.get(src) == true)
-                    } else {
-                      log.error("Unsupported field to copy from '$srcClazz.${destField.name}' of type '${srcField.type.name}' to '$destClazz.${destField.name}' of type '${destType.name}'.")
-                    }
-                    if (value != null) {
-                      destField.isAccessible = true
-                      destField.set(dest, value)
-                    }
-                  } else if (destField.type.isPrimitive) { // boolean, ....
-                    @Suppress("RemoveRedundantQualifierName")
-                    if (destField.type == kotlin.Boolean::class.java) { // kotlin.Boolean needed (or not?)
-                      srcField.isAccessible = true
-                      val value = srcField.get(src)
-                      destField.isAccessible = true
-                      destField.set(dest, value == true)
-                    } else {
-                      log.error("Unsupported field to copy from '$srcClazz.${destField.name}' of type '${srcField.type.name}' to '$destClazz.${destField.name}' of type '${destType.name}'.")
-                    }
-                  } else {
-                    log.debug("Unsupported field to copy from '$srcClazz.${destField.name}' of type '${srcField.type.name}' to '$destClazz.${destField.name}' of type '${destType.name}'.")
-                  }
-                }
-              }
-            } else {
-              // srcField not found. Can't copy.
-              log.debug("srcField named '${destField.name}' not found in class '$srcClazz'. Can't copy it to destination of type '$destClazz'.")
-            }
-          } catch (ex: Exception) {
-            log.error(
-              "Error while copiing field '${destField.name}' from $srcClazz to ${dest.javaClass}: ${ex.message}",
-              ex
-            )
-          }
-        }
-      }
+      DTOMapper.copy(src, dest)
     }
   }
 }
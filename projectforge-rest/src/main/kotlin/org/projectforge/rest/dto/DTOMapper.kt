@@ -0,0 +1,180 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.rest.dto
+
+import mu.KotlinLogging
+import org.projectforge.common.BeanHelper
+import org.projectforge.framework.persistence.api.BaseDO
+import org.projectforge.framework.persistence.entities.AbstractHistorizableBaseDO
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+import java.lang.reflect.Field
+import java.lang.reflect.Modifier
+import java.util.concurrent.ConcurrentHashMap
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Copies fields by name and type from one object to another, used by [BaseDTO] for copying DTOs from and to entities.
+ * The fields to copy are resolved only once per pair of source and destination class, the copying is done by
+ * cached method handles (no reflection per field and object).
+ *
+ * Supported are fields of same type (except collections), entities to DTOs (only minimal copy, see
+ * [BaseDTO.copyFromMinimal]), DTOs to entities (only id) and boolean to primitive boolean and vice versa.
+ */
+object DTOMapper {
+  /**
+   * Key is the source class, value is a map of destination classes and the field copiers.
+   */
+  private val mappings = ConcurrentHashMap<Class<*>, ConcurrentHashMap<Class<*>, Array<FieldCopier>>>()
+
+  fun copy(src: Any, dest: Any) {
+    val copiers = mappings.computeIfAbsent(src.javaClass) { ConcurrentHashMap() }
+      .computeIfAbsent(dest.javaClass) { createCopiers(src.javaClass, it) }
+    copiers.forEach { copier ->
+      try {
+        copier.copy(src, dest)
+      } catch (ex: Throwable) {
+        log.error(
+          "Error while copiing field '${copier.name}' from ${src.javaClass} to ${dest.javaClass}: ${ex.message}",
+          ex
+        )
+      }
+    }
+  }
+
+  private fun createCopiers(srcClazz: Class<*>, destClazz: Class<*>): Array<FieldCopier> {
+    val copiers = mutableListOf<FieldCopier>()
+    BeanHelper.getAllDeclaredFields(destClazz).forEach { destField ->
+      // Fields log, serialVersionUID, Companion and $* may result in Exceptions and shouldn't be copied in any case.
+      if (Modifier.isStatic(destField.modifiers) || destField.name == "log" || destField.name == "serialVersionUID"
+        || destField.name == "Companion" || destField.name.startsWith("$")
+      ) {
+        return@forEach
+      }
+      val srcField = BeanHelper.getDeclaredField(srcClazz, destField.name)
+      if (srcField == null || Modifier.isStatic(srcField.modifiers)) {
+        log.debug { "srcField named '${destField.name}' not found in class '$srcClazz'. Can't copy it to destination of type '$destClazz'." }
+        return@forEach
+      }
+      try {
+        createCopier(srcClazz, srcField, destClazz, destField)?.let { copiers.add(it) }
+      } catch (ex: Exception) {
+        log.error("Can't copy field '${destField.name}' from $srcClazz to $destClazz: ${ex.message}", ex)
+      }
+    }
+    return copiers.toTypedArray()
+  }
+
+  private fun createCopier(srcClazz: Class<*>, srcField: Field, destClazz: Class<*>, destField: Field): FieldCopier? {
+    val srcType = srcField.type
+    val destType = destField.type
+    val name = destField.name
+    if (srcType == destType) {
+      if (Collection::class.java.isAssignableFrom(destType)) {
+        // Do not copy collections automatically (for now).
+        return null
+      }
+      val src = FieldAccessor(srcField)
+      val dest = FieldAccessor(destField)
+      return FieldCopier(name) { srcObj, destObj -> dest.set(destObj, src.get(srcObj)) }
+    }
+    if (BaseDTO::class.java.isAssignableFrom(destType) && AbstractHistorizableBaseDO::class.java.isAssignableFrom(srcType)) {
+      // Copy AbstractHistorizableBaseDO -> BaseObject
+      val src = FieldAccessor(srcField)
+      val dest = FieldAccessor(destField)
+      val constructor = getConstructor(destType)
+      return FieldCopier(name) { srcObj, destObj ->
+        src.get(srcObj)?.let { srcValue ->
+          val instance = constructor.invoke() as BaseDTO<*>
+          instance._copyFromMinimal(srcValue)
+          dest.set(destObj, instance)
+        }
+      }
+    }
+    if (BaseDO::class.java.isAssignableFrom(destType) && BaseDTO::class.java.isAssignableFrom(srcType)) {
+      // Copy BaseObject -> AbstractHistorizableBaseDO
+      val src = FieldAccessor(srcField)
+      val dest = FieldAccessor(destField)
+      val constructor = getConstructor(destType)
+      return FieldCopier(name) { srcObj, destObj ->
+        src.get(srcObj)?.let { srcValue ->
+          @Suppress("UNCHECKED_CAST")
+          val instance = constructor.invoke() as BaseDO<Long>
+          instance.id = (srcValue as BaseDTO<*>).id
+          dest.set(destObj, instance)
+        }
+      }
+    }
+    @Suppress("RemoveRedundantQualifierName")
+    if (srcType.isPrimitive || destType.isPrimitive) { // boolean, ....
+      if (if (srcType.isPrimitive) srcType == kotlin.Boolean::class.java else destType == kotlin.Boolean::class.java) { // kotlin.Boolean needed (or not?)
+        val src = FieldAccessor(srcField)
+        val dest = FieldAccessor(destField)
+        return FieldCopier(name) { srcObj, destObj -> dest.set(destObj, src.get(srcObj) == true) }
+      }
+      log.error("Unsupported field to copy from '$srcClazz.$name' of type '${srcType.name}' to '$destClazz.$name' of type '${destType.name}'.")
+      return null
+    }
+    log.debug { "Unsupported field to copy from '$srcClazz.$name' of type '${srcType.name}' to '$destClazz.$name' of type '${destType.name}'." }
+    return null
+  }
+
+  private fun getConstructor(clazz: Class<*>): MethodHandle {
+    val constructor = clazz.getDeclaredConstructor()
+    constructor.isAccessible = true
+    return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Any::class.java))
+  }
+
+  private class FieldCopier(val name: String, val copy: (src: Any, dest: Any) -> Unit)
+
+  private class FieldAccessor(private val field: Field) {
+    private val getter: MethodHandle
+    private val setter: MethodHandle?
+
+    init {
+      field.isAccessible = true
+      val lookup = MethodHandles.lookup()
+      getter = lookup.unreflectGetter(field).asType(MethodType.methodType(Any::class.java, Any::class.java))
+      setter = try {
+        lookup.unreflectSetter(field).asType(MethodType.methodType(Void.TYPE, Any::class.java, Any::class.java))
+      } catch (ex: IllegalAccessException) {
+        null // Final fields: use reflection instead.
+      }
+    }
+
+    fun get(obj: Any): Any? {
+      return getter.invoke(obj)
+    }
+
+    fun set(obj: Any, value: Any?) {
+      if (setter != null) {
+        setter.invoke(obj, value)
+      } else {
+        field.set(obj, value)
+      }
+    }
+  }
+}
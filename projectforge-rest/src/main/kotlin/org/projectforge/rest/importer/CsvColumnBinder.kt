@@ -0,0 +1,157 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.rest.importer
+
+import mu.KotlinLogging
+import org.projectforge.common.BeanHelper
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.util.*
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Binds one column of an imported csv file to a property of the target bean. The property type, the parser and the
+ * accessors (as method handles) are resolved only once after reading the head line, so no reflection is needed
+ * per cell.
+ *
+ * Binders are used concurrently by several threads for different beans.
+ */
+internal class CsvColumnBinder<O : ImportPairEntry.Modified<O>>(
+  val index: Int,
+  val fieldSettings: ImportFieldSettings,
+  val type: Type,
+  private val getter: MethodHandle?,
+  private val setter: MethodHandle?,
+) {
+  enum class Type { LOCAL_DATE, DATE, BIG_DECIMAL, INT, LONG, BOOLEAN, STRING }
+
+  /**
+   * True for BigDecimal columns without any parse format given, as long as the number format (German or English
+   * style) isn't yet detected. The value strings of such columns are kept by the caller.
+   * Must only be modified while no other thread is binding values.
+   */
+  var formatPending = type == Type.BIG_DECIMAL && fieldSettings.parseFormatList.isEmpty()
+
+  /**
+   * @return false, if the value wasn't bound, because the number format of this column is pending.
+   */
+  fun bind(importStorage: ImportStorage<O>, record: O, value: String): Boolean {
+    if (importStorage.setProperty(record, fieldSettings, value)) {
+      return true
+    }
+    setter ?: return true
+    val targetValue: Any? = when (type) {
+      Type.LOCAL_DATE -> fieldSettings.parseLocalDate(value)
+      Type.DATE -> fieldSettings.parseDate(value)
+      Type.BIG_DECIMAL -> {
+        if (formatPending) {
+          return false
+        }
+        fieldSettings.parseBigDecimal(value)
+      }
+
+      Type.INT -> fieldSettings.parseInt(value)
+      Type.LONG -> fieldSettings.parseLong(value)
+      Type.BOOLEAN -> fieldSettings.parseBoolean(value)
+      Type.STRING -> {
+        bindString(record, value)
+        return true
+      }
+    }
+    // Don't write null values (don't overwrite existing values given e. g. by previous column).
+    if (targetValue != null) {
+      set(record, targetValue)
+    }
+    return true
+  }
+
+  /**
+   * Sets the value directly (without calling [ImportStorage.setProperty]), used e. g. for number values after
+   * detecting the number format.
+   */
+  fun set(record: O, value: Any) {
+    try {
+      setter?.invoke(record as Any, value)
+    } catch (ex: RuntimeException) {
+      throw ex
+    } catch (ex: Throwable) {
+      throw RuntimeException("For property '${fieldSettings.property}'.", ex)
+    }
+  }
+
+  private fun bindString(record: O, value: String) {
+    if (value.isBlank()) {
+      return
+    }
+    try {
+      val existingValue = getter?.invoke(record as Any)
+      if (existingValue != null && existingValue is String && existingValue.isNotBlank()) { // Should be a string....
+        if (existingValue.trim() != value.trim()) {
+          // Only concat, if new value differs:
+          setter?.invoke(record as Any, "$existingValue$value") // concat
+        }
+      } else { // Set value because no existing one as String given:
+        setter?.invoke(record as Any, value)
+      }
+    } catch (ex: Throwable) {
+      log.error("Can't parse property: '${fieldSettings.property}': ${ex.message}")
+    }
+  }
+
+  companion object {
+    fun <O : ImportPairEntry.Modified<O>> create(
+      beanClass: Class<*>,
+      index: Int,
+      fieldSettings: ImportFieldSettings,
+    ): CsvColumnBinder<O> {
+      val property = fieldSettings.property
+      val getterMethod = BeanHelper.determineGetter(beanClass, property)
+      val setterMethod = BeanHelper.determineSetter(beanClass, property)
+      if (setterMethod == null) {
+        log.debug { "No setter found for '${beanClass.simpleName}.$property', values are only passed to the import storage." }
+      }
+      val type = when (BeanHelper.determinePropertyType(getterMethod)) {
+        LocalDate::class.java -> Type.LOCAL_DATE
+        Date::class.java -> Type.DATE
+        BigDecimal::class.java -> Type.BIG_DECIMAL
+        Int::class.java, Int::class.javaObjectType -> Type.INT
+        Long::class.java, Long::class.javaObjectType -> Type.LONG
+        Boolean::class.java, Boolean::class.javaObjectType -> Type.BOOLEAN
+        else -> Type.STRING
+      }
+      val lookup = MethodHandles.publicLookup()
+      val getter = getterMethod?.let {
+        lookup.unreflect(it).asType(MethodType.methodType(Any::class.java, Any::class.java))
+      }
+      val setter = setterMethod?.let {
+        lookup.unreflect(it).asType(MethodType.methodType(Void.TYPE, Any::class.java, Any::class.java))
+      }
+      return CsvColumnBinder(index, fieldSettings, type, getter, setter)
+    }
+  }
+}
@@ -23,18 +23,18 @@
 
 package org.projectforge.rest.importer
 
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
 import mu.KotlinLogging
-import org.projectforge.common.BeanHelper
 import org.projectforge.common.CSVParser
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.framework.utils.ValueParser
 import java.io.ByteArrayInputStream
 import java.io.InputStream
 import java.io.Reader
-import java.math.BigDecimal
 import java.nio.charset.Charset
 import java.nio.charset.StandardCharsets
-import java.time.LocalDate
-import java.util.*
 
 private val log = KotlinLogging.logger {}
 
@@ -51,10 +51,14 @@ object CsvImporter {
     parse(ByteArrayInputStream(bytes).reader(charset = detectCharset(bytes, defaultCharset)), importStorage)
   }
 
+  /**
+   * The lines are read in chunks of [CHUNK_SIZE] lines. The values of each chunk are bound to the prepared entities
+   * in parallel, afterwards the entities are committed in the order of the lines. There is no limit of lines to read.
+   */
   fun <O : ImportPairEntry.Modified<O>> parse(reader: Reader, importStorage: ImportStorage<O>) {
     val settings = importStorage.importSettings
     val parser = CSVParser(reader)
-    val headCols = parser.parseLine()
+    val headCols = parser.parseLine() ?: return
     headCols.forEachIndexed { index, head ->
       val fieldSettings = settings.getFieldSettings(head)
       if (fieldSettings != null) {
@@ -66,115 +70,18 @@ object CsvImporter {
         importStorage.unknownColumns.add(head)
       }
     }
-    // Key is the property name, value is a map (key is bean and value is the number string to parse)
-    val autodetectNumberFormatMap = AutodetectNumberMap<O>()
-    val records = mutableListOf<O>()
-    for (i in 0..100000) { // Paranoi loop, read 100000 lines at max.
-      val line = parser.parseLine() ?: break  // Finished
-      val record = importStorage.prepareEntity()
-      line.forEachIndexed { index, value ->
-        importStorage.columnMapping[index]?.let { fieldSettings ->
-          if (!importStorage.setProperty(record, fieldSettings, value)) {
-            val targetValue = when (BeanHelper.determinePropertyType(record::class.java, fieldSettings.property)) {
-              LocalDate::class.java -> {
-                fieldSettings.parseLocalDate(value)
-              }
-
-              Date::class.java -> {
-                fieldSettings.parseDate(value)
-              }
-
-              BigDecimal::class.java -> {
-                if (fieldSettings.parseFormatList.isEmpty()) {
-                  // Don't parse value, store value for later format auto-detection:
-                  autodetectNumberFormatMap.add(record, fieldSettings, value)
-                  null
-                } else {
-                  // Use given format list:
-                  fieldSettings.parseBigDecimal(value)
-                }
-              }
-
-              Int::class.java -> {
-                fieldSettings.parseInt(value)
-              }
-
-              Long::class.java -> {
-                fieldSettings.parseLong(value)
-              }
-
-              Boolean::class.java -> {
-                fieldSettings.parseBoolean(value)
-              }
-
-              else -> {
-                value
-              }
-            }
-            if (targetValue != null) {
-              // Don't write null values (don't overwrite existing values given e. g. by previous column).
-              if (targetValue is String) {
-                if (targetValue.isNotBlank()) {
-                  try {
-                    val existingValue = BeanHelper.getProperty(record, fieldSettings.property)
-                    if (existingValue != null && existingValue is String && existingValue.isNotBlank()) { // Should be a string....
-                      if (existingValue.trim() != targetValue.trim()) {
-                        // Only concat, if new value differs:
-                        BeanHelper.setProperty(record, fieldSettings.property, "$existingValue$targetValue") // concat
-                      }
-                    } else { // Set value because no existing one as String given:
-                      BeanHelper.setProperty(record, fieldSettings.property, targetValue)
-                    }
-                  } catch (ex: Exception) {
-                    log.error("Can't parse property: '${fieldSettings.property}': ${ex.message}")
-                  }
-                }
-              } else {
-                BeanHelper.setProperty(record, fieldSettings.property, targetValue)
-              }
-            }
-          }
-        }
+    val context = ParseContext(importStorage)
+    val lines = ArrayList<List<String>>(CHUNK_SIZE)
+    while (true) {
+      val line = parser.parseLine() ?: break // Finished
+      lines.add(line)
+      if (lines.size >= CHUNK_SIZE) {
+        context.process(lines)
+        lines.clear()
       }
-      records.add(record)
-    }
-    autodetectNumberFormatMap.storedFieldSettings.forEach { fieldSettings ->
-      // Check format:
-      var englishStyle = true
-      var germanStyle = true
-      autodetectNumberFormatMap.entries.forEach { _, autodetectNumberEntry ->
-        val str = autodetectNumberEntry.valueStrings[fieldSettings]
-        if (str != null) {
-          if (germanStyle && !ValueParser.isGermanStyle(str)) {
-            germanStyle = false
-          }
-          if (englishStyle && !ValueParser.isEnglishStyle(str)) {
-            englishStyle = false
-          }
-        }
-      }
-      if (germanStyle) {
-        fieldSettings.parseFormatList.add(0, "#0,0#")
-        fieldSettings.parseFormatList.add(0, "#.##0,0#")
-      } else {
-        if (!englishStyle) {
-          log.warn { "Property ${fieldSettings.property} is neither in German nor in English number format." }
-        }
-        fieldSettings.parseFormatList.add(0, "#0.0#")
-        fieldSettings.parseFormatList.add(0, "#,##0.0#")
-      }
-      autodetectNumberFormatMap.entries.forEach { record, autodetectNumberEntry ->
-        val str = autodetectNumberEntry.valueStrings[fieldSettings]
-        if (str != null) {
-          val targetValue = fieldSettings.parseBigDecimal(str)
-          BeanHelper.setProperty(record, fieldSettings.property, targetValue)
-        }
-      }
-    }
-
-    records.forEach { record ->
-      importStorage.commitEntity(record)
     }
+    context.process(lines)
+    context.finish()
   }
 
   /**
@@ -210,30 +117,175 @@ object CsvImporter {
   private const val UTF8_ESCAPE_BYTE = 195.toByte() // C3
   private const val UTF16_NULL_BYTE = 0.toByte() // 00
 
-  private class AutodetectNumberMap<O> {
-    val entries = mutableMapOf<O, AutodetectNumberEntry>()
-    val storedFieldSettings = mutableListOf<ImportFieldSettings>()
+  /**
+   * Chunk size of lines to bind in parallel and to commit afterwards.
+   */
+  internal const val CHUNK_SIZE = 1000
 
-    fun add(bean: O, fieldSettings: ImportFieldSettings, str: String?) {
-      str ?: return
-      if (storedFieldSettings.none { it.property == fieldSettings.property }) {
-        storedFieldSettings.add(fieldSettings)
+  /**
+   * Minimum number of lines per thread, smaller chunks are bound by the calling thread.
+   */
+  private const val PARALLEL_THRESHOLD = 200
+
+  private class ParseContext<O : ImportPairEntry.Modified<O>>(val importStorage: ImportStorage<O>) {
+    private var binders: List<CsvColumnBinder<O>>? = null
+
+    /**
+     * Number columns without given format, the format will be detected by the first values.
+     */
+    private var numberColumns = listOf<AutodetectNumberColumn<O>>()
+
+    /**
+     * Entities waiting for the detection of the number formats. They'll be committed afterwards.
+     */
+    private val pendingRecords = mutableListOf<PendingRecord<O>>()
+
+    /**
+     * The values are bound in the context of the calling user (e. g. for time zones of parsed dates).
+     */
+    private val workerContext = ThreadLocalUserContext.userContext.let { userContext ->
+      if (userContext != null) {
+        Dispatchers.Default + ThreadLocalUserContext.getUserAsContextElement(userContext) +
+            ThreadLocalUserContext.getLocaleAsContextElement(ThreadLocalUserContext.locale)
+      } else {
+        Dispatchers.Default
       }
-      var value = entries[bean]
-      if (value == null) {
-        value = AutodetectNumberEntry()
-        entries[bean] = value
+    }
+
+    fun process(lines: List<List<String>>) {
+      if (lines.isEmpty()) {
+        return
       }
-      value.add(fieldSettings, str)
+      // Entities are prepared and committed by the calling thread, only the binding of values is done in parallel.
+      val records = lines.map { importStorage.prepareEntity() }
+      val binders = this.binders ?: compileBinders(records.first()::class.java)
+      val pendingValues = arrayOfNulls<Array<String?>>(lines.size)
+      val bindLine = { i: Int ->
+        val line = lines[i]
+        binders.forEach { binder ->
+          line.getOrNull(binder.index)?.let { value ->
+            if (!binder.bind(importStorage, records[i], value)) {
+              val values = pendingValues[i] ?: arrayOfNulls<String>(numberColumns.size).also { pendingValues[i] = it }
+              values[numberColumns.indexOfFirst { it.fieldSettings === binder.fieldSettings }] = value
+            }
+          }
+        }
+      }
+      val slices = minOf(Runtime.getRuntime().availableProcessors(), lines.size / PARALLEL_THRESHOLD)
+      if (slices > 1) {
+        val sliceSize = (lines.size + slices - 1) / slices
+        runBlocking(workerContext) {
+          for (slice in 0 until slices) {
+            launch {
+              for (i in slice * sliceSize until minOf(lines.size, (slice + 1) * sliceSize)) {
+                bindLine(i)
+              }
+            }
+          }
+        }
+      } else {
+        lines.indices.forEach(bindLine)
+      }
+      records.forEachIndexed { i, record ->
+        if (pendingRecords.isNotEmpty() || pendingValues[i] != null) {
+          pendingRecords.add(PendingRecord(record, pendingValues[i]))
+        } else {
+          importStorage.commitEntity(record)
+        }
+      }
+      if (pendingRecords.isEmpty()) {
+        return
+      }
+      numberColumns.forEachIndexed { col, numberColumn ->
+        if (numberColumn.pending) {
+          pendingValues.forEach { values -> values?.get(col)?.let { numberColumn.check(it) } }
+          if (numberColumn.decided) {
+            numberColumn.detectFormat()
+          }
+        }
+      }
+      if (numberColumns.none { it.pending }) {
+        commitPendingRecords()
+      }
+    }
+
+    fun finish() {
+      numberColumns.forEach { if (it.pending) it.detectFormat() }
+      commitPendingRecords()
+    }
+
+    private fun commitPendingRecords() {
+      pendingRecords.forEach { pendingRecord ->
+        pendingRecord.values?.forEachIndexed { col, str ->
+          if (str != null) {
+            numberColumns[col].bind(pendingRecord.record, str)
+          }
+        }
+        importStorage.commitEntity(pendingRecord.record)
+      }
+      pendingRecords.clear()
+    }
+
+    private fun compileBinders(beanClass: Class<*>): List<CsvColumnBinder<O>> {
+      val binders = importStorage.columnMapping.entries.sortedBy { it.key }.map { (index, fieldSettings) ->
+        CsvColumnBinder.create<O>(beanClass, index, fieldSettings)
+      }
+      numberColumns = binders.filter { it.formatPending }.groupBy { it.fieldSettings }.map { (fieldSettings, list) ->
+        AutodetectNumberColumn(fieldSettings, list)
+      }
+      this.binders = binders
+      return binders
     }
   }
 
-  private class AutodetectNumberEntry() {
-    // Key is the property, value is the string to parse.
-    val valueStrings = mutableMapOf<ImportFieldSettings, String>()
+  private class PendingRecord<O>(val record: O, val values: Array<String?>?)
+
+  /**
+   * Detects the number format (German or English style) by the values of a column, as soon as the values are
+   * unambiguous (e. g. 1.000 may be German or English style).
+   */
+  private class AutodetectNumberColumn<O : ImportPairEntry.Modified<O>>(
+    val fieldSettings: ImportFieldSettings,
+    val binders: List<CsvColumnBinder<O>>,
+  ) {
+    private var germanStyle = true
+    private var englishStyle = true
+    private var hasValues = false
+
+    val pending: Boolean
+      get() = binders.first().formatPending
+
+    val decided: Boolean
+      get() = germanStyle != englishStyle || !germanStyle
+
+    fun check(str: String) {
+      hasValues = true
+      if (germanStyle && !ValueParser.isGermanStyle(str)) {
+        germanStyle = false
+      }
+      if (englishStyle && !ValueParser.isEnglishStyle(str)) {
+        englishStyle = false
+      }
+    }
+
+    fun detectFormat() {
+      if (hasValues) {
+        if (germanStyle) {
+          fieldSettings.parseFormatList.add(0, "#0,0#")
+          fieldSettings.parseFormatList.add(0, "#.##0,0#")
+        } else {
+          if (!englishStyle) {
+            log.warn { "Property ${fieldSettings.property} is neither in German nor in English number format." }
+          }
+          fieldSettings.parseFormatList.add(0, "#0.0#")
+          fieldSettings.parseFormatList.add(0, "#,##0.0#")
+        }
+      }
+      binders.forEach { it.formatPending = false }
+    }
 
-    fun add(fieldSettings: ImportFieldSettings, str: String) {
-      valueStrings[fieldSettings] = str
+    fun bind(record: O, str: String) {
+      fieldSettings.parseBigDecimal(str)?.let { binders.first().set(record, it) }
     }
   }
 }
@@ -33,6 +33,7 @@ import java.time.LocalDate
 import java.time.LocalDateTime
 import java.time.format.DateTimeFormatter
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 
 class ImportFieldSettings(
@@ -44,6 +45,11 @@ class ImportFieldSettings(
 
   private val regexMap = mutableMapOf<String, Regex?>()
 
+  /**
+   * Formatters of the parse formats, created only once (formatters are immutable and thread safe).
+   */
+  private val formatterMap = ConcurrentHashMap<String, DateTimeFormatter>()
+
   /**
    * List of aliases of head of cols to map to bean prop. Wildcard characters '?' and '*' are supported.
    */
@@ -128,7 +134,7 @@ class ImportFieldSettings(
     val value = str.trim()
     parseFormatList.forEach { format ->
       try {
-        val formatter = DateTimeFormatter.ofPattern(format)
+        val formatter = formatterMap.computeIfAbsent(format) { DateTimeFormatter.ofPattern(it) }
         val date = LocalDate.parse(value, formatter)
         if (date != null) {
           return date
@@ -152,7 +158,7 @@ class ImportFieldSettings(
     val value = str.trim()
     parseFormatList.forEach { format ->
       try {
-        val formatter = DateTimeFormatter.ofPattern(format)
+        val formatter = formatterMap.computeIfAbsent(format) { DateTimeFormatter.ofPattern(it) }
         val localDateTime = LocalDateTime.parse(value, formatter)
         val dateTime = PFDateTime.fromOrNull(localDateTime)
         if (dateTime != null) {
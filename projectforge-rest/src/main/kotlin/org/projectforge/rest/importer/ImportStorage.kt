@@ -158,6 +158,7 @@ abstract class ImportStorage<O : ImportPairEntry.Modified<O>>(
    * Set the property of the prepared entity on your own.
    * @return true if the property is set by the implementation. If false (default), then the property will be set automatically
    * by the importer tool (if possible).
+   * While importing csv files, this method is called concurrently by several threads (for different objects).
    */
   open fun setProperty(obj: O, fieldSettings: ImportFieldSettings, value: String): Boolean {
     return false
@@ -0,0 +1,249 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.rest.pub
+
+import jakarta.annotation.PostConstruct
+import mu.KotlinLogging
+import org.projectforge.business.teamcal.admin.TeamCalDao
+import org.projectforge.business.teamcal.admin.model.TeamCalDO
+import org.projectforge.business.teamcal.event.TeamEventDao
+import org.projectforge.business.teamcal.event.model.TeamEventDO
+import org.projectforge.business.timesheet.TimesheetDO
+import org.projectforge.business.timesheet.TimesheetDao
+import org.projectforge.business.vacation.model.VacationDO
+import org.projectforge.business.vacation.repository.VacationDao
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.persistence.api.BaseDOModifiedListener
+import org.projectforge.framework.persistence.jpa.PfPersistenceService
+import org.projectforge.common.DataSizeConfig
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Component
+import org.springframework.util.unit.DataUnit
+import java.security.MessageDigest
+import java.time.LocalDate
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Holds rendered iCal feeds of calendar subscriptions. Clients (phones, Outlook etc.) poll their feeds every few
+ * minutes, but the content changes rarely.
+ *
+ * Entries are keyed by the decrypted subscription params and are only valid for the content version they were
+ * rendered for. The content version is given by modification counters of the included calendars and of the
+ * time sheet user, increased by [BaseDOModifiedListener]s after commit. Changes not visible to these listeners (external
+ * subscriptions, group memberships, task titles of time sheets etc.) are covered by [TTL_MILLIS].
+ *
+ * The cache is bounded by the total size of the rendered feeds (least recently used feeds are evicted first).
+ */
+@Component
+class CalendarFeedCache {
+    class Entry internal constructor(
+        val bytes: ByteArray,
+        val filename: String,
+        internal val version: String,
+    ) {
+        /**
+         * Approximated memory usage: content and key (2 bytes per char).
+         */
+        internal var weight = 0L
+        /**
+         * Strong ETag, derived from the rendered content.
+         */
+        val etag: String = "\"${hash(bytes)}\""
+
+        internal val created = System.currentTimeMillis()
+
+        fun matches(ifNoneMatch: String?): Boolean {
+            ifNoneMatch ?: return false
+            return ifNoneMatch.trim() == "*" || ifNoneMatch.split(',').any { it.trim().removePrefix("W/") == etag }
+        }
+    }
+
+    @Autowired
+    private lateinit var persistenceService: PfPersistenceService
+
+    @Autowired
+    private lateinit var teamCalDao: TeamCalDao
+
+    @Autowired
+    private lateinit var teamEventDao: TeamEventDao
+
+    @Autowired
+    private lateinit var timesheetDao: TimesheetDao
+
+    @Autowired
+    private lateinit var vacationDao: VacationDao
+
+    @Value("\${projectforge.calendarFeed.cacheSize:50MB}")
+    private var cacheSizeConfig: String? = null
+
+    internal var maxBytes = 0L
+
+    private var cachedBytes = 0L
+
+    private val entries = LinkedHashMap<String, Entry>(100, 0.75f, true) // Access order for LRU.
+
+    /**
+     * Modification counters of calendars (events and calendar settings).
+     */
+    private val calendarVersions = ConcurrentHashMap<Long, AtomicLong>()
+
+    /**
+     * Modification counters of time sheets by user.
+     */
+    private val timesheetVersions = ConcurrentHashMap<Long, AtomicLong>()
+
+    /**
+     * Vacations may be included in any calendar (by groups and users), so any modification invalidates all feeds.
+     */
+    private val vacationVersion = AtomicLong()
+
+    @PostConstruct
+    private fun postConstruct() {
+        maxBytes = DataSizeConfig.init(cacheSizeConfig, DataUnit.MEGABYTES).toBytes()
+        teamEventDao.register(object : BaseDOModifiedListener<TeamEventDO> {
+            override fun afterInsertOrModify(obj: TeamEventDO, operationType: OperationType) {
+                obj.calendar?.id?.let { increment(calendarVersions, it) }
+            }
+        })
+        teamCalDao.register(object : BaseDOModifiedListener<TeamCalDO> {
+            override fun afterInsertOrModify(obj: TeamCalDO, operationType: OperationType) {
+                obj.id?.let { increment(calendarVersions, it) }
+            }
+        })
+        timesheetDao.register(object : BaseDOModifiedListener<TimesheetDO> {
+            override fun afterInsertOrModify(obj: TimesheetDO, operationType: OperationType) {
+                obj.user?.id?.let { increment(timesheetVersions, it) }
+            }
+        })
+        vacationDao.register(object : BaseDOModifiedListener<VacationDO> {
+            override fun afterInsertOrModify(obj: VacationDO, operationType: OperationType) {
+                persistenceService.runAfterCommit { vacationVersion.incrementAndGet() }
+            }
+        })
+    }
+
+    /**
+     * @param params The decrypted params (without token).
+     */
+    fun getKey(userId: Long, params: Map<String, String>, locale: Locale): String {
+        val sb = StringBuilder()
+        sb.append(userId).append('|').append(locale)
+        params.filter { it.key != "token" }.toSortedMap().forEach { (key, value) ->
+            sb.append('|').append(key).append('=').append(value)
+        }
+        return sb.toString()
+    }
+
+    /**
+     * The version contains the current day, because the exported periods are relative to today. So the entry of a
+     * subscription is replaced on the first request of a new day (instead of adding a new entry per day).
+     * @param calendarIds The ids of the included calendars.
+     * @param timesheetUserId The id of the time sheet user, if time sheets are included.
+     */
+    fun getVersion(calendarIds: Collection<Long>?, timesheetUserId: Long?): String {
+        val sb = StringBuilder()
+        sb.append(LocalDate.now()).append('|').append(vacationVersion.get())
+        calendarIds?.sorted()?.forEach { sb.append("|c").append(it).append(':').append(calendarVersions[it]?.get() ?: 0) }
+        timesheetUserId?.let { sb.append("|t:").append(timesheetVersions[it]?.get() ?: 0) }
+        return sb.toString()
+    }
+
+    /**
+     * @return The entry, if exists and still valid for the given content version, otherwise null.
+     */
+    fun get(key: String, version: String): Entry? {
+        synchronized(entries) {
+            val entry = entries[key] ?: return null
+            if (entry.version != version || System.currentTimeMillis() - entry.created > TTL_MILLIS) {
+                remove(key)
+                return null
+            }
+            return entry
+        }
+    }
+
+    /**
+     * @param version The content version, got by [getVersion] before rendering the feed. If the content is modified
+     * while rendering, the entry will be outdated on next request.
+     */
+    fun put(key: String, version: String, bytes: ByteArray, filename: String): Entry {
+        val entry = Entry(bytes, filename, version)
+        entry.weight = bytes.size + 2L * key.length
+        synchronized(entries) {
+            remove(key)
+            if (entry.weight > maxBytes) {
+                log.info { "Calendar feed too large for caching (${entry.weight} bytes, cache size is $cacheSizeConfig): $filename" }
+                return entry
+            }
+            entries[key] = entry
+            cachedBytes += entry.weight
+            if (cachedBytes > maxBytes) {
+                val it = entries.values.iterator() // Least recently used first.
+                while (cachedBytes > maxBytes && it.hasNext()) {
+                    cachedBytes -= it.next().weight
+                    it.remove()
+                }
+            }
+        }
+        return entry
+    }
+
+    /**
+     * Total size of all cached feeds in bytes.
+     */
+    internal val size: Long
+        get() = synchronized(entries) { cachedBytes }
+
+    /**
+     * Must be called inside synchronized(entries).
+     */
+    private fun remove(key: String) {
+        entries.remove(key)?.let { cachedBytes -= it.weight }
+    }
+
+    /**
+     * The version is increased after the commit. Otherwise, a concurrent request could render the old data and cache
+     * it under the new version.
+     */
+    private fun increment(map: ConcurrentHashMap<Long, AtomicLong>, id: Long) {
+        persistenceService.runAfterCommit { map.computeIfAbsent(id) { AtomicLong() }.incrementAndGet() }
+    }
+
+    companion object {
+        /**
+         * Rendered feeds are re-rendered at the latest after 15 minutes.
+         */
+        const val TTL_MILLIS = 15 * 60 * 1000L
+
+        private fun hash(bytes: ByteArray): String {
+            val digest = MessageDigest.getInstance("SHA-256").digest(bytes)
+            return digest.take(16).joinToString("") { "%02x".format(it) }
+        }
+    }
+}
@@ -45,6 +45,7 @@ import org.projectforge.business.user.UserGroupCache
 import org.projectforge.business.user.UserTokenType
 import org.projectforge.business.vacation.VacationCache
 import org.projectforge.common.StringHelper
+import org.projectforge.common.metrics.PfMetrics
 import org.projectforge.framework.calendar.Holidays.Companion.instance
 import org.projectforge.framework.i18n.translate
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
@@ -60,11 +61,13 @@ import org.projectforge.security.SecurityLogging.logSecurityWarn
 import org.slf4j.MDC
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.core.io.ByteArrayResource
+import org.springframework.http.HttpHeaders
 import org.springframework.http.HttpStatus
 import org.springframework.http.ResponseEntity
 import org.springframework.web.bind.annotation.GetMapping
 import org.springframework.web.bind.annotation.RequestMapping
 import org.springframework.web.bind.annotation.RestController
+import java.util.concurrent.TimeUnit
 
 private val log = KotlinLogging.logger {}
 
@@ -92,9 +95,13 @@ class CalendarSubscriptionServiceRest {
     @Autowired
     private lateinit var vacationCache: VacationCache
 
+    @Autowired
+    private lateinit var calendarFeedCache: CalendarFeedCache
+
     @GetMapping
     fun exportCalendar(request: HttpServletRequest): ResponseEntity<*> {
         var logMessage: String? = null
+        val start = System.nanoTime()
         try {
             val userId = ThreadLocalUserContext.loggedInUserId ?: run {
                 log.error("Internal errror: shouldn't occur: can't get context user! Should be denied by filter!!!")
@@ -113,6 +120,20 @@ class CalendarSubscriptionServiceRest {
                     return ResponseEntity<Any>(HttpStatus.BAD_REQUEST)
                 }
             }
+            logMessage = params.filter { it.key != "token" }.map { "${it.key}=${it.value}" }.joinToString(", ")
+            val cacheKey = calendarFeedCache.getKey(userId, params, ThreadLocalUserContext.locale)
+            val teamCalIds = params["teamCals"]?.let { StringUtils.split(it, ";") }?.mapNotNull { parseLong(it) }
+            val version = calendarFeedCache.getVersion(teamCalIds, timesheetUser?.id)
+            calendarFeedCache.get(cacheKey, version)?.let { entry ->
+                PfMetrics.counter("calendar.feed.cache.hit").increment()
+                if (entry.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+                    log.info("Calendar entries not modified for: $logMessage")
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entry.etag).build<Any>()
+                }
+                log.info("Serving cached calendar entries for: $logMessage")
+                return download(entry)
+            }
+            PfMetrics.counter("calendar.feed.cache.miss").increment()
             // create ical generator
             val generator = ICalGenerator(exportVAlarms = "true" == params[PARAM_EXPORT_REMINDER])
             // read events
@@ -122,12 +143,11 @@ class CalendarSubscriptionServiceRest {
             val weeksOfYearProcessed = readWeeksOfYear(generator, params)
             // setup event is needed for empty calendars
             generator.ensureNotEmpty()
-            logMessage = params.filter { it.key != "token" }.map { "${it.key}=${it.value}" }.joinToString(", ")
             log.info("Read calendar entries for: $logMessage")
             val baos = ByteArrayOutputStream()
             generator.writeToOutputStream(baos)
 
-            val resource = ByteArrayResource(baos.toByteArray())
+            PfMetrics.summary("calendar.feed.size", "bytes").record(baos.size().toDouble())
             val sb = StringBuilder()
             sb.append(processCalendars?.joinToString { StringUtils.abbreviate(it.title, 25) }
                 ?: "")
@@ -139,8 +159,9 @@ class CalendarSubscriptionServiceRest {
                 sb.append(translate("weekOfYear"))
             }
             val safeFilename = "projectforge-${ReplaceUtils.encodeFilename(sb.toString(), false)}.ics"
-            return RestUtils.downloadFile(safeFilename, resource)
+            return download(calendarFeedCache.put(cacheKey, version, baos.toByteArray(), safeFilename))
         } finally {
+            PfMetrics.timer("calendar.feed").record(System.nanoTime() - start, TimeUnit.NANOSECONDS)
             log.info("Finished request: $logMessage")
             ThreadLocalUserContext.setUser(null)
             MDC.remove("ip")
@@ -149,6 +170,10 @@ class CalendarSubscriptionServiceRest {
         }
     }
 
+    private fun download(entry: CalendarFeedCache.Entry): ResponseEntity<*> {
+        return RestUtils.downloadFile(entry.filename, ByteArrayResource(entry.bytes), entry.etag)
+    }
+
     private fun getTimesheetUser(userId: Long, timesheetUserParam: String): PFUserDO? {
         var timesheetUser: PFUserDO? = null
         if (StringUtils.isNotBlank(timesheetUserParam)) {
@@ -100,16 +100,108 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
 
     /**
      * This context is used by sync and holds all used data.
+     *
+     * The contacts, addresses and sync objects are indexed by id (and addresses by name) for avoiding scans of the
+     * lists. The indexes are built on demand, so modify the lists only by assigning new lists or by the add/remove
+     * methods of this class.
      */
     class SyncContext {
         var remoteContacts = mutableListOf<SipgateContact>()
+            set(value) {
+                field = value
+                contactIndex = null
+            }
         var addressList = listOf<AddressDO>()
+            set(value) {
+                field = value
+                addressIndex = null
+                addressNameIndex = null
+            }
         var syncDOList = mutableListOf<SipgateContactSyncDO>()
+            set(value) {
+                field = value
+                syncDOByContactId = null
+                syncDOByAddressId = null
+            }
         var localCounter = Counter()
         var remoteCounter = Counter()
 
+        /**
+         * Number of active and paired addresses skipped, because neither the address nor the remote contact was
+         * modified since the last sync.
+         */
+        var unmodified = 0
+
+        private var contactIndex: Map<String, SipgateContact>? = null
+        private var addressIndex: Map<Long, AddressDO>? = null
+        private var addressNameIndex: Map<String, List<AddressDO>>? = null
+        private var syncDOByContactId: Map<String, SipgateContactSyncDO>? = null
+        private var syncDOByAddressId: Map<Long, SipgateContactSyncDO>? = null
+
+        internal fun getContact(contactId: String?): SipgateContact? {
+            contactId ?: return null
+            val index = contactIndex ?: index(remoteContacts) { it.id }.also { contactIndex = it }
+            return index[contactId]
+        }
+
+        internal fun getAddress(addressId: Long?): AddressDO? {
+            addressId ?: return null
+            val index = addressIndex ?: index(addressList) { it.id }.also { addressIndex = it }
+            return index[addressId]
+        }
+
+        /**
+         * @return All addresses with the given name (first and family name, case-insensitive).
+         */
+        internal fun getAddressesByName(name: String?): List<AddressDO> {
+            name ?: return emptyList()
+            val index = addressNameIndex
+                ?: addressList.groupBy { normalizeName(SipgateContactSyncDO.getName(it)) }.also { addressNameIndex = it }
+            return index[normalizeName(name)] ?: emptyList()
+        }
+
+        internal fun getSyncDOByContactId(contactId: String?): SipgateContactSyncDO? {
+            contactId ?: return null
+            val index = syncDOByContactId ?: index(syncDOList) { it.sipgateContactId }.also { syncDOByContactId = it }
+            return index[contactId]
+        }
+
+        internal fun getSyncDOByAddressId(addressId: Long?): SipgateContactSyncDO? {
+            addressId ?: return null
+            val index = syncDOByAddressId ?: index(syncDOList) { it.address?.id }.also { syncDOByAddressId = it }
+            return index[addressId]
+        }
+
+        internal fun addSyncDO(syncDO: SipgateContactSyncDO) {
+            syncDOList.add(syncDO)
+            syncDOByContactId = null
+            syncDOByAddressId = null
+        }
+
+        internal fun removeSyncDO(syncDO: SipgateContactSyncDO) {
+            syncDOList.remove(syncDO)
+            syncDOByContactId = null
+            syncDOByAddressId = null
+        }
+
+        internal fun removeContact(contact: SipgateContact) {
+            remoteContacts.remove(contact)
+            contactIndex = null
+        }
+
+        /**
+         * The first entry wins on duplicate keys (as find on the list would do).
+         */
+        private fun <K, T> index(list: List<T>, key: (T) -> K?): Map<K, T> {
+            val map = HashMap<K, T>(list.size * 2)
+            list.forEach { entry ->
+                key(entry)?.let { map.putIfAbsent(it, entry) }
+            }
+            return map
+        }
+
         override fun toString(): String {
-            return "${remoteContacts.size} remote contacts, ${addressList.size} local addresses, ${syncDOList.size} sync objects, localCounter=$localCounter, remoteCounter=$remoteCounter"
+            return "${remoteContacts.size} remote contacts, ${addressList.size} local addresses, ${syncDOList.size} sync objects, unmodified=$unmodified, localCounter=$localCounter, remoteCounter=$remoteCounter"
         }
     }
 
@@ -132,6 +224,10 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
     @Autowired
     internal lateinit var persistenceService: PfPersistenceService
 
+    /**
+     * Start time of the last successful sync. Addresses not modified since then are only synced, if the remote
+     * contact was modified.
+     */
     private var lastSyncInEpochMillis: Long? = null
 
     private fun postConstruct() {
@@ -141,6 +237,13 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
     companion object {
         internal var countryPrefixForTestcases: String? = null
 
+        /**
+         * Normalized name for matching contacts and addresses (trimmed and lowercase).
+         */
+        internal fun normalizeName(name: String): String {
+            return name.trim().lowercase()
+        }
+
         /**
          * Create new contact from given address.
          */
@@ -361,19 +464,17 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
          */
         internal fun findMatches(syncContext: SyncContext)
                 : List<MatchScore> {
-            val addresses = syncContext.addressList
             val contacts = syncContext.remoteContacts
-            val syncDOList = syncContext.syncDOList
             // Map key is contact-id.
             val matchScores = mutableListOf<MatchScore>()
             contacts.forEach { contact ->
-                if (syncDOList.any { it.sipgateContactId == contact.id }) {
+                if (syncContext.getSyncDOByContactId(contact.id) != null) {
                     // Contact is already matched.
                     return@forEach
                 }
-                addresses.filter { SipgateContactSyncDO.getName(it).lowercase() == contact.name?.trim()?.lowercase() }
+                syncContext.getAddressesByName(contact.name)
                     .forEach { matchAddress ->
-                        if (syncDOList.none { it.address?.id == matchAddress.id }) {
+                        if (syncContext.getSyncDOByAddressId(matchAddress.id) == null) {
                             // Address isn't yet matched to any contact.
                             contact.id?.let { contactId ->
                                 val matchScore = matchScore(contact, matchAddress)
@@ -490,12 +591,18 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
     /**
      * The main sync method: gets all remote contacts and local addresses, find the matching pairs (if not yet paired) and
      * inserts, updates and deletes the remote contacts and local addresses.
+     *
+     * Pairs of addresses and contacts are only compared, if the address was modified since the last sync or the remote
+     * contact differs from the state stored on the last sync. The remote contacts are fetched on every run, because
+     * Sipgate provides no modification times.
      * @param resetContacts If true, the Sipgate contacts will be resetted after synchronizing. This may be useful for removing
      * duplicating numbers. Default is false.
      */
     fun sync(resetContacts: Boolean = false): SyncContext {
         log.info { "Syncing local addresses and remote Sipgate contacts..." }
         synchronized(this) {
+            val startMillis = System.currentTimeMillis()
+            val lastSync = if (resetContacts) null else lastSyncInEpochMillis
             val syncContext = SyncContext()
             syncContext.addressList =
                 addressDao.selectAll(checkAccess = false) // Need all for matching contacts, but only active will be used for syncing to Sipgate.
@@ -507,14 +614,18 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
             syncContext.localCounter.total = syncContext.addressList.size
             persistenceService.runInTransaction { _ ->
                 syncContext.addressList.forEach { address ->
-                    val syncDO = syncContext.syncDOList.find { it.address?.id == address.id }
+                    val syncDO = syncContext.getSyncDOByAddressId(address.id)
                     val contactId = syncDO?.sipgateContactId
                     // log.debug { "sync: Processing address #${address.id}: syncObj=$syncDO" }
                     if (contactId != null) {
-                        val contact = syncContext.remoteContacts.find { it.id == contactId }
+                        val contact = syncContext.getContact(contactId)
                         if (isAddressActive(address)) {
                             // log.debug { "sync: address #${address.id} is active. Remote contact=$contact" }
-                            if (contact != null) {
+                            val remoteSyncInfo = contact?.let { SipgateContactSyncDO.createSyncInfoAsJson(it) }
+                            if (contact != null && isUnmodified(address, syncDO, remoteSyncInfo, lastSync)) {
+                                // Neither the address nor the remote contact was modified since the last sync.
+                                syncContext.unmodified++
+                            } else if (contact != null) {
                                 // Update if active
                                 val oldContact = contact.toString()
                                 val oldAddress = address.toString()
@@ -528,8 +639,10 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
                                             )
                                         }: Updating address and/or contact: $syncResult"
                                     }
-                                } else {
-                                    // log.debug { "sync: ${getLogInfo(address, contact)} is up-to-date." }
+                                } else if (syncDO.syncInfoAsJson != remoteSyncInfo) {
+                                    // Store the current remote state for skipping this pair on the next runs.
+                                    syncDO.syncInfoAsJson = remoteSyncInfo
+                                    upsert(syncDO)
                                 }
                                 if (syncResult.addressDOOutdated) {
                                     try {
@@ -608,7 +721,7 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
             persistenceService.runInTransaction { _ ->
                 syncContext.remoteContacts.forEach { contact ->
                     // log.debug { "sync: Processing remote contact: $contact" }
-                    syncContext.syncDOList.find { it.sipgateContactId == contact.id }.let { syncDO ->
+                    syncContext.getSyncDOByContactId(contact.id).let { syncDO ->
                         // log.debug { "sync: syncDO found: $syncDO" }
                         val contactId = syncDO?.sipgateContactId
                         if (contactId == null) {
@@ -652,7 +765,12 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
             updateSyncObjects(syncContext)
             syncContext.remoteCounter.total = syncContext.remoteContacts.size
             // Delete remote contacts (without numbers)?
-            lastSyncInEpochMillis = System.currentTimeMillis()
+            if (syncContext.localCounter.failed == 0 && syncContext.remoteCounter.failed == 0) {
+                lastSyncInEpochMillis = startMillis
+            } else {
+                // Compare all pairs on the next run again, so failed updates will be retried.
+                lastSyncInEpochMillis = null
+            }
             log.info { "Syncing of local addresses and remote Sipgate contacts finished: $syncContext" }
             return syncContext
         }
@@ -662,7 +780,11 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
         try {
             if (configuration.updateSipgateContacts) {
                 val contact = from(address)
-                sipgateContactService.create(contact)
+                if (!sipgateContactService.create(contact)) {
+                    // Error is already logged.
+                    syncContext?.let { it.remoteCounter.failed++ }
+                    return
+                }
             } else {
                 log.info {
                     "${getLogInfo(address, null)}: NOT creating remote contact (see projectforge.properties)."
@@ -688,7 +810,11 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
         contact.id?.let { contactId ->
             try {
                 if (configuration.updateSipgateContacts) {
-                    sipgateContactService.update(contactId, contact)
+                    if (!sipgateContactService.update(contactId, contact)) {
+                        // Error is already logged.
+                        syncContext.remoteCounter.failed++
+                        return
+                    }
                     syncDO.lastSync = Date()
                     syncDO.remoteStatus = SipgateContactSyncDO.RemoteStatus.OK
                     syncDO.updateJson(contact)
@@ -719,8 +845,8 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
                     if (configuration.updateSipgateContacts) {
                         sipgateContactService.delete(contactId, contact)
                         delete(syncDO, em)
-                        syncContext.syncDOList.remove(syncDO)
-                        syncContext.remoteContacts.remove(contact)
+                        syncContext.removeSyncDO(syncDO)
+                        syncContext.removeContact(contact)
                     } else {
                         log.info {
                             "${
@@ -789,11 +915,11 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
             syncContext.syncDOList.forEach { syncDO ->
                 // log.debug { "updateSyncObjects: syncDO=$syncDO" }
                 var deleteIt = false
-                if (syncContext.remoteContacts.none { it.id == syncDO.sipgateContactId }) {
+                if (syncContext.getContact(syncDO.sipgateContactId) == null) {
                     log.info { "Deleting syncDO (because contact id '${syncDO.sipgateContactId}' doesn't exist anymore." }
                     deleteIt = true
                 }
-                if (!deleteIt && syncContext.addressList.none { it.id == syncDO.address?.id }) {
+                if (!deleteIt && syncContext.getAddress(syncDO.address?.id) == null) {
                     log.info { "Deleting syncDO (because address id '${syncDO.address?.id}' doesn't exist anymore." }
                     deleteIt = true
                 }
@@ -814,34 +940,38 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
         // syncContext. addressList =
         //  addressDao.internalLoadAll() // Need all for matching contacts, but only active will be used for syncing to Sipgate.
         val matchScores = findMatches(syncContext).sortedByDescending { it.score }
+        val matchScoresByContactId = matchScores.groupBy { it.contactId }
+        val matchScoresByAddressId = matchScores.groupBy { it.addressId }
         matchScores.forEach { matchScore ->
             if (matchScore.synced) {
                 return@forEach
             }
-            if (syncContext.syncDOList.any { it.sipgateContactId == matchScore.contactId || it.address?.id == matchScore.addressId }) {
+            if (syncContext.getSyncDOByContactId(matchScore.contactId) != null ||
+                syncContext.getSyncDOByAddressId(matchScore.addressId) != null
+            ) {
                 // contact or address is already synced: don't try it anymore:
                 matchScore.synced = true
                 return@forEach
             }
-            val contact = syncContext.remoteContacts.find { it.id == matchScore.contactId }
+            val contact = syncContext.getContact(matchScore.contactId)
             if (contact == null) {
                 log.error { "oups, shouldn't occur. Can't find contact '${matchScore.contactId}' in contacts." }
             }
-            val address = syncContext.addressList.find { it.id == matchScore.addressId }
+            val address = syncContext.getAddress(matchScore.addressId)
             if (address == null) {
                 log.error { "oups, shouldn't occur. Can't find address #${matchScore.addressId} in addresses." }
             }
             if (address != null && contact != null) {
                 val syncDO = SipgateContactSyncDO.create(contact, address, SipgateContactSyncDO.RemoteStatus.OK)
                 syncDO.updateJson(contact)
-                syncContext.syncDOList.add(syncDO)
+                syncContext.addSyncDO(syncDO)
                 upsert(syncDO)
             }
-            matchScores.filter { it.contactId == matchScore.contactId || it.addressId == matchScore.addressId }
-                .forEach { it.synced = true }
+            matchScoresByContactId[matchScore.contactId]?.forEach { it.synced = true }
+            matchScoresByAddressId[matchScore.addressId]?.forEach { it.synced = true }
         }
         val nomatch =
-            syncContext.remoteContacts.count { contact -> syncContext.syncDOList.none { it.sipgateContactId == contact.id } }
+            syncContext.remoteContacts.count { contact -> syncContext.getSyncDOByContactId(contact.id) == null }
         log.info { "updateSyncObjects: ${syncContext.remoteContacts.size} remote contacts processed. $nomatch remote contacts without local matched address." }
     }
 
@@ -885,6 +1015,23 @@ open class SipgateContactSyncService : BaseDOModifiedListener<AddressDO> {
         )
     }
 
+    /**
+     * @param remoteSyncInfo The sync info of the remote contact as json, see [SipgateContactSyncDO.createSyncInfoAsJson].
+     * @param lastSync Start time of the last sync.
+     * @return true, if the address wasn't modified since the last sync and the remote contact is equal to the state
+     * stored by the last sync.
+     */
+    private fun isUnmodified(
+        address: AddressDO,
+        syncDO: SipgateContactSyncDO,
+        remoteSyncInfo: String?,
+        lastSync: Long?,
+    ): Boolean {
+        lastSync ?: return false
+        val lastUpdate = address.lastUpdate ?: return false
+        return lastUpdate.time < lastSync && remoteSyncInfo != null && syncDO.syncInfoAsJson == remoteSyncInfo
+    }
+
     private fun getLogInfo(address: AddressDO?, contact: SipgateContact?): String {
         if (address == null) {
             return "contact '${contact?.name}' (id=${contact?.id})"
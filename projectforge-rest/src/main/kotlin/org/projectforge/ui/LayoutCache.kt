@@ -0,0 +1,92 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.ui
+
+import org.projectforge.business.user.UserGroupCache
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import java.util.*
+
+/**
+ * Cache for the static parts of layouts (e. g. the search filter container of list pages). They depend only on the
+ * page, the user's locale and the user's access profile (groups and rights).
+ *
+ * The cached objects are shared by all requests of the same key, so they must not be modified after creation: objects
+ * modified by the layout processing (e. g. the search filter container, see
+ * [org.projectforge.ui.filter.LayoutListFilterUtils.copySearchFilterContainer]) are copied per request. Rights
+ * changes result in new access profiles and therefore in new keys, additionally the cache is cleared by
+ * [LayoutCacheInvalidator] after modifications of groups and rights and after the activation of plugins.
+ *
+ * Only such static parts are cached, not the complete layouts: createListLayout and createEditLayout also depend on
+ * the request, the magic filter and the user's preferences (e. g. the column order of the list), so they're built
+ * and processed per request.
+ */
+object LayoutCache {
+  private const val MAX_SIZE = 1000
+
+  private data class Key(val pageClass: Class<*>, val name: String, val locale: Locale, val accessProfile: Int)
+
+  private val cache = object : LinkedHashMap<Key, Any>(16, 0.75f, true) {
+    override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Any>?): Boolean {
+      return size > MAX_SIZE
+    }
+  }
+
+  /**
+   * @param pageClass The page (rest class) the static part belongs to.
+   * @param name The name of the static part, unique per page.
+   * @param create Creates the static part for the context user, if not cached.
+   */
+  fun <T : Any> getOrCreate(pageClass: Class<*>, name: String, create: () -> T): T {
+    val key = Key(pageClass, name, ThreadLocalUserContext.locale!!, accessProfile)
+    synchronized(cache) {
+      cache[key]
+    }?.let {
+      @Suppress("UNCHECKED_CAST")
+      return it as T
+    }
+    // Created outside the lock, concurrent creations for the same key are harmless.
+    val value = create()
+    synchronized(cache) {
+      cache[key] = value
+    }
+    return value
+  }
+
+  fun clear() {
+    synchronized(cache) {
+      cache.clear()
+    }
+  }
+
+  /**
+   * Hash of the group ids and rights of the context user.
+   */
+  private val accessProfile: Int
+    get() {
+      val user = ThreadLocalUserContext.loggedInUser ?: return 0
+      val userGroupCache = UserGroupCache.getInstance()
+      val groupIds = userGroupCache.getUserGroups(user)?.sorted()
+      val rights = userGroupCache.getUserRights(user.id)?.map { "${it.rightIdString}=${it.value}" }?.sorted()
+      return Objects.hash(groupIds, rights)
+    }
+}
@@ -0,0 +1,78 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.ui
+
+import jakarta.annotation.PostConstruct
+import org.projectforge.business.user.GroupDao
+import org.projectforge.business.user.UserRightDao
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.persistence.api.BaseDOModifiedListener
+import org.projectforge.framework.persistence.jpa.PfPersistenceService
+import org.projectforge.framework.persistence.user.entities.GroupDO
+import org.projectforge.framework.persistence.user.entities.UserRightDO
+import org.projectforge.plugins.core.AbstractPlugin
+import org.projectforge.plugins.core.PluginAdminService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Component
+
+/**
+ * Clears the [LayoutCache] after modifications of groups or user rights (after commit) and after the activation of
+ * plugins (plugins may add pages, menus and rights).
+ */
+@Component
+class LayoutCacheInvalidator {
+    @Autowired
+    private lateinit var groupDao: GroupDao
+
+    @Autowired
+    private lateinit var persistenceService: PfPersistenceService
+
+    @Autowired
+    private lateinit var pluginAdminService: PluginAdminService
+
+    @Autowired
+    private lateinit var userRightDao: UserRightDao
+
+    @PostConstruct
+    private fun postConstruct() {
+        groupDao.register(object : BaseDOModifiedListener<GroupDO> {
+            override fun afterInsertOrModify(obj: GroupDO, operationType: OperationType) {
+                clearAfterCommit()
+            }
+        })
+        userRightDao.register(object : BaseDOModifiedListener<UserRightDO> {
+            override fun afterInsertOrModify(obj: UserRightDO, operationType: OperationType) {
+                clearAfterCommit()
+            }
+        })
+        pluginAdminService.addExecuteAfterActivePluginCreated(object : PluginAdminService.PluginCallback {
+            override fun call(plugin: AbstractPlugin?) {
+                LayoutCache.clear()
+            }
+        })
+    }
+
+    private fun clearAfterCommit() {
+        persistenceService.runAfterCommit { LayoutCache.clear() }
+    }
+}
@@ -117,6 +117,22 @@ object LayoutListFilterUtils {
     return container
   }
 
+  /**
+   * @return A copy of the given (cached) search filter container, because the layout processing modifies the keys and
+   * labels of the elements in place.
+   * @see LayoutCache
+   */
+  fun copySearchFilterContainer(container: UINamedContainer): UINamedContainer {
+    val copy = UINamedContainer(container.id)
+    container.content.forEach { element ->
+      if (element !is UIFilterElement) {
+        throw IllegalStateException("Can't copy search filter element of type '${element::class.java.name}'.")
+      }
+      copy.add(element.copy())
+    }
+    return copy
+  }
+
   fun getLabel(elInfo: ElementInfo): String {
     val sb = StringBuilder()
     addLabel(sb, elInfo)
@@ -36,4 +36,8 @@ open class UIFilterBooleanElement (
         id: String,
         label: String? = null,
         defaultFilter: Boolean? = null
-) :UIFilterElement(id, FilterType.BOOLEAN, label, defaultFilter = defaultFilter)
+) :UIFilterElement(id, FilterType.BOOLEAN, label, defaultFilter = defaultFilter) {
+    override fun copy(): UIFilterBooleanElement {
+        return copyTo(UIFilterBooleanElement(id))
+    }
+}
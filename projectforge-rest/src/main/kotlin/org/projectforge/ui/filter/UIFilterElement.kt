@@ -65,6 +65,33 @@ open class UIFilterElement(
         key = id
     }
 
+    /**
+     * Copy of this element, used for delivering cached search filters (see [org.projectforge.ui.LayoutCache]): the
+     * layout processing modifies keys and labels in place. Lists of values are shared, they're never modified.
+     * Subclasses must override this method.
+     */
+    open fun copy(): UIFilterElement {
+        return copyTo(
+            UIFilterElement(
+                id,
+                ignoreAdditionalLabel = ignoreAdditionalLabel,
+                ignoreTooltip = ignoreTooltip,
+                layoutContext = layoutContext,
+            )
+        )
+    }
+
+    protected fun <T : UIFilterElement> copyTo(element: T): T {
+        element.key = key
+        element.cssClass = cssClass
+        element.filterType = filterType
+        element.label = label
+        element.additionalLabel = additionalLabel
+        element.tooltip = tooltip
+        element.defaultFilter = defaultFilter
+        return element
+    }
+
     fun determine(propertyType: Class<*>) {
         if (BaseDO::class.java.isAssignableFrom(propertyType)) {
             filterType = UIFilterElement.FilterType.OBJECT
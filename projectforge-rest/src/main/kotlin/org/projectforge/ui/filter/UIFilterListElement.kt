@@ -68,4 +68,8 @@ open class UIFilterListElement(
         values = newValues
         return this
     }
+
+    override fun copy(): UIFilterListElement {
+        return copyTo(UIFilterListElement(id, values, multi = multi))
+    }
 }
@@ -41,4 +41,8 @@ open class UIFilterObjectElement(
         var autoCompletion: AutoCompletion<*>? = null
 ) :UIFilterElement(id, FilterType.OBJECT, label = label) {
     enum class Type { STRING, DATE, CHOICE }
+
+    override fun copy(): UIFilterObjectElement {
+        return copyTo(UIFilterObjectElement(id, autoCompletion = autoCompletion))
+    }
 }
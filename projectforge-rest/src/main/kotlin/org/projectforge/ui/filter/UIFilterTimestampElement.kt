@@ -60,4 +60,8 @@ open class UIFilterTimestampElement(id: String,
          */
         UNTIL_NOW
     }
+
+    override fun copy(): UIFilterTimestampElement {
+        return copyTo(UIFilterTimestampElement(id, openInterval = openInterval, selectors = selectors))
+    }
 }
@@ -90,6 +90,30 @@ class TaskDtoTest: AbstractTestBase() {
         checkMinimalTask(dest.parentTask?.parentTask, 1, "root")
     }
 
+    @Test
+    fun copyToTest() {
+        val task = Task(id = 2, title = "t1", parentTask = Task(id = 1, title = "root"), protectionOfPrivacy = true)
+        task.responsibleUser = User(id = 3, username = "kai")
+        val dest = TaskDO()
+        task.copyTo(dest)
+        assertEquals(2, dest.id)
+        assertEquals("t1", dest.title)
+        assertEquals(1, dest.parentTask?.id)
+        assertNull(dest.parentTask?.title, "Only id of embedded objects is copied.")
+        assertEquals(3, dest.responsibleUser?.id)
+        assertNull(dest.responsibleUser?.username, "Only id of embedded objects is copied.")
+        assertTrue(dest.protectionOfPrivacy)
+
+        // Second copy uses the cached mapping:
+        val task2 = Task(id = 4, title = "t2")
+        val dest2 = TaskDO()
+        task2.copyTo(dest2)
+        assertEquals(4, dest2.id)
+        assertEquals("t2", dest2.title)
+        assertNull(dest2.parentTask)
+        assertFalse(dest2.protectionOfPrivacy)
+    }
+
     private fun checkMinimalTask(task: Task?, id: Long, title: String) {
         assertNotNull(task)
         assertEquals(id, task?.id)
@@ -0,0 +1,104 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.rest.pub
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.projectforge.business.teamcal.admin.TeamCalDao
+import org.projectforge.business.teamcal.admin.model.TeamCalDO
+import org.projectforge.business.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+import java.util.*
+
+class CalendarFeedCacheTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var calendarFeedCache: CalendarFeedCache
+
+    @Autowired
+    private lateinit var teamCalDao: TeamCalDao
+
+    @Test
+    fun cacheTest() {
+        val user = logon(ADMIN)
+        val cal = TeamCalDO()
+        cal.title = "CalendarFeedCacheTest"
+        cal.owner = user
+        teamCalDao.insert(cal)
+        val calIds = listOf(cal.id!!)
+
+        val key = calendarFeedCache.getKey(user.id!!, mapOf("teamCals" to "${cal.id}", "token" to "secret"), Locale.GERMAN)
+        assertFalse(key.contains("secret"))
+        assertEquals(
+            key,
+            calendarFeedCache.getKey(user.id!!, linkedMapOf("token" to "other", "teamCals" to "${cal.id}"), Locale.GERMAN),
+            "Order of params and token shouldn't matter.",
+        )
+        val version = calendarFeedCache.getVersion(calIds, null)
+        assertNull(calendarFeedCache.get(key, version))
+        val entry = calendarFeedCache.put(key, version, "BEGIN:VCALENDAR".toByteArray(), "test.ics")
+        assertSame(entry, calendarFeedCache.get(key, version))
+        assertTrue(entry.matches(entry.etag))
+        assertTrue(entry.matches("\"other\", W/${entry.etag}"))
+        assertFalse(entry.matches("\"other\""))
+        assertFalse(entry.matches(null))
+
+        cal.description = "modified"
+        teamCalDao.update(cal)
+        val newVersion = calendarFeedCache.getVersion(calIds, null)
+        assertNotEquals(version, newVersion)
+        assertNull(calendarFeedCache.get(key, newVersion), "Entry should be outdated after modification of calendar.")
+    }
+
+    @Test
+    fun sizeLimitTest() {
+        val maxBytes = calendarFeedCache.maxBytes
+        try {
+            calendarFeedCache.maxBytes = 3_000
+            val version = calendarFeedCache.getVersion(null, null)
+            val content = ByteArray(900)
+            val keys = (1..3).map { calendarFeedCache.getKey(it.toLong(), mapOf("teamCals" to "$it"), Locale.GERMAN) }
+            keys.forEach { calendarFeedCache.put(it, version, content, "test.ics") }
+            assertNotNull(calendarFeedCache.get(keys[0], version)) // Most recently used now.
+            val newKey = calendarFeedCache.getKey(4, mapOf("teamCals" to "4"), Locale.GERMAN)
+            calendarFeedCache.put(newKey, version, content, "test.ics")
+            assertNotNull(calendarFeedCache.get(keys[0], version))
+            assertNull(calendarFeedCache.get(keys[1], version), "Least recently used entry should be evicted.")
+            assertNotNull(calendarFeedCache.get(keys[2], version))
+            assertNotNull(calendarFeedCache.get(newKey, version))
+            assertTrue(calendarFeedCache.size <= 3_000)
+
+            // Re-rendered feed replaces the entry of the same subscription:
+            val size = calendarFeedCache.size
+            calendarFeedCache.put(newKey, "${version}|new", content, "test.ics")
+            assertEquals(size, calendarFeedCache.size)
+
+            // Feeds larger than the cache aren't cached:
+            val tooLarge = calendarFeedCache.put(keys[1], version, ByteArray(4_000), "test.ics")
+            assertNull(calendarFeedCache.get(keys[1], version))
+            assertEquals(4_000, tooLarge.bytes.size)
+        } finally {
+            calendarFeedCache.maxBytes = maxBytes
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.rest.sipgate
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import jakarta.persistence.EntityManager
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.address.AddressDO
+import org.projectforge.business.address.AddressDao
+import org.projectforge.business.sipgate.SipgateConfiguration
+import org.projectforge.business.sipgate.SipgateContact
+import org.projectforge.business.sipgate.SipgateContactSyncDO
+import org.projectforge.business.test.AbstractTestBase
+import org.projectforge.framework.json.JsonUtils
+import org.projectforge.framework.persistence.api.EntityCopyStatus
+import org.projectforge.framework.utils.NumberHelper
+import java.net.InetSocketAddress
+import java.util.*
+
+/**
+ * Syncs against a local HTTP stand-in for the Sipgate contacts API.
+ */
+class SipgateContactSyncHttpTest : AbstractTestBase() {
+    /**
+     * Minimal implementation of the Sipgate contacts API (list, create, update and delete).
+     */
+    class SipgateStandIn {
+        val contacts = mutableListOf<SipgateContact>()
+        var requests = mutableListOf<String>()
+        private var idCounter = 0
+        private val server = HttpServer.create(InetSocketAddress("localhost", 0), 0)
+
+        val baseUri: String
+            get() = "http://localhost:${server.address.port}"
+
+        init {
+            server.createContext("/contacts") { exchange -> handle(exchange) }
+            server.start()
+        }
+
+        fun stop() {
+            server.stop(0)
+        }
+
+        @Synchronized
+        private fun handle(exchange: HttpExchange) {
+            val method = exchange.requestMethod
+            val id = exchange.requestURI.path.removePrefix("/contacts").removePrefix("/")
+            if (method != "GET") {
+                requests.add(method)
+            }
+            val body = exchange.requestBody.readBytes().toString(Charsets.UTF_8)
+            when (method) {
+                "GET" -> {
+                    val list = ContactListData()
+                    list.items = contacts
+                    list.totalCount = contacts.size.toLong()
+                    respond(exchange, 200, JsonUtils.toJson(list))
+                }
+
+                "POST" -> {
+                    val contact = JsonUtils.fromJson(body, SipgateContact::class.java, failOnUnknownProps = false)!!
+                    contact.id = "contact-${++idCounter}"
+                    contacts.add(contact)
+                    respond(exchange, 201)
+                }
+
+                "PUT" -> {
+                    val contact = JsonUtils.fromJson(body, SipgateContact::class.java, failOnUnknownProps = false)!!
+                    contact.id = id
+                    contacts.replaceAll { if (it.id == id) contact else it }
+                    respond(exchange, 204)
+                }
+
+                "DELETE" -> {
+                    contacts.removeIf { it.id == id }
+                    respond(exchange, 200)
+                }
+
+                else -> respond(exchange, 405)
+            }
+        }
+
+        private fun respond(exchange: HttpExchange, status: Int, body: String? = null) {
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1)
+            } else {
+                val bytes = body.toByteArray(Charsets.UTF_8)
+                exchange.responseHeaders.add("Content-Type", "application/json")
+                exchange.sendResponseHeaders(status, bytes.size.toLong())
+                exchange.responseBody.use { it.write(bytes) }
+            }
+            exchange.close()
+        }
+    }
+
+    @Test
+    fun deltaSyncTest() {
+        NumberHelper.TEST_COUNTRY_PREFIX_USAGE_IN_TESTCASES_ONLY = "+49"
+        SipgateContactSyncService.countryPrefixForTestcases = "+49"
+        val standIn = SipgateStandIn()
+        try {
+            val lastUpdate = Date(System.currentTimeMillis() - 60_000)
+            val addressList = mutableListOf(
+                SipgateSyncServiceTest.createAddress("Reinhard", "Kai", "+49 123456789", organization = "ACME ltd.", id = 1),
+                SipgateSyncServiceTest.createAddress("Müller", "Berta", "+49 2222222", organization = "ACME ltd.", id = 2),
+            )
+            addressList.forEach { it.lastUpdate = lastUpdate }
+            standIn.contacts.add(
+                SipgateSyncServiceTest.createContact(
+                    "Reinhard", "Kai", "+49 123456789", organization = "ACME ltd.", id = "contact-kai",
+                )
+            )
+            val syncService = createSyncService(standIn, addressList)
+
+            var syncContext = syncService.sync()
+            Assertions.assertEquals(2, syncContext.syncDOList.size)
+            Assertions.assertEquals(2, standIn.contacts.size)
+            Assertions.assertEquals(1, standIn.requests.count { it == "POST" }, "Berta created remote.")
+
+            // Nothing modified: no remote calls, all pairs skipped.
+            standIn.requests.clear()
+            syncContext = syncService.sync()
+            Assertions.assertEquals(emptyList<String>(), standIn.requests)
+            Assertions.assertEquals(2, syncContext.unmodified)
+
+            // Local modification: only the modified address is pushed.
+            addressList[0].businessPhone = "+49 561 12345"
+            addressList[0].lastUpdate = Date()
+            syncContext = syncService.sync()
+            Assertions.assertEquals(listOf("PUT"), standIn.requests)
+            Assertions.assertEquals(1, syncContext.unmodified)
+            Assertions.assertEquals(1, syncContext.remoteCounter.updated)
+            Assertions.assertEquals("+49 561 12345", standIn.contacts.find { it.id == "contact-kai" }!!.work)
+
+            // Remote modification: compared and pulled, no remote calls.
+            standIn.requests.clear()
+            standIn.contacts.find { it.id == "contact-kai" }!!.cell = "+49 3333333"
+            syncContext = syncService.sync()
+            Assertions.assertEquals(1, syncContext.unmodified)
+            Assertions.assertEquals(1, syncContext.localCounter.updated)
+            Assertions.assertEquals(
+                NumberHelper.extractPhonenumber("+49 3333333"),
+                NumberHelper.extractPhonenumber(addressList[0].mobilePhone),
+            )
+        } finally {
+            standIn.stop()
+        }
+    }
+
+    private fun createSyncService(
+        standIn: SipgateStandIn,
+        addressList: MutableList<AddressDO>,
+    ): SipgateContactSyncService {
+        val configuration = SipgateConfiguration()
+        configuration.baseUri = standIn.baseUri
+        configuration.tokenId = "token-id"
+        configuration.token = "token"
+        val client = SipgateClient()
+        client.sipgateConfiguration = configuration
+        client.postConstruct(false)
+        val contactService = SipgateContactService()
+        contactService.sipgateClient = client
+        contactService.postConstruct()
+        val addressDao = object : AddressDao() {
+            override fun selectAll(checkAccess: Boolean): MutableList<AddressDO> {
+                return addressList
+            }
+
+            override fun update(obj: AddressDO, checkAccess: Boolean): EntityCopyStatus {
+                obj.lastUpdate = Date()
+                return EntityCopyStatus.MAJOR
+            }
+        }
+        val syncService = object : SipgateContactSyncService() {
+            val syncDOList = mutableListOf<SipgateContactSyncDO>()
+            override fun loadAll(): List<SipgateContactSyncDO> {
+                return syncDOList.toList()
+            }
+
+            override fun upsert(entry: SipgateContactSyncDO) {
+                val dbObj =
+                    syncDOList.find { it.sipgateContactId == entry.sipgateContactId || it.address!!.id == entry.address!!.id }
+                if (dbObj != null) {
+                    dbObj.syncInfoAsJson = entry.syncInfoAsJson
+                    dbObj.lastSync = entry.lastSync
+                } else {
+                    syncDOList.add(entry)
+                }
+            }
+
+            override fun delete(entry: SipgateContactSyncDO, em: EntityManager) {
+                syncDOList.remove(entry)
+            }
+        }
+        syncService.configuration = configuration
+        syncService.persistenceService = persistenceService
+        syncService.addressDao = addressDao
+        syncService.sipgateContactService = contactService
+        return syncService
+    }
+}
@@ -0,0 +1,96 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2024 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.ui
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import org.projectforge.business.test.AbstractTestBase
+import org.projectforge.business.user.GroupDao
+import org.projectforge.framework.persistence.user.entities.GroupDO
+import org.projectforge.ui.filter.LayoutListFilterUtils
+import org.projectforge.ui.filter.UIFilterElement
+import org.projectforge.ui.filter.UIFilterListElement
+import org.projectforge.ui.filter.UIFilterTimestampElement
+import org.springframework.beans.factory.annotation.Autowired
+
+class LayoutCacheTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var groupDao: GroupDao
+
+    @Test
+    fun accessProfileTest() {
+        LayoutCache.clear()
+        logon(TEST_ADMIN_USER)
+        val adminPart = LayoutCache.getOrCreate(LayoutCacheTest::class.java, "test") { Any() }
+        assertSame(adminPart, LayoutCache.getOrCreate(LayoutCacheTest::class.java, "test") { Any() })
+        assertNotSame(adminPart, LayoutCache.getOrCreate(LayoutCacheTest::class.java, "other") { Any() })
+        logon(TEST_FINANCE_USER)
+        val financePart = LayoutCache.getOrCreate(LayoutCacheTest::class.java, "test") { Any() }
+        assertNotSame(adminPart, financePart, "Users with different groups shouldn't share layouts.")
+        LayoutCache.clear()
+        assertNotSame(financePart, LayoutCache.getOrCreate(LayoutCacheTest::class.java, "test") { Any() })
+    }
+
+    @Test
+    fun invalidationTest() {
+        logon(TEST_ADMIN_USER)
+        val part = LayoutCache.getOrCreate(LayoutCacheTest::class.java, "invalidation") { Any() }
+        assertSame(part, LayoutCache.getOrCreate(LayoutCacheTest::class.java, "invalidation") { Any() })
+        val group = GroupDO()
+        group.name = "LayoutCacheTest"
+        groupDao.insert(group)
+        assertNotSame(
+            part,
+            LayoutCache.getOrCreate(LayoutCacheTest::class.java, "invalidation") { Any() },
+            "Cache should be cleared after modification of groups.",
+        )
+    }
+
+    @Test
+    fun copySearchFilterContainerTest() {
+        val cached = UINamedContainer("searchFilter")
+        cached.add(UIFilterElement("title", label = "Title"))
+        cached.add(UIFilterListElement("status", listOf(UISelectValue("OPEN", "open")), label = "Status", multi = false))
+        cached.add(UIFilterTimestampElement("modified", label = "Modified", openInterval = false))
+        val copy = LayoutListFilterUtils.copySearchFilterContainer(cached)
+        assertEquals(3, copy.content.size)
+        copy.content.forEachIndexed { i, element ->
+            val orig = cached.content[i] as UIFilterElement
+            element as UIFilterElement
+            assertNotSame(orig, element)
+            assertSame(orig::class, element::class)
+            assertEquals(orig.id, element.id)
+            assertEquals(orig.label, element.label)
+            assertEquals(orig.filterType, element.filterType)
+            // Simulates the layout processing of a request:
+            element.key = "el-$i"
+            element.label = "translated"
+        }
+        assertEquals(false, (copy.content[1] as UIFilterListElement).multi)
+        assertEquals(false, (copy.content[2] as UIFilterTimestampElement).openInterval)
+        assertEquals("title", cached.content[0].key, "The cached container must stay unmodified.")
+        assertEquals("Title", (cached.content[0] as UIFilterElement).label)
+    }
+}
@@ -5,6 +5,7 @@ gradle.rootProject {
 }
 
 include(":projectforge-application")
+include(":projectforge-benchmarks")
 include(":projectforge-business")
 include(":projectforge-common")
 include(":projectforge-commons-test")